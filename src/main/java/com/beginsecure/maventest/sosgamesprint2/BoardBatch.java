@@ -0,0 +1,174 @@
+package com.beginsecure.maventest.sosgamesprint2;
+
+import java.util.Arrays;
+
+/**
+ * A batch of boards of one size laid out for {@link SOSScanner}. Each board row is stored as
+ * two bit masks, one for its 'S' cells and one for its 'O' cells (bit {@code col} set when the
+ * column holds that letter). The masks are interleaved row by row: row {@code r} of board
+ * {@code b} sits at index {@code r * capacity + b}, so the same row of consecutive boards is
+ * contiguous and can be processed in SIMD lanes.
+ */
+public class BoardBatch {
+
+    private final int boardSize;
+    private final int capacity;
+    final int[] sRows;
+    final int[] oRows;
+    private int size;
+
+    /**
+     * Initializes an empty batch.
+     *
+     * @param boardSize the size of every board in a square dimension (3 to 15)
+     * @param capacity the maximum number of boards
+     */
+    public BoardBatch(int boardSize, int capacity) {
+        if (boardSize < 3 || boardSize > 15) {
+            throw new IllegalArgumentException("Board size must be between 3 and 15: " + boardSize);
+        }
+        this.boardSize = boardSize;
+        this.capacity = capacity;
+        this.sRows = new int[boardSize * capacity];
+        this.oRows = new int[boardSize * capacity];
+    }
+
+    /**
+     * Appends the board of a compact game.
+     *
+     * @param state the game whose letters to copy
+     * @return the index of the board in the batch
+     */
+    public int add(CompactGameState state) {
+        int index = reserve();
+        set(index, state);
+        return index;
+    }
+
+    /**
+     * Appends a board given as letters.
+     *
+     * @param board the letters, indexed [row][col]; anything but 'S' or 'O' is empty
+     * @return the index of the board in the batch
+     */
+    public int add(char[][] board) {
+        int index = reserve();
+        set(index, board);
+        return index;
+    }
+
+    /**
+     * Replaces a board with the board of a compact game.
+     *
+     * @param index the index of the board
+     * @param state the game whose letters to copy
+     */
+    public void set(int index, CompactGameState state) {
+        checkBoard(index, state.getBoardSize());
+        for (int row = 0; row < boardSize; row++) {
+            int s = 0;
+            int o = 0;
+            for (int col = 0; col < boardSize; col++) {
+                char letter = state.getLetter(row, col);
+                s |= (letter == 'S' ? 1 : 0) << col;
+                o |= (letter == 'O' ? 1 : 0) << col;
+            }
+            sRows[row * capacity + index] = s;
+            oRows[row * capacity + index] = o;
+        }
+    }
+
+    /**
+     * Replaces a board with letters.
+     *
+     * @param index the index of the board
+     * @param board the letters, indexed [row][col]; anything but 'S' or 'O' is empty
+     */
+    public void set(int index, char[][] board) {
+        checkBoard(index, board.length);
+        for (int row = 0; row < boardSize; row++) {
+            int s = 0;
+            int o = 0;
+            for (int col = 0; col < boardSize; col++) {
+                s |= (board[row][col] == 'S' ? 1 : 0) << col;
+                o |= (board[row][col] == 'O' ? 1 : 0) << col;
+            }
+            sRows[row * capacity + index] = s;
+            oRows[row * capacity + index] = o;
+        }
+    }
+
+    /**
+     * Retrieves the letter at a position of a board.
+     *
+     * @param index the index of the board
+     * @param row the row index
+     * @param col the column index
+     * @return 'S', 'O', or '\0' if the cell is empty
+     */
+    public char getLetter(int index, int row, int col) {
+        int bit = 1 << col;
+        if ((sRows[row * capacity + index] & bit) != 0) {
+            return 'S';
+        }
+        return (oRows[row * capacity + index] & bit) != 0 ? 'O' : '\0';
+    }
+
+    /**
+     * Removes every board from the batch.
+     */
+    public void clear() {
+        Arrays.fill(sRows, 0);
+        Arrays.fill(oRows, 0);
+        size = 0;
+    }
+
+    /**
+     * Retrieves the board size.
+     *
+     * @return the number of rows (and columns) of every board
+     */
+    public int getBoardSize() {
+        return boardSize;
+    }
+
+    /**
+     * Retrieves the maximum number of boards.
+     *
+     * @return the capacity
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Retrieves the number of boards added so far.
+     *
+     * @return the board count
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Claims the next free board index.
+     */
+    private int reserve() {
+        if (size == capacity) {
+            throw new IllegalStateException("Board batch is full: " + capacity);
+        }
+        return size++;
+    }
+
+    /**
+     * Validates a board index and the size of a board stored at it.
+     */
+    private void checkBoard(int index, int rows) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Board index " + index + " outside batch of " + size);
+        }
+        if (rows != boardSize) {
+            throw new IllegalArgumentException("Expected a " + boardSize + "x" + boardSize + " board: " + rows);
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.beginsecure.maventest.sosgamesprint2;
+
+/**
+ * Counts, for every cell of one board size, how often archived games played there and how many
+ * SOS those moves formed. Games on other board sizes are left out.
+ */
+public class CellHeatmap implements GameAggregator<CellHeatmap> {
+
+    private final int boardSize;
+    private final int maxPly;
+    private final long[] plays;
+    private final long[] points;
+    private long games;
+
+    /**
+     * Initializes an empty heatmap of every move.
+     *
+     * @param boardSize the board size of the games to count
+     */
+    public CellHeatmap(int boardSize) {
+        this(boardSize, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Initializes an empty heatmap of the opening moves.
+     *
+     * @param boardSize the board size of the games to count
+     * @param maxPly the number of moves of each game to count
+     */
+    public CellHeatmap(int boardSize, int maxPly) {
+        this.boardSize = boardSize;
+        this.maxPly = maxPly;
+        this.plays = new long[boardSize * boardSize];
+        this.points = new long[boardSize * boardSize];
+    }
+
+    @Override
+    public void accept(GameArchive.Game game) {
+        if (game.getBoardSize() != boardSize) {
+            return;
+        }
+        games++;
+        int moves = Math.min(maxPly, game.getMoveCount());
+        for (int ply = 0; ply < moves; ply++) {
+            plays[game.getCell(ply)]++;
+            points[game.getCell(ply)] += game.getGain(ply);
+        }
+    }
+
+    @Override
+    public void combine(CellHeatmap other) {
+        if (other.boardSize != boardSize || other.maxPly != maxPly) {
+            throw new IllegalArgumentException("Heatmaps of different boards cannot be combined");
+        }
+        for (int cell = 0; cell < plays.length; cell++) {
+            plays[cell] += other.plays[cell];
+            points[cell] += other.points[cell];
+        }
+        games += other.games;
+    }
+
+    /**
+     * Retrieves how many counted moves were played on a cell.
+     *
+     * @param row the row of the cell
+     * @param col the column of the cell
+     * @return the move count
+     */
+    public long getPlays(int row, int col) {
+        return plays[row * boardSize + col];
+    }
+
+    /**
+     * Retrieves how many SOS the counted moves on a cell formed.
+     *
+     * @param row the row of the cell
+     * @param col the column of the cell
+     * @return the points scored on the cell
+     */
+    public long getPoints(int row, int col) {
+        return points[row * boardSize + col];
+    }
+
+    /**
+     * Retrieves the number of games counted.
+     *
+     * @return the game count
+     */
+    public long getGames() {
+        return games;
+    }
+
+    /**
+     * Retrieves the board size of the counted games.
+     *
+     * @return the board size
+     */
+    public int getBoardSize() {
+        return boardSize;
+    }
+}
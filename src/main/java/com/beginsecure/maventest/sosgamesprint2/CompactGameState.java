@@ -0,0 +1,471 @@
+package com.beginsecure.maventest.sosgamesprint2;
+
+/**
+ * A memory-compact representation of an SOS game intended for hosting very large numbers of
+ * concurrent games. The whole position is packed into two primitive arrays and a handful of
+ * primitive fields:
+ * <ul>
+ *     <li>one byte per cell holding the letter (bits 0-1) and the owner (bit 2),</li>
+ *     <li>one bit per possible SOS line, keyed by the line's middle cell and direction,</li>
+ *     <li>scores, turn, mode and game-over flags as plain fields.</li>
+ * </ul>
+ * A 9x9 game fits in a few hundred bytes, compared to several kilobytes for {@link SOSGame}.
+ */
+public class CompactGameState {
+
+    /** Cell value of an empty square. */
+    public static final byte EMPTY = 0;
+    /** Cell value of an 'S'. */
+    public static final byte LETTER_S = 1;
+    /** Cell value of an 'O'. */
+    public static final byte LETTER_O = 2;
+
+    /** Number of line directions tracked per cell (horizontal, vertical, diagonal, anti-diagonal). */
+    public static final int DIRECTIONS = 4;
+
+    static final int LETTER_MASK = 0x03;
+    static final int OWNER_P2 = 0x04;
+
+    // Row and column steps for each direction: horizontal, vertical, diagonal, anti-diagonal
+    static final int[] DIR_ROW = {0, 1, 1, 1};
+    static final int[] DIR_COL = {1, 0, 1, -1};
+
+    private static final byte FLAG_PLAYER_TWO_TURN = 0x01;
+    private static final byte FLAG_GENERAL_MODE = 0x02;
+    private static final byte FLAG_GAME_OVER = 0x04;
+
+    private final byte boardSize;
+    private final byte[] cells;      // Letter and owner for each cell, row-major
+    private final long[] sosLines;   // One bit per (middle cell, direction) SOS line
+    private short playerOneScore;
+    private short playerTwoScore;
+    private short emptyCells;
+    private byte flags;
+
+    /**
+     * Initializes an empty compact game.
+     *
+     * @param boardSize the size of the board in a square dimension (3 to 15)
+     * @param generalMode true for a general game, false for a simple game
+     */
+    public CompactGameState(int boardSize, boolean generalMode) {
+        if (boardSize < 3 || boardSize > 15) {
+            throw new IllegalArgumentException("Board size must be between 3 and 15: " + boardSize);
+        }
+        this.boardSize = (byte) boardSize;
+        this.cells = new byte[boardSize * boardSize];
+        this.sosLines = new long[(cells.length * DIRECTIONS + 63) >>> 6];
+        this.emptyCells = (short) cells.length;
+        this.flags = generalMode ? FLAG_GENERAL_MODE : 0;
+    }
+
+    /**
+     * Creates an independent copy of another compact state.
+     *
+     * @param other the state to copy
+     */
+    private CompactGameState(CompactGameState other) {
+        this.boardSize = other.boardSize;
+        this.cells = other.cells.clone();
+        this.sosLines = other.sosLines.clone();
+        this.playerOneScore = other.playerOneScore;
+        this.playerTwoScore = other.playerTwoScore;
+        this.emptyCells = other.emptyCells;
+        this.flags = other.flags;
+    }
+
+    /**
+     * Creates an independent copy of this state, e.g. for a search thread.
+     *
+     * @return a deep copy
+     */
+    public CompactGameState copy() {
+        return new CompactGameState(this);
+    }
+
+    /**
+     * Builds a compact copy of an existing game. Every SOS present on the board is marked as
+     * detected, since a line can only be completed once.
+     *
+     * @param game the game to copy
+     * @return a compact state with the same board, owners, turn, mode and scores
+     */
+    public static CompactGameState from(SOSGame game) {
+        char[][] board = game.getBoard();
+        String[][] owners = game.getPlayerMoves();
+        CompactGameState state = new CompactGameState(board.length, game instanceof GeneralGame);
+        for (int row = 0; row < board.length; row++) {
+            for (int col = 0; col < board.length; col++) {
+                if (board[row][col] != '\0') {
+                    byte value = toCellValue(board[row][col]);
+                    if ("P2".equals(owners[row][col])) {
+                        value |= OWNER_P2;
+                    }
+                    state.cells[row * board.length + col] = value;
+                    state.emptyCells--;
+                }
+            }
+        }
+        state.markExistingLines();
+        if (game instanceof GeneralGame) {
+            state.playerOneScore = (short) ((GeneralGame) game).getPlayerOneScore();
+            state.playerTwoScore = (short) ((GeneralGame) game).getPlayerTwoScore();
+        } else if (game.isGameOver() && game.getWinner() != 0) {
+            // A simple game is won by the first SOS, so the winner scored exactly one line
+            if (game.getWinner() == 1) {
+                state.playerOneScore = 1;
+            } else {
+                state.playerTwoScore = 1;
+            }
+        }
+        if (!game.isPlayerOneTurn()) {
+            state.flags |= FLAG_PLAYER_TWO_TURN;
+        }
+        if (state.emptyCells == 0 || (!state.isGeneralMode() && state.getLineCount() > 0)) {
+            state.flags |= FLAG_GAME_OVER;
+        }
+        return state;
+    }
+
+    /**
+     * Places a letter for the current player, records any SOS lines it completes, updates the
+     * score and switches the turn.
+     *
+     * @param row the row position
+     * @param col the column position
+     * @param letter the character ('S' or 'O') to place
+     * @return the number of SOS lines formed, or -1 if the move is invalid
+     */
+    public int placeMove(int row, int col, char letter) {
+        if (isGameOver() || row < 0 || row >= boardSize || col < 0 || col >= boardSize
+                || (letter != 'S' && letter != 'O')) {
+            return -1;
+        }
+        int cell = row * boardSize + col;
+        if (cells[cell] != EMPTY) {
+            return -1;
+        }
+        boolean playerOne = isPlayerOneTurn();
+        cells[cell] = (byte) (toCellValue(letter) | (playerOne ? 0 : OWNER_P2));
+        emptyCells--;
+
+        int sosCount = markNewLines(row, col);
+        if (playerOne) {
+            playerOneScore = (short) (playerOneScore + sosCount);
+        } else {
+            playerTwoScore = (short) (playerTwoScore + sosCount);
+        }
+        if (emptyCells == 0 || (sosCount > 0 && !isGeneralMode())) {
+            flags |= FLAG_GAME_OVER;
+        }
+        flags ^= FLAG_PLAYER_TWO_TURN;
+        return sosCount;
+    }
+
+    /**
+     * Takes back the most recent move at the given position, restoring scores, lines, turn and
+     * the game-over flag. Moves must be undone in the reverse order they were made, which is
+     * what makes every formed line through the cell attributable to this move.
+     *
+     * @param row the row of the move to take back
+     * @param col the column of the move to take back
+     */
+    public void undoMove(int row, int col) {
+        int cell = row * boardSize + col;
+        byte value = cells[cell];
+        if ((value & LETTER_MASK) == EMPTY) {
+            throw new IllegalStateException("No move to undo at " + row + "," + col);
+        }
+        int sosCount = clearLinesThrough(row, col, value & LETTER_MASK);
+        boolean playerTwo = (value & OWNER_P2) != 0;
+        if (playerTwo) {
+            playerTwoScore = (short) (playerTwoScore - sosCount);
+            flags |= FLAG_PLAYER_TWO_TURN;
+        } else {
+            playerOneScore = (short) (playerOneScore - sosCount);
+            flags &= ~FLAG_PLAYER_TWO_TURN;
+        }
+        cells[cell] = EMPTY;
+        emptyCells++;
+        flags &= ~FLAG_GAME_OVER;
+    }
+
+    /**
+     * Counts the SOS lines a letter would complete at an empty position, without placing it.
+     *
+     * @param row the row position
+     * @param col the column position
+     * @param letter the character ('S' or 'O')
+     * @return the number of lines the move would form
+     */
+    public int countLinesIf(int row, int col, char letter) {
+        int value = toCellValue(letter);
+        int count = 0;
+        for (int dir = 0; dir < DIRECTIONS; dir++) {
+            int dr = DIR_ROW[dir];
+            int dc = DIR_COL[dir];
+            if (value == LETTER_O) {
+                if (letterAt(row - dr, col - dc) == LETTER_S && letterAt(row + dr, col + dc) == LETTER_S) {
+                    count++;
+                }
+            } else {
+                if (letterAt(row + dr, col + dc) == LETTER_O && letterAt(row + 2 * dr, col + 2 * dc) == LETTER_S) {
+                    count++;
+                }
+                if (letterAt(row - dr, col - dc) == LETTER_O && letterAt(row - 2 * dr, col - 2 * dc) == LETTER_S) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Clears the bits of every formed line that passes through the given cell.
+     *
+     * @return the number of lines cleared
+     */
+    private int clearLinesThrough(int row, int col, int letter) {
+        int count = 0;
+        for (int dir = 0; dir < DIRECTIONS; dir++) {
+            if (letter == LETTER_O) {
+                count += clearLine(row, col, dir);
+            } else {
+                count += clearLine(row + DIR_ROW[dir], col + DIR_COL[dir], dir);
+                count += clearLine(row - DIR_ROW[dir], col - DIR_COL[dir], dir);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Clears the bit for the SOS line with the given middle cell and direction.
+     *
+     * @return 1 if the line was marked, 0 otherwise
+     */
+    private int clearLine(int middleRow, int middleCol, int dir) {
+        if (middleRow < 0 || middleRow >= boardSize || middleCol < 0 || middleCol >= boardSize) {
+            return 0;
+        }
+        int bit = (middleRow * boardSize + middleCol) * DIRECTIONS + dir;
+        long mask = 1L << bit;
+        if ((sosLines[bit >>> 6] & mask) == 0) {
+            return 0;
+        }
+        sosLines[bit >>> 6] &= ~mask;
+        return 1;
+    }
+
+    /**
+     * Marks every SOS line completed by the letter just placed at the given cell.
+     *
+     * @param row the row of the placed letter
+     * @param col the column of the placed letter
+     * @return the number of lines marked
+     */
+    private int markNewLines(int row, int col) {
+        int count = 0;
+        int letter = cells[row * boardSize + col] & LETTER_MASK;
+        for (int dir = 0; dir < DIRECTIONS; dir++) {
+            int dr = DIR_ROW[dir];
+            int dc = DIR_COL[dir];
+            if (letter == LETTER_O) {
+                // The placed 'O' is the middle of the line
+                if (letterAt(row - dr, col - dc) == LETTER_S && letterAt(row + dr, col + dc) == LETTER_S) {
+                    count += markLine(row, col, dir);
+                }
+            } else {
+                // The placed 'S' is either end of the line
+                if (letterAt(row + dr, col + dc) == LETTER_O && letterAt(row + 2 * dr, col + 2 * dc) == LETTER_S) {
+                    count += markLine(row + dr, col + dc, dir);
+                }
+                if (letterAt(row - dr, col - dc) == LETTER_O && letterAt(row - 2 * dr, col - 2 * dc) == LETTER_S) {
+                    count += markLine(row - dr, col - dc, dir);
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Scans the whole board and marks every SOS line currently present.
+     */
+    private void markExistingLines() {
+        for (int row = 0; row < boardSize; row++) {
+            for (int col = 0; col < boardSize; col++) {
+                if (letterAt(row, col) != LETTER_O) {
+                    continue;
+                }
+                for (int dir = 0; dir < DIRECTIONS; dir++) {
+                    if (letterAt(row - DIR_ROW[dir], col - DIR_COL[dir]) == LETTER_S
+                            && letterAt(row + DIR_ROW[dir], col + DIR_COL[dir]) == LETTER_S) {
+                        markLine(row, col, dir);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Sets the bit for the SOS line with the given middle cell and direction.
+     *
+     * @return 1 if the line was newly marked, 0 if it was already known
+     */
+    private int markLine(int middleRow, int middleCol, int dir) {
+        int bit = (middleRow * boardSize + middleCol) * DIRECTIONS + dir;
+        long mask = 1L << bit;
+        if ((sosLines[bit >>> 6] & mask) != 0) {
+            return 0;
+        }
+        sosLines[bit >>> 6] |= mask;
+        return 1;
+    }
+
+    /**
+     * Returns the letter bits at a position, treating off-board positions as empty.
+     */
+    private int letterAt(int row, int col) {
+        if (row < 0 || row >= boardSize || col < 0 || col >= boardSize) {
+            return EMPTY;
+        }
+        return cells[row * boardSize + col] & LETTER_MASK;
+    }
+
+    /**
+     * Converts a board character to its packed cell value.
+     */
+    static byte toCellValue(char letter) {
+        return letter == 'S' ? LETTER_S : letter == 'O' ? LETTER_O : EMPTY;
+    }
+
+    /**
+     * Retrieves the letter at a position.
+     *
+     * @param row the row index
+     * @param col the column index
+     * @return 'S', 'O', or '\0' if the cell is empty
+     */
+    public char getLetter(int row, int col) {
+        int letter = cells[row * boardSize + col] & LETTER_MASK;
+        return letter == LETTER_S ? 'S' : letter == LETTER_O ? 'O' : '\0';
+    }
+
+    /**
+     * Retrieves the player who placed the letter at a position.
+     *
+     * @param row the row index
+     * @param col the column index
+     * @return 1 or 2 for the owning player, or 0 if the cell is empty
+     */
+    public int getOwner(int row, int col) {
+        byte value = cells[row * boardSize + col];
+        if ((value & LETTER_MASK) == EMPTY) {
+            return 0;
+        }
+        return (value & OWNER_P2) != 0 ? 2 : 1;
+    }
+
+    /**
+     * Checks whether an SOS line has been detected.
+     *
+     * @param middleRow the row of the line's 'O'
+     * @param middleCol the column of the line's 'O'
+     * @param dir the direction index (0 horizontal, 1 vertical, 2 diagonal, 3 anti-diagonal)
+     * @return true if the line has been formed
+     */
+    public boolean hasLine(int middleRow, int middleCol, int dir) {
+        int bit = (middleRow * boardSize + middleCol) * DIRECTIONS + dir;
+        return (sosLines[bit >>> 6] & (1L << bit)) != 0;
+    }
+
+    /**
+     * Counts the SOS lines detected so far.
+     *
+     * @return the total number of formed lines
+     */
+    public int getLineCount() {
+        int count = 0;
+        for (long word : sosLines) {
+            count += Long.bitCount(word);
+        }
+        return count;
+    }
+
+    /**
+     * Retrieves the board size.
+     *
+     * @return the number of rows (and columns)
+     */
+    public int getBoardSize() {
+        return boardSize;
+    }
+
+    /**
+     * Retrieves the number of empty cells left.
+     *
+     * @return the empty cell count
+     */
+    public int getEmptyCells() {
+        return emptyCells;
+    }
+
+    /**
+     * Checks if it is Player 1's turn.
+     *
+     * @return true if it is Player 1's turn, false otherwise
+     */
+    public boolean isPlayerOneTurn() {
+        return (flags & FLAG_PLAYER_TWO_TURN) == 0;
+    }
+
+    /**
+     * Checks whether this is a general game.
+     *
+     * @return true for a general game, false for a simple game
+     */
+    public boolean isGeneralMode() {
+        return (flags & FLAG_GENERAL_MODE) != 0;
+    }
+
+    /**
+     * Checks whether the game has ended.
+     *
+     * @return true if no more moves are accepted
+     */
+    public boolean isGameOver() {
+        return (flags & FLAG_GAME_OVER) != 0;
+    }
+
+    /**
+     * Retrieves Player 1's score.
+     *
+     * @return the number of SOS lines formed by Player 1
+     */
+    public int getPlayerOneScore() {
+        return playerOneScore;
+    }
+
+    /**
+     * Retrieves Player 2's score.
+     *
+     * @return the number of SOS lines formed by Player 2
+     */
+    public int getPlayerTwoScore() {
+        return playerTwoScore;
+    }
+
+    /**
+     * Determines the winner of a finished game.
+     *
+     * @return 1 or 2 for the winning player, 0 for a draw, or -1 if the game is still running
+     */
+    public int getWinner() {
+        if (!isGameOver()) {
+            return -1;
+        }
+        if (playerOneScore == playerTwoScore) {
+            return 0;
+        }
+        return playerOneScore > playerTwoScore ? 1 : 2;
+    }
+}
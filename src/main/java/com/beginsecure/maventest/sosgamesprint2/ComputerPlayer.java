@@ -0,0 +1,23 @@
+package com.beginsecure.maventest.sosgamesprint2;
+
+/**
+ * A computer opponent that chooses moves for whichever player is to move.
+ */
+public interface ComputerPlayer {
+
+    /**
+     * Chooses a move for the player whose turn it is. Implementations must not modify the given
+     * state; they work on a copy when they need to search.
+     *
+     * @param state the current position
+     * @return a legal move, or null if the game is over
+     */
+    Move chooseMove(CompactGameState state);
+
+    /**
+     * Retrieves a short display name for this player.
+     *
+     * @return the player's name
+     */
+    String getName();
+}
@@ -0,0 +1,124 @@
+package com.beginsecure.maventest.sosgamesprint2;
+
+/**
+ * Difficulty levels for local computer players, each expressed as a compute budget. A level caps
+ * the search depth, the number of positions examined and the time spent per move, adds a fixed
+ * amount of randomisation to the move choice, and sets how many threads the search may use.
+ * Whichever of the depth, node or time limits is hit first ends the search, so the latency of a
+ * move never exceeds the level's time budget by more than one node-check interval. In
+ * deterministic mode the time budget is replaced by a node budget of about the same size, so
+ * the search examines the same positions on every machine.
+ */
+public enum Difficulty {
+
+    /** Looks one move ahead and plays noticeably random moves. */
+    EASY("Easy", 1, 5_000, 50, 5_000, 150, 1),
+    /** Searches a few moves deep with a little randomisation. */
+    MEDIUM("Medium", 3, 250_000, 250, 250_000, 40, 1),
+    /** Searches as deep as the time budget allows on all cores, without randomisation. */
+    HARD("Hard", 64, Long.MAX_VALUE, 1000, 2_000_000, 0, Runtime.getRuntime().availableProcessors());
+
+    private final String label;
+    private final int maxDepth;
+    private final long nodeLimit;
+    private final long timePerMoveMillis;
+    private final long deterministicNodeLimit;
+    private final int randomness;
+    private final int threads;
+
+    Difficulty(String label, int maxDepth, long nodeLimit, long timePerMoveMillis, long deterministicNodeLimit,
+               int randomness, int threads) {
+        this.label = label;
+        this.maxDepth = maxDepth;
+        this.nodeLimit = nodeLimit;
+        this.timePerMoveMillis = timePerMoveMillis;
+        this.deterministicNodeLimit = deterministicNodeLimit;
+        this.randomness = randomness;
+        this.threads = threads;
+    }
+
+    /**
+     * Finds the level with the given display label.
+     *
+     * @param label "Easy", "Medium" or "Hard" (case-insensitive)
+     * @return the matching level
+     */
+    public static Difficulty fromLabel(String label) {
+        for (Difficulty difficulty : values()) {
+            if (difficulty.label.equalsIgnoreCase(label)) {
+                return difficulty;
+            }
+        }
+        throw new IllegalArgumentException("Unknown difficulty: " + label);
+    }
+
+    /**
+     * Retrieves the display label.
+     *
+     * @return the label shown in the UI
+     */
+    public String getLabel() {
+        return label;
+    }
+
+    /**
+     * Retrieves the maximum search depth in plies.
+     *
+     * @return the depth limit
+     */
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    /**
+     * Retrieves the maximum number of positions examined per move.
+     *
+     * @return the node limit
+     */
+    public long getNodeLimit() {
+        return nodeLimit;
+    }
+
+    /**
+     * Retrieves the time budget per move.
+     *
+     * @return the budget in milliseconds
+     */
+    public long getTimePerMoveMillis() {
+        return timePerMoveMillis;
+    }
+
+    /**
+     * Retrieves the maximum number of positions examined per move in deterministic mode, where
+     * it replaces both the node limit and the time budget.
+     *
+     * @return the deterministic node limit
+     */
+    public long getDeterministicNodeLimit() {
+        return deterministicNodeLimit;
+    }
+
+    /**
+     * Retrieves the randomisation amount: the maximum random bonus added to each candidate's
+     * evaluation at the root, where one SOS is worth 100.
+     *
+     * @return the randomisation amount
+     */
+    public int getRandomness() {
+        return randomness;
+    }
+
+    /**
+     * Retrieves the number of search threads.
+     *
+     * @return the thread count
+     */
+    public int getThreads() {
+        return threads;
+    }
+
+    @Override
+    public String toString() {
+        return label;
+    }
+}
@@ -0,0 +1,254 @@
+package com.beginsecure.maventest.sosgamesprint2;
+
+/**
+ * Solves the last moves of a general game exactly: it finds the move that maximises the points
+ * the side to move will score from now on minus the points its opponent will score, assuming
+ * both sides play perfectly to the end of the board. The search is a null-window alpha-beta
+ * (MTD(f)) over that score margin, trying moves by the SOS they complete first and the setups
+ * they leave last, with a small transposition table of its own keyed by the letters alone, as
+ * the margin still to be won does not depend on the score so far.
+ *
+ * <p>Computer players hand a position to the solver once its empty cells drop to the
+ * {@linkplain #getThreshold() threshold}, which is set by the system property
+ * {@code sos.endgame.empties} and defaults to {@link #DEFAULT_THRESHOLD}, about what is solved
+ * within 100 ms on every board size.
+ */
+public class EndgameSolver {
+
+    /** The number of empty cells from which the solver takes over by default. */
+    public static final int DEFAULT_THRESHOLD = 11;
+    /** The time a player without a budget of its own gives the solver. */
+    public static final long TIME_BUDGET_MILLIS = 100;
+    /** About as many positions as are examined in {@link #TIME_BUDGET_MILLIS}. */
+    public static final long NODE_BUDGET = 100_000;
+
+    private static final int TABLE_ENTRIES = 1 << 16; // 1 MB
+    private static final int INFINITY = 1 << 20;
+    private static final int NODE_CHECK_INTERVAL = 1024;
+
+    /**
+     * An exact solution.
+     *
+     * @param move the best move
+     * @param margin the points the side to move scores from now on minus its opponent's
+     * @param nodes the positions examined
+     */
+    public record Result(Move move, int margin, long nodes) {
+    }
+
+    private final int threshold;
+    private final TranspositionTable table = new TranspositionTable(TABLE_ENTRIES);
+
+    private CompactGameState state;
+    private ThreatIndex threats;
+    private SearchPlayer.SearchLimits limits;
+    private int boardSize;
+    private long boardHash;
+    private int pendingNodes;
+    private int[][] moveBuffers;
+    private int[][] keyBuffers;
+    private int rootMove;
+
+    /**
+     * Initializes a solver with the configured threshold.
+     */
+    public EndgameSolver() {
+        this(Integer.getInteger("sos.endgame.empties", DEFAULT_THRESHOLD));
+    }
+
+    /**
+     * Initializes a solver with a specific threshold.
+     *
+     * @param threshold the most empty cells a position may have to be solved by
+     *                  {@link #chooseMove(CompactGameState, long, long)}
+     */
+    public EndgameSolver(int threshold) {
+        this.threshold = threshold;
+    }
+
+    /**
+     * Retrieves the most empty cells a position may have for the solver to take over.
+     *
+     * @return the threshold
+     */
+    public int getThreshold() {
+        return threshold;
+    }
+
+    /**
+     * Checks whether the solver takes over a position: a general game that is not over, with
+     * no more empty cells than the threshold.
+     *
+     * @param position the position
+     * @return true if the solver should choose the move
+     */
+    public boolean appliesTo(CompactGameState position) {
+        return position.isGeneralMode() && !position.isGameOver() && position.getEmptyCells() > 0
+                && position.getEmptyCells() <= threshold;
+    }
+
+    /**
+     * Chooses the best move of an endgame, if the position is one and is solved in time.
+     *
+     * @param position the position, which is left unchanged
+     * @param deadline the {@link System#nanoTime()} at which to give up, or
+     *                 {@link Long#MAX_VALUE} to rely on the node limit alone
+     * @param nodeLimit the most positions to examine
+     * @return the solution, or null if the solver does not apply or ran out of budget
+     */
+    public Result chooseMove(CompactGameState position, long deadline, long nodeLimit) {
+        return appliesTo(position) ? solve(position, deadline, nodeLimit) : null;
+    }
+
+    /**
+     * Solves a general game to the end of the board.
+     *
+     * @param position the position, which is left unchanged
+     * @param deadline the {@link System#nanoTime()} at which to give up, or
+     *                 {@link Long#MAX_VALUE} to rely on the node limit alone
+     * @param nodeLimit the most positions to examine
+     * @return the solution, or null if the budget ran out first
+     * @throws IllegalArgumentException if the position is not a general game in progress
+     */
+    public synchronized Result solve(CompactGameState position, long deadline, long nodeLimit) {
+        if (!position.isGeneralMode() || position.isGameOver() || position.getEmptyCells() == 0) {
+            throw new IllegalArgumentException("Only general games in progress can be solved");
+        }
+        state = position.copy();
+        threats = ThreatIndex.of(state);
+        limits = new SearchPlayer.SearchLimits(deadline, nodeLimit);
+        boardSize = state.getBoardSize();
+        boardHash = TranspositionTable.boardHash(state);
+        pendingNodes = 0;
+        moveBuffers = new int[state.getEmptyCells() + 1][state.getEmptyCells() * 2];
+        keyBuffers = new int[state.getEmptyCells() + 1][state.getEmptyCells() * 2];
+        table.newSearch();
+
+        // MTD(f): null-window searches narrow the bounds until they meet
+        int lower = -INFINITY;
+        int upper = INFINITY;
+        int guess = threats.getBestGain();
+        int bestMove = -1;
+        while (lower < upper) {
+            int beta = guess == lower ? guess + 1 : guess;
+            rootMove = -1;
+            guess = search(beta - 1, beta, 0);
+            if (limits.isAborted()) {
+                return null;
+            }
+            if (guess < beta) {
+                upper = guess;
+            } else {
+                lower = guess;
+                bestMove = rootMove; // The move that reached the new lower bound
+            }
+        }
+        limits.nodes.addAndGet(pendingNodes);
+        return new Result(SearchPlayer.toMove(bestMove, boardSize), lower, limits.nodes.get());
+    }
+
+    /**
+     * Computes the margin the side to move can secure, as a fail-soft alpha-beta search.
+     *
+     * @return the exact margin if it lies inside the window, otherwise a bound on it
+     */
+    private int search(int alpha, int beta, int ply) {
+        if (++pendingNodes >= NODE_CHECK_INTERVAL) {
+            limits.addNodes(pendingNodes);
+            pendingNodes = 0;
+        }
+        if (limits.isAborted()) {
+            return 0;
+        }
+        if (state.getEmptyCells() == 0) {
+            return 0;
+        }
+
+        long key = TranspositionTable.boardKey(boardHash, boardSize);
+        int tableMove = -1;
+        long entry = table.probe(key);
+        if (entry != 0) {
+            // Every stored margin is searched to the end of the board
+            int score = TranspositionTable.score(entry);
+            int bound = TranspositionTable.bound(entry);
+            tableMove = TranspositionTable.move(entry);
+            if (bound == TranspositionTable.EXACT
+                    || bound == TranspositionTable.LOWER && score >= beta
+                    || bound == TranspositionTable.UPPER && score <= alpha) {
+                if (ply == 0) {
+                    rootMove = tableMove;
+                }
+                return score;
+            }
+        }
+
+        int count = orderedMoves(moveBuffers[ply], keyBuffers[ply], tableMove);
+        int originalAlpha = alpha;
+        int best = -INFINITY;
+        int bestMove = -1;
+        for (int i = 0; i < count; i++) {
+            int move = moveBuffers[ply][i];
+            int row = (move >> 1) / boardSize;
+            int col = (move >> 1) % boardSize;
+            char letter = (move & 1) == 0 ? 'S' : 'O';
+            int gain = state.placeMove(row, col, letter);
+            threats.place(row, col, letter);
+            boardHash ^= TranspositionTable.moveKey(move);
+            int score = gain - search(gain - beta, gain - alpha, ply + 1);
+            boardHash ^= TranspositionTable.moveKey(move);
+            threats.remove(row, col);
+            state.undoMove(row, col);
+            if (score > best) {
+                best = score;
+                bestMove = move;
+                if (score > alpha) {
+                    alpha = score;
+                    if (alpha >= beta) {
+                        break;
+                    }
+                }
+            }
+        }
+        if (!limits.isAborted()) {
+            int bound = best >= beta ? TranspositionTable.LOWER
+                    : best <= originalAlpha ? TranspositionTable.UPPER : TranspositionTable.EXACT;
+            table.store(key, state.getEmptyCells(), bound, best, bestMove);
+        }
+        if (ply == 0) {
+            rootMove = bestMove;
+        }
+        return best;
+    }
+
+    /**
+     * Fills a buffer with the encoded moves of the position, the table's move first, then by
+     * descending SOS completed and ascending setups left for the opponent.
+     *
+     * @return the number of moves
+     */
+    private int orderedMoves(int[] moves, int[] keys, int tableMove) {
+        int count = 0;
+        for (int cell = 0; cell < boardSize * boardSize; cell++) {
+            int row = cell / boardSize;
+            int col = cell % boardSize;
+            if (!threats.isEmpty(row, col)) {
+                continue;
+            }
+            for (int letterBit = 0; letterBit < 2; letterBit++) {
+                char letter = letterBit == 0 ? 'S' : 'O';
+                int move = cell * 2 + letterBit;
+                int key = move == tableMove ? Integer.MAX_VALUE
+                        : threats.getSosIf(row, col, letter) * 16 - Math.min(15, threats.getDangerIf(row, col, letter));
+                int i = count++;
+                while (i > 0 && keys[i - 1] < key) {
+                    moves[i] = moves[i - 1];
+                    keys[i] = keys[i - 1];
+                    i--;
+                }
+                moves[i] = move;
+                keys[i] = key;
+            }
+        }
+        return count;
+    }
+}
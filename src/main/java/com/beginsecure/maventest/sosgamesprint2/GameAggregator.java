@@ -0,0 +1,25 @@
+package com.beginsecure.maventest.sosgamesprint2;
+
+/**
+ * Folds the games of an archive into a summary of fixed size. A parallel stream gives each thread
+ * an aggregator of its own and combines them at the end, so an aggregator needs no locking.
+ *
+ * @param <A> the aggregator's own type
+ * @see GameArchive#analyze(java.util.function.Supplier, java.util.List)
+ */
+public interface GameAggregator<A extends GameAggregator<A>> {
+
+    /**
+     * Adds a game to the summary.
+     *
+     * @param game the replayed game
+     */
+    void accept(GameArchive.Game game);
+
+    /**
+     * Adds the games of another aggregator of the same kind to this one.
+     *
+     * @param other the aggregator to merge, which is left unchanged
+     */
+    void combine(A other);
+}
@@ -0,0 +1,471 @@
+package com.beginsecure.maventest.sosgamesprint2;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Streams the games of {@link GameRecord} archives, one game per line, without loading the
+ * archives into memory. Each file is split into chunks at line boundaries, chunks are read in
+ * blocks of {@link #BLOCK_BYTES} and parsed straight from the bytes, and every game is replayed
+ * on a {@link CompactGameState} as it is read, so a parallel stream uses the same memory for an
+ * archive of any size. {@link #analyze(Supplier, List)} folds the games into a
+ * {@link GameAggregator}, such as an {@link OutcomeTable}, a {@link GameHistogram} or a
+ * {@link CellHeatmap}.
+ *
+ * <p>Run {@code main} with archive files to print the outcome table and the most common first
+ * moves.
+ */
+public final class GameArchive {
+
+    /** The bytes read from a file at a time. Lines may not be longer. */
+    public static final int BLOCK_BYTES = 1 << 16;
+
+    private static final long MIN_CHUNK_BYTES = 1 << 20;
+
+    private GameArchive() {
+    }
+
+    /**
+     * A game replayed from an archive: its moves, the points each scored and the outcome.
+     */
+    public static final class Game {
+        private final int boardSize;
+        private final boolean generalMode;
+        private final int[] moves; // cell * 2, + 1 for an 'O'
+        private final byte[] gains;
+        private final int playerOneScore;
+        private final int playerTwoScore;
+        private final int winner;
+        private final boolean finished;
+
+        private Game(CompactGameState state, int[] moves, byte[] gains) {
+            this.boardSize = state.getBoardSize();
+            this.generalMode = state.isGeneralMode();
+            this.moves = moves;
+            this.gains = gains;
+            this.playerOneScore = state.getPlayerOneScore();
+            this.playerTwoScore = state.getPlayerTwoScore();
+            this.winner = state.getWinner();
+            this.finished = state.isGameOver();
+        }
+
+        /**
+         * Retrieves the size of the board.
+         *
+         * @return the board size
+         */
+        public int getBoardSize() {
+            return boardSize;
+        }
+
+        /**
+         * Checks whether the game was a general game.
+         *
+         * @return true for a general game, false for a simple game
+         */
+        public boolean isGeneralMode() {
+            return generalMode;
+        }
+
+        /**
+         * Retrieves the number of moves recorded.
+         *
+         * @return the move count
+         */
+        public int getMoveCount() {
+            return moves.length;
+        }
+
+        /**
+         * Retrieves a move.
+         *
+         * @param ply the index of the move, from 0
+         * @return the move
+         */
+        public Move getMove(int ply) {
+            return SearchPlayer.toMove(moves[ply], boardSize);
+        }
+
+        /**
+         * Retrieves the cell of a move.
+         *
+         * @param ply the index of the move, from 0
+         * @return the cell as {@code row * boardSize + col}
+         */
+        public int getCell(int ply) {
+            return moves[ply] >> 1;
+        }
+
+        /**
+         * Retrieves the player who made a move. Turns always alternate, Player 1 first.
+         *
+         * @param ply the index of the move, from 0
+         * @return 1 or 2
+         */
+        public int getMover(int ply) {
+            return ply % 2 == 0 ? 1 : 2;
+        }
+
+        /**
+         * Retrieves the number of SOS a move formed.
+         *
+         * @param ply the index of the move, from 0
+         * @return the points scored by the move
+         */
+        public int getGain(int ply) {
+            return gains[ply];
+        }
+
+        /**
+         * Retrieves Player 1's score at the end of the record.
+         *
+         * @return the score of Player 1
+         */
+        public int getPlayerOneScore() {
+            return playerOneScore;
+        }
+
+        /**
+         * Retrieves Player 2's score at the end of the record.
+         *
+         * @return the score of Player 2
+         */
+        public int getPlayerTwoScore() {
+            return playerTwoScore;
+        }
+
+        /**
+         * Retrieves the winner of a finished game.
+         *
+         * @return 1 or 2 for the winner, or 0 for a draw or an unfinished game
+         */
+        public int getWinner() {
+            return winner;
+        }
+
+        /**
+         * Checks whether the record plays the game to its end.
+         *
+         * @return true if the game is over after the last move
+         */
+        public boolean isFinished() {
+            return finished;
+        }
+
+        /**
+         * Converts the game back to a record.
+         *
+         * @return the record of the moves
+         */
+        public GameRecord toRecord() {
+            List<Move> list = new ArrayList<>(moves.length);
+            for (int ply = 0; ply < moves.length; ply++) {
+                list.add(getMove(ply));
+            }
+            return new GameRecord(boardSize, generalMode, list);
+        }
+    }
+
+    /**
+     * Streams the games of archive files, in parallel.
+     *
+     * @param files the archive files
+     * @return the replayed games; reading errors are thrown as {@link UncheckedIOException}
+     * @throws IOException if a file cannot be opened
+     * @throws IllegalArgumentException while streaming, if a line is not a valid record
+     */
+    public static Stream<Game> games(List<Path> files) throws IOException {
+        List<Chunk> chunks = new ArrayList<>(files.size());
+        for (Path file : files) {
+            chunks.add(new Chunk(file, 0, Files.size(file)));
+        }
+        return StreamSupport.stream(new ChunkSpliterator(chunks), true);
+    }
+
+    /**
+     * Folds every game of archive files into an aggregator. Each thread fills aggregators of its
+     * own, which are then combined.
+     *
+     * @param supplier creates empty aggregators
+     * @param files the archive files
+     * @param <A> the aggregator type
+     * @return the aggregate of every game
+     * @throws IOException if a file cannot be read
+     * @throws IllegalArgumentException if a line is not a valid record
+     */
+    public static <A extends GameAggregator<A>> A analyze(Supplier<A> supplier, List<Path> files) throws IOException {
+        try (Stream<Game> games = games(files)) {
+            return games.collect(supplier, GameAggregator::accept, GameAggregator::combine);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * A byte range of a file holding whole lines.
+     */
+    private record Chunk(Path file, long start, long end) {
+    }
+
+    /**
+     * Parses and replays the lines of a list of chunks. Splits hand over half the chunks, or
+     * half of a single chunk cut at a line boundary.
+     */
+    private static final class ChunkSpliterator implements Spliterator<Game> {
+        private final List<Chunk> chunks;
+        private int index;
+        private ByteBuffer buffer; // Read but unparsed bytes of the current chunk, null before reading
+        private long readPosition;
+
+        ChunkSpliterator(List<Chunk> chunks) {
+            this.chunks = chunks;
+        }
+
+        @Override
+        public Spliterator<Game> trySplit() {
+            if (buffer != null) {
+                return null;
+            }
+            int remaining = chunks.size() - index;
+            if (remaining > 1) {
+                int middle = index + remaining / 2;
+                List<Chunk> prefix = new ArrayList<>(chunks.subList(index, middle));
+                index = middle;
+                return new ChunkSpliterator(prefix);
+            }
+            if (remaining == 0) {
+                return null;
+            }
+            Chunk chunk = chunks.get(index);
+            if (chunk.end() - chunk.start() < 2 * MIN_CHUNK_BYTES) {
+                return null;
+            }
+            long boundary = lineStartAfter(chunk.file(), chunk.start() + (chunk.end() - chunk.start()) / 2, chunk.end());
+            if (boundary >= chunk.end()) {
+                return null;
+            }
+            chunks.set(index, new Chunk(chunk.file(), boundary, chunk.end()));
+            return new ChunkSpliterator(new ArrayList<>(List.of(new Chunk(chunk.file(), chunk.start(), boundary))));
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super Game> action) {
+            while (index < chunks.size()) {
+                Chunk chunk = chunks.get(index);
+                if (buffer == null) {
+                    buffer = ByteBuffer.allocate(BLOCK_BYTES).flip(); // One block per chunk being read
+                    readPosition = chunk.start();
+                }
+                Game game = nextGame(chunk);
+                if (game != null) {
+                    action.accept(game);
+                    return true;
+                }
+                index++;
+                buffer = null;
+            }
+            return false;
+        }
+
+        /**
+         * Parses the next non-blank line of a chunk.
+         *
+         * @return the replayed game, or null at the end of the chunk
+         */
+        private Game nextGame(Chunk chunk) {
+            while (true) {
+                byte[] bytes = buffer.array();
+                int start = buffer.position();
+                int limit = buffer.limit();
+                int end = start;
+                while (end < limit && bytes[end] != '\n') {
+                    end++;
+                }
+                boolean lastLine = end == limit && readPosition >= chunk.end();
+                if (end < limit || lastLine && start < limit) {
+                    buffer.position(Math.min(end + 1, limit));
+                    long offset = readPosition - (limit - start);
+                    Game game = parse(bytes, start, end, chunk.file(), offset);
+                    if (game != null) {
+                        return game;
+                    }
+                    continue;
+                }
+                if (lastLine) {
+                    return null;
+                }
+                buffer.compact();
+                if (!buffer.hasRemaining()) {
+                    throw new IllegalArgumentException("Line longer than " + BLOCK_BYTES + " bytes at "
+                            + chunk.file() + ":" + (readPosition - BLOCK_BYTES));
+                }
+                int want = (int) Math.min(buffer.remaining(), chunk.end() - readPosition);
+                buffer.limit(buffer.position() + want);
+                try (FileChannel channel = FileChannel.open(chunk.file(), StandardOpenOption.READ)) {
+                    while (buffer.hasRemaining()) {
+                        int read = channel.read(buffer, readPosition);
+                        if (read < 0) {
+                            throw new IOException("Archive " + chunk.file() + " shrank while being read");
+                        }
+                        readPosition += read;
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                buffer.flip();
+            }
+        }
+
+        @Override
+        public long estimateSize() {
+            long bytes = 0;
+            for (int i = index; i < chunks.size(); i++) {
+                bytes += chunks.get(i).end() - chunks.get(i).start();
+            }
+            return bytes;
+        }
+
+        @Override
+        public int characteristics() {
+            return NONNULL | IMMUTABLE;
+        }
+    }
+
+    /**
+     * Finds the first line that starts at or after a position.
+     *
+     * @return the position of the line, or the end if there is none
+     */
+    private static long lineStartAfter(Path file, long position, long end) {
+        ByteBuffer block = ByteBuffer.allocate(4096);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long scan = position - 1; // The line starts at the position if it follows a line break
+            while (scan < end) {
+                block.clear();
+                int read = channel.read(block, scan);
+                if (read < 0) {
+                    return end;
+                }
+                for (int i = 0; i < read; i++) {
+                    if (block.get(i) == '\n') {
+                        return scan + i + 1;
+                    }
+                }
+                scan += read;
+            }
+            return end;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Parses and replays one line, {@code <size> <S|G> <cell><letter> ...}.
+     *
+     * @return the game, or null for a blank line
+     * @throws IllegalArgumentException if the line is not a valid record
+     */
+    static Game parse(byte[] bytes, int start, int end, Path file, long offset) {
+        int i = skipSpaces(bytes, start, end);
+        if (i == end) {
+            return null;
+        }
+        int size = 0;
+        int digits = i;
+        while (i < end && bytes[i] >= '0' && bytes[i] <= '9') {
+            size = size * 10 + bytes[i++] - '0';
+        }
+        int modeAt = skipSpaces(bytes, i, end);
+        if (i == digits || modeAt == i || modeAt == end || (bytes[modeAt] != 'G' && bytes[modeAt] != 'S')
+                || size < 3 || size > 15) {
+            throw invalid(file, offset);
+        }
+        CompactGameState state = new CompactGameState(size, bytes[modeAt] == 'G');
+        int[] moves = new int[size * size];
+        byte[] gains = new byte[size * size];
+        int count = 0;
+        i = modeAt + 1;
+        while (true) {
+            int token = skipSpaces(bytes, i, end);
+            if (token == end) {
+                break;
+            }
+            if (token == i || count == moves.length) {
+                throw invalid(file, offset);
+            }
+            int cell = 0;
+            i = token;
+            while (i < end && bytes[i] >= '0' && bytes[i] <= '9' && cell < size * size) {
+                cell = cell * 10 + bytes[i++] - '0';
+            }
+            if (i == token || i == end || cell >= size * size) {
+                throw invalid(file, offset);
+            }
+            char letter = (char) bytes[i++];
+            int gain = state.placeMove(cell / size, cell % size, letter);
+            if (gain < 0) {
+                throw new IllegalArgumentException("Illegal move " + cell + letter + " at ply " + (count + 1)
+                        + " of the record at " + file + ":" + offset);
+            }
+            moves[count] = cell * 2 + (letter == 'O' ? 1 : 0);
+            gains[count] = (byte) gain;
+            count++;
+        }
+        return new Game(state, Arrays.copyOf(moves, count), Arrays.copyOf(gains, count));
+    }
+
+    /**
+     * Skips spaces, tabs and carriage returns.
+     */
+    private static int skipSpaces(byte[] bytes, int i, int end) {
+        while (i < end && (bytes[i] == ' ' || bytes[i] == '\t' || bytes[i] == '\r')) {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * Creates the error for a malformed line.
+     */
+    private static IllegalArgumentException invalid(Path file, long offset) {
+        return new IllegalArgumentException("Not a game record at " + file + ":" + offset);
+    }
+
+    /**
+     * Prints the outcome table and the most common first moves of archive files.
+     *
+     * @param args the archive files
+     * @throws IOException if a file cannot be read
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.out.println("Usage: GameArchive <archive file>...");
+            return;
+        }
+        List<Path> files = Arrays.stream(args).map(Path::of).toList();
+        long start = System.nanoTime();
+        OutcomeTable outcomes = analyze(OutcomeTable::new, files);
+        System.out.print(outcomes);
+        GameHistogram<String> openings = analyze(() -> new GameHistogram<String>(game ->
+                game.getMoveCount() == 0 ? null : game.getBoardSize() + " " + game.getMove(0)), files);
+        System.out.println("Most common first moves (size row,col,letter):");
+        for (Map.Entry<String, Long> entry : openings.top(10)) {
+            System.out.printf("  %-12s %10d%n", entry.getKey(), entry.getValue());
+        }
+        System.out.printf("Analysed %d games in %.1f s%n", outcomes.getTotal(), (System.nanoTime() - start) / 1e9);
+    }
+}
@@ -1,7 +1,9 @@
 package com.beginsecure.maventest.sosgamesprint2;
 
 /**
- * Interface for handling game end and score update events in the SOS game.
+ * Interface for handling game end and score update events in the SOS game. The callbacks run
+ * synchronously inside {@code placeMove}; consumers that should not slow down the move path, or
+ * that also need move and SOS events, should subscribe to a {@link GameEventBus} instead.
  */
 public interface GameEndListener {
 
@@ -0,0 +1,212 @@
+package com.beginsecure.maventest.sosgamesprint2;
+
+/**
+ * A single event published by a game onto a {@link GameEventBus}. Events live in pre-allocated
+ * ring buffer slots that are reused once every subscriber has consumed them, so a listener that
+ * needs an event beyond its {@link GameEventListener#onEvents} call must keep a {@link #copy()}.
+ */
+public final class GameEvent {
+
+    /**
+     * The kinds of events a game publishes.
+     */
+    public enum Type {
+        /** A letter was placed on the board. */
+        MOVE_PLACED,
+        /** A move completed an SOS line; the line's cells are available via {@link #getCells()}. */
+        SOS_FORMED,
+        /** The score changed; consecutive score changes of one game may be coalesced. */
+        SCORE_CHANGED,
+        /** The game ended; see {@link #getMessage()} and {@link #getWinner()}. */
+        GAME_ENDED
+    }
+
+    private Type type;
+    private long sequence;
+    private int gameId;
+    private int row;
+    private int col;
+    private char letter;
+    private int player;
+    private final int[] cells = new int[6]; // r1, c1, r2, c2, r3, c3 of a formed SOS
+    private int playerOneScore;
+    private int playerTwoScore;
+    private int winner;
+    private String message;
+
+    /**
+     * Clears the slot before it is filled with a new event.
+     *
+     * @param type the event type
+     * @param sequence the bus sequence number of the event
+     * @param gameId the id of the publishing game
+     */
+    void reset(Type type, long sequence, int gameId) {
+        this.type = type;
+        this.sequence = sequence;
+        this.gameId = gameId;
+        this.row = -1;
+        this.col = -1;
+        this.letter = '\0';
+        this.player = 0;
+        this.playerOneScore = 0;
+        this.playerTwoScore = 0;
+        this.winner = -1;
+        this.message = null;
+    }
+
+    void setMove(int row, int col, char letter, int player) {
+        this.row = row;
+        this.col = col;
+        this.letter = letter;
+        this.player = player;
+    }
+
+    void setLine(int player, int r1, int c1, int r2, int c2, int r3, int c3) {
+        this.player = player;
+        cells[0] = r1;
+        cells[1] = c1;
+        cells[2] = r2;
+        cells[3] = c2;
+        cells[4] = r3;
+        cells[5] = c3;
+    }
+
+    void setScores(int playerOneScore, int playerTwoScore) {
+        this.playerOneScore = playerOneScore;
+        this.playerTwoScore = playerTwoScore;
+    }
+
+    void setEnd(int winner, String message) {
+        this.winner = winner;
+        this.message = message;
+    }
+
+    /**
+     * Creates a detached copy of this event that is safe to keep after the batch is delivered.
+     *
+     * @return a copy of this event
+     */
+    public GameEvent copy() {
+        GameEvent copy = new GameEvent();
+        copy.reset(type, sequence, gameId);
+        copy.setMove(row, col, letter, player);
+        copy.setLine(player, cells[0], cells[1], cells[2], cells[3], cells[4], cells[5]);
+        copy.setScores(playerOneScore, playerTwoScore);
+        copy.setEnd(winner, message);
+        return copy;
+    }
+
+    /**
+     * Retrieves the event type.
+     *
+     * @return the type of this event
+     */
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * Retrieves the sequence number assigned by the bus.
+     *
+     * @return the bus sequence number
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * Retrieves the id of the game that published the event.
+     *
+     * @return the game id
+     */
+    public int getGameId() {
+        return gameId;
+    }
+
+    /**
+     * Retrieves the row of a placed move.
+     *
+     * @return the row, or -1 for events other than MOVE_PLACED
+     */
+    public int getRow() {
+        return row;
+    }
+
+    /**
+     * Retrieves the column of a placed move.
+     *
+     * @return the column, or -1 for events other than MOVE_PLACED
+     */
+    public int getCol() {
+        return col;
+    }
+
+    /**
+     * Retrieves the letter of a placed move.
+     *
+     * @return 'S' or 'O', or '\0' for events other than MOVE_PLACED
+     */
+    public char getLetter() {
+        return letter;
+    }
+
+    /**
+     * Retrieves the player who placed the move or formed the SOS.
+     *
+     * @return 1 or 2, or 0 when not applicable
+     */
+    public int getPlayer() {
+        return player;
+    }
+
+    /**
+     * Retrieves the cells of a formed SOS as {r1, c1, r2, c2, r3, c3}.
+     *
+     * @return a new array with the line's cells
+     */
+    public int[] getCells() {
+        return cells.clone();
+    }
+
+    /**
+     * Retrieves Player 1's score carried by SCORE_CHANGED and GAME_ENDED events.
+     *
+     * @return Player 1's score
+     */
+    public int getPlayerOneScore() {
+        return playerOneScore;
+    }
+
+    /**
+     * Retrieves Player 2's score carried by SCORE_CHANGED and GAME_ENDED events.
+     *
+     * @return Player 2's score
+     */
+    public int getPlayerTwoScore() {
+        return playerTwoScore;
+    }
+
+    /**
+     * Retrieves the winner of an ended game.
+     *
+     * @return 1 or 2 for the winner, 0 for a draw, or -1 for events other than GAME_ENDED
+     */
+    public int getWinner() {
+        return winner;
+    }
+
+    /**
+     * Retrieves the end-of-game message.
+     *
+     * @return the message, or null for events other than GAME_ENDED
+     */
+    public String getMessage() {
+        return message;
+    }
+
+    @Override
+    public String toString() {
+        return type + "#" + sequence + "[game=" + gameId + ", player=" + player + "]";
+    }
+}
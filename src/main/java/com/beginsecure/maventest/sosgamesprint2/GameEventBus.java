@@ -0,0 +1,273 @@
+package com.beginsecure.maventest.sosgamesprint2;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A ring-buffer backed event stream for game events. Games claim a pre-allocated slot, fill it
+ * and publish it without taking locks or allocating; every subscriber runs on its own daemon
+ * thread and receives the events in batches. Within a batch, superseded SCORE_CHANGED events of
+ * the same game are coalesced so that slow consumers only see the latest score.
+ *
+ * <p>Publishing only waits when the slowest subscriber is a full ring behind, and then for at
+ * most {@link #MAX_PUBLISH_WAIT_MILLIS}: a subscriber still behind is overrun, no longer holds
+ * back publishers, and skips to the newest events once its current batch returns. Slots of
+ * that batch may meanwhile be reused by newer events. The capacity should be sized to absorb
+ * bursts (the default holds 4096 events).
+ */
+public class GameEventBus {
+
+    private static final int DEFAULT_CAPACITY = 4096;
+    private static final int MAX_BATCH = 256;
+    private static final long IDLE_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(200);
+
+    /** The longest a publisher waits for a subscriber a full ring behind before overrunning it. */
+    public static final long MAX_PUBLISH_WAIT_MILLIS = 1;
+
+    private final GameEvent[] slots;
+    private final int mask;
+    private final AtomicLongArray published;   // Sequence last published in each slot
+    private final AtomicLong nextSequence = new AtomicLong();
+    private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+    private volatile long gatingSequence;      // Cached slowest subscriber cursor
+
+    /**
+     * Initializes a bus with the default capacity.
+     */
+    public GameEventBus() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Initializes a bus with the given capacity.
+     *
+     * @param capacity the number of ring buffer slots, rounded up to a power of two
+     */
+    public GameEventBus(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.slots = new GameEvent[size];
+        this.mask = size - 1;
+        this.published = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            slots[i] = new GameEvent();
+            published.set(i, -1);
+        }
+    }
+
+    /**
+     * Subscribes a listener. The listener receives every event published after this call on a
+     * dedicated daemon thread.
+     *
+     * @param name a name for the consumer thread
+     * @param listener the listener to deliver batches to
+     * @return the subscription, which can be closed to stop delivery
+     */
+    public Subscription subscribe(String name, GameEventListener listener) {
+        Subscription subscription = new Subscription(listener, nextSequence.get());
+        subscriptions.add(subscription);
+        Thread thread = new Thread(subscription::run, "sos-events-" + name);
+        thread.setDaemon(true);
+        thread.start();
+        return subscription;
+    }
+
+    /**
+     * Claims the next slot for publishing. Every claimed slot must be passed to
+     * {@link #publish(GameEvent)}.
+     *
+     * @param type the event type
+     * @param gameId the id of the publishing game
+     * @return the slot to fill
+     */
+    GameEvent claim(GameEvent.Type type, int gameId) {
+        long sequence = nextSequence.getAndIncrement();
+        long wrapPoint = sequence - slots.length;
+        if (wrapPoint >= gatingSequence) {
+            // The slot may still be unread; wait a little for the slowest subscriber to move past it
+            long minimum;
+            long deadline = 0;
+            while (wrapPoint >= (minimum = minimumCursor(sequence))) {
+                if (deadline == 0) {
+                    deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(MAX_PUBLISH_WAIT_MILLIS);
+                } else if (System.nanoTime() - deadline > 0) {
+                    overrun(wrapPoint);
+                }
+                Thread.onSpinWait();
+            }
+            gatingSequence = minimum;
+        }
+        GameEvent slot = slots[(int) (sequence & mask)];
+        slot.reset(type, sequence, gameId);
+        return slot;
+    }
+
+    /**
+     * Makes a claimed slot visible to subscribers.
+     *
+     * @param event the slot returned by {@link #claim(GameEvent.Type, int)}
+     */
+    void publish(GameEvent event) {
+        published.set((int) (event.getSequence() & mask), event.getSequence());
+    }
+
+    /**
+     * Stops the subscriptions that have not read a slot about to be reused from holding back
+     * publishers.
+     */
+    private void overrun(long wrapPoint) {
+        for (Subscription subscription : subscriptions) {
+            if (subscription.cursor.get() <= wrapPoint) {
+                subscription.overrun = true;
+                subscriptions.remove(subscription);
+            }
+        }
+    }
+
+    /**
+     * Finds the cursor of the slowest open subscription.
+     */
+    private long minimumCursor(long fallback) {
+        long minimum = fallback;
+        for (Subscription subscription : subscriptions) {
+            minimum = Math.min(minimum, subscription.cursor.get());
+        }
+        return minimum;
+    }
+
+    /**
+     * A subscriber's position in the ring and its delivery loop.
+     */
+    public final class Subscription implements AutoCloseable {
+
+        private final GameEventListener listener;
+        private final AtomicLong cursor;           // Next sequence to deliver
+        private final List<GameEvent> batch = new ArrayList<>(MAX_BATCH);
+        private final int[] scoreGames = new int[MAX_BATCH];
+        private volatile boolean running = true;
+        private volatile boolean overrun;          // Fell a full ring behind for too long
+        private volatile long skipped;
+
+        private Subscription(GameEventListener listener, long start) {
+            this.listener = listener;
+            this.cursor = new AtomicLong(start);
+        }
+
+        /**
+         * Delivers published events in batches until the subscription is closed. If the thread
+         * dies anyway, the subscription stops holding back publishers.
+         */
+        private void run() {
+            try {
+                deliver();
+            } finally {
+                running = false;
+                subscriptions.remove(this);
+            }
+        }
+
+        /**
+         * Delivers published events in batches, skipping to the newest ones when overrun.
+         */
+        private void deliver() {
+            while (running) {
+                if (overrun) {
+                    long resume = nextSequence.get();
+                    skipped += resume - cursor.get();
+                    cursor.set(resume);
+                    overrun = false;
+                    if (running) {
+                        subscriptions.add(this);
+                    }
+                }
+                long next = cursor.get();
+                long end = next;
+                while (end - next < MAX_BATCH && published.get((int) (end & mask)) == end) {
+                    end++;
+                }
+                if (end == next) {
+                    LockSupport.parkNanos(IDLE_PARK_NANOS);
+                    continue;
+                }
+                fillBatch(next, end);
+                try {
+                    listener.onEvents(batch);
+                } catch (Throwable e) {
+                    // A failing consumer must not stop delivery to itself or others
+                    GameLog.getShared().error("events", "Game event listener failed", "error", e.toString());
+                }
+                cursor.set(end);
+            }
+        }
+
+        /**
+         * Collects the slots in [from, to) into the batch, dropping score changes that are
+         * superseded by a later score change of the same game.
+         */
+        private void fillBatch(long from, long to) {
+            batch.clear();
+            int scoreCount = 0;
+            for (long sequence = to - 1; sequence >= from; sequence--) {
+                GameEvent event = slots[(int) (sequence & mask)];
+                if (event.getType() == GameEvent.Type.SCORE_CHANGED) {
+                    if (containsGame(scoreCount, event.getGameId())) {
+                        continue;
+                    }
+                    scoreGames[scoreCount++] = event.getGameId();
+                }
+                batch.add(event);
+            }
+            Collections.reverse(batch);
+        }
+
+        private boolean containsGame(int count, int gameId) {
+            for (int i = 0; i < count; i++) {
+                if (scoreGames[i] == gameId) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Retrieves the number of events this subscriber skipped after being overrun.
+         *
+         * @return the skipped event count
+         */
+        public long getSkipped() {
+            return skipped;
+        }
+
+        /**
+         * Waits until every event published before this call has been delivered.
+         *
+         * @param timeoutMillis the maximum time to wait
+         * @return true if the subscriber caught up within the timeout
+         */
+        public boolean awaitCaughtUp(long timeoutMillis) {
+            long target = nextSequence.get();
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+            while (cursor.get() < target) {
+                if (System.nanoTime() > deadline) {
+                    return false;
+                }
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+            }
+            return true;
+        }
+
+        /**
+         * Stops delivery and releases this subscriber's hold on the ring.
+         */
+        @Override
+        public void close() {
+            running = false;
+            subscriptions.remove(this);
+        }
+    }
+}
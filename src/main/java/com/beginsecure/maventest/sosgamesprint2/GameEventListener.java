@@ -0,0 +1,18 @@
+package com.beginsecure.maventest.sosgamesprint2;
+
+import java.util.List;
+
+/**
+ * Consumer of batched game events delivered by a {@link GameEventBus}. Each subscriber is called
+ * from its own background thread, never from the thread that placed the move.
+ */
+public interface GameEventListener {
+
+    /**
+     * Called with the next batch of events, in publication order. The events are ring buffer
+     * slots that are reused after this call returns; use {@link GameEvent#copy()} to keep one.
+     *
+     * @param events the batch of events
+     */
+    void onEvents(List<GameEvent> events);
+}
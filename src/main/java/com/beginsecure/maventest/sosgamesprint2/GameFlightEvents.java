@@ -0,0 +1,107 @@
+package com.beginsecure.maventest.sosgamesprint2;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Custom Java Flight Recorder events for the SOS game's hot paths. The events are only recorded
+ * while a recording with them enabled is running (e.g. {@code -XX:StartFlightRecording}); when no
+ * recording is active, creating and committing them is close to free. Loading the first event
+ * class initializes JFR's metadata, though, which adds a few hundred milliseconds to startup, so
+ * the move path only creates events once {@link #isRecording()} is true.
+ */
+public final class GameFlightEvents {
+
+    private GameFlightEvents() {
+    }
+
+    /**
+     * Checks whether Flight Recorder has been started in this JVM, either from the command line,
+     * with {@code jcmd JFR.start} or by creating a recording.
+     *
+     * @return true if events may be recorded
+     */
+    public static boolean isRecording() {
+        return FlightRecorder.isInitialized();
+    }
+
+    /**
+     * Duration of one complete move, including SOS detection and end-of-game checks.
+     */
+    @Name("sos.PlaceMove")
+    @Label("Place Move")
+    @Category("SOS Game")
+    @StackTrace(false)
+    public static class PlaceMove extends Event {
+        @Label("Row")
+        public int row;
+        @Label("Column")
+        public int col;
+        @Label("Letter")
+        public char letter;
+        @Label("Valid")
+        public boolean valid;
+        @Label("SOS Formed")
+        public int sosCount;
+    }
+
+    /**
+     * Duration of one call to {@code SOSGame.checkForSOSCount}.
+     */
+    @Name("sos.CheckForSOS")
+    @Label("Check For SOS")
+    @Category("SOS Game")
+    @StackTrace(false)
+    public static class CheckForSOS extends Event {
+        @Label("Row")
+        public int row;
+        @Label("Column")
+        public int col;
+        @Label("SOS Formed")
+        public int sosCount;
+    }
+
+    /**
+     * Time a computer player took to choose its move, including retries.
+     */
+    @Name("sos.AIMoveSelection")
+    @Label("AI Move Selection")
+    @Category("SOS Game")
+    @StackTrace(false)
+    public static class AIMoveSelection extends Event {
+        @Label("Player")
+        public String player;
+        @Label("Attempts")
+        @Description("Number of candidate moves requested before a valid one was found")
+        public int attempts;
+        @Label("Invalid Moves")
+        public int invalidMoves;
+        @Label("Valid")
+        public boolean valid;
+    }
+
+    /**
+     * Duration of one HTTP call made by {@code LLMService}.
+     */
+    @Name("sos.LLMRequest")
+    @Label("LLM Request")
+    @Category("SOS Game")
+    @StackTrace(false)
+    public static class LLMRequest extends Event {
+        @Label("Retry Count")
+        @Description("Zero for the first attempt at a move, then one more for each retry")
+        public int retryCount;
+        @Label("Response Code")
+        @Description("HTTP status code, or -1 if no response was received")
+        public int responseCode;
+        @Label("Prompt Characters")
+        public int promptChars;
+        @Label("Response Characters")
+        public int responseChars;
+    }
+}
@@ -0,0 +1,93 @@
+package com.beginsecure.maventest.sosgamesprint2;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Counts archived games by a key taken from each game, e.g. the opening move or the number of
+ * moves. Its memory grows with the number of distinct keys, not with the number of games.
+ *
+ * @param <K> the key type
+ */
+public class GameHistogram<K> implements GameAggregator<GameHistogram<K>> {
+
+    private final Function<GameArchive.Game, K> key;
+    private final Map<K, Long> counts = new HashMap<>();
+    private long total;
+
+    /**
+     * Initializes an empty histogram.
+     *
+     * @param key gives the key of a game, or null to leave the game out
+     */
+    public GameHistogram(Function<GameArchive.Game, K> key) {
+        this.key = key;
+    }
+
+    /**
+     * Initializes a histogram of the first move of every game with at least one move.
+     *
+     * @return the histogram
+     */
+    public static GameHistogram<Move> firstMoves() {
+        return new GameHistogram<>(game -> game.getMoveCount() == 0 ? null : game.getMove(0));
+    }
+
+    @Override
+    public void accept(GameArchive.Game game) {
+        K value = key.apply(game);
+        if (value != null) {
+            counts.merge(value, 1L, Long::sum);
+            total++;
+        }
+    }
+
+    @Override
+    public void combine(GameHistogram<K> other) {
+        other.counts.forEach((value, count) -> counts.merge(value, count, Long::sum));
+        total += other.total;
+    }
+
+    /**
+     * Retrieves the number of games with a key.
+     *
+     * @param value the key
+     * @return the game count
+     */
+    public long getCount(K value) {
+        return counts.getOrDefault(value, 0L);
+    }
+
+    /**
+     * Retrieves the number of games counted under any key.
+     *
+     * @return the total count
+     */
+    public long getTotal() {
+        return total;
+    }
+
+    /**
+     * Retrieves the number of distinct keys.
+     *
+     * @return the key count
+     */
+    public int getDistinct() {
+        return counts.size();
+    }
+
+    /**
+     * Retrieves the most common keys.
+     *
+     * @param limit the most keys to return
+     * @return keys and counts, most common first
+     */
+    public List<Map.Entry<K, Long>> top(int limit) {
+        List<Map.Entry<K, Long>> entries = new ArrayList<>(counts.entrySet());
+        entries.sort(Map.Entry.<K, Long>comparingByValue().reversed());
+        return List.copyOf(entries.subList(0, Math.min(limit, entries.size())));
+    }
+}
@@ -0,0 +1,475 @@
+package com.beginsecure.maventest.sosgamesprint2;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import org.json.JSONObject;
+
+/**
+ * An asynchronous log that keeps file I/O off the FX thread and the move path. A call only
+ * checks the level, samples debug entries and adds the entry to a lock-free queue; a daemon
+ * writer thread drains the queue in batches, formats each entry as one JSON object per line and
+ * appends it to a file that is rotated once it reaches a size limit ({@code sos.log},
+ * {@code sos.log.1}, ... up to a number of files). When the queue is full, entries are dropped
+ * and counted rather than blocking the caller.
+ *
+ * <p>The process keeps two logs in the directory set by {@code -Dsos.log.dir}, by default
+ * {@code .sos/logs} in the user's home: the {@linkplain #getShared() shared log} of
+ * diagnostics, whose level is set by {@code -Dsos.log.level} and debug sampling by
+ * {@code -Dsos.log.sample}, and the {@linkplain #getAudit() audit log}, one compact line per LLM
+ * request for offline analysis. Both are flushed at exit.
+ */
+public final class GameLog implements AutoCloseable {
+
+    /**
+     * The severity of an entry.
+     */
+    public enum Level {
+        DEBUG, INFO, WARN, ERROR
+    }
+
+    /** The most entries waiting to be written by default. */
+    public static final int DEFAULT_CAPACITY = 8192;
+    /** The size at which a log file is rotated by default. */
+    public static final long DEFAULT_MAX_BYTES = 4L << 20;
+    /** The number of files kept by default, counting the current one. */
+    public static final int DEFAULT_FILES = 3;
+
+    private static final long FLUSH_INTERVAL_NANOS = 200_000_000L;
+    private static final int BUFFER_BYTES = 1 << 16;
+
+    private static volatile GameLog shared;
+    private static volatile GameLog audit;
+
+    private final Path file;
+    private final Level level;
+    private final int sampleEvery;
+    private final long maxBytes;
+    private final int files;
+    private final int capacity;
+    private final ConcurrentLinkedQueue<Entry> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicLong debugCount = new AtomicLong();
+    private final AtomicLong accepted = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong sampledOut = new AtomicLong();
+    private final Thread writer;
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_BYTES); // Writer thread only
+    private FileChannel channel; // Writer thread only; opened on the first entry
+    private long size;
+    private int buffered; // Entries in the buffer, counted as written once flushed
+    private volatile long processed;
+    private volatile long written;
+    private volatile boolean closed;
+
+    /**
+     * One entry waiting to be written. Formatting is left to the writer thread.
+     */
+    private record Entry(long epochMillis, Level level, String category, String message, Object[] fields) {
+    }
+
+    /**
+     * Initializes a log and starts its writer thread. The file and its directory are created
+     * when the first entry is written.
+     *
+     * @param file the current log file; rotated files get the suffixes .1, .2, ...
+     * @param level the lowest level written
+     * @param sampleEvery how many debug entries are logged one of, 1 to log all
+     * @param maxBytes the size at which the file is rotated
+     * @param files the number of files kept, counting the current one
+     * @param capacity the most entries waiting to be written before new ones are dropped
+     * @throws IllegalArgumentException if a count or size is not positive
+     */
+    public GameLog(Path file, Level level, int sampleEvery, long maxBytes, int files, int capacity) {
+        if (sampleEvery < 1 || maxBytes < 1 || files < 1 || capacity < 1) {
+            throw new IllegalArgumentException("Sampling, size, file count and capacity must be positive");
+        }
+        this.file = file;
+        this.level = level;
+        this.sampleEvery = sampleEvery;
+        this.maxBytes = maxBytes;
+        this.files = files;
+        this.capacity = capacity;
+        this.writer = new Thread(this::drainLoop, "sos-log-" + file.getFileName());
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Retrieves the process-wide diagnostic log, {@code sos.log}.
+     *
+     * @return the shared log
+     */
+    public static GameLog getShared() {
+        GameLog log = shared;
+        if (log == null) {
+            synchronized (GameLog.class) {
+                if (shared == null) {
+                    shared = open("sos.log", Level.valueOf(System.getProperty("sos.log.level", "INFO")),
+                            Integer.getInteger("sos.log.sample", 1));
+                }
+                log = shared;
+            }
+        }
+        return log;
+    }
+
+    /**
+     * Retrieves the process-wide audit log of LLM requests, {@code llm-audit.log}.
+     *
+     * @return the audit log
+     */
+    public static GameLog getAudit() {
+        GameLog log = audit;
+        if (log == null) {
+            synchronized (GameLog.class) {
+                if (audit == null) {
+                    audit = open("llm-audit.log", Level.INFO, 1);
+                }
+                log = audit;
+            }
+        }
+        return log;
+    }
+
+    /**
+     * Opens a log in the configured directory that is flushed and closed at exit.
+     */
+    private static GameLog open(String name, Level level, int sampleEvery) {
+        Path directory = Path.of(System.getProperty("sos.log.dir",
+                Path.of(System.getProperty("user.home"), ".sos", "logs").toString()));
+        GameLog log = new GameLog(directory.resolve(name), level, sampleEvery,
+                Long.getLong("sos.log.maxBytes", DEFAULT_MAX_BYTES), DEFAULT_FILES, DEFAULT_CAPACITY);
+        Runtime.getRuntime().addShutdownHook(new Thread(log::close, "sos-log-close"));
+        return log;
+    }
+
+    /**
+     * Checks whether entries of a level are written, so callers can skip building costly
+     * messages.
+     *
+     * @param entryLevel the level
+     * @return true if the level is at or above the log's level
+     */
+    public boolean isEnabled(Level entryLevel) {
+        return entryLevel.compareTo(level) >= 0 && !closed;
+    }
+
+    /**
+     * Queues an entry without blocking.
+     *
+     * @param entryLevel the severity
+     * @param category what the entry is about, e.g. "llm" or "ui"
+     * @param message the message
+     * @param fields alternating names and values added to the entry
+     */
+    public void log(Level entryLevel, String category, String message, Object... fields) {
+        if (!isEnabled(entryLevel)) {
+            return;
+        }
+        if (entryLevel == Level.DEBUG && sampleEvery > 1 && debugCount.getAndIncrement() % sampleEvery != 0) {
+            sampledOut.incrementAndGet();
+            return;
+        }
+        if (queued.incrementAndGet() > capacity) {
+            queued.decrementAndGet();
+            dropped.incrementAndGet();
+            return;
+        }
+        accepted.incrementAndGet();
+        queue.offer(new Entry(System.currentTimeMillis(), entryLevel, category, message, fields));
+        if (entryLevel == Level.ERROR || queued.get() > capacity / 2) {
+            LockSupport.unpark(writer);
+        }
+    }
+
+    /**
+     * Queues a debug entry.
+     *
+     * @param category what the entry is about
+     * @param message the message
+     * @param fields alternating names and values
+     */
+    public void debug(String category, String message, Object... fields) {
+        log(Level.DEBUG, category, message, fields);
+    }
+
+    /**
+     * Queues an info entry.
+     *
+     * @param category what the entry is about
+     * @param message the message
+     * @param fields alternating names and values
+     */
+    public void info(String category, String message, Object... fields) {
+        log(Level.INFO, category, message, fields);
+    }
+
+    /**
+     * Queues a warning.
+     *
+     * @param category what the entry is about
+     * @param message the message
+     * @param fields alternating names and values
+     */
+    public void warn(String category, String message, Object... fields) {
+        log(Level.WARN, category, message, fields);
+    }
+
+    /**
+     * Queues an error.
+     *
+     * @param category what the entry is about
+     * @param message the message
+     * @param fields alternating names and values
+     */
+    public void error(String category, String message, Object... fields) {
+        log(Level.ERROR, category, message, fields);
+    }
+
+    /**
+     * Waits until every entry queued before the call has been written to the file.
+     *
+     * @param timeoutMillis the longest to wait
+     * @return true if everything was written in time
+     */
+    public boolean flush(long timeoutMillis) {
+        long target = accepted.get();
+        long deadline = System.nanoTime() + timeoutMillis * 1_000_000L;
+        while (processed < target) {
+            if (System.nanoTime() >= deadline || !writer.isAlive()) {
+                return false;
+            }
+            LockSupport.unpark(writer);
+            LockSupport.parkNanos(100_000);
+        }
+        return true;
+    }
+
+    /**
+     * Writes what is queued, stops the writer thread and closes the file. Later entries are
+     * ignored.
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        flush(5000);
+        closed = true;
+        LockSupport.unpark(writer);
+        try {
+            writer.join(5000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Retrieves the number of entries written to the file.
+     *
+     * @return the written entry count
+     */
+    public long getWritten() {
+        return written;
+    }
+
+    /**
+     * Retrieves the number of entries dropped because the queue was full or the file could not
+     * be written.
+     *
+     * @return the dropped entry count
+     */
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    /**
+     * Retrieves the number of debug entries skipped by sampling.
+     *
+     * @return the sampled-out entry count
+     */
+    public long getSampledOut() {
+        return sampledOut.get();
+    }
+
+    /**
+     * Retrieves the current log file.
+     *
+     * @return the path of the file entries are appended to
+     */
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * Drains the queue in batches until the log is closed.
+     */
+    private void drainLoop() {
+        try {
+            while (!closed || !queue.isEmpty()) {
+                Entry entry;
+                int batch = 0;
+                while ((entry = queue.poll()) != null) {
+                    queued.decrementAndGet();
+                    write(entry);
+                    batch++;
+                }
+                if (batch > 0) {
+                    flushBuffer();
+                    processed += batch;
+                } else if (!closed) {
+                    LockSupport.parkNanos(this, FLUSH_INTERVAL_NANOS);
+                }
+            }
+        } finally {
+            closeChannel();
+        }
+    }
+
+    /**
+     * Formats an entry and adds it to the buffer, rotating the file first if the entry would
+     * take it past its size limit.
+     */
+    private void write(Entry entry) {
+        byte[] line = format(entry).getBytes(StandardCharsets.UTF_8);
+        try {
+            if (channel == null) {
+                openChannel();
+            }
+            long pending = size + buffer.position();
+            if (pending > 0 && pending + line.length > maxBytes) {
+                flushBuffer();
+                rotate();
+            }
+            if (line.length > buffer.remaining()) {
+                flushBuffer();
+            }
+            if (line.length > buffer.capacity()) {
+                ByteBuffer whole = ByteBuffer.wrap(line);
+                while (whole.hasRemaining()) {
+                    size += channel.write(whole);
+                }
+                written++;
+            } else {
+                buffer.put(line);
+                buffered++;
+            }
+        } catch (IOException e) {
+            dropped.incrementAndGet();
+            closeChannel(); // Retried on the next entry
+        }
+    }
+
+    /**
+     * Renders an entry as one line of JSON, with the time, level, category and message first.
+     */
+    private static String format(Entry entry) {
+        StringBuilder line = new StringBuilder(128);
+        line.append("{\"time\":\"").append(Instant.ofEpochMilli(entry.epochMillis())).append('"')
+                .append(",\"level\":\"").append(entry.level()).append('"')
+                .append(",\"category\":").append(JSONObject.quote(entry.category()))
+                .append(",\"message\":").append(JSONObject.quote(entry.message()));
+        Object[] fields = entry.fields();
+        for (int i = 0; i + 1 < fields.length; i += 2) {
+            line.append(',').append(JSONObject.quote(String.valueOf(fields[i]))).append(':');
+            Object value = fields[i + 1];
+            if (value instanceof Number || value instanceof Boolean) {
+                line.append(value);
+            } else {
+                line.append(JSONObject.quote(String.valueOf(value)));
+            }
+        }
+        return line.append("}\n").toString();
+    }
+
+    /**
+     * Writes the buffered lines to the file. They count as written only once on the file, and
+     * as dropped if the write fails.
+     */
+    private void flushBuffer() {
+        int entries = buffered;
+        buffered = 0;
+        if (channel == null || buffer.position() == 0) {
+            buffer.clear();
+            dropped.addAndGet(entries);
+            return;
+        }
+        buffer.flip();
+        try {
+            while (buffer.hasRemaining()) {
+                size += channel.write(buffer);
+            }
+            written += entries;
+        } catch (IOException e) {
+            dropped.addAndGet(entries);
+            closeChannel();
+        } finally {
+            buffer.clear();
+        }
+    }
+
+    /**
+     * Shifts {@code file.1} to {@code file.2} and so on, dropping the oldest, moves the current
+     * file to {@code file.1} and starts a new one.
+     */
+    private void rotate() throws IOException {
+        closeChannel();
+        if (files > 1) {
+            Files.deleteIfExists(rotated(files - 1));
+            for (int i = files - 2; i >= 1; i--) {
+                if (Files.exists(rotated(i))) {
+                    Files.move(rotated(i), rotated(i + 1), StandardCopyOption.REPLACE_EXISTING);
+                }
+            }
+            Files.move(file, rotated(1), StandardCopyOption.REPLACE_EXISTING);
+        } else {
+            Files.deleteIfExists(file);
+        }
+        openChannel();
+    }
+
+    /**
+     * Returns the path of the rotated file with the given number.
+     */
+    private Path rotated(int number) {
+        return file.resolveSibling(file.getFileName() + "." + number);
+    }
+
+    /**
+     * Opens the current file for appending, creating it and its directory if needed.
+     */
+    private void openChannel() throws IOException {
+        Path directory = file.toAbsolutePath().getParent();
+        if (directory != null) {
+            Files.createDirectories(directory);
+        }
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+        size = channel.size();
+    }
+
+    /**
+     * Closes the current file, if open.
+     */
+    private void closeChannel() {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                // Nothing more can be done with a log that cannot be written
+            }
+            channel = null;
+        }
+    }
+}
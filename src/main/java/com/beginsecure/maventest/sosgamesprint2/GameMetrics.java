@@ -0,0 +1,286 @@
+package com.beginsecure.maventest.sosgamesprint2;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.atomic.LongAdder;
+import org.json.JSONObject;
+
+/**
+ * Process-wide counters and latency histograms for the game's hot paths. Metrics are off by
+ * default and cost a single volatile read per call site while disabled. They are enabled with
+ * {@code -Dsos.metrics=true} or {@link #setEnabled(boolean)}; setting
+ * {@code -Dsos.metrics.file=<path>} also enables them and dumps a snapshot to that file at exit.
+ */
+public final class GameMetrics {
+
+    private static volatile boolean enabled = Boolean.getBoolean("sos.metrics");
+
+    private static final LongAdder MOVES = new LongAdder();
+    private static final LongAdder SOS_DETECTED = new LongAdder();
+    private static final LongAdder AI_MOVES = new LongAdder();
+    private static final LongAdder AI_FAILURES = new LongAdder();
+    private static final LongAdder LLM_REQUESTS = new LongAdder();
+    private static final LongAdder LLM_ERRORS = new LongAdder();
+    private static final LongAdder LLM_MOVE_ATTEMPTS = new LongAdder();
+    private static final LongAdder LLM_INVALID_MOVES = new LongAdder();
+
+    private static final LatencyHistogram MOVE_LATENCY = new LatencyHistogram();
+    private static final LatencyHistogram SOS_CHECK_LATENCY = new LatencyHistogram();
+    private static final LatencyHistogram AI_MOVE_LATENCY = new LatencyHistogram();
+    private static final LatencyHistogram LLM_LATENCY = new LatencyHistogram();
+
+    private static volatile long startNanos = System.nanoTime();
+
+    static {
+        String dumpFile = System.getProperty("sos.metrics.file");
+        if (dumpFile != null) {
+            enabled = true;
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    snapshot().writeTo(Paths.get(dumpFile));
+                } catch (IOException e) {
+                    GameLog log = GameLog.getShared();
+                    log.error("metrics", "Could not write metrics", "file", dumpFile, "error", e.getMessage());
+                    log.flush(1000); // The log is closed by its own shutdown hook
+                }
+            }, "sos-metrics-dump"));
+        }
+    }
+
+    private GameMetrics() {
+    }
+
+    /**
+     * Checks whether metrics are being collected.
+     *
+     * @return true if metrics are enabled
+     */
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Turns metric collection on or off.
+     *
+     * @param enable true to collect metrics
+     */
+    public static void setEnabled(boolean enable) {
+        enabled = enable;
+    }
+
+    /**
+     * Starts timing an operation.
+     *
+     * @return the current time in nanoseconds, or 0 when metrics are disabled
+     */
+    static long startTimer() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Records a completed move.
+     *
+     * @param start the value returned by {@link #startTimer()}
+     */
+    static void recordMove(long start) {
+        if (enabled && start != 0) {
+            MOVES.increment();
+            MOVE_LATENCY.record(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Records one SOS detection pass.
+     *
+     * @param start the value returned by {@link #startTimer()}
+     * @param sosCount the number of SOS lines found
+     */
+    static void recordSOSCheck(long start, int sosCount) {
+        if (enabled && start != 0) {
+            SOS_DETECTED.add(sosCount);
+            SOS_CHECK_LATENCY.record(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Records a computer player's move selection.
+     *
+     * @param start the value returned by {@link #startTimer()}
+     * @param llmAttempts the number of LLM responses requested (0 for local players)
+     * @param invalidMoves the number of LLM responses that were not a legal move
+     * @param valid true if a move was finally played
+     */
+    static void recordAIMove(long start, int llmAttempts, int invalidMoves, boolean valid) {
+        if (enabled && start != 0) {
+            AI_MOVES.increment();
+            if (!valid) {
+                AI_FAILURES.increment();
+            }
+            LLM_MOVE_ATTEMPTS.add(llmAttempts);
+            LLM_INVALID_MOVES.add(invalidMoves);
+            AI_MOVE_LATENCY.record(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Records one HTTP call to the LLM API.
+     *
+     * @param start the value returned by {@link #startTimer()}
+     * @param responseCode the HTTP status code, or -1 if the call failed before a response
+     */
+    static void recordLLMRequest(long start, int responseCode) {
+        if (enabled && start != 0) {
+            LLM_REQUESTS.increment();
+            if (responseCode != 200) {
+                LLM_ERRORS.increment();
+            }
+            LLM_LATENCY.record(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Clears all counters and histograms and restarts the rate clock.
+     */
+    public static void reset() {
+        for (LongAdder adder : new LongAdder[] {MOVES, SOS_DETECTED, AI_MOVES, AI_FAILURES,
+                LLM_REQUESTS, LLM_ERRORS, LLM_MOVE_ATTEMPTS, LLM_INVALID_MOVES}) {
+            adder.reset();
+        }
+        MOVE_LATENCY.reset();
+        SOS_CHECK_LATENCY.reset();
+        AI_MOVE_LATENCY.reset();
+        LLM_LATENCY.reset();
+        startNanos = System.nanoTime();
+    }
+
+    /**
+     * Captures the current values of all metrics.
+     *
+     * @return an immutable snapshot
+     */
+    public static Snapshot snapshot() {
+        return new Snapshot();
+    }
+
+    /**
+     * An immutable point-in-time copy of the metrics.
+     */
+    public static final class Snapshot {
+
+        private final double elapsedSeconds;
+        private final long moves;
+        private final long sosDetected;
+        private final long aiMoves;
+        private final long aiFailures;
+        private final long llmRequests;
+        private final long llmErrors;
+        private final long llmMoveAttempts;
+        private final long llmInvalidMoves;
+        private final JSONObject latencies = new JSONObject();
+
+        private Snapshot() {
+            elapsedSeconds = (System.nanoTime() - startNanos) / 1e9;
+            moves = MOVES.sum();
+            sosDetected = SOS_DETECTED.sum();
+            aiMoves = AI_MOVES.sum();
+            aiFailures = AI_FAILURES.sum();
+            llmRequests = LLM_REQUESTS.sum();
+            llmErrors = LLM_ERRORS.sum();
+            llmMoveAttempts = LLM_MOVE_ATTEMPTS.sum();
+            llmInvalidMoves = LLM_INVALID_MOVES.sum();
+            latencies.put("placeMove", describe(MOVE_LATENCY));
+            latencies.put("checkForSOSCount", describe(SOS_CHECK_LATENCY));
+            latencies.put("aiMoveSelection", describe(AI_MOVE_LATENCY));
+            latencies.put("llmRequest", describe(LLM_LATENCY));
+        }
+
+        private static JSONObject describe(LatencyHistogram histogram) {
+            return new JSONObject()
+                    .put("count", histogram.getCount())
+                    .put("meanNanos", Math.round(histogram.getMean()))
+                    .put("p50Nanos", histogram.getPercentile(50))
+                    .put("p99Nanos", histogram.getPercentile(99));
+        }
+
+        /**
+         * Retrieves the number of moves placed.
+         *
+         * @return the move count
+         */
+        public long getMoves() {
+            return moves;
+        }
+
+        /**
+         * Retrieves the average move rate since metrics were started or reset.
+         *
+         * @return moves per second
+         */
+        public double getMovesPerSecond() {
+            return elapsedSeconds == 0 ? 0 : moves / elapsedSeconds;
+        }
+
+        /**
+         * Retrieves the number of SOS lines detected.
+         *
+         * @return the SOS count
+         */
+        public long getSosDetected() {
+            return sosDetected;
+        }
+
+        /**
+         * Retrieves the number of HTTP calls made to the LLM API.
+         *
+         * @return the request count
+         */
+        public long getLlmRequests() {
+            return llmRequests;
+        }
+
+        /**
+         * Retrieves the share of LLM responses that did not describe a legal move.
+         *
+         * @return the invalid move rate between 0 and 1
+         */
+        public double getInvalidLlmMoveRate() {
+            return llmMoveAttempts == 0 ? 0 : (double) llmInvalidMoves / llmMoveAttempts;
+        }
+
+        /**
+         * Converts the snapshot to JSON.
+         *
+         * @return a JSON object with counters, rates and latency percentiles
+         */
+        public JSONObject toJson() {
+            return new JSONObject()
+                    .put("elapsedSeconds", elapsedSeconds)
+                    .put("moves", moves)
+                    .put("movesPerSecond", getMovesPerSecond())
+                    .put("sosDetected", sosDetected)
+                    .put("aiMoves", aiMoves)
+                    .put("aiFailures", aiFailures)
+                    .put("llmRequests", llmRequests)
+                    .put("llmErrors", llmErrors)
+                    .put("llmInvalidMoveRate", getInvalidLlmMoveRate())
+                    .put("latencies", latencies);
+        }
+
+        /**
+         * Writes the snapshot as JSON to a file, replacing any existing content.
+         *
+         * @param file the file to write
+         * @throws IOException if the file cannot be written
+         */
+        public void writeTo(Path file) throws IOException {
+            Files.writeString(file, toJson().toString(2));
+        }
+
+        @Override
+        public String toString() {
+            return toJson().toString();
+        }
+    }
+}
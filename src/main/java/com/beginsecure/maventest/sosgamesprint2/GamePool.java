@@ -0,0 +1,141 @@
+package com.beginsecure.maventest.sosgamesprint2;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Recycles finished games of the standard rule for callers that start games back to back, such
+ * as servers, simulators and the GUI. A released game is kept by mode and board size and
+ * {@linkplain SOSGame#reset(int) reset} when acquired, so a new game of a size played before
+ * clears its buffers in place instead of allocating a board, an owner grid, a line matcher and
+ * a threat index. Games of another size are reused too, with new buffers of the right size.
+ *
+ * <p>A game must not be used after it is released. Games with a {@link GameEndListener} or a
+ * variant rule are never pooled.
+ */
+public final class GamePool {
+
+    /** The most idle games kept per mode and board size by default. */
+    public static final int DEFAULT_CAPACITY = 16;
+
+    private static final int MAX_SIZE = 15;
+
+    private static volatile GamePool shared;
+
+    private final int capacity;
+    // Idle games by mode (0 simple, 1 general) and board size
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private final ArrayDeque<SOSGame>[][] idle = new ArrayDeque[2][MAX_SIZE + 1];
+    private final LongAdder created = new LongAdder();
+    private final LongAdder reused = new LongAdder();
+
+    /**
+     * Initializes an empty pool.
+     *
+     * @param capacity the most idle games to keep per mode and board size
+     */
+    public GamePool(int capacity) {
+        this.capacity = capacity;
+        for (ArrayDeque<SOSGame>[] bySize : idle) {
+            for (int size = 0; size <= MAX_SIZE; size++) {
+                bySize[size] = new ArrayDeque<>();
+            }
+        }
+    }
+
+    /**
+     * Retrieves the pool shared by the whole process, keeping {@link #DEFAULT_CAPACITY} games per
+     * mode and board size.
+     *
+     * @return the shared pool
+     */
+    public static GamePool getShared() {
+        GamePool pool = shared;
+        if (pool == null) {
+            synchronized (GamePool.class) {
+                if (shared == null) {
+                    shared = new GamePool(DEFAULT_CAPACITY);
+                }
+                pool = shared;
+            }
+        }
+        return pool;
+    }
+
+    /**
+     * Provides an empty game of the standard rule, recycled if one is idle.
+     *
+     * @param boardSize the size of the board
+     * @param generalMode true for a {@link GeneralGame}, false for a {@link SimpleGame}
+     * @return a game with no moves, no event bus and a fresh id
+     * @throws IllegalArgumentException if the board size is not between 3 and 15
+     */
+    public SOSGame acquire(int boardSize, boolean generalMode) {
+        if (boardSize < 3 || boardSize > MAX_SIZE) {
+            throw new IllegalArgumentException("Board size must be between 3 and " + MAX_SIZE + ": " + boardSize);
+        }
+        SOSGame game = take(generalMode ? 1 : 0, boardSize);
+        if (game == null) {
+            created.increment();
+            return generalMode ? new GeneralGame(boardSize) : new SimpleGame(boardSize);
+        }
+        reused.increment();
+        game.reset(boardSize);
+        return game;
+    }
+
+    /**
+     * Takes an idle game of a mode, preferring one of the requested size.
+     *
+     * @return the game, or null if none of the mode is idle
+     */
+    private synchronized SOSGame take(int mode, int boardSize) {
+        SOSGame game = idle[mode][boardSize].pollLast();
+        for (int size = 3; game == null && size <= MAX_SIZE; size++) {
+            game = idle[mode][size].pollLast();
+        }
+        return game;
+    }
+
+    /**
+     * Returns a game to the pool. It is detached from its event bus, no longer hosted by a
+     * spectator server, and must not be used again by the caller.
+     *
+     * @param game the game, or null
+     * @return true if the game was kept, false if it does not qualify or the pool is full
+     */
+    public boolean release(SOSGame game) {
+        if (game == null || game.hasGameEndListener() || !LineRule.STANDARD.equals(game.getRule())
+                || (game.getClass() != SimpleGame.class && game.getClass() != GeneralGame.class)) {
+            return false;
+        }
+        game.setEventBus(null);
+        game.stopSpectating();
+        ArrayDeque<SOSGame> games = idle[game instanceof GeneralGame ? 1 : 0][game.getBoard().length];
+        synchronized (this) {
+            if (games.size() >= capacity || games.contains(game)) {
+                return false;
+            }
+            games.addLast(game);
+            return true;
+        }
+    }
+
+    /**
+     * Retrieves the number of games the pool had to create.
+     *
+     * @return the created game count
+     */
+    public long getCreated() {
+        return created.sum();
+    }
+
+    /**
+     * Retrieves the number of games handed out again after a reset.
+     *
+     * @return the reused game count
+     */
+    public long getReused() {
+        return reused.sum();
+    }
+}
@@ -0,0 +1,142 @@
+package com.beginsecure.maventest.sosgamesprint2;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The moves of one game, stored one game per line as {@code <size> <S|G> <cell><letter> ...},
+ * e.g. {@code 3 G 4O 0S 8S}, where S or G is the simple or general mode and each cell is
+ * {@code row * size + col}. Records are used for self-play data and game archives.
+ *
+ * @param boardSize the size of the board
+ * @param generalMode true for a general game, false for a simple game
+ * @param moves the moves in the order they were played
+ */
+public record GameRecord(int boardSize, boolean generalMode, List<Move> moves) {
+
+    /**
+     * Creates a record, copying the move list.
+     *
+     * @param boardSize the size of the board
+     * @param generalMode true for a general game, false for a simple game
+     * @param moves the moves in the order they were played
+     */
+    public GameRecord {
+        moves = List.copyOf(moves);
+    }
+
+    /**
+     * Replays the first moves of the game.
+     *
+     * @param count the number of moves to play
+     * @return the position after those moves
+     * @throws IllegalArgumentException if a move is illegal
+     */
+    public CompactGameState replay(int count) {
+        CompactGameState state = new CompactGameState(boardSize, generalMode);
+        for (int i = 0; i < count; i++) {
+            Move move = moves.get(i);
+            if (state.placeMove(move.row(), move.col(), move.letter()) < 0) {
+                throw new IllegalArgumentException("Illegal move " + move + " at ply " + (i + 1));
+            }
+        }
+        return state;
+    }
+
+    /**
+     * Replays the whole game.
+     *
+     * @return the final position
+     */
+    public CompactGameState replay() {
+        return replay(moves.size());
+    }
+
+    /**
+     * Formats the record as one line of text.
+     *
+     * @return the line, without a line terminator
+     */
+    public String toLine() {
+        StringBuilder line = new StringBuilder();
+        line.append(boardSize).append(generalMode ? " G" : " S");
+        for (Move move : moves) {
+            line.append(' ').append(move.row() * boardSize + move.col()).append(move.letter());
+        }
+        return line.toString();
+    }
+
+    /**
+     * Parses a line written by {@link #toLine()}.
+     *
+     * @param line the line to parse
+     * @return the record
+     * @throws IllegalArgumentException if the line is malformed, the board size is not between
+     *                                  3 and 15, or a cell is off the board
+     */
+    public static GameRecord parse(String line) {
+        String[] parts = line.trim().split("\\s+");
+        if (parts.length < 2 || !(parts[1].equals("G") || parts[1].equals("S"))) {
+            throw new IllegalArgumentException("Not a game record: " + line);
+        }
+        try {
+            int size = Integer.parseInt(parts[0]);
+            if (size < 3 || size > 15) {
+                throw new IllegalArgumentException("Board size must be between 3 and 15: " + line);
+            }
+            List<Move> moves = new ArrayList<>(parts.length - 2);
+            for (int i = 2; i < parts.length; i++) {
+                String token = parts[i];
+                int cell = Integer.parseInt(token.substring(0, token.length() - 1));
+                if (cell < 0 || cell >= size * size) {
+                    throw new IllegalArgumentException("Cell " + cell + " is off the board: " + line);
+                }
+                moves.add(new Move(cell / size, cell % size, token.charAt(token.length() - 1)));
+            }
+            return new GameRecord(size, parts[1].equals("G"), moves);
+        } catch (NumberFormatException | StringIndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Not a game record: " + line, e);
+        }
+    }
+
+    /**
+     * Reads every record of a file, skipping blank lines.
+     *
+     * @param file the file to read
+     * @return the records in file order
+     * @throws IOException if the file cannot be read
+     */
+    public static List<GameRecord> readAll(Path file) throws IOException {
+        List<GameRecord> records = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(file)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isBlank()) {
+                    records.add(parse(line));
+                }
+            }
+        }
+        return records;
+    }
+
+    /**
+     * Writes records to a file, one per line.
+     *
+     * @param file the file to write
+     * @param records the records to write
+     * @throws IOException if the file cannot be written
+     */
+    public static void writeAll(Path file, List<GameRecord> records) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(file)) {
+            for (GameRecord record : records) {
+                writer.write(record.toLine());
+                writer.newLine();
+            }
+        }
+    }
+}
@@ -0,0 +1,250 @@
+package com.beginsecure.maventest.sosgamesprint2;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Saves an in-progress game as a fixed-layout binary snapshot and restores it, so a game can be
+ * suspended to disk or evicted from memory and resumed later. Unlike a {@link GameRecord}, which
+ * replays every move, a snapshot is restored by copying arrays.
+ *
+ * <p>The layout, big-endian, is:
+ * <pre>
+ *  0  int     magic "SOSG"
+ *  4  short   version (1)
+ *  6  byte    board size n
+ *  7  byte    flags: 1 general game, 2 Player 1 to move, 4 game over, 8 toroidal rule
+ *  8  byte    winner: 0, 1 or 2
+ *  9  byte    scoring directions, one bit per {@link LineRule.Direction} ordinal
+ * 10  byte    word length w
+ * 11  byte    alphabet length a
+ * 12  int     Player 1 score
+ * 16  int     Player 2 score
+ * 20  char[w] scoring word, then char[a] alphabet
+ *     byte[n*n] letters, as alphabet index + 1 (0 for empty cells), row by row
+ *     byte[n*n] owners, 1 or 2 (0 for empty cells)
+ *     zero padding to a multiple of 8 bytes
+ *     long[]  lines already scored, as kept by {@link LineMatcher}
+ * </pre>
+ * Every offset follows from n, w and a, so games of the same size and rule always produce
+ * snapshots of the same length.
+ */
+public final class GameSnapshot {
+
+    private static final int MAGIC = 0x534F5347; // "SOSG"
+    private static final short VERSION = 1;
+    private static final int HEADER_BYTES = 20;
+    private static final int DIRECTIONS = LineRule.Direction.values().length;
+
+    private static final int GENERAL = 1;
+    private static final int PLAYER_ONE_TURN = 2;
+    private static final int GAME_OVER = 4;
+    private static final int TOROIDAL = 8;
+
+    private GameSnapshot() {
+    }
+
+    /**
+     * Computes the length of a game's snapshot.
+     *
+     * @param game the game
+     * @return the number of bytes {@link #write(SOSGame, ByteBuffer)} puts
+     */
+    public static int sizeOf(SOSGame game) {
+        LineRule rule = game.getRule();
+        return linesOffset(game.getBoard().length, rule.word().length(), rule.alphabet().length())
+                + game.getLineMatcher().getReportedLines().length * Long.BYTES;
+    }
+
+    /**
+     * Computes where the scored lines start, relative to the start of the snapshot.
+     */
+    private static int linesOffset(int boardSize, int wordLength, int alphabetLength) {
+        int end = HEADER_BYTES + (wordLength + alphabetLength) * Character.BYTES + 2 * boardSize * boardSize;
+        return (end + 7) & ~7;
+    }
+
+    /**
+     * Writes a snapshot of a game at the buffer's position, advancing it.
+     *
+     * @param game the game to save
+     * @param buffer a big-endian buffer with at least {@link #sizeOf(SOSGame)} bytes remaining
+     */
+    public static void write(SOSGame game, ByteBuffer buffer) {
+        int start = buffer.position();
+        char[][] board = game.getBoard();
+        String[][] owners = game.getPlayerMoves();
+        int size = board.length;
+        LineRule rule = game.getRule();
+        String alphabet = rule.alphabet();
+
+        int flags = (game instanceof GeneralGame ? GENERAL : 0) | (game.isPlayerOneTurn() ? PLAYER_ONE_TURN : 0)
+                | (game.isGameOver() ? GAME_OVER : 0) | (rule.toroidal() ? TOROIDAL : 0);
+        int directions = 0;
+        for (LineRule.Direction direction : rule.directions()) {
+            directions |= 1 << direction.ordinal();
+        }
+        buffer.putInt(MAGIC).putShort(VERSION).put((byte) size).put((byte) flags).put((byte) game.getWinner())
+                .put((byte) directions).put((byte) rule.word().length()).put((byte) alphabet.length());
+        if (game instanceof GeneralGame) {
+            GeneralGame general = (GeneralGame) game;
+            buffer.putInt(general.getPlayerOneScore()).putInt(general.getPlayerTwoScore());
+        } else {
+            buffer.putInt(game.getWinner() == 1 ? 1 : 0).putInt(game.getWinner() == 2 ? 1 : 0);
+        }
+        for (int i = 0; i < rule.word().length(); i++) {
+            buffer.putChar(rule.word().charAt(i));
+        }
+        for (int i = 0; i < alphabet.length(); i++) {
+            buffer.putChar(alphabet.charAt(i));
+        }
+
+        int letters = buffer.position();
+        int owned = letters + size * size;
+        for (int row = 0; row < size; row++) {
+            for (int col = 0; col < size; col++) {
+                char letter = board[row][col];
+                int cell = row * size + col;
+                buffer.put(letters + cell, (byte) (letter == '\0' ? 0 : alphabet.indexOf(letter) + 1));
+                buffer.put(owned + cell, (byte) (letter == '\0' ? 0 : "P1".equals(owners[row][col]) ? 1 : 2));
+            }
+        }
+        int lines = start + linesOffset(size, rule.word().length(), alphabet.length());
+        for (int i = owned + size * size; i < lines; i++) {
+            buffer.put(i, (byte) 0);
+        }
+        buffer.position(lines);
+        buffer.asLongBuffer().put(game.getLineMatcher().getReportedLines());
+        buffer.position(lines + game.getLineMatcher().getReportedLines().length * Long.BYTES);
+    }
+
+    /**
+     * Creates a snapshot of a game.
+     *
+     * @param game the game to save
+     * @return the snapshot
+     */
+    public static byte[] toBytes(SOSGame game) {
+        byte[] bytes = new byte[sizeOf(game)];
+        write(game, ByteBuffer.wrap(bytes));
+        return bytes;
+    }
+
+    /**
+     * Restores a game from a snapshot at the buffer's position, advancing it past the snapshot.
+     *
+     * @param buffer a big-endian buffer holding a snapshot
+     * @param gameEndListener the listener of the restored game, or null
+     * @return a {@link SimpleGame} or {@link GeneralGame} in the saved state
+     * @throws IllegalArgumentException if the buffer does not hold a valid snapshot
+     */
+    public static SOSGame read(ByteBuffer buffer, GameEndListener gameEndListener) {
+        try {
+            int start = buffer.position();
+            if (buffer.getInt() != MAGIC) {
+                throw new IllegalArgumentException("Not a game snapshot");
+            }
+            short version = buffer.getShort();
+            if (version != VERSION) {
+                throw new IllegalArgumentException("Unsupported game snapshot version " + version);
+            }
+            int size = buffer.get();
+            int flags = buffer.get();
+            int winner = buffer.get();
+            int directionBits = buffer.get();
+            int wordLength = buffer.get();
+            int alphabetLength = buffer.get();
+            int playerOneScore = buffer.getInt();
+            int playerTwoScore = buffer.getInt();
+            if (size < 1 || winner < 0 || winner > 2 || wordLength < 0 || alphabetLength < 0) {
+                throw new IllegalArgumentException("Corrupt game snapshot header");
+            }
+            char[] word = new char[wordLength];
+            char[] alphabet = new char[alphabetLength];
+            buffer.asCharBuffer().get(word).get(alphabet);
+            buffer.position(buffer.position() + (wordLength + alphabetLength) * Character.BYTES);
+
+            LineRule rule = readRule(new String(word), new String(alphabet), directionBits, (flags & TOROIDAL) != 0);
+            SOSGame game = (flags & GENERAL) != 0 ? new GeneralGame(size, rule, gameEndListener)
+                    : new SimpleGame(size, rule, gameEndListener);
+            byte[] letters = new byte[size * size];
+            byte[] owners = new byte[size * size];
+            buffer.get(letters).get(owners);
+            game.restore(letters, owners, (flags & PLAYER_ONE_TURN) != 0, (flags & GAME_OVER) != 0, winner);
+            if (game instanceof GeneralGame) {
+                ((GeneralGame) game).restoreScores(playerOneScore, playerTwoScore);
+            }
+
+            long[] lines = game.getLineMatcher().getReportedLines();
+            int linesStart = start + linesOffset(size, wordLength, alphabetLength);
+            buffer.position(linesStart);
+            buffer.asLongBuffer().get(lines);
+            buffer.position(linesStart + lines.length * Long.BYTES);
+            return game;
+        } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Truncated game snapshot", e);
+        }
+    }
+
+    /**
+     * Restores a game from a snapshot.
+     *
+     * @param bytes the snapshot
+     * @param gameEndListener the listener of the restored game, or null
+     * @return a {@link SimpleGame} or {@link GeneralGame} in the saved state
+     * @throws IllegalArgumentException if the bytes are not a valid snapshot
+     */
+    public static SOSGame fromBytes(byte[] bytes, GameEndListener gameEndListener) {
+        return read(ByteBuffer.wrap(bytes), gameEndListener);
+    }
+
+    /**
+     * Rebuilds a saved rule, reusing the standard rule's instance when it matches.
+     */
+    private static LineRule readRule(String word, String alphabet, int directionBits, boolean toroidal) {
+        LineRule standard = LineRule.STANDARD;
+        if (!toroidal && directionBits == (1 << DIRECTIONS) - 1 && word.equals(standard.word())
+                && alphabet.equals(standard.alphabet())) {
+            return standard;
+        }
+        Set<LineRule.Direction> directions = EnumSet.noneOf(LineRule.Direction.class);
+        for (LineRule.Direction direction : LineRule.Direction.values()) {
+            if ((directionBits & (1 << direction.ordinal())) != 0) {
+                directions.add(direction);
+            }
+        }
+        return new LineRule(word, alphabet, directions, toroidal);
+    }
+
+    /**
+     * Writes a snapshot of a game to a file.
+     *
+     * @param game the game to save
+     * @param file the file to write
+     * @throws IOException if the file cannot be written
+     */
+    public static void save(SOSGame game, Path file) throws IOException {
+        Files.write(file, toBytes(game));
+    }
+
+    /**
+     * Restores a game from a snapshot file.
+     *
+     * @param file the file to read
+     * @param gameEndListener the listener of the restored game, or null
+     * @return a {@link SimpleGame} or {@link GeneralGame} in the saved state
+     * @throws IOException if the file cannot be read or is not a valid snapshot
+     */
+    public static SOSGame load(Path file, GameEndListener gameEndListener) throws IOException {
+        try {
+            return fromBytes(Files.readAllBytes(file), gameEndListener);
+        } catch (IllegalArgumentException e) {
+            throw new IOException(e.getMessage() + ": " + file, e);
+        }
+    }
+}
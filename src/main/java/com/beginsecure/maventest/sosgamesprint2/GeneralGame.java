@@ -11,62 +11,108 @@ public class GeneralGame extends SOSGame {
     private int playerTwoScore = 0;
     private final GameEndListener gameEndListener;
 
+    /**
+     * Initializes a GeneralGame that reports only through its event bus.
+     *
+     * @param boardSize the size of the board in a square dimension (e.g., 3 for a 3x3 board)
+     */
+    public GeneralGame(int boardSize) {
+        this(boardSize, null);
+    }
+
     /**
      * Initializes a GeneralGame with a specified board size and a game end listener.
      *
      * @param boardSize the size of the board in a square dimension (e.g., 3 for a 3x3 board)
-     * @param gameEndListener the listener to handle end-of-game notifications and score updates
+     * @param gameEndListener the listener to handle end-of-game notifications and score updates, or null
      */
     public GeneralGame(int boardSize, GameEndListener gameEndListener) {
-        super(boardSize);
+        this(boardSize, LineRule.STANDARD, gameEndListener);
+    }
+
+    /**
+     * Initializes a GeneralGame with a variant scoring rule.
+     *
+     * @param boardSize the size of the board in a square dimension (e.g., 3 for a 3x3 board)
+     * @param rule the rule defining the letters and the lines that score
+     * @param gameEndListener the listener to handle end-of-game notifications and score updates, or null
+     */
+    public GeneralGame(int boardSize, LineRule rule, GameEndListener gameEndListener) {
+        super(boardSize, rule);
         this.gameEndListener = gameEndListener;
     }
 
     /**
-     * Places a move for the current player at the specified position, checks for SOS formations,
-     * and awards points to the player based on the number of SOSs formed. Updates the score display
-     * via the game end listener. Ends the game if the board is full and declares the winner based on points.
+     * Checks a placed move for SOS formations and awards points to the player based on the
+     * number of SOSs formed. Updates the score display via the game end listener. Ends the game
+     * if the board is full and declares the winner based on points.
      *
-     * @param row the row position for the move
-     * @param col the column position for the move
-     * @param character the character ('S' or 'O') to place
-     * @return true if the move is successfully placed, false otherwise
+     * @param row the row position of the move
+     * @param col the column position of the move
+     * @param character the character ('S' or 'O') placed
+     * @param player the player who moved (1 or 2)
+     * @param placed true if the letter was placed, false if the move was invalid
+     * @return the number of SOS lines formed
      */
     @Override
-    public boolean placeMove(int row, int col, char character) {
-        boolean wasPlayerOneTurn = isPlayerOneTurn();  // Capture whose turn it is before the move
-        boolean moveSuccess = super.placeMove(row, col, character);
-
-        if (moveSuccess) {
-            int sosCount = checkForSOSCount(row, col);  // Get the count of SOS formations
+    protected int scoreMove(int row, int col, char character, int player, boolean placed) {
+        int sosCount = 0;
+        if (placed) {
+            sosCount = checkForSOSCount(row, col);  // Get the count of SOS formations
 
             if (sosCount > 0) {
-                // Award points based on the captured turn
-                if (wasPlayerOneTurn) {
+                // Award points to the player who moved
+                if (player == 1) {
                     playerOneScore += sosCount;
                 } else {
                     playerTwoScore += sosCount;
                 }
-                System.out.println("Player " + (wasPlayerOneTurn ? "1" : "2") + " scores " + sosCount + " point(s)!");
+                publishFormedLines(player);
+                publishScore(playerOneScore, playerTwoScore);
 
                 // Notify listener to update the scores in UI
-                gameEndListener.onScoreUpdate(playerOneScore, playerTwoScore);
+                if (gameEndListener != null) {
+                    gameEndListener.onScoreUpdate(playerOneScore, playerTwoScore);
+                }
             }
         }
 
         if (isBoardFull()) {
             String endMessage;
+            int winner;
             if (playerOneScore > playerTwoScore) {
                 endMessage = "Player 1 wins with " + playerOneScore + " points!";
+                winner = 1;
             } else if (playerTwoScore > playerOneScore) {
                 endMessage = "Player 2 wins with " + playerTwoScore + " points!";
+                winner = 2;
             } else {
                 endMessage = "The game is a draw. Both players have " + playerOneScore + " points.";
+                winner = 0;
+            }
+            if (!isGameOver()) {
+                endGame(winner, playerOneScore, playerTwoScore, endMessage);
+            }
+            if (gameEndListener != null) {
+                gameEndListener.onGameEnd(endMessage);
             }
-            gameEndListener.onGameEnd(endMessage);
         }
 
-        return moveSuccess;
+        if (placed) {
+            broadcastMove(row, col, character, player, playerOneScore, playerTwoScore);
+        }
+        return sosCount;
+    }
+
+    /**
+     * Sets both scores of a restored game.
+     *
+     * @param playerOneScore the score of Player 1
+     * @param playerTwoScore the score of Player 2
+     */
+    void restoreScores(int playerOneScore, int playerTwoScore) {
+        this.playerOneScore = playerOneScore;
+        this.playerTwoScore = playerTwoScore;
     }
 
     /**
@@ -86,4 +132,21 @@ public class GeneralGame extends SOSGame {
     public int getPlayerTwoScore() {
         return playerTwoScore;
     }
+
+    /**
+     * Starts a new game on this instance with both scores at 0.
+     *
+     * @param boardSize the size of the new board
+     */
+    @Override
+    public void reset(int boardSize) {
+        super.reset(boardSize);
+        playerOneScore = 0;
+        playerTwoScore = 0;
+    }
+
+    @Override
+    boolean hasGameEndListener() {
+        return gameEndListener != null;
+    }
 }
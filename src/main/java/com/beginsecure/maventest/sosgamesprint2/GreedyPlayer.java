@@ -0,0 +1,82 @@
+package com.beginsecure.maventest.sosgamesprint2;
+
+import java.util.Random;
+
+/**
+ * A computer player that looks one move ahead using a {@link ThreatIndex}: it plays the move
+ * completing the most SOS and, among equal moves, the one leaving the fewest setups for the
+ * opponent. Remaining ties are broken at random.
+ */
+public class GreedyPlayer implements ComputerPlayer {
+
+    private final Random random;
+
+    /**
+     * Initializes a greedy player with a fresh random source.
+     */
+    public GreedyPlayer() {
+        this(new Random());
+    }
+
+    /**
+     * Initializes a greedy player with a specific random source.
+     *
+     * @param random the source of randomisation for breaking ties
+     */
+    public GreedyPlayer(Random random) {
+        this.random = random;
+    }
+
+    /**
+     * Chooses the best immediate move of the position.
+     *
+     * @param state the current position
+     * @return the chosen move, or null if the game is over
+     */
+    @Override
+    public Move chooseMove(CompactGameState state) {
+        if (state.isGameOver() || state.getEmptyCells() == 0) {
+            return null;
+        }
+        return chooseMove(ThreatIndex.of(state));
+    }
+
+    /**
+     * Chooses the best immediate move from an up-to-date threat index, such as the one kept by
+     * {@link SOSGame#getThreatIndex()}.
+     *
+     * @param threats the threat index of the current position
+     * @return the chosen move, or null if the board is full
+     */
+    public Move chooseMove(ThreatIndex threats) {
+        int boardSize = threats.getBoardSize();
+        Move best = null;
+        int bestKey = Integer.MIN_VALUE;
+        int ties = 0;
+        for (int row = 0; row < boardSize; row++) {
+            for (int col = 0; col < boardSize; col++) {
+                if (!threats.isEmpty(row, col)) {
+                    continue;
+                }
+                for (char letter : new char[] {'S', 'O'}) {
+                    int key = threats.getSosIf(row, col, letter) * 16
+                            - Math.min(15, threats.getDangerIf(row, col, letter));
+                    if (key > bestKey) {
+                        bestKey = key;
+                        best = new Move(row, col, letter);
+                        ties = 1;
+                    } else if (key == bestKey && random.nextInt(++ties) == 0) {
+                        // Reservoir sampling keeps each tied move equally likely
+                        best = new Move(row, col, letter);
+                    }
+                }
+            }
+        }
+        return best;
+    }
+
+    @Override
+    public String getName() {
+        return "Greedy computer";
+    }
+}
@@ -0,0 +1,92 @@
+package com.beginsecure.maventest.sosgamesprint2;
+
+import java.util.Random;
+
+/**
+ * A computer player that asks an LLM for its moves through an {@link LLMService}, retrying on
+ * malformed or illegal answers like the GUI does. If no valid answer arrives within the retry
+ * limit it plays a random legal move so matches can always be finished; such moves are
+ * counted by {@link #getFallbackMoves()}. General-game endgames are left to an
+ * {@link EndgameSolver} with a fixed node budget, so the same games are replayed the same way.
+ */
+public class LLMPlayer implements ComputerPlayer {
+
+    private static final int MAX_RETRIES = 5;
+
+    private final LLMService llmService;
+    private final RandomPlayer fallback;
+    private final EndgameSolver endgameSolver = new EndgameSolver();
+    private long invalidAnswers;
+    private long fallbackMoves;
+
+    /**
+     * Initializes an LLM player.
+     *
+     * @param llmService the service used to reach the model
+     * @param random the source of randomisation for fallback moves
+     */
+    public LLMPlayer(LLMService llmService, Random random) {
+        this.llmService = llmService;
+        this.fallback = new RandomPlayer(random);
+    }
+
+    /**
+     * Asks the LLM for a move until it names a legal one.
+     *
+     * @param state the current position
+     * @return the chosen move, or null if the game is over
+     */
+    @Override
+    public Move chooseMove(CompactGameState state) {
+        if (state.isGameOver() || state.getEmptyCells() == 0) {
+            return null;
+        }
+        EndgameSolver.Result endgame = endgameSolver.chooseMove(state, Long.MAX_VALUE, EndgameSolver.NODE_BUDGET);
+        if (endgame != null) {
+            return endgame.move();
+        }
+        String prompt = LLMPrompt.forPosition(state);
+        for (int retryCount = 0; retryCount < MAX_RETRIES; retryCount++) {
+            Move move = LLMPrompt.parseMove(llmService.getMoveFromLLM(prompt, retryCount));
+            if (move != null && isLegal(state, move)) {
+                return move;
+            }
+            invalidAnswers++;
+        }
+        fallbackMoves++;
+        return fallback.chooseMove(state);
+    }
+
+    /**
+     * Checks that a move is on the board, on an empty cell and uses a valid letter.
+     */
+    private static boolean isLegal(CompactGameState state, Move move) {
+        int size = state.getBoardSize();
+        return move.row() >= 0 && move.row() < size && move.col() >= 0 && move.col() < size
+                && state.getLetter(move.row(), move.col()) == '\0'
+                && (move.letter() == 'S' || move.letter() == 'O');
+    }
+
+    /**
+     * Retrieves how many answers were rejected as malformed or illegal.
+     *
+     * @return the number of invalid answers
+     */
+    public long getInvalidAnswers() {
+        return invalidAnswers;
+    }
+
+    /**
+     * Retrieves how many moves were played at random after the retries ran out.
+     *
+     * @return the number of fallback moves
+     */
+    public long getFallbackMoves() {
+        return fallbackMoves;
+    }
+
+    @Override
+    public String getName() {
+        return "LLM computer";
+    }
+}
@@ -0,0 +1,103 @@
+package com.beginsecure.maventest.sosgamesprint2;
+
+/**
+ * Builds the move prompt sent to the LLM and parses its answers, shared by the GUI and by
+ * {@link LLMPlayer}.
+ */
+public final class LLMPrompt {
+
+    private LLMPrompt() {
+    }
+
+    /**
+     * Generates a prompt describing the board, the player to move and the cells where each
+     * letter completes an SOS.
+     *
+     * @param state the current position
+     * @return a string prompt for the LLM
+     */
+    public static String forPosition(CompactGameState state) {
+        int size = state.getBoardSize();
+        StringBuilder prompt = new StringBuilder();
+        prompt.append("You are playing a game of SOS on a ")
+                .append(size)
+                .append("x")
+                .append(size)
+                .append(" board.\n");
+        prompt.append("The goal of the game is to form the sequence 'SOS' horizontally, vertically, or diagonally.\n");
+        prompt.append("You are Player ")
+                .append(state.isPlayerOneTurn() ? "1" : "2")
+                .append(". Your objective is to either create a new 'SOS' sequence or block the opponent from forming one.\n");
+        prompt.append("Remember that you cannot place your move on an already occupied space.\n");
+        prompt.append("The board uses 0-based indexing, meaning the top-left cell is (0,0) and the bottom-right cell is (")
+                .append(size - 1)
+                .append(",")
+                .append(size - 1)
+                .append(").\n");
+        prompt.append("Here is the current board state:\n");
+
+        for (int r = 0; r < size; r++) {
+            for (int c = 0; c < size; c++) {
+                if (state.getLetter(r, c) == '\0') {
+                    prompt.append(". "); // Empty space
+                } else {
+                    prompt.append(state.getLetter(r, c)).append("(P").append(state.getOwner(r, c)).append(") ");
+                }
+            }
+            prompt.append("\n");
+        }
+
+        prompt.append("Occupied spaces (row,col): ");
+        for (int r = 0; r < size; r++) {
+            for (int c = 0; c < size; c++) {
+                if (state.getLetter(r, c) != '\0') {
+                    prompt.append("(").append(r).append(",").append(c).append(") ");
+                }
+            }
+        }
+
+        // Spell out the immediate threats so the model does not have to find them itself
+        ThreatIndex threats = ThreatIndex.of(state);
+        StringBuilder scoringS = new StringBuilder();
+        StringBuilder scoringO = new StringBuilder();
+        for (int r = 0; r < size; r++) {
+            for (int c = 0; c < size; c++) {
+                if (threats.isEmpty(r, c) && threats.getSosIfS(r, c) > 0) {
+                    scoringS.append("(").append(r).append(",").append(c).append(") ");
+                }
+                if (threats.isEmpty(r, c) && threats.getSosIfO(r, c) > 0) {
+                    scoringO.append("(").append(r).append(",").append(c).append(") ");
+                }
+            }
+        }
+        prompt.append("\nPlacing an 'S' completes an 'SOS' at: ")
+                .append(scoringS.length() == 0 ? "none" : scoringS.toString().trim());
+        prompt.append("\nPlacing an 'O' completes an 'SOS' at: ")
+                .append(scoringO.length() == 0 ? "none" : scoringO.toString().trim());
+        prompt.append("\nConsider possible 'S' and 'O' placements that you can make with the goal of forming an 'SOS' on your turn. Provide your move in the format 'row,col,character' (e.g., '1,2,S'). The row and column values start counting from 0.");
+        return prompt.toString();
+    }
+
+    /**
+     * Parses a structured response of the form "row,col,character".
+     *
+     * @param response the LLM's answer
+     * @return the move, or null if the response is not in the expected format
+     */
+    public static Move parseMove(String response) {
+        if (response == null) {
+            return null;
+        }
+        String[] parts = response.split(",");
+        if (parts.length != 3 || parts[2].trim().isEmpty()) {
+            return null;
+        }
+        try {
+            int row = Integer.parseInt(parts[0].trim());
+            int col = Integer.parseInt(parts[1].trim());
+            return new Move(row, col, Character.toUpperCase(parts[2].trim().charAt(0)));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,383 @@
+package com.beginsecure.maventest.sosgamesprint2;
+
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Sends the requests of every LLM player through one {@link LLMService} under shared limits, so
+ * many concurrent games cannot overload the API. Requests wait in a queue where interactive
+ * games go before batch self-play, and are started no faster than a token bucket allows and
+ * never more than a fixed number at a time. Rate limiting (429), server errors (5xx) and
+ * connection failures are retried with exponential backoff and jitter. A prompt that is
+ * already queued or in flight is not sent again: the new caller shares the pending answer.
+ *
+ * <p>Players use the scheduler through {@link #client(Priority)}, an {@link LLMService} whose
+ * calls block until the scheduled answer arrives. {@link #getShared()} is a process-wide
+ * scheduler for the default service, configured by the system properties
+ * {@code sos.llm.rate} (requests per second, 0 for no limit), {@code sos.llm.burst} and
+ * {@code sos.llm.concurrency}.
+ */
+public final class LLMScheduler implements AutoCloseable {
+
+    /**
+     * How urgently a caller needs its answer.
+     */
+    public enum Priority {
+        /** A person is waiting for the move. */
+        INTERACTIVE,
+        /** Self-play, tournaments and other background work. */
+        BATCH
+    }
+
+    private static final int DEFAULT_ATTEMPTS = 5;
+    private static final long DEFAULT_BASE_BACKOFF_MILLIS = 500;
+    private static final long DEFAULT_MAX_BACKOFF_MILLIS = 30_000;
+
+    private static volatile LLMScheduler shared;
+
+    private final LLMService service;
+    private final TokenBucket bucket;
+    private final Semaphore inFlight;
+    private final int maxAttempts;
+    private final long baseBackoffMillis;
+    private final long maxBackoffMillis;
+    private final Random random;
+    private final PriorityBlockingQueue<Request> queue = new PriorityBlockingQueue<>();
+    private final Map<String, Request> pending = new ConcurrentHashMap<>(); // Queued or in flight, by prompt
+    private final AtomicLong sequence = new AtomicLong();
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong retried = new AtomicLong();
+    private final ExecutorService workers;
+    private final ScheduledExecutorService retryTimer;
+    private final Thread dispatcher;
+    private volatile boolean closed;
+
+    /**
+     * Initializes a scheduler with the limits given by the system properties described in the
+     * class comment, or 2 requests per second with bursts of 4 and 4 requests in flight.
+     *
+     * @param service the service that performs the calls
+     */
+    public LLMScheduler(LLMService service) {
+        this(service, Double.parseDouble(System.getProperty("sos.llm.rate", "2")),
+                Integer.getInteger("sos.llm.burst", 4), Integer.getInteger("sos.llm.concurrency", 4),
+                DEFAULT_ATTEMPTS, DEFAULT_BASE_BACKOFF_MILLIS, DEFAULT_MAX_BACKOFF_MILLIS, new Random());
+    }
+
+    /**
+     * Initializes a scheduler.
+     *
+     * @param service the service that performs the calls
+     * @param requestsPerSecond the sustained request rate, or 0 for no limit
+     * @param burst how many requests may start at once after an idle period
+     * @param maxInFlight how many requests may be outstanding at the same time
+     * @param maxAttempts how many times a failing request is sent before its error is returned
+     * @param baseBackoffMillis the delay before the first retry, doubled for each later one
+     * @param maxBackoffMillis the longest delay between retries
+     * @param random the source of the backoff jitter
+     */
+    public LLMScheduler(LLMService service, double requestsPerSecond, int burst, int maxInFlight,
+                        int maxAttempts, long baseBackoffMillis, long maxBackoffMillis, Random random) {
+        if (burst < 1 || maxInFlight < 1 || maxAttempts < 1) {
+            throw new IllegalArgumentException("Burst, concurrency and attempts must be positive");
+        }
+        this.service = service;
+        this.bucket = new TokenBucket(requestsPerSecond, burst);
+        this.inFlight = new Semaphore(maxInFlight);
+        this.maxAttempts = maxAttempts;
+        this.baseBackoffMillis = baseBackoffMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+        this.random = random;
+        this.workers = Executors.newCachedThreadPool(runnable -> daemon(runnable, "sos-llm-request"));
+        this.retryTimer = Executors.newSingleThreadScheduledExecutor(runnable -> daemon(runnable, "sos-llm-retry"));
+        this.dispatcher = daemon(this::dispatch, "sos-llm-scheduler");
+        dispatcher.start();
+    }
+
+    /**
+     * Retrieves the process-wide scheduler for the default {@link LLMService}, creating it on
+     * first use.
+     *
+     * @return the shared scheduler
+     */
+    public static LLMScheduler getShared() {
+        LLMScheduler scheduler = shared;
+        if (scheduler == null) {
+            synchronized (LLMScheduler.class) {
+                if (shared == null) {
+                    shared = new LLMScheduler(new LLMService());
+                }
+                scheduler = shared;
+            }
+        }
+        return scheduler;
+    }
+
+    /**
+     * Creates a service that sends its calls through this scheduler with a fixed priority.
+     *
+     * @param priority the priority of the client's requests
+     * @return a service to hand to players
+     */
+    public LLMService client(Priority priority) {
+        return new Client(priority);
+    }
+
+    /**
+     * Schedules a prompt, sharing the answer of an identical prompt that is still pending.
+     *
+     * @param prompt the prompt to send
+     * @param priority the priority of the request
+     * @return the future answer, completed with an error reply if every attempt fails
+     * @throws IllegalStateException if the scheduler is closed
+     */
+    public CompletableFuture<LLMService.Reply> submit(String prompt, Priority priority) {
+        return submit(prompt, 0, priority);
+    }
+
+    /**
+     * Schedules a prompt, recording the caller's retry count with the first attempt.
+     */
+    private CompletableFuture<LLMService.Reply> submit(String prompt, int retryCount, Priority priority) {
+        if (closed) {
+            throw new IllegalStateException("The LLM scheduler is closed");
+        }
+        Request created = new Request(prompt, retryCount, priority, sequence.getAndIncrement());
+        Request existing = pending.putIfAbsent(prompt, created);
+        if (existing != null) {
+            coalesced.incrementAndGet();
+            existing.promote(priority);
+            return existing.result.copy();
+        }
+        created.enqueue();
+        return created.result.copy();
+    }
+
+    /**
+     * Starts queued requests, highest priority first, as concurrency slots and rate tokens
+     * become available.
+     */
+    private void dispatch() {
+        try {
+            while (!closed) {
+                inFlight.acquire();
+                Request request = queue.take();
+                long wait = bucket.reserve();
+                if (wait > 0) {
+                    TimeUnit.NANOSECONDS.sleep(wait);
+                }
+                workers.execute(() -> attempt(request));
+            }
+        } catch (InterruptedException e) {
+            // Closed
+        }
+    }
+
+    /**
+     * Sends a request once, then completes it or schedules a retry.
+     */
+    private void attempt(Request request) {
+        LLMService.Reply reply;
+        try {
+            sent.incrementAndGet();
+            reply = service.send(request.prompt, request.retryCount + request.attempts);
+        } catch (RuntimeException e) {
+            reply = new LLMService.Reply(-1, "Error: " + e.getMessage());
+        } finally {
+            inFlight.release();
+        }
+        request.attempts++;
+        if (reply.isRetryable() && request.attempts < maxAttempts && !closed) {
+            retried.incrementAndGet();
+            retryTimer.schedule(request::enqueue, backoffMillis(request.attempts), TimeUnit.MILLISECONDS);
+            return;
+        }
+        pending.remove(request.prompt, request);
+        request.result.complete(reply);
+    }
+
+    /**
+     * Computes the delay before the next attempt: half of the exponential backoff plus a
+     * random share of the other half, so clients that failed together do not retry together.
+     *
+     * @param attempts the number of attempts made so far
+     * @return the delay in milliseconds
+     */
+    long backoffMillis(int attempts) {
+        long ceiling = Math.min(maxBackoffMillis, baseBackoffMillis << Math.min(attempts - 1, 30));
+        return ceiling / 2 + random.nextLong(ceiling / 2 + 1);
+    }
+
+    /**
+     * Retrieves how many calls were made to the underlying service, retries included.
+     *
+     * @return the number of calls sent
+     */
+    public long getRequestsSent() {
+        return sent.get();
+    }
+
+    /**
+     * Retrieves how many requests shared the answer of an identical pending prompt.
+     *
+     * @return the number of coalesced requests
+     */
+    public long getCoalescedRequests() {
+        return coalesced.get();
+    }
+
+    /**
+     * Retrieves how many failed calls were scheduled to be sent again.
+     *
+     * @return the number of retries
+     */
+    public long getRetries() {
+        return retried.get();
+    }
+
+    /**
+     * Stops the scheduler. Requests that have not been answered yet complete with an error
+     * reply.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        dispatcher.interrupt();
+        retryTimer.shutdownNow();
+        workers.shutdownNow();
+        queue.clear();
+        for (Request request : pending.values()) {
+            request.result.complete(new LLMService.Reply(-1, "Error: The LLM scheduler is closed"));
+        }
+        pending.clear();
+    }
+
+    /**
+     * Creates a daemon thread, so schedulers never keep the application alive.
+     */
+    private static Thread daemon(Runnable runnable, String name) {
+        Thread thread = new Thread(runnable, name);
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    /**
+     * A prompt waiting for its answer, shared by every caller that asked for it.
+     */
+    private final class Request implements Comparable<Request> {
+        private final String prompt;
+        private final int retryCount;
+        private final long order;
+        private final CompletableFuture<LLMService.Reply> result = new CompletableFuture<>();
+        private volatile Priority priority; // Changed under the request's lock, never while queued
+        private int attempts;
+
+        Request(String prompt, int retryCount, Priority priority, long order) {
+            this.prompt = prompt;
+            this.retryCount = retryCount;
+            this.priority = priority;
+            this.order = order;
+        }
+
+        /**
+         * Adds the request to the queue. Holds the lock {@link #promote(Priority)} changes the
+         * priority under, so the queue never orders the request by a priority that changes
+         * while it is being added.
+         */
+        synchronized void enqueue() {
+            queue.add(this);
+        }
+
+        /**
+         * Raises the priority for a more urgent caller. A queued request is taken out of the
+         * queue while its priority changes and added back, moving it up; one not queued is
+         * added with the new priority when it next is.
+         */
+        synchronized void promote(Priority urgency) {
+            if (urgency.compareTo(priority) >= 0) {
+                return;
+            }
+            boolean queued = queue.remove(this);
+            priority = urgency;
+            if (queued) {
+                queue.add(this);
+            }
+        }
+
+        /**
+         * Orders by priority, then by arrival, so retries keep their place.
+         */
+        @Override
+        public int compareTo(Request other) {
+            int byPriority = priority.compareTo(other.priority);
+            return byPriority != 0 ? byPriority : Long.compare(order, other.order);
+        }
+    }
+
+    /**
+     * A token bucket that lets requests run into debt, returning how long the caller must wait
+     * for its token instead of refusing it, so waiting requests are served in order.
+     */
+    private static final class TokenBucket {
+        private final double tokensPerNano;
+        private final double capacity;
+        private double tokens;
+        private long last = System.nanoTime();
+
+        TokenBucket(double requestsPerSecond, int burst) {
+            this.tokensPerNano = requestsPerSecond / 1e9;
+            this.capacity = burst;
+            this.tokens = burst;
+        }
+
+        /**
+         * Takes one token.
+         *
+         * @return the nanoseconds until the token is available, 0 if it is available now
+         */
+        synchronized long reserve() {
+            if (tokensPerNano <= 0) {
+                return 0;
+            }
+            long now = System.nanoTime();
+            tokens = Math.min(capacity, tokens + (now - last) * tokensPerNano);
+            last = now;
+            tokens--;
+            return tokens >= 0 ? 0 : (long) (-tokens / tokensPerNano);
+        }
+    }
+
+    /**
+     * A service whose calls go through the scheduler.
+     */
+    private final class Client extends LLMService {
+        private final Priority priority;
+
+        Client(Priority priority) {
+            super(null, null, null); // Calls are made by the scheduler's service
+            this.priority = priority;
+        }
+
+        /**
+         * Schedules the call and waits for its answer.
+         *
+         * @param prompt the prompt message to send
+         * @param retryCount how many earlier responses for the same move were rejected
+         * @return the status code and the content or "Error: ..." message
+         */
+        @Override
+        public Reply send(String prompt, int retryCount) {
+            return submit(prompt, retryCount, priority).join();
+        }
+    }
+}
@@ -18,6 +18,88 @@ public class LLMService {
     private static final String API_KEY = "Insert API key here"; // For safety and commiting sake, I must leave this empty
     private static final String MODEL = "gpt-3.5-turbo"; // Specify the model to use
 
+    private static final int LOGGED_PROMPT_CHARS = 200;
+
+    /** How long to wait for a connection by default, in milliseconds. */
+    public static final int DEFAULT_CONNECT_TIMEOUT_MILLIS = 10_000;
+    /** How long to wait for the answer by default, in milliseconds. */
+    public static final int DEFAULT_READ_TIMEOUT_MILLIS = 60_000;
+
+    private final String apiUrl;
+    private final String apiKey;
+    private final String model;
+    private final int connectTimeoutMillis;
+    private final int readTimeoutMillis;
+    private final GameLog log;
+    private final GameLog audit;
+
+    /**
+     * Initializes the service with the endpoint, key and model given by the system properties
+     * {@code sos.llm.url}, {@code sos.llm.key} and {@code sos.llm.model}, or the defaults. The
+     * timeouts are given by {@code sos.llm.connectTimeout} and {@code sos.llm.readTimeout}, in
+     * milliseconds, as for every service created without explicit timeouts.
+     */
+    public LLMService() {
+        this(System.getProperty("sos.llm.url", API_URL),
+                System.getProperty("sos.llm.key", API_KEY),
+                System.getProperty("sos.llm.model", MODEL));
+    }
+
+    /**
+     * Initializes the service for a specific chat completions endpoint, such as a local
+     * {@link LLMStubServer}.
+     *
+     * @param apiUrl the URL of the chat completions endpoint
+     * @param apiKey the bearer token sent with each request
+     * @param model the model to request
+     */
+    public LLMService(String apiUrl, String apiKey, String model) {
+        this(apiUrl, apiKey, model, GameLog.getShared(), GameLog.getAudit());
+    }
+
+    /**
+     * Initializes the service for a specific endpoint with specific timeouts, so that a hung
+     * endpoint fails the call, which can then be retried, instead of blocking it forever.
+     *
+     * @param apiUrl the URL of the chat completions endpoint
+     * @param apiKey the bearer token sent with each request
+     * @param model the model to request
+     * @param connectTimeoutMillis how long to wait for a connection, or 0 to wait forever
+     * @param readTimeoutMillis how long to wait for the answer, or 0 to wait forever
+     * @throws IllegalArgumentException if a timeout is negative
+     */
+    public LLMService(String apiUrl, String apiKey, String model, int connectTimeoutMillis, int readTimeoutMillis) {
+        this(apiUrl, apiKey, model, connectTimeoutMillis, readTimeoutMillis, GameLog.getShared(), GameLog.getAudit());
+    }
+
+    /**
+     * Initializes the service with specific logs, e.g. to inspect what it records.
+     *
+     * @param apiUrl the URL of the chat completions endpoint
+     * @param apiKey the bearer token sent with each request
+     * @param model the model to request
+     * @param log the log of diagnostics
+     * @param audit the log that gets one line per request
+     */
+    LLMService(String apiUrl, String apiKey, String model, GameLog log, GameLog audit) {
+        this(apiUrl, apiKey, model, Integer.getInteger("sos.llm.connectTimeout", DEFAULT_CONNECT_TIMEOUT_MILLIS),
+                Integer.getInteger("sos.llm.readTimeout", DEFAULT_READ_TIMEOUT_MILLIS), log, audit);
+    }
+
+    private LLMService(String apiUrl, String apiKey, String model, int connectTimeoutMillis, int readTimeoutMillis,
+                       GameLog log, GameLog audit) {
+        if (connectTimeoutMillis < 0 || readTimeoutMillis < 0) {
+            throw new IllegalArgumentException("Timeouts must not be negative");
+        }
+        this.connectTimeoutMillis = connectTimeoutMillis;
+        this.readTimeoutMillis = readTimeoutMillis;
+        this.apiUrl = apiUrl;
+        this.apiKey = apiKey;
+        this.model = model;
+        this.log = log;
+        this.audit = audit;
+    }
+
     /**
      * Sends a message to the LLM API and retrieves a response.
      *
@@ -25,27 +107,108 @@ public class LLMService {
      * @return the response from the LLM API
      */
     public String getMoveFromLLM(String prompt) {
+        return getMoveFromLLM(prompt, 0);
+    }
+
+    /**
+     * Sends a message to the LLM API and retrieves a response, recording the call as a
+     * flight recorder event and in {@link GameMetrics}.
+     *
+     * @param prompt the prompt message to send
+     * @param retryCount how many earlier responses for the same move were rejected
+     * @return the response from the LLM API
+     */
+    public String getMoveFromLLM(String prompt, int retryCount) {
+        return send(prompt, retryCount).content();
+    }
+
+    /**
+     * Sends a message to the LLM API and retrieves the response with its status, recording the
+     * call as a flight recorder event, in {@link GameMetrics} and as a line of the audit log
+     * with its latency and sizes.
+     *
+     * @param prompt the prompt message to send
+     * @param retryCount how many earlier responses for the same move were rejected
+     * @return the status code and the content or "Error: ..." message
+     */
+    public Reply send(String prompt, int retryCount) {
+        GameFlightEvents.LLMRequest event = new GameFlightEvents.LLMRequest();
+        event.begin();
+        long start = GameMetrics.startTimer();
+        long auditStart = System.nanoTime();
+        int[] responseCode = {-1};
+        int[] tokens = {-1, -1}; // Prompt and completion tokens, if the API reports them
+        String result = null;
+        try {
+            result = sendRequest(prompt, responseCode, tokens);
+            return new Reply(responseCode[0], result);
+        } finally {
+            GameMetrics.recordLLMRequest(start, responseCode[0]);
+            audit.info("llm", "request", "model", model, "retry", retryCount, "status", responseCode[0],
+                    "latencyMs", (System.nanoTime() - auditStart) / 1_000_000, "promptChars", prompt.length(),
+                    "responseChars", result == null ? 0 : result.length(), "promptTokens", tokens[0],
+                    "completionTokens", tokens[1]);
+            if (event.shouldCommit()) {
+                event.retryCount = retryCount;
+                event.responseCode = responseCode[0];
+                event.promptChars = prompt.length();
+                event.responseChars = result == null ? 0 : result.length();
+                event.commit();
+            }
+        }
+    }
+
+    /**
+     * The outcome of one call to the LLM API.
+     *
+     * @param statusCode the HTTP status code, or -1 if the request could not be sent
+     * @param content the extracted content, or an "Error: ..." message
+     */
+    public record Reply(int statusCode, String content) {
+
+        /**
+         * Checks whether the call failed in a way that may succeed when repeated later: the
+         * connection failed, the API was rate limited (429) or had a server error (5xx).
+         *
+         * @return true if the request should be retried
+         */
+        public boolean isRetryable() {
+            return statusCode == -1 || statusCode == 429 || statusCode >= 500;
+        }
+    }
+
+    /**
+     * Performs the HTTP call to the LLM API.
+     *
+     * @param prompt the prompt message to send
+     * @param responseCode receives the HTTP status code in its first element
+     * @param tokens receives the prompt and completion token counts the API reports
+     * @return the extracted content, or an "Error: ..." message
+     */
+    private String sendRequest(String prompt, int[] responseCode, int[] tokens) {
         try {
-            System.out.println("Sending prompt to LLM: " + prompt); // Debugging print
+            if (log.isEnabled(GameLog.Level.DEBUG)) {
+                log.debug("llm", "Sending prompt", "chars", prompt.length(), "prompt", abbreviate(prompt));
+            }
 
             // Establish connection
-            URL url = new URL(API_URL);
+            URL url = new URL(apiUrl);
             HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+            connection.setConnectTimeout(connectTimeoutMillis);
+            connection.setReadTimeout(readTimeoutMillis); // A timeout fails the call like a lost connection
             connection.setRequestMethod("POST");
-            connection.setRequestProperty("Authorization", "Bearer " + API_KEY);
+            connection.setRequestProperty("Authorization", "Bearer " + apiKey);
             connection.setRequestProperty("Content-Type", "application/json");
             connection.setDoOutput(true);
 
             // Construct request body using JSON library
             String requestBody = new JSONObject()
-                    .put("model", MODEL)
+                    .put("model", model)
                     .put("messages", new JSONArray().put(
                             new JSONObject().put("role", "user").put("content", prompt)
                     ))
                     .toString();
 
-            System.out.println("Request body: " + requestBody); // Debugging print
-
             // Send request body
             try (OutputStreamWriter writer = new OutputStreamWriter(connection.getOutputStream())) {
                 writer.write(requestBody);
@@ -53,10 +216,10 @@ public class LLMService {
             }
 
             // Get response
-            int responseCode = connection.getResponseCode();
-            if (responseCode != HttpURLConnection.HTTP_OK) {
-                System.out.println("Error: API request failed with response code " + responseCode); // Debugging print
-                return "Error: API request failed with response code " + responseCode;
+            responseCode[0] = connection.getResponseCode();
+            if (responseCode[0] != HttpURLConnection.HTTP_OK) {
+                log.warn("llm", "API request failed", "status", responseCode[0]);
+                return "Error: API request failed with response code " + responseCode[0];
             }
 
             StringBuilder response = new StringBuilder();
@@ -67,12 +230,12 @@ public class LLMService {
                 }
             }
 
-            System.out.println("Received response from LLM: " + response.toString()); // Debugging print
+            log.debug("llm", "Received response", "chars", response.length());
 
-            return extractContentFromResponse(response.toString());
+            return extractContentFromResponse(response.toString(), tokens);
 
         } catch (IOException e) {
-            System.out.println("Error during LLM API request: " + e.getMessage()); // Debugging print
+            log.warn("llm", "API request could not be sent", "error", String.valueOf(e.getMessage()));
             return "Error: " + e.getMessage();
         }
     }
@@ -81,24 +244,35 @@ public class LLMService {
      * Extracts content from the API's JSON response.
      *
      * @param response the raw JSON response
+     * @param tokens receives the prompt and completion token counts if the response has them
      * @return the extracted content
      */
-    private String extractContentFromResponse(String response) {
+    private String extractContentFromResponse(String response, int[] tokens) {
         try {
             JSONObject jsonResponse = new JSONObject(response);
+            JSONObject usage = jsonResponse.optJSONObject("usage");
+            if (usage != null) {
+                tokens[0] = usage.optInt("prompt_tokens", -1);
+                tokens[1] = usage.optInt("completion_tokens", -1);
+            }
             JSONArray choices = jsonResponse.getJSONArray("choices");
             if (choices.length() > 0) {
                 JSONObject messageObject = choices.getJSONObject(0).getJSONObject("message");
-                String content = messageObject.getString("content");
-                System.out.println("Extracted content from LLM response: " + content); // Debugging print
-                return content;
+                return messageObject.getString("content");
             } else {
-                System.out.println("Error: No choices found in LLM response."); // Debugging print
+                log.warn("llm", "No choices in response");
                 return "Error: No choices found in response.";
             }
         } catch (Exception e) {
-            System.out.println("Error parsing LLM response: " + e.getMessage()); // Debugging print
+            log.warn("llm", "Could not parse response", "error", String.valueOf(e.getMessage()));
             return "Error: Could not parse JSON response - " + e.getMessage();
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Shortens a prompt for the log, which records its length in full.
+     */
+    private static String abbreviate(String prompt) {
+        return prompt.length() <= LOGGED_PROMPT_CHARS ? prompt : prompt.substring(0, LOGGED_PROMPT_CHARS) + "...";
+    }
+}
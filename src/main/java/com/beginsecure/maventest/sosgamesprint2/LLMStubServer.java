@@ -0,0 +1,235 @@
+package com.beginsecure.maventest.sosgamesprint2;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * A local stand-in for the chat completions API, so LLM players can be run in tournaments and
+ * tests without network access or an API key. It reads the board from an {@link LLMPrompt}
+ * and answers in the API's JSON format with a move: a cell listed as completing an SOS when
+ * there is one, otherwise a random free cell. A share of answers can be made deliberately
+ * invalid to exercise the retry handling, and requests can be delayed or made to fail with an
+ * HTTP error to exercise an {@link LLMScheduler}.
+ */
+public class LLMStubServer implements AutoCloseable {
+
+    /** The path served, matching the real API. */
+    public static final String PATH = "/v1/chat/completions";
+
+    private static final Pattern SIZE = Pattern.compile("on a (\\d+)x\\d+ board");
+    private static final Pattern CELL = Pattern.compile("\\((\\d+),(\\d+)\\)");
+
+    private final HttpServer server;
+    private final Random random;
+    private final double invalidRate;
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicInteger concurrent = new AtomicInteger();
+    private final AtomicInteger maxConcurrent = new AtomicInteger();
+    private final AtomicInteger failuresLeft = new AtomicInteger();
+    private volatile int failureStatus;
+    private volatile long delayMillis;
+
+    /**
+     * Starts a stub on a free loopback port that always answers with a legal move.
+     *
+     * @throws IOException if the server cannot be started
+     */
+    public LLMStubServer() throws IOException {
+        this(0, 0.0, new Random());
+    }
+
+    /**
+     * Starts a stub on the loopback interface.
+     *
+     * @param port the port to listen on, or 0 for any free port
+     * @param invalidRate the share of answers (0 to 1) that name an occupied cell
+     * @param random the source of randomisation for move choice
+     * @throws IOException if the server cannot be started
+     */
+    public LLMStubServer(int port, double invalidRate, Random random) throws IOException {
+        this.random = random;
+        this.invalidRate = invalidRate;
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.createContext(PATH, this::handle);
+        server.setExecutor(Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "sos-llm-stub");
+            thread.setDaemon(true);
+            return thread;
+        }));
+        server.start();
+    }
+
+    /**
+     * Retrieves the URL of the stub's chat completions endpoint.
+     *
+     * @return the endpoint URL
+     */
+    public String getUrl() {
+        return "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort() + PATH;
+    }
+
+    /**
+     * Retrieves the number of requests answered so far.
+     *
+     * @return the request count
+     */
+    public long getRequestCount() {
+        return requests.get();
+    }
+
+    /**
+     * Retrieves the largest number of requests that were being answered at the same time.
+     *
+     * @return the peak concurrency
+     */
+    public int getMaxConcurrentRequests() {
+        return maxConcurrent.get();
+    }
+
+    /**
+     * Makes the next requests fail with an HTTP error instead of answering.
+     *
+     * @param count the number of requests to fail
+     * @param statusCode the status to fail with, such as 429 or 503
+     */
+    public void failNext(int count, int statusCode) {
+        failureStatus = statusCode;
+        failuresLeft.set(count);
+    }
+
+    /**
+     * Delays every answer, to simulate a slow model.
+     *
+     * @param delayMillis the delay in milliseconds
+     */
+    public void setDelayMillis(long delayMillis) {
+        this.delayMillis = delayMillis;
+    }
+
+    /**
+     * Creates a service talking to this stub.
+     *
+     * @return an LLM service for the stub endpoint
+     */
+    public LLMService newService() {
+        return new LLMService(getUrl(), "stub", "stub");
+    }
+
+    /**
+     * Stops the server.
+     */
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+
+    /**
+     * Answers one chat completions request.
+     */
+    private void handle(HttpExchange exchange) throws IOException {
+        int active = concurrent.incrementAndGet();
+        maxConcurrent.accumulateAndGet(active, Math::max);
+        try {
+            requests.incrementAndGet();
+            if (delayMillis > 0) {
+                Thread.sleep(delayMillis);
+            }
+            if (failuresLeft.getAndUpdate(left -> Math.max(0, left - 1)) > 0) {
+                exchange.sendResponseHeaders(failureStatus, -1);
+                return;
+            }
+            String body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+            String prompt = new JSONObject(body).getJSONArray("messages").getJSONObject(0).getString("content");
+            String answer = answer(prompt);
+            // Token counts are estimated at four characters per token
+            byte[] response = new JSONObject()
+                    .put("choices", new JSONArray().put(new JSONObject()
+                            .put("message", new JSONObject().put("role", "assistant").put("content", answer))))
+                    .put("usage", new JSONObject().put("prompt_tokens", (prompt.length() + 3) / 4)
+                            .put("completion_tokens", (answer.length() + 3) / 4))
+                    .toString().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, response.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(response);
+            }
+        } catch (RuntimeException e) {
+            exchange.sendResponseHeaders(400, -1); // Not a chat completions request
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            exchange.sendResponseHeaders(503, -1);
+        } finally {
+            concurrent.decrementAndGet();
+            exchange.close();
+        }
+    }
+
+    /**
+     * Chooses the move to answer with from the prompt text.
+     */
+    private synchronized String answer(String prompt) {
+        Matcher sizeMatcher = SIZE.matcher(prompt);
+        if (!sizeMatcher.find()) {
+            return "I cannot read the board.";
+        }
+        int size = Integer.parseInt(sizeMatcher.group(1));
+        boolean[] occupied = new boolean[size * size];
+        List<int[]> occupiedCells = cellsAfter(prompt, "Occupied spaces (row,col): ");
+        for (int[] cell : occupiedCells) {
+            occupied[cell[0] * size + cell[1]] = true;
+        }
+        if (!occupiedCells.isEmpty() && random.nextDouble() < invalidRate) {
+            int[] taken = occupiedCells.get(random.nextInt(occupiedCells.size()));
+            return taken[0] + "," + taken[1] + ",S";
+        }
+        for (char letter : new char[] {'S', 'O'}) {
+            List<int[]> scoring = cellsAfter(prompt, "Placing an '" + letter + "' completes an 'SOS' at: ");
+            if (!scoring.isEmpty()) {
+                return scoring.get(0)[0] + "," + scoring.get(0)[1] + "," + letter;
+            }
+        }
+        List<Integer> free = new ArrayList<>();
+        for (int cell = 0; cell < occupied.length; cell++) {
+            if (!occupied[cell]) {
+                free.add(cell);
+            }
+        }
+        if (free.isEmpty()) {
+            return "The board is full.";
+        }
+        int cell = free.get(random.nextInt(free.size()));
+        return cell / size + "," + cell % size + "," + (random.nextBoolean() ? 'S' : 'O');
+    }
+
+    /**
+     * Reads the "(row,col)" cells listed on the prompt line starting with a label.
+     */
+    private static List<int[]> cellsAfter(String prompt, String label) {
+        List<int[]> cells = new ArrayList<>();
+        int start = prompt.indexOf(label);
+        if (start < 0) {
+            return cells;
+        }
+        int end = prompt.indexOf('\n', start);
+        Matcher matcher = CELL.matcher(prompt.substring(start + label.length(), end < 0 ? prompt.length() : end));
+        while (matcher.find()) {
+            cells.add(new int[] {Integer.parseInt(matcher.group(1)), Integer.parseInt(matcher.group(2))});
+        }
+        return cells;
+    }
+}
@@ -0,0 +1,391 @@
+package com.beginsecure.maventest.sosgamesprint2;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Detects the scoring lines of a {@link LineRule} on one board. The rule is compiled once per
+ * rule and board size into shared tables:
+ * <ul>
+ *     <li>per-direction offset tables: for every letter, each way a line can pass through the
+ *     cell holding it, as offsets of the line's cells relative to that cell. Letters are kept
+ *     on a board padded by {@code word length - 1} cells on every side, so the same offsets
+ *     work for every cell without bounds tests; on a toroidal board the padding mirrors the
+ *     cells across the opposite edge so lines wrap around;</li>
+ *     <li>a word automaton (a KMP transition table) per reading direction, used to count every
+ *     line on the board in one pass over each row, column and diagonal.</li>
+ * </ul>
+ * Each matcher keeps its own copy of the letters and remembers which lines it has reported, so
+ * a line scores at most once.
+ */
+public class LineMatcher {
+
+    // Compiled tables depend only on the rule and board size, so games with the same settings share them
+    private static final Map<LineRule, Map<Integer, Tables>> TABLES = new ConcurrentHashMap<>();
+    // The standard rule's tables by board size, skipping the map lookup when creating games
+    private static final Tables[] STANDARD_TABLES = new Tables[16];
+    private static final int DIRECTIONS = LineRule.Direction.values().length;
+
+    private final LineRule rule;
+    private final int boardSize;
+    private final Tables tables;
+    private final byte[] cells;     // Alphabet index + 1 of each padded cell's letter, 0 when empty
+    private final long[] reported;  // One bit per (start cell, direction) line already reported
+    private final int[] formed;     // First, middle and last cell of each line found by the last check
+    private int formedCount;
+
+    /**
+     * Initializes a matcher for an empty board.
+     *
+     * @param rule the rule to detect
+     * @param boardSize the size of the board in a square dimension
+     */
+    public LineMatcher(LineRule rule, int boardSize) {
+        this.rule = rule;
+        this.boardSize = boardSize;
+        this.tables = tablesFor(rule, boardSize);
+        this.cells = new byte[tables.width * tables.width];
+        this.reported = new long[(boardSize * boardSize * DIRECTIONS + 63) >>> 6];
+        this.formed = new int[tables.maxLinesPerCell * 3];
+    }
+
+    /**
+     * Returns the shared compiled tables of a rule and board size.
+     */
+    private static Tables tablesFor(LineRule rule, int boardSize) {
+        if (rule == LineRule.STANDARD && boardSize < STANDARD_TABLES.length) {
+            // Hashing a record key bootstraps method handles, which is slow at startup
+            Tables tables = STANDARD_TABLES[boardSize];
+            if (tables == null) {
+                tables = new Tables(rule, boardSize);
+                STANDARD_TABLES[boardSize] = tables; // Tables are immutable, so a racy publish is safe
+            }
+            return tables;
+        }
+        return TABLES.computeIfAbsent(rule, r -> new ConcurrentHashMap<>())
+                .computeIfAbsent(boardSize, size -> new Tables(rule, size));
+    }
+
+    /**
+     * Empties the board and forgets every reported line, for a new game of the same size.
+     */
+    public void clear() {
+        Arrays.fill(cells, (byte) 0);
+        Arrays.fill(reported, 0);
+        formedCount = 0;
+    }
+
+    /**
+     * Records a letter placed on the board.
+     *
+     * @param row the row position
+     * @param col the column position
+     * @param letter a letter of the rule's alphabet
+     * @throws IllegalArgumentException if the letter is not in the alphabet
+     */
+    public void place(int row, int col, char letter) {
+        byte value = letter < tables.valueOf.length ? tables.valueOf[letter] : 0;
+        if (value == 0) {
+            throw new IllegalArgumentException("Letter '" + letter + "' is not in " + rule.alphabet());
+        }
+        int cell = row * boardSize + col;
+        cells[tables.paddedOf[cell]] = value;
+        if (tables.mirrorsOf != null) {
+            for (int mirror : tables.mirrorsOf[cell]) {
+                cells[mirror] = value;
+            }
+        }
+    }
+
+    /**
+     * Finds the lines through a cell that spell the word and have not been reported yet, and
+     * marks them reported. Their cells are available from {@link #getFormedCell(int, int)}
+     * until the next call.
+     *
+     * @param row the row position of the placed letter
+     * @param col the column position of the placed letter
+     * @return the number of new lines
+     */
+    public int complete(int row, int col) {
+        formedCount = 0;
+        int cell = tables.paddedOf[row * boardSize + col];
+        int value = cells[cell];
+        if (value == 0) {
+            return 0;
+        }
+        int stride = tables.shapeStride;
+        int[] shapes = tables.shapes[value - 1];
+        for (int i = 0; i < shapes.length; i += stride) {
+            // Mismatches are accumulated without branching; only a complete line is unusual
+            int mismatch = 0;
+            for (int k = i + 4; k < i + stride; k += 2) {
+                mismatch |= cells[cell + shapes[k]] ^ shapes[k + 1];
+            }
+            if (mismatch != 0) {
+                continue;
+            }
+            int first = tables.realOf[cell + shapes[i + 1]];
+            int line = first * DIRECTIONS + shapes[i];
+            long bit = 1L << line;
+            if ((reported[line >>> 6] & bit) != 0) {
+                continue;
+            }
+            reported[line >>> 6] |= bit;
+            formed[formedCount * 3] = first;
+            formed[formedCount * 3 + 1] = tables.realOf[cell + shapes[i + 2]];
+            formed[formedCount * 3 + 2] = tables.realOf[cell + shapes[i + 3]];
+            formedCount++;
+        }
+        return formedCount;
+    }
+
+    /**
+     * Retrieves the number of lines found by the last call to {@link #complete(int, int)}.
+     *
+     * @return the line count
+     */
+    public int getFormedCount() {
+        return formedCount;
+    }
+
+    /**
+     * Retrieves a cell of a line found by the last call to {@link #complete(int, int)}.
+     *
+     * @param line the index of the line, below {@link #getFormedCount()}
+     * @param position 0 for the first cell, 1 for the middle cell, 2 for the last cell
+     * @return the cell as {@code row * boardSize + col}
+     */
+    public int getFormedCell(int line, int position) {
+        return formed[line * 3 + position];
+    }
+
+    /**
+     * Retrieves the largest number of lines a single letter can complete under this rule.
+     *
+     * @return the maximum new lines per move
+     */
+    public int getMaxLinesPerCell() {
+        return tables.maxLinesPerCell;
+    }
+
+    /**
+     * Counts every line on the board that spells the word, reported or not, by running the word
+     * automaton along every row, column and diagonal.
+     *
+     * @return the number of lines
+     */
+    public int countLines() {
+        int count = 0;
+        int symbols = tables.letters + 1;
+        int accept = tables.wordLength;
+        for (int[] dfa : tables.automata) {
+            for (int[] line : tables.scanLines) {
+                int state = 0;
+                for (int cell : line) {
+                    state = dfa[state * symbols + cells[cell]];
+                    if (state == accept) {
+                        count++;
+                    }
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Retrieves the lines reported so far, one bit per line at index
+     * {@code (row * boardSize + col) * 4 + direction}, where the cell is the line's start and the
+     * direction is a {@link LineRule.Direction} ordinal. Snapshots copy it in and out directly.
+     *
+     * @return the backing bit set
+     */
+    long[] getReportedLines() {
+        return reported;
+    }
+
+    /**
+     * Retrieves the rule being detected.
+     *
+     * @return the rule
+     */
+    public LineRule getRule() {
+        return rule;
+    }
+
+    /**
+     * The compiled form of a rule for one board size.
+     */
+    private static final class Tables {
+        final int letters;
+        final int wordLength;
+        final int width;          // Side of the padded board
+        final byte[][] readings;  // The word as letter values, and reversed unless a palindrome
+        final int[][] shapes;     // Per letter: (direction, first, middle and last cell offsets,
+                                  //   then offset and letter of each other cell) records
+        final int shapeStride;
+        final int maxLinesPerCell;
+        final byte[] valueOf;     // Per character: its alphabet index + 1, or 0
+        final int[] paddedOf;     // Per board cell: its index on the padded board
+        final int[][] mirrorsOf;  // Per board cell on a torus: the padding cells showing it; null otherwise
+        final int[] realOf;       // Per padded index: the board cell shown there, or -1
+        final int[][] automata;   // Per reading: transitions [state * (letters + 1) + value]
+        final int[][] scanLines;  // Padded cells of every maximal line; torus cycles repeat their start
+
+        Tables(LineRule rule, int boardSize) {
+            letters = rule.alphabet().length();
+            valueOf = new byte[rule.alphabet().chars().max().getAsInt() + 1];
+            for (int index = 0; index < letters; index++) {
+                valueOf[rule.alphabet().charAt(index)] = (byte) (index + 1);
+            }
+            wordLength = rule.word().length();
+            byte[] forward = new byte[wordLength];
+            for (int k = 0; k < wordLength; k++) {
+                forward[k] = (byte) (rule.alphabet().indexOf(rule.word().charAt(k)) + 1);
+            }
+            if (rule.isPalindrome()) {
+                readings = new byte[][] {forward};
+            } else {
+                byte[] backward = new byte[wordLength];
+                for (int k = 0; k < wordLength; k++) {
+                    backward[k] = forward[wordLength - 1 - k];
+                }
+                readings = new byte[][] {forward, backward};
+            }
+            // On a torus a line longer than the board would run into itself
+            boolean lines = !rule.toroidal() || wordLength <= boardSize;
+
+            int pad = wordLength - 1;
+            width = boardSize + 2 * pad;
+            realOf = new int[width * width];
+            Arrays.fill(realOf, -1);
+            paddedOf = new int[boardSize * boardSize];
+            mirrorsOf = rule.toroidal() ? new int[boardSize * boardSize][] : null;
+            for (int row = 0; row < boardSize; row++) {
+                for (int col = 0; col < boardSize; col++) {
+                    int cell = row * boardSize + col;
+                    paddedOf[cell] = (row + pad) * width + col + pad;
+                    realOf[paddedOf[cell]] = cell;
+                    List<Integer> mirrors = new ArrayList<>();
+                    for (int rowShift = -1; rowShift <= 1 && rule.toroidal(); rowShift++) {
+                        for (int colShift = -1; colShift <= 1; colShift++) {
+                            int r = row + rowShift * boardSize + pad;
+                            int c = col + colShift * boardSize + pad;
+                            if ((rowShift != 0 || colShift != 0) && r >= 0 && r < width && c >= 0 && c < width) {
+                                mirrors.add(r * width + c);
+                                realOf[r * width + c] = cell;
+                            }
+                        }
+                    }
+                    if (mirrorsOf != null) {
+                        mirrorsOf[cell] = mirrors.stream().mapToInt(Integer::intValue).toArray();
+                    }
+                }
+            }
+
+            shapes = new int[letters][];
+            shapeStride = 4 + 2 * (wordLength - 1);
+            int maxLines = 0;
+            for (int value = 1; value <= letters; value++) {
+                List<Integer> flat = new ArrayList<>();
+                int count = 0;
+                for (LineRule.Direction dir : rule.directions()) {
+                    int step = dir.getRowStep() * width + dir.getColStep();
+                    for (int reading = 0; reading < readings.length && lines; reading++) {
+                        for (int k = 0; k < wordLength; k++) {
+                            if (readings[reading][k] != value) {
+                                continue;
+                            }
+                            flat.add(dir.ordinal());
+                            flat.add(-k * step);
+                            flat.add((wordLength / 2 - k) * step);
+                            flat.add((wordLength - 1 - k) * step);
+                            for (int i = 0; i < wordLength; i++) {
+                                if (i != k) {
+                                    flat.add((i - k) * step);
+                                    flat.add((int) readings[reading][i]);
+                                }
+                            }
+                            count++;
+                        }
+                    }
+                }
+                shapes[value - 1] = flat.stream().mapToInt(Integer::intValue).toArray();
+                maxLines = Math.max(maxLines, count);
+            }
+            maxLinesPerCell = maxLines;
+
+            automata = new int[readings.length][];
+            for (int reading = 0; reading < readings.length; reading++) {
+                automata[reading] = automaton(readings[reading], letters);
+            }
+            List<int[]> scans = new ArrayList<>();
+            for (LineRule.Direction dir : rule.directions()) {
+                if (lines) {
+                    addScanLines(rule, boardSize, dir, scans);
+                }
+            }
+            scanLines = scans.toArray(new int[0][]);
+        }
+
+        /**
+         * Adds every maximal line of a direction. On a torus each line is a cycle of boardSize
+         * cells, scanned with its first wordLength - 1 cells repeated so every start is seen once.
+         */
+        private void addScanLines(LineRule rule, int boardSize, LineRule.Direction dir, List<int[]> scans) {
+            for (int row = 0; row < boardSize; row++) {
+                for (int col = 0; col < boardSize; col++) {
+                    int previousRow = row - dir.getRowStep();
+                    int previousCol = col - dir.getColStep();
+                    boolean start = rule.toroidal()
+                            ? (dir.getRowStep() == 0 ? col == 0 : row == 0)
+                            : previousRow < 0 || previousCol < 0 || previousCol >= boardSize;
+                    if (!start) {
+                        continue;
+                    }
+                    List<Integer> line = new ArrayList<>();
+                    int r = row;
+                    int c = col;
+                    int length = rule.toroidal() ? boardSize + wordLength - 1 : Integer.MAX_VALUE;
+                    while (line.size() < length) {
+                        if (rule.toroidal()) {
+                            line.add(paddedOf[Math.floorMod(r, boardSize) * boardSize + Math.floorMod(c, boardSize)]);
+                        } else if (r < boardSize && c >= 0 && c < boardSize) {
+                            line.add(paddedOf[r * boardSize + c]);
+                        } else {
+                            break;
+                        }
+                        r += dir.getRowStep();
+                        c += dir.getColStep();
+                    }
+                    if (line.size() >= wordLength) {
+                        scans.add(line.stream().mapToInt(Integer::intValue).toArray());
+                    }
+                }
+            }
+        }
+
+        /**
+         * Builds the KMP automaton of a word over cell values 0 (empty) to letters. Reaching the
+         * state equal to the word length means the word has just been read.
+         */
+        private static int[] automaton(byte[] word, int letters) {
+            int symbols = letters + 1;
+            int[] dfa = new int[(word.length + 1) * symbols];
+            dfa[word[0]] = 1;
+            int fallback = 0;
+            for (int state = 1; state <= word.length; state++) {
+                for (int symbol = 0; symbol < symbols; symbol++) {
+                    dfa[state * symbols + symbol] = dfa[fallback * symbols + symbol];
+                }
+                if (state < word.length) {
+                    dfa[state * symbols + word[state]] = state + 1;
+                    fallback = dfa[fallback * symbols + word[state]];
+                }
+            }
+            return dfa;
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package com.beginsecure.maventest.sosgamesprint2;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Defines what counts as a scoring line: a word spelled in a straight line of consecutive cells
+ * in one of the allowed directions, read either way. The standard game scores "SOS" with the
+ * letters S and O in all four directions on a bounded board; variants can use longer words
+ * such as "SOSOS", other alphabets, fewer directions, or a toroidal board whose edges wrap
+ * around. Rules are compiled into lookup tables by {@link LineMatcher}.
+ *
+ * @param word the word that scores, at least two letters, all from the alphabet
+ * @param alphabet the letters players may place, without duplicates
+ * @param directions the directions in which lines count
+ * @param toroidal true if lines wrap around the board edges
+ */
+public record LineRule(String word, String alphabet, Set<Direction> directions, boolean toroidal) {
+
+    /** The rule of the standard game. */
+    public static final LineRule STANDARD = new LineRule("SOS", "SO", EnumSet.allOf(Direction.class), false);
+
+    /**
+     * A direction of a line, as the step from one cell to the next.
+     */
+    public enum Direction {
+        HORIZONTAL(0, 1),
+        VERTICAL(1, 0),
+        DIAGONAL(1, 1),
+        ANTI_DIAGONAL(1, -1);
+
+        private final int rowStep;
+        private final int colStep;
+
+        Direction(int rowStep, int colStep) {
+            this.rowStep = rowStep;
+            this.colStep = colStep;
+        }
+
+        /**
+         * Retrieves the row change from one cell of a line to the next.
+         *
+         * @return 0 or 1
+         */
+        public int getRowStep() {
+            return rowStep;
+        }
+
+        /**
+         * Retrieves the column change from one cell of a line to the next.
+         *
+         * @return -1, 0 or 1
+         */
+        public int getColStep() {
+            return colStep;
+        }
+    }
+
+    /**
+     * Creates a rule, validating the word and alphabet.
+     *
+     * @param word the word that scores, at least two letters, all from the alphabet
+     * @param alphabet the letters players may place, without duplicates
+     * @param directions the directions in which lines count
+     * @param toroidal true if lines wrap around the board edges
+     * @throws IllegalArgumentException if the rule is inconsistent
+     */
+    public LineRule {
+        if (word.length() < 2) {
+            throw new IllegalArgumentException("A scoring word needs at least two letters: " + word);
+        }
+        if (alphabet.isEmpty() || alphabet.indexOf('\0') >= 0 || alphabet.chars().distinct().count() != alphabet.length()) {
+            throw new IllegalArgumentException("Alphabet letters must be distinct: " + alphabet);
+        }
+        for (char letter : word.toCharArray()) {
+            if (alphabet.indexOf(letter) < 0) {
+                throw new IllegalArgumentException("Letter '" + letter + "' of " + word + " is not in " + alphabet);
+            }
+        }
+        if (directions.isEmpty()) {
+            throw new IllegalArgumentException("At least one direction is needed");
+        }
+        directions = Collections.unmodifiableSet(EnumSet.copyOf(directions));
+    }
+
+    /**
+     * Creates a rule for a word on a bounded board in all directions, whose alphabet is the
+     * letters of the word.
+     *
+     * @param word the word that scores
+     * @return the rule
+     */
+    public static LineRule of(String word) {
+        StringBuilder alphabet = new StringBuilder();
+        word.chars().distinct().forEach(letter -> alphabet.append((char) letter));
+        return new LineRule(word, alphabet.toString(), EnumSet.allOf(Direction.class), false);
+    }
+
+    /**
+     * Creates a copy of this rule with lines wrapping around the board edges.
+     *
+     * @return the toroidal rule
+     */
+    public LineRule withToroidal() {
+        return new LineRule(word, alphabet, directions, true);
+    }
+
+    /**
+     * Creates a copy of this rule in which only some directions count.
+     *
+     * @param first a direction that counts
+     * @param rest further directions that count
+     * @return the restricted rule
+     */
+    public LineRule withDirections(Direction first, Direction... rest) {
+        return new LineRule(word, alphabet, EnumSet.of(first, rest), toroidal);
+    }
+
+    /**
+     * Checks whether players may place a letter.
+     *
+     * @param letter the letter to check
+     * @return true if the letter is in the alphabet
+     */
+    public boolean isLetter(char letter) {
+        return letter != '\0' && alphabet.indexOf(letter) >= 0;
+    }
+
+    /**
+     * Checks whether the word reads the same both ways, so each line has a single reading.
+     *
+     * @return true for palindromes such as "SOS"
+     */
+    public boolean isPalindrome() {
+        return new StringBuilder(word).reverse().toString().equals(word);
+    }
+}
@@ -0,0 +1,16 @@
+package com.beginsecure.maventest.sosgamesprint2;
+
+/**
+ * A single move: a letter placed at a board position.
+ *
+ * @param row the row position
+ * @param col the column position
+ * @param letter the character ('S' or 'O') to place
+ */
+public record Move(int row, int col, char letter) {
+
+    @Override
+    public String toString() {
+        return row + "," + col + "," + letter;
+    }
+}
@@ -0,0 +1,129 @@
+package com.beginsecure.maventest.sosgamesprint2;
+
+/**
+ * Counts the outcomes of archived games by mode and board size: wins of each player, draws and
+ * records that stop before the end of the game.
+ */
+public class OutcomeTable implements GameAggregator<OutcomeTable> {
+
+    private static final int MAX_SIZE = 15;
+    private static final int DRAW = 0;
+    private static final int UNFINISHED = 3;
+
+    // Games by mode (0 simple, 1 general), board size and outcome (draw, winner 1 or 2, unfinished)
+    private final long[][][] counts = new long[2][MAX_SIZE + 1][4];
+
+    @Override
+    public void accept(GameArchive.Game game) {
+        int outcome = game.isFinished() ? game.getWinner() : UNFINISHED;
+        counts[game.isGeneralMode() ? 1 : 0][game.getBoardSize()][outcome]++;
+    }
+
+    @Override
+    public void combine(OutcomeTable other) {
+        for (int mode = 0; mode < 2; mode++) {
+            for (int size = 0; size <= MAX_SIZE; size++) {
+                for (int outcome = 0; outcome < 4; outcome++) {
+                    counts[mode][size][outcome] += other.counts[mode][size][outcome];
+                }
+            }
+        }
+    }
+
+    /**
+     * Retrieves the number of games of a mode and board size.
+     *
+     * @param generalMode true for general games, false for simple games
+     * @param boardSize the board size
+     * @return the number of games, finished or not
+     */
+    public long getGames(boolean generalMode, int boardSize) {
+        long games = 0;
+        for (long count : counts[generalMode ? 1 : 0][boardSize]) {
+            games += count;
+        }
+        return games;
+    }
+
+    /**
+     * Retrieves the number of games a player won.
+     *
+     * @param generalMode true for general games, false for simple games
+     * @param boardSize the board size
+     * @param player 1 or 2
+     * @return the number of wins
+     */
+    public long getWins(boolean generalMode, int boardSize, int player) {
+        return counts[generalMode ? 1 : 0][boardSize][player];
+    }
+
+    /**
+     * Retrieves the number of drawn games.
+     *
+     * @param generalMode true for general games, false for simple games
+     * @param boardSize the board size
+     * @return the number of draws
+     */
+    public long getDraws(boolean generalMode, int boardSize) {
+        return counts[generalMode ? 1 : 0][boardSize][DRAW];
+    }
+
+    /**
+     * Retrieves the number of records that stop before the end of their game.
+     *
+     * @param generalMode true for general games, false for simple games
+     * @param boardSize the board size
+     * @return the number of unfinished games
+     */
+    public long getUnfinished(boolean generalMode, int boardSize) {
+        return counts[generalMode ? 1 : 0][boardSize][UNFINISHED];
+    }
+
+    /**
+     * Computes the share of finished games won by the player who moved first.
+     *
+     * @param generalMode true for general games, false for simple games
+     * @param boardSize the board size
+     * @return the win rate of Player 1 from 0 to 1, or NaN without finished games
+     */
+    public double getFirstPlayerWinRate(boolean generalMode, int boardSize) {
+        long finished = getGames(generalMode, boardSize) - getUnfinished(generalMode, boardSize);
+        return finished == 0 ? Double.NaN : (double) getWins(generalMode, boardSize, 1) / finished;
+    }
+
+    /**
+     * Retrieves the number of games of every mode and size.
+     *
+     * @return the total game count
+     */
+    public long getTotal() {
+        long total = 0;
+        for (int size = 0; size <= MAX_SIZE; size++) {
+            total += getGames(false, size) + getGames(true, size);
+        }
+        return total;
+    }
+
+    /**
+     * Formats one line per mode and board size with games.
+     *
+     * @return the table, with a header line
+     */
+    @Override
+    public String toString() {
+        StringBuilder table = new StringBuilder(String.format("%-8s %5s %10s %10s %10s %10s %10s %8s%n",
+                "mode", "size", "games", "P1 wins", "P2 wins", "draws", "unfinished", "P1 rate"));
+        for (int mode = 0; mode < 2; mode++) {
+            for (int size = 0; size <= MAX_SIZE; size++) {
+                boolean general = mode == 1;
+                if (getGames(general, size) > 0) {
+                    table.append(String.format("%-8s %5d %10d %10d %10d %10d %10d %8.3f%n",
+                            general ? "general" : "simple", size, getGames(general, size),
+                            getWins(general, size, 1), getWins(general, size, 2), getDraws(general, size),
+                            getUnfinished(general, size), getFirstPlayerWinRate(general, size)));
+                }
+            }
+        }
+        return table.toString();
+    }
+}
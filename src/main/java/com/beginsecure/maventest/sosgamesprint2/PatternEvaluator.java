@@ -0,0 +1,212 @@
+package com.beginsecure.maventest.sosgamesprint2;
+
+/**
+ * A linear evaluation over local line patterns: every 3-cell and 5-cell straight line on the
+ * board contributes the {@link PatternWeights} weight of the letters it currently holds. The
+ * pattern code of every line and the total are kept up to date by
+ * {@link #place(int, int, char)} and {@link #remove(int, int)}, each of which touches only the
+ * (at most 32) lines through the changed cell, so {@link #getValue()} is a field read.
+ *
+ * <p>The value estimates how many more SOS, in units of {@link SearchPlayer#SOS_VALUE}, the
+ * player to move will score than the opponent from here on; it is meant for general games.
+ */
+public class PatternEvaluator {
+
+    // Line tables depend only on the board size, so they are shared by every evaluator of that size
+    private static final LineTable[] TABLES = new LineTable[16];
+
+    private final int boardSize;
+    private final int[] weights;
+    private final LineTable table;
+    private final int[] codes;   // Current weight index of every line
+    private final byte[] digits; // Current pattern digit of every cell
+    private int value;
+
+    /**
+     * Initializes an evaluator for an empty board.
+     *
+     * @param boardSize the size of the board in a square dimension
+     * @param weights the pattern weights
+     */
+    public PatternEvaluator(int boardSize, PatternWeights weights) {
+        this.boardSize = boardSize;
+        this.weights = weights.table();
+        this.table = tableFor(boardSize);
+        this.codes = table.baseCodes.clone();
+        this.digits = new byte[boardSize * boardSize];
+        for (int code : codes) {
+            value += this.weights[code];
+        }
+    }
+
+    /**
+     * Builds an evaluator for the current position of a compact game.
+     *
+     * @param state the position to evaluate
+     * @param weights the pattern weights
+     * @return an evaluator matching the position
+     */
+    public static PatternEvaluator of(CompactGameState state, PatternWeights weights) {
+        PatternEvaluator evaluator = new PatternEvaluator(state.getBoardSize(), weights);
+        for (int row = 0; row < state.getBoardSize(); row++) {
+            for (int col = 0; col < state.getBoardSize(); col++) {
+                if (state.getLetter(row, col) != '\0') {
+                    evaluator.place(row, col, state.getLetter(row, col));
+                }
+            }
+        }
+        return evaluator;
+    }
+
+    /**
+     * Updates the evaluation for a letter placed on an empty cell.
+     *
+     * @param row the row position
+     * @param col the column position
+     * @param letter the character ('S' or 'O') placed
+     */
+    public void place(int row, int col, char letter) {
+        set(row * boardSize + col, CompactGameState.toCellValue(letter));
+    }
+
+    /**
+     * Updates the evaluation for a letter taken back from a cell.
+     *
+     * @param row the row position
+     * @param col the column position
+     */
+    public void remove(int row, int col) {
+        set(row * boardSize + col, 0);
+    }
+
+    /**
+     * Changes the digit of a cell in every line through it.
+     */
+    private void set(int cell, int digit) {
+        int change = digit - digits[cell];
+        digits[cell] = (byte) digit;
+        int[] lines = table.linesOfCell[cell];
+        int[] powers = table.powersOfCell[cell];
+        int[] w = weights;
+        int total = value;
+        for (int i = 0; i < lines.length; i++) {
+            int line = lines[i];
+            int code = codes[line];
+            int updated = code + change * powers[i];
+            total += w[updated] - w[code];
+            codes[line] = updated;
+        }
+        value = total;
+    }
+
+    /**
+     * Retrieves the evaluation of the current position.
+     *
+     * @return the sum of the weights of all line patterns
+     */
+    public int getValue() {
+        return value;
+    }
+
+    /**
+     * Adds the number of lines holding each pattern to a feature vector, as used by
+     * {@link PatternTrainer}.
+     *
+     * @param state the position to count
+     * @param counts the vector to add to, indexed like {@link PatternWeights#get(int)}
+     */
+    static void countPatterns(CompactGameState state, double[] counts) {
+        LineTable table = tableFor(state.getBoardSize());
+        int size = state.getBoardSize();
+        for (int line = 0; line < table.baseCodes.length; line++) {
+            int code = table.baseCodes[line];
+            int[] cells = table.cellsOfLine[line];
+            int power = 1;
+            for (int cell : cells) {
+                code += power * CompactGameState.toCellValue(state.getLetter(cell / size, cell % size));
+                power *= 3;
+            }
+            counts[code]++;
+        }
+    }
+
+    /**
+     * Returns the shared line table of a board size.
+     */
+    private static LineTable tableFor(int boardSize) {
+        if (boardSize >= TABLES.length) {
+            return new LineTable(boardSize);
+        }
+        synchronized (TABLES) {
+            if (TABLES[boardSize] == null) {
+                TABLES[boardSize] = new LineTable(boardSize);
+            }
+            return TABLES[boardSize];
+        }
+    }
+
+    /**
+     * Every 3-cell and 5-cell line of a board size, and for each cell the lines through it with
+     * the base-3 place value of the cell in each.
+     */
+    private static final class LineTable {
+        final int[] baseCodes;     // Weight index of each line while it is empty
+        final int[][] cellsOfLine;
+        final int[][] linesOfCell;
+        final int[][] powersOfCell;
+
+        LineTable(int boardSize) {
+            int cells = boardSize * boardSize;
+            int maxLines = cells * CompactGameState.DIRECTIONS * 2;
+            int[] base = new int[maxLines];
+            int[][] lineCells = new int[maxLines][];
+            int count = 0;
+            for (int length : new int[] {3, 5}) {
+                for (int row = 0; row < boardSize; row++) {
+                    for (int col = 0; col < boardSize; col++) {
+                        for (int dir = 0; dir < CompactGameState.DIRECTIONS; dir++) {
+                            int endRow = row + (length - 1) * CompactGameState.DIR_ROW[dir];
+                            int endCol = col + (length - 1) * CompactGameState.DIR_COL[dir];
+                            if (endRow < 0 || endRow >= boardSize || endCol < 0 || endCol >= boardSize) {
+                                continue;
+                            }
+                            int[] lineCellIndices = new int[length];
+                            for (int k = 0; k < length; k++) {
+                                lineCellIndices[k] = (row + k * CompactGameState.DIR_ROW[dir]) * boardSize
+                                        + col + k * CompactGameState.DIR_COL[dir];
+                            }
+                            base[count] = length == 3 ? 0 : PatternWeights.PATTERNS_3;
+                            lineCells[count++] = lineCellIndices;
+                        }
+                    }
+                }
+            }
+            baseCodes = new int[count];
+            cellsOfLine = new int[count][];
+            System.arraycopy(base, 0, baseCodes, 0, count);
+            System.arraycopy(lineCells, 0, cellsOfLine, 0, count);
+
+            int[] perCell = new int[cells];
+            for (int[] line : cellsOfLine) {
+                for (int cell : line) {
+                    perCell[cell]++;
+                }
+            }
+            linesOfCell = new int[cells][];
+            powersOfCell = new int[cells][];
+            for (int cell = 0; cell < cells; cell++) {
+                linesOfCell[cell] = new int[perCell[cell]];
+                powersOfCell[cell] = new int[perCell[cell]];
+                perCell[cell] = 0;
+            }
+            for (int line = 0; line < count; line++) {
+                int power = 1;
+                for (int cell : cellsOfLine[line]) {
+                    linesOfCell[cell][perCell[cell]] = line;
+                    powersOfCell[cell][perCell[cell]++] = power;
+                    power *= 3;
+                }
+            }
+        }
+    }
+}
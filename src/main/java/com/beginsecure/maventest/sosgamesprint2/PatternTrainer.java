@@ -0,0 +1,277 @@
+package com.beginsecure.maventest.sosgamesprint2;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Fits {@link PatternWeights} offline from recorded games. Every position of every general game
+ * becomes one sample: its pattern counts as features and, as the target, how many more SOS the
+ * player to move went on to score than the opponent over the next few plies (in
+ * {@link SearchPlayer#SOS_VALUE} units), less what the search already credits for the best
+ * immediate gain. The weights are the ridge regression solution, computed exactly from the
+ * normal equations; a line and its reverse share one weight, leaving 153 unknowns, so training
+ * takes seconds on one CPU. Games can be generated by self-play of the local computer players.
+ *
+ * <p>Usage: {@code PatternTrainer --records games.txt --games 2000 --sizes 5,6,7 --level easy
+ * --seed 1 --horizon 4 --ridge 1 --out pattern-weights.bin}. Existing records are reused;
+ * otherwise they are generated and saved first.
+ */
+public final class PatternTrainer {
+
+    private static final int FEATURES = PatternWeights.PATTERNS_3 + PatternWeights.PATTERNS_5;
+    private static final double DEFAULT_RIDGE = 1.0;
+    private static final int DEFAULT_HORIZON = 4;
+
+    private PatternTrainer() {
+    }
+
+    /**
+     * Plays games between two randomised local computer players, with two random opening moves
+     * for variety. The players evaluate without pattern weights so the data does not depend on
+     * an earlier training run.
+     *
+     * @param games the number of games to play
+     * @param boardSizes the board sizes to cycle through
+     * @param level the difficulty of both players
+     * @param seed the seed of the game sequence
+     * @return the recorded general games
+     */
+    public static List<GameRecord> selfPlay(int games, int[] boardSizes, Difficulty level, long seed) {
+        return IntStream.range(0, games).parallel().mapToObj(index -> {
+            Random random = new Random(seed * 1_000_003L + index);
+            CompactGameState state = new CompactGameState(boardSizes[index % boardSizes.length], true);
+            ComputerPlayer opening = new RandomPlayer(random);
+            ComputerPlayer player = new SearchPlayer(level, random, null);
+            List<Move> moves = new ArrayList<>();
+            while (!state.isGameOver()) {
+                Move move = (moves.size() < 2 ? opening : player).chooseMove(state);
+                state.placeMove(move.row(), move.col(), move.letter());
+                moves.add(move);
+            }
+            return new GameRecord(state.getBoardSize(), true, moves);
+        }).collect(Collectors.toList());
+    }
+
+    /**
+     * Fits weights to the general games of a collection.
+     *
+     * @param games the recorded games
+     * @param ridge the regularisation strength
+     * @param horizon the number of plies whose SOS make up the target
+     * @return the fitted weights
+     */
+    public static PatternWeights train(List<GameRecord> games, double ridge, int horizon) {
+        int[] canonical = new int[FEATURES];
+        int unknowns = 0;
+        Map<Integer, Integer> column = new HashMap<>();
+        for (int index = 0; index < FEATURES; index++) {
+            int key = Math.min(index, PatternWeights.reverse(index));
+            if (!column.containsKey(key)) {
+                column.put(key, unknowns++);
+            }
+            canonical[index] = column.get(key);
+        }
+
+        double[][] normal = new double[unknowns][unknowns];
+        double[] rhs = new double[unknowns];
+        double[] counts = new double[FEATURES];
+        double[] x = new double[unknowns];
+        int[] nonZero = new int[unknowns];
+        for (GameRecord game : games) {
+            if (!game.generalMode()) {
+                continue;
+            }
+            int[] differences = differences(game);
+            CompactGameState state = new CompactGameState(game.boardSize(), true);
+            ThreatIndex threats = new ThreatIndex(game.boardSize());
+            for (int ply = 0; ply < game.moves().size(); ply++) {
+                Move move = game.moves().get(ply);
+                Arrays.fill(counts, 0);
+                Arrays.fill(x, 0);
+                PatternEvaluator.countPatterns(state, counts);
+                for (int index = 0; index < FEATURES; index++) {
+                    x[canonical[index]] += counts[index];
+                }
+                double target = target(state, threats, differences, ply, horizon);
+                // Most patterns are absent from a position, so only the present ones are paired
+                int present = 0;
+                for (int i = 0; i < unknowns; i++) {
+                    if (x[i] != 0) {
+                        nonZero[present++] = i;
+                    }
+                }
+                for (int p = 0; p < present; p++) {
+                    int i = nonZero[p];
+                    rhs[i] += x[i] * target;
+                    for (int q = 0; q < present; q++) {
+                        normal[i][nonZero[q]] += x[i] * x[nonZero[q]];
+                    }
+                }
+                state.placeMove(move.row(), move.col(), move.letter());
+                threats.place(move.row(), move.col(), move.letter());
+            }
+        }
+        for (int i = 0; i < unknowns; i++) {
+            normal[i][i] += ridge;
+        }
+
+        double[] solution = solve(normal, rhs);
+        PatternWeights weights = new PatternWeights();
+        for (int index = 0; index < FEATURES; index++) {
+            weights.set(index, (int) Math.round(solution[canonical[index]]));
+        }
+        return weights;
+    }
+
+    /**
+     * Computes player one's score lead before every ply of a game and after the last one.
+     */
+    private static int[] differences(GameRecord game) {
+        int[] differences = new int[game.moves().size() + 1];
+        CompactGameState state = new CompactGameState(game.boardSize(), true);
+        for (int ply = 0; ply < game.moves().size(); ply++) {
+            Move move = game.moves().get(ply);
+            state.placeMove(move.row(), move.col(), move.letter());
+            differences[ply + 1] = state.getPlayerOneScore() - state.getPlayerTwoScore();
+        }
+        return differences;
+    }
+
+    /**
+     * The SOS the player to move scores minus the opponent's over the next plies, in search
+     * units, less the part the search evaluation already credits for the best immediate gain.
+     */
+    private static double target(CompactGameState state, ThreatIndex threats, int[] differences, int ply, int horizon) {
+        int end = Math.min(differences.length - 1, ply + horizon);
+        int gained = differences[end] - differences[ply];
+        double future = (state.isPlayerOneTurn() ? gained : -gained) * (double) SearchPlayer.SOS_VALUE;
+        return future - threats.getBestGain() * SearchPlayer.GAIN_VALUE;
+    }
+
+    /**
+     * Computes the mean squared error of the weights' predictions over the general games.
+     *
+     * @param weights the weights to assess
+     * @param games the recorded games
+     * @param horizon the number of plies whose SOS make up the target
+     * @return the mean squared error in squared search units
+     */
+    public static double meanSquaredError(PatternWeights weights, List<GameRecord> games, int horizon) {
+        double sum = 0;
+        long samples = 0;
+        for (GameRecord game : games) {
+            if (!game.generalMode()) {
+                continue;
+            }
+            int[] differences = differences(game);
+            CompactGameState state = new CompactGameState(game.boardSize(), true);
+            ThreatIndex threats = new ThreatIndex(game.boardSize());
+            PatternEvaluator evaluator = new PatternEvaluator(game.boardSize(), weights);
+            for (int ply = 0; ply < game.moves().size(); ply++) {
+                Move move = game.moves().get(ply);
+                double error = evaluator.getValue() - target(state, threats, differences, ply, horizon);
+                sum += error * error;
+                samples++;
+                state.placeMove(move.row(), move.col(), move.letter());
+                threats.place(move.row(), move.col(), move.letter());
+                evaluator.place(move.row(), move.col(), move.letter());
+            }
+        }
+        return samples == 0 ? 0 : sum / samples;
+    }
+
+    /**
+     * Solves a linear system by Gaussian elimination with partial pivoting.
+     */
+    private static double[] solve(double[][] matrix, double[] rhs) {
+        int n = rhs.length;
+        double[][] a = new double[n][];
+        double[] b = rhs.clone();
+        for (int i = 0; i < n; i++) {
+            a[i] = matrix[i].clone();
+        }
+        for (int pivot = 0; pivot < n; pivot++) {
+            int best = pivot;
+            for (int row = pivot + 1; row < n; row++) {
+                if (Math.abs(a[row][pivot]) > Math.abs(a[best][pivot])) {
+                    best = row;
+                }
+            }
+            double[] rowSwap = a[pivot];
+            a[pivot] = a[best];
+            a[best] = rowSwap;
+            double valueSwap = b[pivot];
+            b[pivot] = b[best];
+            b[best] = valueSwap;
+            for (int row = pivot + 1; row < n; row++) {
+                double factor = a[row][pivot] / a[pivot][pivot];
+                if (factor == 0) {
+                    continue;
+                }
+                for (int col = pivot; col < n; col++) {
+                    a[row][col] -= factor * a[pivot][col];
+                }
+                b[row] -= factor * b[pivot];
+            }
+        }
+        double[] solution = new double[n];
+        for (int row = n - 1; row >= 0; row--) {
+            double sum = b[row];
+            for (int col = row + 1; col < n; col++) {
+                sum -= a[row][col] * solution[col];
+            }
+            solution[row] = sum / a[row][row];
+        }
+        return solution;
+    }
+
+    /**
+     * Generates or reads self-play records, trains weights and writes the weights file.
+     *
+     * @param args the command-line options described in the class comment
+     * @throws IOException if a file cannot be read or written
+     */
+    public static void main(String[] args) throws IOException {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            options.put(args[i].replaceFirst("^--", ""), args[i + 1]);
+        }
+        Path recordsFile = Path.of(options.getOrDefault("records", "selfplay-games.txt"));
+        List<GameRecord> games;
+        if (Files.exists(recordsFile)) {
+            games = GameRecord.readAll(recordsFile);
+            System.out.println("Read " + games.size() + " games from " + recordsFile);
+        } else {
+            String[] sizeOptions = options.getOrDefault("sizes", "5,6,7").split(",");
+            int[] sizes = new int[sizeOptions.length];
+            for (int i = 0; i < sizes.length; i++) {
+                sizes[i] = Integer.parseInt(sizeOptions[i].trim());
+            }
+            games = selfPlay(Integer.parseInt(options.getOrDefault("games", "2000")), sizes,
+                    Difficulty.valueOf(options.getOrDefault("level", "EASY").toUpperCase()),
+                    Long.parseLong(options.getOrDefault("seed", "1")));
+            GameRecord.writeAll(recordsFile, games);
+            System.out.println("Recorded " + games.size() + " self-play games to " + recordsFile);
+        }
+
+        long start = System.nanoTime();
+        double ridge = Double.parseDouble(options.getOrDefault("ridge", String.valueOf(DEFAULT_RIDGE)));
+        int horizon = Integer.parseInt(options.getOrDefault("horizon", String.valueOf(DEFAULT_HORIZON)));
+        PatternWeights weights = train(games, ridge, horizon);
+        System.out.printf("Trained in %.1f s; mean squared error %.0f (zero weights: %.0f)%n",
+                (System.nanoTime() - start) / 1e9, meanSquaredError(weights, games, horizon),
+                meanSquaredError(new PatternWeights(), games, horizon));
+        Path out = Path.of(options.getOrDefault("out", "pattern-weights.bin"));
+        weights.save(out);
+        System.out.println("Wrote " + out);
+    }
+}
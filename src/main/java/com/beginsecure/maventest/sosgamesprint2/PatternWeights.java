@@ -0,0 +1,202 @@
+package com.beginsecure.maventest.sosgamesprint2;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Weights of the {@link PatternEvaluator}: one value per 3-cell line pattern and per 5-cell line
+ * pattern, in the units of {@link SearchPlayer#SOS_VALUE}. A pattern is the letters of a line
+ * read in order, encoded in base 3 (empty 0, 'S' 1, 'O' 2, first cell least significant); a
+ * line and its reverse always get the same weight.
+ *
+ * <p>The binary file format is: the magic number {@code "SOSW"}, a short version (1), a short
+ * with the number of 3-cell weights (27), a short with the number of 5-cell weights (243),
+ * then every weight as a big-endian int. The default weights are loaded once, from the file
+ * named by the {@code sos.pattern.weights} system property or else from a
+ * {@code pattern-weights.bin} resource next to this class.
+ */
+public final class PatternWeights {
+
+    /** Number of 3-cell patterns. */
+    public static final int PATTERNS_3 = 27;
+    /** Number of 5-cell patterns. */
+    public static final int PATTERNS_5 = 243;
+
+    private static final int MAGIC = 0x534F5357; // "SOSW"
+    private static final short VERSION = 1;
+    private static final String RESOURCE = "pattern-weights.bin";
+    private static final String FILE_PROPERTY = "sos.pattern.weights";
+
+    private static volatile PatternWeights defaultWeights;
+
+    private final int[] weights; // 3-cell patterns first, then 5-cell patterns
+
+    /**
+     * Initializes all weights to zero.
+     */
+    public PatternWeights() {
+        this.weights = new int[PATTERNS_3 + PATTERNS_5];
+    }
+
+    /**
+     * Retrieves the weight of a pattern.
+     *
+     * @param index the pattern code, offset by {@link #PATTERNS_3} for 5-cell patterns
+     * @return the weight
+     */
+    public int get(int index) {
+        return weights[index];
+    }
+
+    /**
+     * Sets the weight of a pattern and of its reverse.
+     *
+     * @param index the pattern code, offset by {@link #PATTERNS_3} for 5-cell patterns
+     * @param weight the weight
+     */
+    public void set(int index, int weight) {
+        weights[index] = weight;
+        weights[reverse(index)] = weight;
+    }
+
+    /**
+     * Returns the index of the same line read backwards.
+     *
+     * @param index the pattern index
+     * @return the index of the reversed pattern
+     */
+    static int reverse(int index) {
+        boolean five = index >= PATTERNS_3;
+        int length = five ? 5 : 3;
+        int code = five ? index - PATTERNS_3 : index;
+        int reversed = 0;
+        for (int k = 0; k < length; k++) {
+            reversed = reversed * 3 + code % 3;
+            code /= 3;
+        }
+        return five ? reversed + PATTERNS_3 : reversed;
+    }
+
+    /**
+     * Retrieves the weights as an array indexed like {@link #get(int)}, for fast lookup.
+     *
+     * @return the backing array; callers must not modify it
+     */
+    int[] table() {
+        return weights;
+    }
+
+    /**
+     * Reads weights in the binary format.
+     *
+     * @param in the stream to read; it is not closed
+     * @return the weights
+     * @throws IOException if the stream cannot be read or is not a weights file
+     */
+    public static PatternWeights read(InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(new BufferedInputStream(in));
+        if (data.readInt() != MAGIC) {
+            throw new IOException("Not a pattern weights file");
+        }
+        short version = data.readShort();
+        if (version != VERSION) {
+            throw new IOException("Unsupported pattern weights version " + version);
+        }
+        if (data.readShort() != PATTERNS_3 || data.readShort() != PATTERNS_5) {
+            throw new IOException("Unexpected pattern counts");
+        }
+        PatternWeights result = new PatternWeights();
+        for (int i = 0; i < result.weights.length; i++) {
+            result.weights[i] = data.readInt();
+        }
+        return result;
+    }
+
+    /**
+     * Writes the weights in the binary format.
+     *
+     * @param out the stream to write; it is flushed but not closed
+     * @throws IOException if the stream cannot be written
+     */
+    public void write(OutputStream out) throws IOException {
+        DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out));
+        data.writeInt(MAGIC);
+        data.writeShort(VERSION);
+        data.writeShort(PATTERNS_3);
+        data.writeShort(PATTERNS_5);
+        for (int weight : weights) {
+            data.writeInt(weight);
+        }
+        data.flush();
+    }
+
+    /**
+     * Reads weights from a file.
+     *
+     * @param file the file to read
+     * @return the weights
+     * @throws IOException if the file cannot be read
+     */
+    public static PatternWeights load(Path file) throws IOException {
+        try (InputStream in = Files.newInputStream(file)) {
+            return read(in);
+        }
+    }
+
+    /**
+     * Writes the weights to a file.
+     *
+     * @param file the file to write
+     * @throws IOException if the file cannot be written
+     */
+    public void save(Path file) throws IOException {
+        try (OutputStream out = Files.newOutputStream(file)) {
+            write(out);
+        }
+    }
+
+    /**
+     * Retrieves the configured weights, loading them on first use.
+     *
+     * @return the default weights, or null if none are configured or they cannot be read
+     */
+    public static PatternWeights getDefault() {
+        PatternWeights weights = defaultWeights;
+        if (weights == null) {
+            synchronized (PatternWeights.class) {
+                if (defaultWeights == null) {
+                    String file = System.getProperty(FILE_PROPERTY);
+                    try (InputStream in = file != null ? Files.newInputStream(Path.of(file))
+                            : PatternWeights.class.getResourceAsStream(RESOURCE)) {
+                        defaultWeights = in == null ? new PatternWeights() : read(in);
+                    } catch (IOException e) {
+                        GameLog.getShared().error("weights", "Could not load pattern weights",
+                                "error", e.getMessage());
+                        defaultWeights = new PatternWeights();
+                    }
+                }
+                weights = defaultWeights;
+            }
+        }
+        return weights.isZero() ? null : weights;
+    }
+
+    /**
+     * Checks whether every weight is zero, i.e. no weights were loaded.
+     */
+    private boolean isZero() {
+        for (int weight : weights) {
+            if (weight != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,216 @@
+package com.beginsecure.maventest.sosgamesprint2;
+
+import java.util.List;
+
+/**
+ * Perft-style enumeration of the full game tree to a fixed depth. Every legal move (each empty
+ * cell with 'S' and with 'O') is played from every position reached, and per ply the number of
+ * positions, the number of finished games among them and the total SOS formed by the moves are
+ * counted. Finished games are not expanded further.
+ *
+ * <p>The same tree can be walked with {@link CompactGameState} (fast, using undo) or with the
+ * {@link SOSGame} classes (replaying each line from a fresh game), so the two rule
+ * implementations can be checked against each other and against reference numbers, and the
+ * walk doubles as a nodes-per-second benchmark of move generation and SOS detection.
+ */
+public final class Perft {
+
+    private static final char[] LETTERS = {'S', 'O'};
+
+    private Perft() {
+    }
+
+    /**
+     * Walks the game tree below a compact position.
+     *
+     * @param start the position to start from; it is left unchanged
+     * @param depth the number of plies to enumerate
+     * @return the counts per ply
+     */
+    public static Result run(CompactGameState start, int depth) {
+        Result result = new Result(depth);
+        long begin = System.nanoTime();
+        walk(start.copy(), 1, depth, result);
+        result.elapsedNanos = System.nanoTime() - begin;
+        return result;
+    }
+
+    /**
+     * Counts the children of a compact position and recurses into the unfinished ones.
+     */
+    private static void walk(CompactGameState state, int ply, int depth, Result result) {
+        int boardSize = state.getBoardSize();
+        for (int row = 0; row < boardSize; row++) {
+            for (int col = 0; col < boardSize; col++) {
+                if (state.getLetter(row, col) != '\0') {
+                    continue;
+                }
+                for (char letter : LETTERS) {
+                    int sos = state.placeMove(row, col, letter);
+                    result.count(ply, sos, state.isGameOver());
+                    if (ply < depth && !state.isGameOver()) {
+                        walk(state, ply + 1, depth, result);
+                    }
+                    state.undoMove(row, col);
+                }
+            }
+        }
+    }
+
+    /**
+     * Walks the game tree of an {@link SOSGame}, replaying every line of play on a new game since
+     * the legacy classes cannot take moves back.
+     *
+     * @param generalMode true for a {@link GeneralGame}, false for a {@link SimpleGame}
+     * @param boardSize the size of the board
+     * @param opening moves played before the enumeration starts
+     * @param depth the number of plies to enumerate
+     * @return the counts per ply
+     */
+    public static Result runSOSGame(boolean generalMode, int boardSize, List<Move> opening, int depth) {
+        Result result = new Result(depth);
+        long begin = System.nanoTime();
+        Move[] line = new Move[opening.size() + depth];
+        for (int i = 0; i < opening.size(); i++) {
+            line[i] = opening.get(i);
+        }
+        walkSOSGame(generalMode, boardSize, line, opening.size(), 1, depth, result);
+        result.elapsedNanos = System.nanoTime() - begin;
+        return result;
+    }
+
+    /**
+     * Counts the children of the position reached by the first {@code length} moves of a line and
+     * recurses into the unfinished ones.
+     */
+    private static void walkSOSGame(boolean generalMode, int boardSize, Move[] line, int length,
+                                    int ply, int depth, Result result) {
+        SOSGame parent = replay(generalMode, boardSize, line, length);
+        try {
+            char[][] board = parent.getBoard(); // Read while the parent is held
+            for (int row = 0; row < boardSize; row++) {
+                for (int col = 0; col < boardSize; col++) {
+                    if (board[row][col] != '\0') {
+                        continue;
+                    }
+                    for (char letter : LETTERS) {
+                        line[length] = new Move(row, col, letter);
+                        SOSGame game = replay(generalMode, boardSize, line, length + 1);
+                        boolean over = game.isGameOver();
+                        result.count(ply, game.getLastSOSCount(), over);
+                        GamePool.getShared().release(game);
+                        if (ply < depth && !over) {
+                            walkSOSGame(generalMode, boardSize, line, length + 1, ply + 1, depth, result);
+                        }
+                    }
+                }
+            }
+        } finally {
+            GamePool.getShared().release(parent);
+        }
+    }
+
+    /**
+     * Plays the first moves of a line on a new or recycled game.
+     */
+    private static SOSGame replay(boolean generalMode, int boardSize, Move[] line, int length) {
+        SOSGame game = GamePool.getShared().acquire(boardSize, generalMode);
+        for (int i = 0; i < length; i++) {
+            if (!game.placeMove(line[i].row(), line[i].col(), line[i].letter())) {
+                GamePool.getShared().release(game);
+                throw new IllegalArgumentException("Illegal move in line: " + line[i]);
+            }
+        }
+        return game;
+    }
+
+    /**
+     * Node, terminal and SOS counts per ply of one enumeration.
+     */
+    public static final class Result {
+        private final long[] nodes;
+        private final long[] terminals;
+        private final long[] sos;
+        private long elapsedNanos;
+
+        Result(int depth) {
+            this.nodes = new long[depth];
+            this.terminals = new long[depth];
+            this.sos = new long[depth];
+        }
+
+        /**
+         * Counts one position reached at a ply.
+         */
+        private void count(int ply, int sosFormed, boolean finished) {
+            nodes[ply - 1]++;
+            sos[ply - 1] += sosFormed;
+            if (finished) {
+                terminals[ply - 1]++;
+            }
+        }
+
+        /**
+         * Retrieves the number of positions per ply, starting with ply 1.
+         *
+         * @return a copy of the node counts
+         */
+        public long[] getNodes() {
+            return nodes.clone();
+        }
+
+        /**
+         * Retrieves the number of finished games per ply, starting with ply 1.
+         *
+         * @return a copy of the terminal counts
+         */
+        public long[] getTerminals() {
+            return terminals.clone();
+        }
+
+        /**
+         * Retrieves the total number of SOS formed by the moves of each ply, starting with ply 1.
+         *
+         * @return a copy of the SOS counts
+         */
+        public long[] getSos() {
+            return sos.clone();
+        }
+
+        /**
+         * Retrieves the number of positions over all plies.
+         *
+         * @return the total node count
+         */
+        public long getTotalNodes() {
+            long total = 0;
+            for (long count : nodes) {
+                total += count;
+            }
+            return total;
+        }
+
+        /**
+         * Retrieves the throughput of the enumeration.
+         *
+         * @return positions per second
+         */
+        public double getNodesPerSecond() {
+            return elapsedNanos == 0 ? 0 : getTotalNodes() * 1e9 / elapsedNanos;
+        }
+
+        /**
+         * Formats the counts as a table with one row per ply.
+         *
+         * @return the table
+         */
+        @Override
+        public String toString() {
+            StringBuilder table = new StringBuilder("ply |        nodes |    terminals |          sos\n");
+            for (int i = 0; i < nodes.length; i++) {
+                table.append(String.format("%3d | %12d | %12d | %12d%n", i + 1, nodes[i], terminals[i], sos[i]));
+            }
+            return table.toString();
+        }
+    }
+}
@@ -0,0 +1,295 @@
+package com.beginsecure.maventest.sosgamesprint2;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Continuously evaluates every empty cell of a position for both letters on a pool of
+ * background threads. Each call to {@link #analyze(CompactGameState)} cancels the analysis of
+ * the previous position and starts over at depth 1; every completed depth is handed to the
+ * {@link Listener} as an {@link Analysis}, so results arrive shallow first and are refined over
+ * time until the depth or time limit is reached. No method of this class blocks the caller.
+ */
+public class PositionAnalyzer {
+
+    /** The deepest iteration analysed for one position. */
+    static final int MAX_DEPTH = 64;
+
+    private final Listener listener;
+    private final long maxMillis;
+    private final int threads;
+    private final ExecutorService coordinator;
+    private final ExecutorService workers;
+    private final AtomicLong generation = new AtomicLong();
+    private volatile SearchPlayer.SearchLimits currentLimits;
+
+    /**
+     * Receives the results of an analysis.
+     */
+    public interface Listener {
+
+        /**
+         * Called on an analysis thread each time a depth has been completed for every move.
+         *
+         * @param analysis the scores of every move at the completed depth
+         */
+        void onAnalysis(Analysis analysis);
+    }
+
+    /**
+     * Initializes an analyzer.
+     *
+     * @param listener the receiver of results
+     * @param threads the number of worker threads
+     * @param maxMillis how long one position is analysed before refinement stops
+     */
+    public PositionAnalyzer(Listener listener, int threads, long maxMillis) {
+        this.listener = listener;
+        this.threads = Math.max(1, threads);
+        this.maxMillis = maxMillis;
+        this.coordinator = Executors.newSingleThreadExecutor(runnable -> newThread(runnable, "sos-analysis"));
+        this.workers = Executors.newFixedThreadPool(this.threads, runnable -> newThread(runnable, "sos-analysis-worker"));
+    }
+
+    /**
+     * Creates a low-priority daemon thread so analysis never competes with the UI or keeps the
+     * JVM alive.
+     */
+    private static Thread newThread(Runnable runnable, String name) {
+        Thread thread = new Thread(runnable, name);
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+    }
+
+    /**
+     * Cancels any running analysis and starts analysing a new position. The position is copied,
+     * so the caller may keep changing it.
+     *
+     * @param state the position to analyse
+     * @return the generation number carried by the results for this position
+     */
+    public long analyze(CompactGameState state) {
+        long id = cancel();
+        if (state.isGameOver() || state.getEmptyCells() == 0) {
+            return id;
+        }
+        CompactGameState position = state.copy();
+        SearchPlayer.SearchLimits limits = new SearchPlayer.SearchLimits(
+                System.nanoTime() + maxMillis * 1_000_000L, Long.MAX_VALUE);
+        currentLimits = limits;
+        coordinator.execute(() -> run(id, position, limits));
+        return id;
+    }
+
+    /**
+     * Stops the running analysis, if any. Results of the stopped analysis that are still being
+     * delivered carry an older generation number and should be ignored.
+     *
+     * @return the new generation number
+     */
+    public long cancel() {
+        SearchPlayer.SearchLimits limits = currentLimits;
+        if (limits != null) {
+            limits.abort();
+        }
+        return generation.incrementAndGet();
+    }
+
+    /**
+     * Retrieves the generation number of the latest position.
+     *
+     * @return the current generation
+     */
+    public long getGeneration() {
+        return generation.get();
+    }
+
+    /**
+     * Stops the analysis and the analysis threads.
+     */
+    public void shutdown() {
+        cancel();
+        coordinator.shutdownNow();
+        workers.shutdownNow();
+    }
+
+    /**
+     * Deepens the analysis of one position until it is cancelled or a limit is reached.
+     */
+    private void run(long id, CompactGameState position, SearchPlayer.SearchLimits limits) {
+        if (id != generation.get()) {
+            return; // Superseded before it started
+        }
+        int boardSize = position.getBoardSize();
+        int[] moves = new int[position.getEmptyCells() * 2];
+        int count = 0;
+        for (int cell = 0; cell < boardSize * boardSize; cell++) {
+            if (position.getLetter(cell / boardSize, cell % boardSize) == '\0') {
+                moves[count++] = cell * 2;
+                moves[count++] = cell * 2 + 1;
+            }
+        }
+
+        SearchPlayer.Searcher[] searchers = new SearchPlayer.Searcher[Math.min(threads, count)];
+        for (int t = 0; t < searchers.length; t++) {
+            searchers[t] = new SearchPlayer.Searcher(position.copy(), limits);
+        }
+        int maxDepth = Math.min(MAX_DEPTH, position.getEmptyCells());
+        for (int depth = 1; depth <= maxDepth; depth++) {
+            int[] scores = new int[count];
+            AtomicInteger nextIndex = new AtomicInteger();
+            int iterationDepth = depth;
+            List<Future<?>> futures = new ArrayList<>();
+            for (SearchPlayer.Searcher searcher : searchers) {
+                futures.add(workers.submit(() -> searcher.scoreMoves(moves, scores, iterationDepth, nextIndex)));
+            }
+            for (Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    limits.abort();
+                } catch (ExecutionException e) {
+                    GameLog.getShared().error("analysis", "Analysis failed", "error", String.valueOf(e.getCause()));
+                    limits.abort();
+                }
+            }
+            if (limits.isAborted() || id != generation.get()) {
+                return;
+            }
+            listener.onAnalysis(new Analysis(id, boardSize, depth, moves, scores, limits.nodes.get()));
+        }
+    }
+
+    /**
+     * The scores of every empty cell for both letters at one depth, from the point of view of
+     * the player to move. Scores use the units of {@link SearchPlayer}: {@link SearchPlayer#SOS_VALUE}
+     * per SOS, and values near {@link SearchPlayer#WIN} for forced simple game results.
+     */
+    public static final class Analysis {
+        private final long generation;
+        private final int boardSize;
+        private final int depth;
+        private final int[] scores; // Indexed by cell * 2 + (letter == 'O' ? 1 : 0)
+        private final boolean[] known;
+        private final long nodes;
+        private final Move bestMove;
+        private final int bestScore;
+        private final int worstScore;
+
+        Analysis(long generation, int boardSize, int depth, int[] moves, int[] moveScores, long nodes) {
+            this.generation = generation;
+            this.boardSize = boardSize;
+            this.depth = depth;
+            this.nodes = nodes;
+            this.scores = new int[boardSize * boardSize * 2];
+            this.known = new boolean[scores.length];
+            int best = Integer.MIN_VALUE;
+            int worst = Integer.MAX_VALUE;
+            int bestEncoded = moves[0];
+            for (int i = 0; i < moves.length; i++) {
+                scores[moves[i]] = moveScores[i];
+                known[moves[i]] = true;
+                if (moveScores[i] > best) {
+                    best = moveScores[i];
+                    bestEncoded = moves[i];
+                }
+                worst = Math.min(worst, moveScores[i]);
+            }
+            this.bestMove = SearchPlayer.toMove(bestEncoded, boardSize);
+            this.bestScore = best;
+            this.worstScore = worst;
+        }
+
+        /**
+         * Retrieves the generation of the position this analysis belongs to.
+         *
+         * @return the generation returned by {@link PositionAnalyzer#analyze(CompactGameState)}
+         */
+        public long getGeneration() {
+            return generation;
+        }
+
+        /**
+         * Retrieves the search depth of this analysis.
+         *
+         * @return the depth in plies
+         */
+        public int getDepth() {
+            return depth;
+        }
+
+        /**
+         * Retrieves the number of positions examined so far for this position.
+         *
+         * @return the node count
+         */
+        public long getNodes() {
+            return nodes;
+        }
+
+        /**
+         * Checks whether a cell was analysed, i.e. it was empty.
+         *
+         * @param row the row position
+         * @param col the column position
+         * @return true if the cell has scores
+         */
+        public boolean hasScore(int row, int col) {
+            return known[(row * boardSize + col) * 2];
+        }
+
+        /**
+         * Retrieves the score of placing a letter on a cell.
+         *
+         * @param row the row position
+         * @param col the column position
+         * @param letter the character ('S' or 'O')
+         * @return the score, meaningful only if {@link #hasScore(int, int)} is true
+         */
+        public int getScore(int row, int col, char letter) {
+            return scores[(row * boardSize + col) * 2 + (letter == 'O' ? 1 : 0)];
+        }
+
+        /**
+         * Retrieves the highest scoring move.
+         *
+         * @return the best move
+         */
+        public Move getBestMove() {
+            return bestMove;
+        }
+
+        /**
+         * Retrieves the score of the best move.
+         *
+         * @return the best score
+         */
+        public int getBestScore() {
+            return bestScore;
+        }
+
+        /**
+         * Rates the better letter of a cell relative to the other moves, from 0 (the worst move
+         * of the position) to 1 (the best).
+         *
+         * @param row the row position
+         * @param col the column position
+         * @return the relative rating, or 1 if all moves score the same
+         */
+        public double getRating(int row, int col) {
+            int score = Math.max(getScore(row, col, 'S'), getScore(row, col, 'O'));
+            if (bestScore == worstScore) {
+                return 1.0;
+            }
+            return ((double) score - worstScore) / ((double) bestScore - worstScore);
+        }
+    }
+}
@@ -0,0 +1,492 @@
+package com.beginsecure.maventest.sosgamesprint2;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Proves simple-game positions with proof-number search. A simple game is a race to the first
+ * SOS, and any move that leaves a line one letter short lets the opponent win at once, so the
+ * solver only considers the other, "safe" moves: a side with no safe move left loses, and a
+ * board filled without an SOS is a draw. Two searches run from the position: one tries to
+ * prove a win for the side to move, the other a win for the opponent, whose disproof shows
+ * the side to move cannot lose.
+ *
+ * <p>Search trees live in a fixed pool of nodes allocated once, so memory stays bounded
+ * whatever the budget: the children of every solved node are returned to the pool, and
+ * solved positions are remembered in a small table so transpositions are not proved twice.
+ * With PN² enabled every new frontier node is first examined by a small second-level search
+ * whose proof and disproof numbers replace the usual mobility estimate; the second-level tree
+ * is then discarded.
+ */
+public class ProofNumberSolver {
+
+    /**
+     * What a search proved about the side to move.
+     */
+    public enum Outcome {
+        /** The side to move can force a win. */
+        WIN,
+        /** Neither side can force a win. */
+        DRAW,
+        /** The side to move cannot lose; whether it can win is not proven. */
+        NON_LOSS,
+        /** The opponent can force a win. */
+        LOSS,
+        /** Nothing was proven within the budget. */
+        UNKNOWN
+    }
+
+    /**
+     * The result of solving a position.
+     *
+     * @param outcome what was proven for the side to move
+     * @param move a winning move for {@link Outcome#WIN}, a move that does not lose for
+     *             {@link Outcome#DRAW} and {@link Outcome#NON_LOSS}, otherwise null
+     * @param losingMoves moves proven to lose, including moves that leave an SOS to complete
+     *                    only if they were searched
+     * @param expansions the nodes expanded by both searches and their second levels
+     */
+    public record Result(Outcome outcome, Move move, List<Move> losingMoves, long expansions) {
+    }
+
+    private static final int INF = 1 << 30;
+    private static final int NONE = -1;
+    private static final int CACHE_SIZE = 1 << 16;
+
+    // Facts about a cached position, from the point of view of its side to move
+    private static final byte MOVER_WINS = 1;
+    private static final byte MOVER_CANNOT_WIN = 2;
+    private static final byte OPPONENT_WINS = 4;
+    private static final byte OPPONENT_CANNOT_WIN = 8;
+
+    private final NodePool tree;
+    private final NodePool secondLevel; // Null without PN²
+    private final long[] cacheKeys = new long[CACHE_SIZE];
+    private final byte[] cacheFacts = new byte[CACHE_SIZE];
+
+    private CompactGameState state;
+    private ThreatIndex threats;
+    private int boardSize;
+    private long hash;
+    private long expansions;
+    private long maxExpansions;
+    private long deadline;
+
+    /**
+     * Initializes a PN² solver.
+     *
+     * @param maxNodes the number of nodes of the main tree
+     */
+    public ProofNumberSolver(int maxNodes) {
+        this(maxNodes, true);
+    }
+
+    /**
+     * Initializes a solver.
+     *
+     * @param maxNodes the number of nodes of the main tree
+     * @param pnSquared true to initialise new nodes with a second-level search
+     */
+    public ProofNumberSolver(int maxNodes, boolean pnSquared) {
+        this.tree = new NodePool(maxNodes);
+        this.secondLevel = pnSquared ? new NodePool(Math.max(256, Math.min(maxNodes / 16, 1 << 14))) : null;
+    }
+
+    /**
+     * Proves what the side to move of a simple-game position can achieve.
+     *
+     * @param position the position, which is left unchanged
+     * @param maxExpansions the number of node expansions both searches may use together
+     * @param deadline the {@link System#nanoTime()} at which to give up, or
+     *                 {@link Long#MAX_VALUE} to rely on the expansion budget alone, which
+     *                 makes the result reproducible
+     * @return the outcome with a move to play when one is proven
+     * @throws IllegalArgumentException if the position is a general game
+     */
+    public Result solve(CompactGameState position, long maxExpansions, long deadline) {
+        if (position.isGeneralMode()) {
+            throw new IllegalArgumentException("Only simple games can be solved");
+        }
+        this.state = position.copy();
+        this.threats = ThreatIndex.of(state);
+        this.boardSize = state.getBoardSize();
+        // Keyed with the board size, as cached facts outlive a solve and boards change size
+        this.hash = TranspositionTable.boardKey(TranspositionTable.boardHash(state), boardSize);
+        this.expansions = 0;
+        this.maxExpansions = maxExpansions;
+        this.deadline = deadline;
+        if (state.isGameOver() || state.getEmptyCells() == 0) {
+            return new Result(Outcome.UNKNOWN, null, List.of(), 0);
+        }
+        for (int move = 0; move < boardSize * boardSize * 2; move++) {
+            if (threats.isEmpty(row(move), col(move)) && threats.getSosIf(row(move), col(move), letter(move)) > 0) {
+                return new Result(Outcome.WIN, toMove(move), List.of(), 0);
+            }
+        }
+        boolean anySafe = false;
+        for (int move = 0; move < boardSize * boardSize * 2 && !anySafe; move++) {
+            anySafe = isSafe(move);
+        }
+        if (!anySafe) {
+            // Every move leaves the opponent an SOS, and a root without children is never solved
+            return new Result(Outcome.LOSS, null, List.of(), 0);
+        }
+
+        // A win for the side to move: the root is an OR node
+        int root = search(tree, true, maxExpansions / 2);
+        if (tree.pn[root] == 0) {
+            return new Result(Outcome.WIN, toMove(tree.move[bestChild(tree, root, true)]), List.of(), expansions);
+        }
+        boolean cannotWin = tree.dn[root] == 0;
+
+        // A win for the opponent: the root is an AND node
+        root = search(tree, false, maxExpansions - expansions);
+        List<Move> losing = new ArrayList<>();
+        int saving = NONE;
+        for (int child = tree.firstChild[root]; child != NONE; child = tree.nextSibling[child]) {
+            if (tree.pn[child] == 0) {
+                losing.add(toMove(tree.move[child]));
+            } else if (tree.dn[child] == 0 && saving == NONE) {
+                saving = child;
+            }
+        }
+        if (tree.pn[root] == 0) {
+            return new Result(Outcome.LOSS, null, losing, expansions);
+        }
+        if (tree.dn[root] == 0) {
+            return new Result(cannotWin ? Outcome.DRAW : Outcome.NON_LOSS, toMove(tree.move[saving]), losing,
+                    expansions);
+        }
+        return new Result(Outcome.UNKNOWN, null, losing, expansions);
+    }
+
+    /**
+     * Runs a proof-number search from the current position until the root is solved, the
+     * budget runs out or the pool is full.
+     *
+     * @param pool the pool to build the tree in, which is cleared first
+     * @param attackerToMove true if the side to move is the one trying to win
+     * @param budget the expansions this search may use
+     * @return the root node
+     */
+    private int search(NodePool pool, boolean attackerToMove, long budget) {
+        pool.clear();
+        int root = pool.allocate();
+        pool.pn[root] = 1;
+        pool.dn[root] = 1;
+        long limit = expansions + budget;
+        while (pool.pn[root] != 0 && pool.dn[root] != 0 && expansions < limit && expansions < maxExpansions) {
+            if (deadline != Long.MAX_VALUE && System.nanoTime() >= deadline) {
+                break;
+            }
+            // Descend to the most-proving node
+            int node = root;
+            boolean attacker = attackerToMove;
+            while (pool.firstChild[node] != NONE) {
+                node = bestChild(pool, node, attacker);
+                play(pool.move[node]);
+                attacker = !attacker;
+            }
+            boolean expanded = expand(pool, node, attacker);
+            // Update the proof numbers on the way back up
+            while (true) {
+                update(pool, node, attacker, node == root);
+                if (node == root) {
+                    break;
+                }
+                undo(pool.move[node]);
+                node = pool.parent[node];
+                attacker = !attacker;
+            }
+            if (!expanded) {
+                break; // The pool is full even after freeing solved subtrees
+            }
+        }
+        return root;
+    }
+
+    /**
+     * Picks the child to descend into: the smallest proof number at an OR node, the smallest
+     * disproof number at an AND node.
+     */
+    private static int bestChild(NodePool pool, int node, boolean attacker) {
+        int best = NONE;
+        int bestValue = Integer.MAX_VALUE;
+        for (int child = pool.firstChild[node]; child != NONE; child = pool.nextSibling[child]) {
+            int value = attacker ? pool.pn[child] : pool.dn[child];
+            if (value < bestValue) {
+                bestValue = value;
+                best = child;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Adds a child for every safe move of a leaf and initialises its proof numbers.
+     *
+     * @return false if the pool had no room for the children
+     */
+    private boolean expand(NodePool pool, int node, boolean attacker) {
+        expansions++;
+        int last = NONE;
+        for (int move = 0; move < boardSize * boardSize * 2; move++) {
+            if (!isSafe(move)) {
+                continue;
+            }
+            int child = pool.allocate();
+            if (child == NONE) {
+                pool.freeChildren(node);
+                return false;
+            }
+            pool.parent[child] = node;
+            pool.move[child] = (short) move;
+            if (last == NONE) {
+                pool.firstChild[node] = child;
+            } else {
+                pool.nextSibling[last] = child;
+            }
+            last = child;
+            play(move);
+            initialise(pool, child, !attacker);
+            undo(move);
+        }
+        return true;
+    }
+
+    /**
+     * Sets the proof numbers of a new node from the cache, the rules, a second-level search or
+     * its number of safe moves.
+     */
+    private void initialise(NodePool pool, int node, boolean attacker) {
+        byte facts = cachedFacts();
+        if ((facts & (attacker ? MOVER_WINS : OPPONENT_WINS)) != 0) {
+            setProven(pool, node);
+            return;
+        }
+        if ((facts & (attacker ? MOVER_CANNOT_WIN : OPPONENT_CANNOT_WIN)) != 0) {
+            setDisproven(pool, node);
+            return;
+        }
+        if (state.getEmptyCells() == 0) {
+            setDisproven(pool, node); // A draw
+            return;
+        }
+        int safeMoves = 0;
+        for (int move = 0; move < boardSize * boardSize * 2; move++) {
+            if (isSafe(move)) {
+                safeMoves++;
+            }
+        }
+        if (safeMoves == 0) {
+            // The side to move must leave the opponent an SOS
+            if (attacker) {
+                setDisproven(pool, node);
+            } else {
+                setProven(pool, node);
+            }
+            remember(attacker, !attacker);
+            return;
+        }
+        if (pool == tree && secondLevel != null) {
+            long budget = Math.max(8, Math.min(tree.used / 8, secondLevel.capacity() / 32));
+            int root = search(secondLevel, attacker, budget);
+            pool.pn[node] = secondLevel.pn[root];
+            pool.dn[node] = secondLevel.dn[root];
+            return;
+        }
+        pool.pn[node] = attacker ? 1 : safeMoves;
+        pool.dn[node] = attacker ? safeMoves : 1;
+    }
+
+    /**
+     * Recomputes a node's proof numbers from its children. A solved node is remembered and,
+     * unless it is the root, its subtree is returned to the pool.
+     */
+    private void update(NodePool pool, int node, boolean attacker, boolean root) {
+        if (pool.firstChild[node] == NONE) {
+            return;
+        }
+        int min = INF;
+        int sum = 0;
+        for (int child = pool.firstChild[node]; child != NONE; child = pool.nextSibling[child]) {
+            int minValue = attacker ? pool.pn[child] : pool.dn[child];
+            int sumValue = attacker ? pool.dn[child] : pool.pn[child];
+            min = Math.min(min, minValue);
+            sum = sum >= INF || sumValue >= INF ? INF : Math.min(INF, sum + sumValue);
+        }
+        pool.pn[node] = attacker ? min : sum;
+        pool.dn[node] = attacker ? sum : min;
+        if (pool.pn[node] == 0 || pool.dn[node] == 0) {
+            remember(attacker, pool.pn[node] == 0);
+            if (!root) {
+                pool.freeChildren(node);
+            }
+        }
+    }
+
+    /**
+     * Marks a node as a win for the attacker.
+     */
+    private static void setProven(NodePool pool, int node) {
+        pool.pn[node] = 0;
+        pool.dn[node] = INF;
+    }
+
+    /**
+     * Marks a node as not a win for the attacker.
+     */
+    private static void setDisproven(NodePool pool, int node) {
+        pool.pn[node] = INF;
+        pool.dn[node] = 0;
+    }
+
+    /**
+     * Looks up what is known about the current position.
+     */
+    private byte cachedFacts() {
+        int slot = (int) (hash ^ hash >>> 32) & (CACHE_SIZE - 1);
+        return cacheKeys[slot] == hash ? cacheFacts[slot] : 0;
+    }
+
+    /**
+     * Records that the attacker wins, or cannot win, the current position.
+     *
+     * @param attackerToMove true if the attacker is the side to move
+     * @param proven true if the attacker wins, false if it cannot
+     */
+    private void remember(boolean attackerToMove, boolean proven) {
+        byte fact;
+        if (proven) {
+            // A forced win for one side also rules out a win for the other
+            fact = (byte) (attackerToMove ? MOVER_WINS | OPPONENT_CANNOT_WIN : OPPONENT_WINS | MOVER_CANNOT_WIN);
+        } else {
+            fact = attackerToMove ? MOVER_CANNOT_WIN : OPPONENT_CANNOT_WIN;
+        }
+        int slot = (int) (hash ^ hash >>> 32) & (CACHE_SIZE - 1);
+        if (cacheKeys[slot] != hash) {
+            cacheKeys[slot] = hash;
+            cacheFacts[slot] = 0;
+        }
+        cacheFacts[slot] |= fact;
+    }
+
+    /**
+     * Checks that a move is on an empty cell and leaves no line one letter short.
+     */
+    private boolean isSafe(int move) {
+        int row = row(move);
+        int col = col(move);
+        return threats.isEmpty(row, col) && threats.getDangerIf(row, col, letter(move)) == 0;
+    }
+
+    /**
+     * Places an encoded move on the working position.
+     */
+    private void play(int move) {
+        state.placeMove(row(move), col(move), letter(move));
+        threats.place(row(move), col(move), letter(move));
+        hash ^= TranspositionTable.moveKey(move);
+    }
+
+    /**
+     * Takes an encoded move back from the working position.
+     */
+    private void undo(int move) {
+        state.undoMove(row(move), col(move));
+        threats.remove(row(move), col(move));
+        hash ^= TranspositionTable.moveKey(move);
+    }
+
+    private int row(int move) {
+        return (move >> 1) / boardSize;
+    }
+
+    private int col(int move) {
+        return (move >> 1) % boardSize;
+    }
+
+    private static char letter(int move) {
+        return (move & 1) == 0 ? 'S' : 'O';
+    }
+
+    private Move toMove(int move) {
+        return new Move(row(move), col(move), letter(move));
+    }
+
+    /**
+     * A fixed number of tree nodes stored in parallel arrays, with children linked as siblings
+     * and free nodes kept in a list, so any subtree can be returned to the pool.
+     */
+    private static final class NodePool {
+        final int[] pn;
+        final int[] dn;
+        final int[] parent;
+        final int[] firstChild;
+        final int[] nextSibling; // Doubles as the free list link
+        final short[] move;
+        int used;
+        private int free = NONE;
+        private int fresh;
+
+        NodePool(int capacity) {
+            pn = new int[capacity];
+            dn = new int[capacity];
+            parent = new int[capacity];
+            firstChild = new int[capacity];
+            nextSibling = new int[capacity];
+            move = new short[capacity];
+        }
+
+        int capacity() {
+            return pn.length;
+        }
+
+        /**
+         * Returns every node to the pool.
+         */
+        void clear() {
+            free = NONE;
+            fresh = 0;
+            used = 0;
+        }
+
+        /**
+         * Takes a node from the pool.
+         *
+         * @return the node, or {@link #NONE} if the pool is empty
+         */
+        int allocate() {
+            int node;
+            if (free != NONE) {
+                node = free;
+                free = nextSibling[node];
+            } else if (fresh < pn.length) {
+                node = fresh++;
+            } else {
+                return NONE;
+            }
+            used++;
+            parent[node] = NONE;
+            firstChild[node] = NONE;
+            nextSibling[node] = NONE;
+            return node;
+        }
+
+        /**
+         * Returns the whole subtree below a node to the pool.
+         */
+        void freeChildren(int node) {
+            int child = firstChild[node];
+            firstChild[node] = NONE;
+            while (child != NONE) {
+                int next = nextSibling[child];
+                freeChildren(child);
+                nextSibling[child] = free;
+                free = child;
+                used--;
+                child = next;
+            }
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.beginsecure.maventest.sosgamesprint2;
+
+import java.util.Random;
+
+/**
+ * A computer player that places a random letter on a random empty cell. It is the weakest
+ * possible opponent and serves as the baseline of tournaments.
+ */
+public class RandomPlayer implements ComputerPlayer {
+
+    private final Random random;
+
+    /**
+     * Initializes a random player with a specific random source.
+     *
+     * @param random the source of randomisation for move choice
+     */
+    public RandomPlayer(Random random) {
+        this.random = random;
+    }
+
+    /**
+     * Chooses a uniformly random legal move.
+     *
+     * @param state the current position
+     * @return the chosen move, or null if the game is over
+     */
+    @Override
+    public Move chooseMove(CompactGameState state) {
+        if (state.isGameOver() || state.getEmptyCells() == 0) {
+            return null;
+        }
+        int size = state.getBoardSize();
+        int target = random.nextInt(state.getEmptyCells());
+        for (int cell = 0; cell < size * size; cell++) {
+            if (state.getLetter(cell / size, cell % size) == '\0' && target-- == 0) {
+                return new Move(cell / size, cell % size, random.nextBoolean() ? 'S' : 'O');
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public String getName() {
+        return "Random computer";
+    }
+}
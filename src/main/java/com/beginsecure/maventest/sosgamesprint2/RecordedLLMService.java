@@ -0,0 +1,174 @@
+package com.beginsecure.maventest.sosgamesprint2;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * An {@link LLMService} that records the answers of another service to a file, or replays a
+ * recorded file without contacting any API, so games with LLM players can be reproduced
+ * exactly. Answers are keyed by prompt and retry count, and each key is answered once: a
+ * recording returns its first answer for every repeat of the same request, so the recording
+ * run plays the same moves as every replay of it. Failures that may succeed later (see
+ * {@link LLMService.Reply#isRetryable()}) are passed on without being recorded.
+ *
+ * <p>The file holds one JSON object per line with the fields {@code prompt}, {@code retry},
+ * {@code status} and {@code content}.
+ */
+public final class RecordedLLMService extends LLMService implements AutoCloseable {
+
+    /** The status of a replayed request that is missing from the recording. */
+    public static final int NOT_RECORDED = 404;
+
+    private final LLMService delegate; // Null when replaying
+    private final BufferedWriter writer; // Null when replaying
+    private final Map<String, CompletableFuture<Reply>> answers = new ConcurrentHashMap<>();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Initializes a recording or a replay.
+     */
+    private RecordedLLMService(LLMService delegate, BufferedWriter writer) {
+        super(null, null, null); // Calls are made by the delegate, if at all
+        this.delegate = delegate;
+        this.writer = writer;
+    }
+
+    /**
+     * Starts recording the answers of a service, replacing the file.
+     *
+     * @param delegate the service that answers new requests
+     * @param file the file to record to
+     * @return the recording service
+     * @throws IOException if the file cannot be created
+     */
+    public static RecordedLLMService recording(LLMService delegate, Path file) throws IOException {
+        return new RecordedLLMService(delegate, Files.newBufferedWriter(file, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Loads a recording to replay.
+     *
+     * @param file the file written by a recording service
+     * @return the replaying service
+     * @throws IOException if the file cannot be read or a line is not a recorded answer
+     */
+    public static RecordedLLMService replaying(Path file) throws IOException {
+        RecordedLLMService service = new RecordedLLMService(null, null);
+        int lineNumber = 0;
+        for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+            lineNumber++;
+            if (line.isBlank()) {
+                continue;
+            }
+            try {
+                JSONObject entry = new JSONObject(line);
+                service.answers.put(key(entry.getString("prompt"), entry.getInt("retry")),
+                        CompletableFuture.completedFuture(new Reply(entry.getInt("status"), entry.getString("content"))));
+            } catch (JSONException e) {
+                throw new IOException("Invalid recorded answer at " + file + ":" + lineNumber, e);
+            }
+        }
+        return service;
+    }
+
+    /**
+     * Answers from the recording, asking the delegate only for requests not seen before.
+     *
+     * @param prompt the prompt message to send
+     * @param retryCount how many earlier responses for the same move were rejected
+     * @return the recorded status code and content
+     */
+    @Override
+    public Reply send(String prompt, int retryCount) {
+        String key = key(prompt, retryCount);
+        if (delegate == null) {
+            CompletableFuture<Reply> recorded = answers.get(key);
+            if (recorded == null) {
+                misses.incrementAndGet();
+                return new Reply(NOT_RECORDED, "Error: No recorded answer for this prompt");
+            }
+            return recorded.join();
+        }
+        CompletableFuture<Reply> created = new CompletableFuture<>();
+        CompletableFuture<Reply> existing = answers.putIfAbsent(key, created);
+        if (existing != null) {
+            return existing.join();
+        }
+        Reply reply;
+        try {
+            reply = delegate.send(prompt, retryCount);
+        } catch (RuntimeException e) {
+            answers.remove(key, created);
+            created.completeExceptionally(e);
+            throw e;
+        }
+        if (reply.isRetryable()) {
+            answers.remove(key, created); // The next request may succeed
+        } else {
+            write(prompt, retryCount, reply);
+        }
+        created.complete(reply);
+        return reply;
+    }
+
+    /**
+     * Appends one answer to the recording.
+     */
+    private synchronized void write(String prompt, int retryCount, Reply reply) {
+        try {
+            writer.write(new JSONObject().put("prompt", prompt).put("retry", retryCount)
+                    .put("status", reply.statusCode()).put("content", reply.content()).toString());
+            writer.newLine();
+            writer.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not record the LLM answer", e);
+        }
+    }
+
+    /**
+     * Builds the key of a request.
+     */
+    private static String key(String prompt, int retryCount) {
+        return retryCount + "\n" + prompt;
+    }
+
+    /**
+     * Checks whether this service replays a recording.
+     *
+     * @return true when replaying, false when recording
+     */
+    public boolean isReplaying() {
+        return delegate == null;
+    }
+
+    /**
+     * Retrieves how many replayed requests were missing from the recording.
+     *
+     * @return the number of misses
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Closes the recording file.
+     *
+     * @throws IOException if the file cannot be closed
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (writer != null) {
+            writer.close();
+        }
+    }
+}
@@ -1,17 +1,28 @@
 package com.beginsecure.maventest.sosgamesprint2;
 
-import java.util.HashSet;
-import java.util.Set;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Contains the core game logic for SOS. This class manages the board size, player turns, and the
- * placement of 'S' or 'O' by players.
+ * placement of 'S' or 'O' by players. Which lines score is set by a {@link LineRule}, the
+ * standard "SOS" rule unless a variant is given.
  */
 public class SOSGame {
 
-    private Set<String> detectedSOS;
+    private static final AtomicInteger NEXT_GAME_ID = new AtomicInteger();
+
+    private int gameId = NEXT_GAME_ID.incrementAndGet(); // A new id on every reset
+    private GameEventBus eventBus;  // Optional stream for move, SOS, score and end events
+    private SpectatorServer spectatorServer; // Optional broadcast of every move to spectators
+    private int moveCount;
+    private boolean gameOver;
+    private int winner; // 1 or 2 once a player has won, 0 otherwise
+    private final LineRule rule;
+    private LineMatcher lineMatcher; // Finds the lines each move completes
     private char[][] board;  // The game board
     private String[][] playerMoves; // Tracks which player placed each move
+    private ThreatIndex threatIndex; // What each empty cell would score (standard rule only)
     private int boardSize;   // Size of the board
     protected boolean isPlayerOneTurn = true;  // Track player turns
 
@@ -21,30 +32,130 @@ public class SOSGame {
      * @param boardSize the size of the board in a square dimension (e.g., 3 for a 3x3 board)
      */
     public SOSGame(int boardSize) {
+        this(boardSize, LineRule.STANDARD);
+    }
+
+    /**
+     * Initializes a game with a specified board size and scoring rule.
+     *
+     * @param boardSize the size of the board in a square dimension (e.g., 3 for a 3x3 board)
+     * @param rule the rule defining the letters and the lines that score
+     */
+    public SOSGame(int boardSize, LineRule rule) {
         this.boardSize = boardSize;
         this.board = new char[boardSize][boardSize];
         this.playerMoves = new String[boardSize][boardSize]; // Initialize playerMoves array
-        this.detectedSOS = new HashSet<>();
+        this.rule = rule;
+        this.lineMatcher = new LineMatcher(rule, boardSize);
+        this.threatIndex = rule == LineRule.STANDARD || rule.equals(LineRule.STANDARD) ? new ThreatIndex(boardSize) : null;
     }
 
     /**
-     * Places a character ('S' or 'O') on the board for the current player.
+     * Starts a new game on this instance, as a game of the same mode and rule. The board, owner
+     * and line buffers are cleared in place when the size is unchanged and replaced otherwise.
+     * The game gets a new {@linkplain #getGameId() id} and stops streaming to spectators; its
+     * event bus and listener are kept.
+     *
+     * @param boardSize the size of the new board
+     */
+    public void reset(int boardSize) {
+        if (boardSize == this.boardSize) {
+            for (int row = 0; row < boardSize; row++) {
+                Arrays.fill(board[row], '\0');
+                Arrays.fill(playerMoves[row], null);
+            }
+            lineMatcher.clear();
+            if (threatIndex != null) {
+                threatIndex.clear();
+            }
+        } else {
+            this.boardSize = boardSize;
+            this.board = new char[boardSize][boardSize];
+            this.playerMoves = new String[boardSize][boardSize];
+            this.lineMatcher = new LineMatcher(rule, boardSize);
+            this.threatIndex = threatIndex != null ? new ThreatIndex(boardSize) : null;
+        }
+        stopSpectating(); // Before the id changes, so the server drops this game's broadcast
+        gameId = NEXT_GAME_ID.incrementAndGet();
+        gameOver = false;
+        winner = 0;
+        moveCount = 0;
+        isPlayerOneTurn = true;
+    }
+
+    /**
+     * Places a character ('S' or 'O', or another letter of the rule's alphabet) on the board for
+     * the current player and lets the game mode {@linkplain #scoreMove score} it. Every attempt
+     * is recorded as a flight recorder event, and every placed move in {@link GameMetrics}.
      *
      * @param row the row position
      * @param col the column position
      * @param character the character ('S' or 'O') to place
      * @return true if the placement is valid, false otherwise
      */
-    public boolean placeMove(int row, int col, char character) {
-        if (isValidMove(row, col) && (character == 'S' || character == 'O')) {
+    public final boolean placeMove(int row, int col, char character) {
+        GameFlightEvents.PlaceMove event = GameFlightEvents.isRecording() ? new GameFlightEvents.PlaceMove() : null;
+        if (event != null) {
+            event.begin();
+        }
+        long start = GameMetrics.startTimer();
+
+        int player = isPlayerOneTurn ? 1 : 2; // Captured before the turn switches
+        boolean placed = placeLetter(row, col, character);
+        int sosCount = scoreMove(row, col, character, player, placed);
+        if (placed) {
+            GameMetrics.recordMove(start);
+        }
+
+        if (event != null && event.shouldCommit()) {
+            event.row = row;
+            event.col = col;
+            event.letter = character;
+            event.valid = placed;
+            event.sosCount = sosCount;
+            event.commit();
+        }
+        return placed;
+    }
+
+    /**
+     * Puts a letter on the board for the current player and switches the turn.
+     *
+     * @return true if the placement is valid, false otherwise
+     */
+    private boolean placeLetter(int row, int col, char character) {
+        if (isValidMove(row, col) && rule.isLetter(character)) {
             board[row][col] = character;
             playerMoves[row][col] = isPlayerOneTurn ? "P1" : "P2"; // Track the player who made the move
+            lineMatcher.place(row, col, character);
+            if (threatIndex != null) {
+                threatIndex.place(row, col, character);
+            }
+            moveCount++;
+            publishMove(row, col, character);
             switchTurn();
             return true;
         }
         return false;
     }
 
+    /**
+     * Applies the rules of the game mode after a move was attempted: scores the lines a placed
+     * letter formed, ends the game when it is decided, and notifies listeners and spectators.
+     * Called by {@link #placeMove(int, int, char)} after every attempt, valid or not; a plain
+     * game scores nothing.
+     *
+     * @param row the row position of the move
+     * @param col the column position of the move
+     * @param character the character placed
+     * @param player the player who moved (1 or 2)
+     * @param placed true if the letter was placed, false if the move was invalid
+     * @return the number of lines the move formed
+     */
+    protected int scoreMove(int row, int col, char character, int player, boolean placed) {
+        return 0;
+    }
+
     /**
      * Counts the number of new SOS patterns formed by the recent move.
      *
@@ -53,89 +164,33 @@ public class SOSGame {
      * @return the count of new SOS formations detected
      */
     protected int checkForSOSCount(int row, int col) {
-        int sosCount = 0;
-        char currentChar = board[row][col];
-        if (currentChar != 'S') {
-            return sosCount;
+        GameFlightEvents.CheckForSOS event = GameFlightEvents.isRecording() ? new GameFlightEvents.CheckForSOS() : null;
+        if (event != null) {
+            event.begin();
         }
+        long start = GameMetrics.startTimer();
 
-        // Horizontal checks for SOS
-        if (col >= 2 && board[row][col - 2] == 'S' && board[row][col - 1] == 'O') {
-            String key = sosKey(row, col - 2, row, col - 1, row, col);
-            if (detectedSOS.add(key)) sosCount++;
-        }
-        if (col >= 1 && col < boardSize - 1 && board[row][col - 1] == 'O' && board[row][col + 1] == 'S') {
-            String key = sosKey(row, col - 1, row, col, row, col + 1);
-            if (detectedSOS.add(key)) sosCount++;
-        }
-        if (col < boardSize - 2 && board[row][col + 1] == 'O' && board[row][col + 2] == 'S') {
-            String key = sosKey(row, col, row, col + 1, row, col + 2);
-            if (detectedSOS.add(key)) sosCount++;
-        }
+        int sosCount = countNewLines(row, col);
 
-        // Vertical checks for SOS
-        if (row >= 2 && board[row - 2][col] == 'S' && board[row - 1][col] == 'O') {
-            String key = sosKey(row - 2, col, row - 1, col, row, col);
-            if (detectedSOS.add(key)) sosCount++;
-        }
-        if (row >= 1 && row < boardSize - 1 && board[row - 1][col] == 'O' && board[row + 1][col] == 'S') {
-            String key = sosKey(row - 1, col, row, col, row + 1, col);
-            if (detectedSOS.add(key)) sosCount++;
+        GameMetrics.recordSOSCheck(start, sosCount);
+        if (event != null && event.shouldCommit()) {
+            event.row = row;
+            event.col = col;
+            event.sosCount = sosCount;
+            event.commit();
         }
-        if (row < boardSize - 2 && board[row + 1][col] == 'O' && board[row + 2][col] == 'S') {
-            String key = sosKey(row, col, row + 1, col, row + 2, col);
-            if (detectedSOS.add(key)) sosCount++;
-        }
-
-        // Diagonal checks (top-left to bottom-right)
-        if (row >= 2 && col >= 2 && board[row - 2][col - 2] == 'S' && board[row - 1][col - 1] == 'O') {
-            String key = sosKey(row - 2, col - 2, row - 1, col - 1, row, col);
-            if (detectedSOS.add(key)) sosCount++;
-        }
-        if (row >= 1 && row < boardSize - 1 && col >= 1 && col < boardSize - 1 &&
-                board[row - 1][col - 1] == 'O' && board[row + 1][col + 1] == 'S') {
-            String key = sosKey(row - 1, col - 1, row, col, row + 1, col + 1);
-            if (detectedSOS.add(key)) sosCount++;
-        }
-        if (row < boardSize - 2 && col < boardSize - 2 && board[row + 1][col + 1] == 'O' &&
-                board[row + 2][col + 2] == 'S') {
-            String key = sosKey(row, col, row + 1, col + 1, row + 2, col + 2);
-            if (detectedSOS.add(key)) sosCount++;
-        }
-
-        // Reverse-diagonal checks (top-right to bottom-left)
-        if (row >= 2 && col < boardSize - 2 && board[row - 2][col + 2] == 'S' &&
-                board[row - 1][col + 1] == 'O') {
-            String key = sosKey(row - 2, col + 2, row - 1, col + 1, row, col);
-            if (detectedSOS.add(key)) sosCount++;
-        }
-        if (row >= 1 && row < boardSize - 1 && col < boardSize - 1 && col >= 1 &&
-                board[row - 1][col + 1] == 'O' && board[row + 1][col - 1] == 'S') {
-            String key = sosKey(row - 1, col + 1, row, col, row + 1, col - 1);
-            if (detectedSOS.add(key)) sosCount++;
-        }
-        if (row < boardSize - 2 && col >= 2 && board[row + 1][col - 1] == 'O' &&
-                board[row + 2][col - 2] == 'S') {
-            String key = sosKey(row, col, row + 1, col - 1, row + 2, col - 2);
-            if (detectedSOS.add(key)) sosCount++;
-        }
-
         return sosCount;
     }
 
     /**
-     * Generates a unique key for the SOS pattern based on positions.
+     * Detects and records the SOS lines completed by the character at the given position.
      *
-     * @param r1 row of the first 'S' in the pattern
-     * @param c1 column of the first 'S'
-     * @param r2 row of the 'O' in the pattern
-     * @param c2 column of the 'O'
-     * @param r3 row of the second 'S' in the pattern
-     * @param c3 column of the second 'S'
-     * @return a unique string key for identifying the SOS pattern
+     * @param row the row position of the placed character
+     * @param col the column position of the placed character
+     * @return the count of new SOS formations detected
      */
-    protected String sosKey(int r1, int c1, int r2, int c2, int r3, int c3) {
-        return r1 + "," + c1 + ":" + r2 + "," + c2 + ":" + r3 + "," + c3;
+    private int countNewLines(int row, int col) {
+        return lineMatcher.complete(row, col);
     }
 
     /**
@@ -173,6 +228,239 @@ public class SOSGame {
         //System.out.println("Turn switched. Now it's " + (isPlayerOneTurn ? "Player 1's" : "Player 2's") + " turn.");
     }
 
+    /**
+     * Publishes a MOVE_PLACED event for a letter placed by the current player.
+     */
+    private void publishMove(int row, int col, char character) {
+        if (eventBus != null) {
+            GameEvent event = eventBus.claim(GameEvent.Type.MOVE_PLACED, gameId);
+            event.setMove(row, col, character, isPlayerOneTurn ? 1 : 2);
+            eventBus.publish(event);
+        }
+    }
+
+    /**
+     * Publishes one SOS_FORMED event for every line found by the last call to
+     * {@link #checkForSOSCount(int, int)}.
+     *
+     * @param player the player who formed the lines (1 or 2)
+     */
+    protected void publishFormedLines(int player) {
+        if (eventBus == null) {
+            return;
+        }
+        for (int i = 0; i < lineMatcher.getFormedCount(); i++) {
+            // Longer words are identified by their first, middle and last cells
+            int first = lineMatcher.getFormedCell(i, 0);
+            int middle = lineMatcher.getFormedCell(i, 1);
+            int last = lineMatcher.getFormedCell(i, 2);
+            GameEvent event = eventBus.claim(GameEvent.Type.SOS_FORMED, gameId);
+            event.setLine(player, first / boardSize, first % boardSize, middle / boardSize,
+                    middle % boardSize, last / boardSize, last % boardSize);
+            eventBus.publish(event);
+        }
+    }
+
+    /**
+     * Publishes a SCORE_CHANGED event.
+     *
+     * @param playerOneScore the current score of Player 1
+     * @param playerTwoScore the current score of Player 2
+     */
+    protected void publishScore(int playerOneScore, int playerTwoScore) {
+        if (eventBus != null) {
+            GameEvent event = eventBus.claim(GameEvent.Type.SCORE_CHANGED, gameId);
+            event.setScores(playerOneScore, playerTwoScore);
+            eventBus.publish(event);
+        }
+    }
+
+    /**
+     * Sends a scored move to the spectators of a hosted game. Called once the move's lines,
+     * scores and any end of the game have been settled.
+     *
+     * @param row the row of the move
+     * @param col the column of the move
+     * @param character the letter placed
+     * @param player the player who moved (1 or 2)
+     * @param playerOneScore the current score of Player 1
+     * @param playerTwoScore the current score of Player 2
+     */
+    protected void broadcastMove(int row, int col, char character, int player, int playerOneScore,
+                                 int playerTwoScore) {
+        if (spectatorServer != null) {
+            spectatorServer.publishMove(this, row, col, character, player, playerOneScore, playerTwoScore);
+        }
+    }
+
+    /**
+     * Marks the game as over and publishes a GAME_ENDED event.
+     *
+     * @param winner 1 or 2 for the winner, or 0 for a draw
+     * @param playerOneScore the final score of Player 1
+     * @param playerTwoScore the final score of Player 2
+     * @param message the end-of-game message
+     */
+    protected void endGame(int winner, int playerOneScore, int playerTwoScore, String message) {
+        gameOver = true;
+        this.winner = winner;
+        if (eventBus != null) {
+            GameEvent event = eventBus.claim(GameEvent.Type.GAME_ENDED, gameId);
+            event.setScores(playerOneScore, playerTwoScore);
+            event.setEnd(winner, message);
+            eventBus.publish(event);
+        }
+    }
+
+    /**
+     * Checks whether the game has ended.
+     *
+     * @return true once a win or draw has been declared
+     */
+    public boolean isGameOver() {
+        return gameOver;
+    }
+
+    /**
+     * Retrieves the winner of a finished game.
+     *
+     * @return 1 or 2 for the winner, or 0 for a draw or a game in progress
+     */
+    public int getWinner() {
+        return winner;
+    }
+
+    /**
+     * Puts the letters, owners and turn of a saved game on this empty game. The lines already
+     * scored are restored separately through {@link #getLineMatcher()}.
+     *
+     * @param letters the alphabet index + 1 of each cell's letter, 0 for empty cells
+     * @param owners the player (1 or 2) who placed each letter, 0 for empty cells
+     * @param playerOneTurn true if Player 1 moves next
+     * @param over true if the game has ended
+     * @param winner 1 or 2 for the winner, or 0
+     * @throws IllegalArgumentException if a letter or owner is out of range
+     */
+    void restore(byte[] letters, byte[] owners, boolean playerOneTurn, boolean over, int winner) {
+        String alphabet = rule.alphabet();
+        for (int cell = 0; cell < boardSize * boardSize; cell++) {
+            int letter = letters[cell];
+            if (letter == 0) {
+                continue;
+            }
+            if (letter < 0 || letter > alphabet.length() || owners[cell] < 1 || owners[cell] > 2) {
+                throw new IllegalArgumentException("Invalid cell " + cell + " in saved game");
+            }
+            int row = cell / boardSize;
+            int col = cell % boardSize;
+            char character = alphabet.charAt(letter - 1);
+            board[row][col] = character;
+            playerMoves[row][col] = owners[cell] == 1 ? "P1" : "P2";
+            lineMatcher.place(row, col, character);
+            moveCount++;
+        }
+        if (threatIndex != null) {
+            threatIndex.placeAll(board);
+        }
+        this.isPlayerOneTurn = playerOneTurn;
+        this.gameOver = over;
+        this.winner = winner;
+    }
+
+    /**
+     * Retrieves the matcher holding the board's letters and the lines already scored.
+     *
+     * @return the line matcher
+     */
+    LineMatcher getLineMatcher() {
+        return lineMatcher;
+    }
+
+    /**
+     * Attaches an event bus that receives this game's events from now on.
+     *
+     * @param eventBus the bus to publish to, or null to stop publishing
+     */
+    public void setEventBus(GameEventBus eventBus) {
+        this.eventBus = eventBus;
+    }
+
+    /**
+     * Streams this game's moves to a spectator server from now on. Called by
+     * {@link SpectatorServer#host(SOSGame)}.
+     *
+     * @param spectatorServer the server, or null to stop streaming
+     */
+    void setSpectatorServer(SpectatorServer spectatorServer) {
+        this.spectatorServer = spectatorServer;
+    }
+
+    /**
+     * Stops streaming this game if it is hosted, so the server drops its broadcast and
+     * disconnects its spectators.
+     */
+    void stopSpectating() {
+        if (spectatorServer != null) {
+            spectatorServer.unhost(this);
+        }
+    }
+
+    /**
+     * Retrieves the number of letters placed so far.
+     *
+     * @return the move count
+     */
+    int getMoveCount() {
+        return moveCount;
+    }
+
+    /**
+     * Checks whether the game reports to a {@link GameEndListener}, which keeps it out of
+     * {@link GamePool}s.
+     *
+     * @return true if the game has a listener
+     */
+    boolean hasGameEndListener() {
+        return false;
+    }
+
+    /**
+     * Retrieves how many new SOS the last checked move formed.
+     *
+     * @return the SOS count of the last call to {@link #checkForSOSCount(int, int)}
+     */
+    int getLastSOSCount() {
+        return lineMatcher.getFormedCount();
+    }
+
+    /**
+     * Retrieves the rule defining which lines score.
+     *
+     * @return the scoring rule
+     */
+    public LineRule getRule() {
+        return rule;
+    }
+
+    /**
+     * Retrieves the per-cell threat index of the current board. It is updated on every valid
+     * move and must not be modified by callers.
+     *
+     * @return the threat index, or null if the game does not use the standard rule
+     */
+    public ThreatIndex getThreatIndex() {
+        return threatIndex;
+    }
+
+    /**
+     * Retrieves the process-unique id carried by this game's events.
+     *
+     * @return the game id
+     */
+    public int getGameId() {
+        return gameId;
+    }
+
     /**
      * Checks if it is Player 1's turn.
      *
@@ -0,0 +1,463 @@
+package com.beginsecure.maventest.sosgamesprint2;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * A terminal front-end that plays, scripts and batch-evaluates games over stdin/stdout. It uses
+ * {@link SOSGame} directly and never touches JavaFX, so it starts quickly and runs on servers
+ * and in CI without a display.
+ *
+ * <p>Commands, one per line ({@code #} starts a comment):
+ * <ul>
+ *     <li>{@code new [size] [simple|general]} starts a new game,</li>
+ *     <li>{@code move <row> <col> <S|O>}, or just {@code <row> <col> <S|O>}, places a letter
+ *     (rows and columns count from 0),</li>
+ *     <li>{@code computer} lets the computer move for the player to move,</li>
+ *     <li>{@code players <p1> <p2>} sets who plays each side: human, random, greedy, easy,
+ *     medium or hard,</li>
+ *     <li>{@code hint [level]} suggests a move, {@code board} and {@code status} print the game,
+ *     {@code record} prints its moves as a {@link GameRecord} line, {@code help} lists the
+ *     commands and {@code quit} exits.</li>
+ * </ul>
+ * Computer players move automatically whenever it is their turn.
+ *
+ * <p>Usage: {@code SOSGameCli [--size 3] [--mode simple|general] [--player1 human]
+ * [--player2 medium] [--seed 1] [--deterministic true] [--script commands.txt]
+ * [--evaluate games.txt --level medium]}.
+ * With {@code --script}, or when stdin is not a terminal, commands run without prompts and the
+ * exit status is 1 if any command failed, or 2 if the options are invalid. {@code --evaluate}
+ * replays every record of a file and prints one result line per game. With
+ * {@code --deterministic true} the seed defaults to 1 and computer players search with node
+ * budgets instead of time budgets, so a script or evaluation prints the same moves on every
+ * machine. See the README for starting it with an AppCDS archive.
+ */
+public class SOSGameCli {
+
+    private final BufferedReader in;
+    private final PrintStream out;
+    private final boolean interactive;
+    private final Random random;
+    private final ComputerPlayer[] computers = new ComputerPlayer[2]; // Null for a human side
+    private final List<Move> moves = new ArrayList<>();
+    private SOSGame game;
+    private int boardSize;
+    private boolean generalMode;
+    private String endMessage;
+    private int winner; // 1 or 2 once a player has won, 0 otherwise
+    private int errors;
+    private boolean deterministic;
+
+    /**
+     * Initializes a front-end reading commands from one stream and writing to another.
+     *
+     * @param in the command source
+     * @param out where boards, results and errors are printed
+     * @param interactive true to print prompts and the board after every move
+     * @param seed the seed of the computer players' randomisation
+     */
+    public SOSGameCli(BufferedReader in, PrintStream out, boolean interactive, long seed) {
+        this.in = in;
+        this.out = out;
+        this.interactive = interactive;
+        this.random = new Random(seed);
+        newGame(3, false);
+    }
+
+    /**
+     * Sets whether computer players and hints search with node budgets instead of time budgets.
+     * Players that are already playing keep their budgets.
+     *
+     * @param deterministic true for reproducible searches
+     */
+    public void setDeterministic(boolean deterministic) {
+        this.deterministic = deterministic;
+    }
+
+    /**
+     * Reads and executes commands until the input ends or {@code quit} is given.
+     *
+     * @return 0 if every command succeeded, 1 otherwise
+     * @throws IOException if the input cannot be read
+     */
+    public int run() throws IOException {
+        if (interactive) {
+            out.println("SOS - type 'help' for commands");
+            printBoard();
+        }
+        playComputers();
+        String line;
+        while (prompt() && (line = in.readLine()) != null) {
+            if (!execute(line)) {
+                break;
+            }
+        }
+        return errors == 0 ? 0 : 1;
+    }
+
+    /**
+     * Executes one command line.
+     *
+     * @param line the command
+     * @return false if the command was {@code quit}
+     */
+    public boolean execute(String line) {
+        int comment = line.indexOf('#');
+        String[] words = (comment >= 0 ? line.substring(0, comment) : line).trim().split("\\s+");
+        if (words[0].isEmpty()) {
+            return true;
+        }
+        try {
+            String command = words[0].toLowerCase(Locale.ROOT);
+            switch (command) {
+                case "quit":
+                case "exit":
+                    return false;
+                case "new":
+                    newGame(words.length > 1 ? Integer.parseInt(words[1]) : boardSize,
+                            words.length > 2 ? parseMode(words[2]) : generalMode);
+                    if (interactive) {
+                        printBoard();
+                    }
+                    break;
+                case "move":
+                    place(words, 1);
+                    break;
+                case "computer":
+                    requireUnfinished();
+                    ComputerPlayer player = computers[game.isPlayerOneTurn() ? 0 : 1];
+                    play(player != null ? player : searchPlayer(Difficulty.MEDIUM));
+                    break;
+                case "players":
+                    requireArguments(words, 3);
+                    computers[0] = createPlayer(words[1]);
+                    computers[1] = createPlayer(words[2]);
+                    break;
+                case "hint":
+                    requireUnfinished();
+                    Difficulty level = words.length > 1 ? Difficulty.fromLabel(words[1]) : Difficulty.MEDIUM;
+                    Move hint = searchPlayer(level).chooseMove(CompactGameState.from(game));
+                    out.println("hint: " + hint.row() + " " + hint.col() + " " + hint.letter());
+                    break;
+                case "board":
+                    printBoard();
+                    break;
+                case "status":
+                    out.println(status());
+                    break;
+                case "record":
+                    out.println(new GameRecord(boardSize, generalMode, moves).toLine());
+                    break;
+                case "help":
+                    out.println("commands: new [size] [simple|general], move <row> <col> <S|O>, computer,"
+                            + " players <p1> <p2>, hint [level], board, status, record, quit");
+                    break;
+                default:
+                    if (Character.isDigit(command.charAt(0))) {
+                        place(words, 0);
+                    } else {
+                        throw new IllegalArgumentException("unknown command '" + words[0] + "'");
+                    }
+            }
+            playComputers();
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            errors++;
+            out.println("error: " + e.getMessage());
+        }
+        return true;
+    }
+
+    /**
+     * Replays every game record of a file and prints its result, suggesting a move for
+     * unfinished games.
+     *
+     * @param file the records to evaluate
+     * @param level the difficulty used to suggest moves
+     * @return 0 if every record replayed, 1 otherwise
+     * @throws IOException if the file cannot be read
+     */
+    public int evaluate(Path file, Difficulty level) throws IOException {
+        int index = 0;
+        try (BufferedReader reader = Files.newBufferedReader(file)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank() || line.startsWith("#")) {
+                    continue;
+                }
+                index++;
+                try {
+                    GameRecord record = GameRecord.parse(line);
+                    newGame(record.boardSize(), record.generalMode());
+                    for (Move move : record.moves()) {
+                        requireUnfinished();
+                        if (!placeMove(move)) {
+                            throw new IllegalArgumentException("illegal move " + move.row() + " " + move.col()
+                                    + " " + move.letter() + " at ply " + (moves.size() + 1));
+                        }
+                    }
+                    StringBuilder result = new StringBuilder();
+                    result.append(index).append(": ").append(boardSize).append(generalMode ? " general" : " simple")
+                            .append(", ").append(moves.size()).append(" moves, ").append(status());
+                    if (!game.isGameOver()) {
+                        Move hint = searchPlayer(level).chooseMove(CompactGameState.from(game));
+                        result.append(", best ").append(hint.row()).append(' ').append(hint.col())
+                                .append(' ').append(hint.letter());
+                    }
+                    out.println(result);
+                } catch (IllegalArgumentException | IllegalStateException e) {
+                    errors++;
+                    out.println(index + ": error: " + e.getMessage());
+                }
+            }
+        }
+        return errors == 0 ? 0 : 1;
+    }
+
+    /**
+     * Starts a new game, keeping the configured players.
+     */
+    private void newGame(int size, boolean general) {
+        GameEndListener listener = new GameEndListener() {
+            @Override
+            public void onGameEnd(String message) {
+                endMessage = message;
+            }
+
+            @Override
+            public void onScoreUpdate(int playerOneScore, int playerTwoScore) {
+            }
+        };
+        // Validates the size the same way the computer players' state does
+        new CompactGameState(size, general);
+        game = general ? new GeneralGame(size, listener) : new SimpleGame(size, listener);
+        boardSize = size;
+        generalMode = general;
+        endMessage = null;
+        winner = 0;
+        moves.clear();
+    }
+
+    /**
+     * Places the move given by the words from an index on.
+     */
+    private void place(String[] words, int first) {
+        requireArguments(words, first + 3);
+        requireUnfinished();
+        String letter = words[first + 2].toUpperCase(Locale.ROOT);
+        if (letter.length() != 1) {
+            throw new IllegalArgumentException("letter must be S or O");
+        }
+        Move move = new Move(Integer.parseInt(words[first]), Integer.parseInt(words[first + 1]), letter.charAt(0));
+        if (!placeMove(move)) {
+            throw new IllegalArgumentException("illegal move " + move.row() + " " + move.col() + " " + move.letter());
+        }
+        afterMove();
+    }
+
+    /**
+     * Plays a computer player's move.
+     */
+    private void play(ComputerPlayer player) {
+        Move move = player.chooseMove(CompactGameState.from(game));
+        placeMove(move);
+        out.println(player.getName() + " plays " + move.row() + " " + move.col() + " " + move.letter());
+        afterMove();
+    }
+
+    /**
+     * Places a move on the game, recording it and the winner of a simple game.
+     *
+     * @return false if the move is illegal
+     */
+    private boolean placeMove(Move move) {
+        int player = game.isPlayerOneTurn() ? 1 : 2;
+        if (!game.placeMove(move.row(), move.col(), move.letter())) {
+            return false;
+        }
+        moves.add(move);
+        if (!generalMode && game.getLastSOSCount() > 0) {
+            winner = player;
+        }
+        return true;
+    }
+
+    /**
+     * Lets computer players move while it is their turn.
+     */
+    private void playComputers() {
+        while (!game.isGameOver() && computers[game.isPlayerOneTurn() ? 0 : 1] != null) {
+            play(computers[game.isPlayerOneTurn() ? 0 : 1]);
+        }
+    }
+
+    /**
+     * Prints the board in interactive mode and announces the end of the game.
+     */
+    private void afterMove() {
+        if (interactive) {
+            printBoard();
+        }
+        if (game.isGameOver() && endMessage != null) {
+            out.println(endMessage);
+            endMessage = null;
+        }
+    }
+
+    /**
+     * Prints the board with row and column numbers, '.' marking empty cells.
+     */
+    private void printBoard() {
+        char[][] board = game.getBoard();
+        StringBuilder text = new StringBuilder("   ");
+        for (int col = 0; col < boardSize; col++) {
+            text.append(String.format("%3d", col));
+        }
+        text.append('\n');
+        for (int row = 0; row < boardSize; row++) {
+            text.append(String.format("%3d", row));
+            for (int col = 0; col < boardSize; col++) {
+                text.append("  ").append(board[row][col] == '\0' ? '.' : board[row][col]);
+            }
+            text.append('\n');
+        }
+        out.print(text);
+        out.println(status());
+    }
+
+    /**
+     * Describes the turn, scores and result of the game.
+     */
+    private String status() {
+        String scores = "";
+        if (game instanceof GeneralGame) {
+            GeneralGame general = (GeneralGame) game;
+            scores = "Player 1: " + general.getPlayerOneScore() + ", Player 2: " + general.getPlayerTwoScore() + ", ";
+        }
+        if (!game.isGameOver()) {
+            return scores + "Player " + (game.isPlayerOneTurn() ? 1 : 2) + " to move";
+        }
+        if (game instanceof GeneralGame) {
+            GeneralGame general = (GeneralGame) game;
+            int difference = general.getPlayerOneScore() - general.getPlayerTwoScore();
+            return scores + (difference == 0 ? "draw" : "Player " + (difference > 0 ? 1 : 2) + " wins");
+        }
+        return winner == 0 ? "draw" : "Player " + winner + " wins";
+    }
+
+    /**
+     * Fails if the game has already ended.
+     */
+    private void requireUnfinished() {
+        if (game.isGameOver()) {
+            throw new IllegalStateException("the game is over; start a new one with 'new'");
+        }
+    }
+
+    /**
+     * Fails if a command has fewer words than needed.
+     */
+    private static void requireArguments(String[] words, int count) {
+        if (words.length < count) {
+            throw new IllegalArgumentException("'" + words[0] + "' needs " + (count - 1) + " arguments");
+        }
+    }
+
+    /**
+     * Parses a game mode name.
+     */
+    private static boolean parseMode(String mode) {
+        switch (mode.toLowerCase(Locale.ROOT)) {
+            case "general":
+                return true;
+            case "simple":
+                return false;
+            default:
+                throw new IllegalArgumentException("mode must be simple or general");
+        }
+    }
+
+    /**
+     * Creates the computer player of a side, or null for a human.
+     */
+    private ComputerPlayer createPlayer(String name) {
+        if (name.equalsIgnoreCase("human")) {
+            return null;
+        }
+        if (name.equalsIgnoreCase("llm")) {
+            throw new IllegalArgumentException("LLM players are not available in the terminal");
+        }
+        return Tournament.entrant(name, null, deterministic).factory().create(random);
+    }
+
+    /**
+     * Creates a search player for moves and hints.
+     */
+    private SearchPlayer searchPlayer(Difficulty level) {
+        return new SearchPlayer(level, random, PatternWeights.getDefault(), deterministic);
+    }
+
+    /**
+     * Prints the prompt in interactive mode.
+     *
+     * @return always true, so it can guard the read loop
+     */
+    private boolean prompt() {
+        if (interactive) {
+            out.print("> ");
+            out.flush();
+        }
+        return true;
+    }
+
+    /**
+     * Runs the terminal front-end with the options described in the class comment.
+     *
+     * @param args the command-line arguments
+     * @throws IOException if a script or record file cannot be read
+     */
+    public static void main(String[] args) throws IOException {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            options.put(args[i].replaceFirst("^--", ""), args[i + 1]);
+        }
+        boolean deterministic = Boolean.parseBoolean(options.getOrDefault("deterministic", "false"));
+        long seed = Long.parseLong(options.getOrDefault("seed",
+                deterministic ? "1" : String.valueOf(System.nanoTime())));
+        PrintStream out = System.out;
+        if (options.containsKey("evaluate")) {
+            SOSGameCli cli = new SOSGameCli(null, out, false, seed);
+            cli.setDeterministic(deterministic);
+            Difficulty level = Difficulty.fromLabel(options.getOrDefault("level", "medium"));
+            System.exit(cli.evaluate(Path.of(options.get("evaluate")), level));
+        }
+
+        BufferedReader in = options.containsKey("script")
+                ? Files.newBufferedReader(Path.of(options.get("script")))
+                : new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+        boolean interactive = !options.containsKey("script") && System.console() != null;
+        SOSGameCli cli = new SOSGameCli(in, out, interactive, seed);
+        cli.setDeterministic(deterministic);
+        try {
+            cli.newGame(Integer.parseInt(options.getOrDefault("size", "3")), parseMode(options.getOrDefault("mode", "simple")));
+            cli.computers[0] = cli.createPlayer(options.getOrDefault("player1", "human"));
+            cli.computers[1] = cli.createPlayer(options.getOrDefault("player2", "human"));
+        } catch (IllegalArgumentException e) {
+            System.err.println("error: " + e.getMessage());
+            System.exit(2);
+        }
+        int status = cli.run();
+        out.flush();
+        System.exit(status);
+    }
+}
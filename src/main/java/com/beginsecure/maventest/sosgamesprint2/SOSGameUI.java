@@ -1,20 +1,29 @@
 package com.beginsecure.maventest.sosgamesprint2;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import javafx.application.Application;
+import javafx.application.Platform;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
+import javafx.scene.Node;
 import javafx.scene.Scene;
 import javafx.scene.control.*;
 import javafx.scene.layout.GridPane;
 import javafx.scene.layout.HBox;
 import javafx.scene.layout.VBox;
+import javafx.stage.FileChooser;
 import javafx.stage.Stage;
 
 /**
  * The JavaFX GUI for the SOS game, allowing for board size selection,
  * game mode selection, player type selection, move placement, and turn tracking.
  */
-public class SOSGameUI extends Application implements GameEndListener {
+public class SOSGameUI extends Application implements GameEventListener {
 
     private SOSGame game;
     private GridPane grid;
@@ -27,7 +36,6 @@ public class SOSGameUI extends Application implements GameEndListener {
     private RadioButton sButton;
     private RadioButton oButton;
     private ToggleGroup moveGroup;
-    private boolean gameEnded = false;
     private Label playerOneScoreLabel;
     private Label playerTwoScoreLabel;
 
@@ -35,11 +43,36 @@ public class SOSGameUI extends Application implements GameEndListener {
     private CheckBox playerOneComputerCheckBox;
     private CheckBox playerTwoComputerCheckBox;
 
-    // Commented out computer difficulty selection
-    // private ComboBox<String> computerDifficultyComboBox;
-
-    // Integration of LLMService
-    private LLMService llmService = new LLMService();
+    // Computer difficulty selection: a local search budget, or the LLM
+    private ComboBox<String> computerDifficultyComboBox;
+    private static final String LLM_OPTION = "LLM";
+
+    // Problems with computer moves go to the log instead of blocking the FX thread on the console
+    private static final GameLog LOG = GameLog.getShared();
+
+    // Local computer players search off the FX thread
+    private final ExecutorService computerExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "sos-computer-player");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private boolean computerThinking = false;
+    private SearchPlayer searchPlayer; // Reused while the difficulty stays the same
+    private int timedGameId = -1; // The game the search player's clock belongs to
+    private final EndgameSolver endgameSolver = new EndgameSolver(); // Finishes games for the LLM
+
+    // Integration of LLMService, through the shared scheduler ahead of batch work
+    private LLMService llmService = LLMScheduler.getShared().client(LLMScheduler.Priority.INTERACTIVE);
+
+    // Game events are delivered in batches off the move path and applied on the FX thread
+    private final GameEventBus eventBus = new GameEventBus();
+
+    // Analysis for human players runs in the background and is shown as a heatmap and a hint
+    private CheckBox analysisCheckBox;
+    private Label hintLabel;
+    private final PositionAnalyzer analyzer = new PositionAnalyzer(
+            analysis -> Platform.runLater(() -> showAnalysis(analysis)),
+            Math.max(1, Runtime.getRuntime().availableProcessors() - 1), 30_000);
 
     /**
      * Sets up and displays the main GUI window.
@@ -77,17 +110,24 @@ public class SOSGameUI extends Application implements GameEndListener {
         playerOneComputerCheckBox = new CheckBox("Player 1: Computer");
         playerTwoComputerCheckBox = new CheckBox("Player 2: Computer");
 
-        // Commented out computer difficulty selection
-        // Label difficultyLabel = new Label("Computer Difficulty:");
-        // computerDifficultyComboBox = new ComboBox<>();
-        // computerDifficultyComboBox.getItems().addAll("Easy", "Medium", "Hard");
-        // computerDifficultyComboBox.setValue("Medium");
+        // Computer difficulty selection
+        Label difficultyLabel = new Label("Computer Difficulty:");
+        computerDifficultyComboBox = new ComboBox<>();
+        for (Difficulty difficulty : Difficulty.values()) {
+            computerDifficultyComboBox.getItems().add(difficulty.getLabel());
+        }
+        computerDifficultyComboBox.getItems().add(LLM_OPTION);
+        computerDifficultyComboBox.setValue(Difficulty.MEDIUM.getLabel());
 
-        HBox playerTypeSelection = new HBox(20, playerOneComputerCheckBox, playerTwoComputerCheckBox /*, difficultyLabel, computerDifficultyComboBox */);
+        HBox playerTypeSelection = new HBox(20, playerOneComputerCheckBox, playerTwoComputerCheckBox, difficultyLabel, computerDifficultyComboBox);
         playerTypeSelection.setAlignment(Pos.CENTER);
 
         Button startGameButton = new Button("Start Game");
         startGameButton.setOnAction(e -> startNewGame(primaryStage));
+        Button saveGameButton = new Button("Save Game");
+        saveGameButton.setOnAction(e -> saveGame(primaryStage));
+        Button loadGameButton = new Button("Load Game");
+        loadGameButton.setOnAction(e -> loadGame(primaryStage));
 
         turnLabel = new Label("Player 1's Turn");
         turnLabel.setStyle("-fx-text-fill: red;");
@@ -103,6 +143,13 @@ public class SOSGameUI extends Application implements GameEndListener {
         HBox moveSelectionLayout = new HBox(10, moveSelectionLabel, sButton, oButton);
         moveSelectionLayout.setAlignment(Pos.CENTER);
 
+        // Analysis overlay toggle and best move hint
+        analysisCheckBox = new CheckBox("Show Hints");
+        analysisCheckBox.setOnAction(e -> refreshAnalysis());
+        hintLabel = new Label("");
+        HBox analysisLayout = new HBox(10, analysisCheckBox, hintLabel);
+        analysisLayout.setAlignment(Pos.CENTER);
+
         gameModeLabel = new Label("Game Mode: Simple");
 
         playerOneScoreLabel = new Label("Player 1: 0");
@@ -113,10 +160,12 @@ public class SOSGameUI extends Application implements GameEndListener {
         HBox scoreDisplayLayout = new HBox(20, playerOneScoreLabel, playerTwoScoreLabel);
         scoreDisplayLayout.setAlignment(Pos.CENTER);
 
-        HBox sizeSelectionLayout = new HBox(10, boardSizeLabel, boardSizeComboBox, startGameButton);
+        HBox sizeSelectionLayout = new HBox(10, boardSizeLabel, boardSizeComboBox, startGameButton, saveGameButton, loadGameButton);
         sizeSelectionLayout.setAlignment(Pos.CENTER);
 
-        root.getChildren().addAll(titleLabel, sizeSelectionLayout, gameModeSelection, playerTypeSelection, moveSelectionLayout, turnLabel, gameModeLabel, scoreDisplayLayout);
+        root.getChildren().addAll(titleLabel, sizeSelectionLayout, gameModeSelection, playerTypeSelection, moveSelectionLayout, analysisLayout, turnLabel, gameModeLabel, scoreDisplayLayout);
+
+        eventBus.subscribe("ui", this);
 
         Scene scene = new Scene(root, 500, 500);
         primaryStage.setScene(scene);
@@ -125,13 +174,40 @@ public class SOSGameUI extends Application implements GameEndListener {
     }
 
     /**
-     * Displays the winner message when the game ends.
+     * Receives a batch of game events on the bus thread and hands copies of the ones the UI
+     * displays to the FX thread.
      *
-     * @param message the game-ending message to be displayed
+     * @param events the batch of events
      */
     @Override
-    public void onGameEnd(String message) {
-        displayWinner(message);
+    public void onEvents(List<GameEvent> events) {
+        List<GameEvent> displayed = new ArrayList<>();
+        for (GameEvent event : events) {
+            if (event.getType() == GameEvent.Type.SCORE_CHANGED || event.getType() == GameEvent.Type.GAME_ENDED) {
+                displayed.add(event.copy());
+            }
+        }
+        if (!displayed.isEmpty()) {
+            Platform.runLater(() -> applyEvents(displayed));
+        }
+    }
+
+    /**
+     * Applies score and end-of-game events of the current game to the display.
+     *
+     * @param events the events to apply, in publication order
+     */
+    private void applyEvents(List<GameEvent> events) {
+        for (GameEvent event : events) {
+            if (game == null || event.getGameId() != game.getGameId()) {
+                continue; // Stale event from a previous game
+            }
+            if (event.getType() == GameEvent.Type.SCORE_CHANGED) {
+                updateScores(event.getPlayerOneScore(), event.getPlayerTwoScore());
+            } else {
+                displayWinner(event.getMessage());
+            }
+        }
     }
 
     /**
@@ -140,8 +216,7 @@ public class SOSGameUI extends Application implements GameEndListener {
      * @param playerOneScore the current score of Player 1
      * @param playerTwoScore the current score of Player 2
      */
-    @Override
-    public void onScoreUpdate(int playerOneScore, int playerTwoScore) {
+    private void updateScores(int playerOneScore, int playerTwoScore) {
         playerOneScoreLabel.setText("Player 1: " + playerOneScore);
         playerTwoScoreLabel.setText("Player 2: " + playerTwoScore);
     }
@@ -154,6 +229,7 @@ public class SOSGameUI extends Application implements GameEndListener {
     private void displayWinner(String message) {
         turnLabel.setText(message);
         turnLabel.setStyle("-fx-font-size: 16px; -fx-font-weight: bold;");
+        refreshAnalysis(); // Clears the overlay of the finished game
 
         for (int row = 0; row < game.getBoard().length; row++) {
             for (int col = 0; col < game.getBoard()[row].length; col++) {
@@ -161,7 +237,6 @@ public class SOSGameUI extends Application implements GameEndListener {
                 cellButton.setDisable(true);
             }
         }
-        gameEnded = true;
     }
 
     /**
@@ -172,21 +247,41 @@ public class SOSGameUI extends Application implements GameEndListener {
     private void startNewGame(Stage stage) {
         int boardSize = boardSizeComboBox.getValue();
 
-        if (simpleGameButton.isSelected()) {
-            game = new SimpleGame(boardSize, this);
-            gameModeLabel.setText("Game Mode: Simple");
-            playerOneScoreLabel.setVisible(false);
-            playerTwoScoreLabel.setVisible(false);
-        } else {
-            game = new GeneralGame(boardSize, this);
-            gameModeLabel.setText("Game Mode: General");
-            playerOneScoreLabel.setVisible(true);
-            playerTwoScoreLabel.setVisible(true);
-            onScoreUpdate(0, 0); // Initialize score display at 0
+        stopPondering();
+        GamePool.getShared().release(game); // Searches run on copies, so the old game is free
+        game = GamePool.getShared().acquire(boardSize, !simpleGameButton.isSelected());
+        if (game instanceof GeneralGame) {
+            updateScores(0, 0); // Initialize score display at 0
         }
+        showGameMode();
+        game.setEventBus(eventBus);
+        createBoard(stage, boardSize);
+
+        turnLabel.setText("Player 1's Turn");
+        turnLabel.setStyle("-fx-text-fill: red;");
+        computerThinking = false;
+
+        refreshAnalysis();
+        playComputerTurnIfNeeded(); // Player 1 may be a computer
+    }
 
-        gameEnded = false;
+    /**
+     * Shows the mode of the current game and the scores if it is a general game.
+     */
+    private void showGameMode() {
+        boolean general = game instanceof GeneralGame;
+        gameModeLabel.setText(general ? "Game Mode: General" : "Game Mode: Simple");
+        playerOneScoreLabel.setVisible(general);
+        playerTwoScoreLabel.setVisible(general);
+    }
 
+    /**
+     * Replaces the board with a grid of empty cell buttons and sizes the window to fit it.
+     *
+     * @param stage the stage for displaying the board
+     * @param boardSize the size of the board
+     */
+    private void createBoard(Stage stage, int boardSize) {
         if (grid != null) {
             grid.getChildren().clear();
         } else {
@@ -215,9 +310,92 @@ public class SOSGameUI extends Application implements GameEndListener {
 
         stage.setWidth(requiredWidth);
         stage.setHeight(requiredHeight);
+    }
 
-        turnLabel.setText("Player 1's Turn");
-        turnLabel.setStyle("-fx-text-fill: red;");
+    /**
+     * Saves the current game to a snapshot file chosen by the user.
+     *
+     * @param stage the owner of the file dialog
+     */
+    private void saveGame(Stage stage) {
+        if (game == null || computerThinking) {
+            return;
+        }
+        File file = snapshotChooser().showSaveDialog(stage);
+        if (file == null) {
+            return;
+        }
+        try {
+            GameSnapshot.save(game, file.toPath());
+        } catch (IOException e) {
+            new Alert(Alert.AlertType.ERROR, "Could not save the game: " + e.getMessage()).showAndWait();
+        }
+    }
+
+    /**
+     * Replaces the current game with one loaded from a snapshot file chosen by the user.
+     *
+     * @param stage the stage for displaying the board
+     */
+    private void loadGame(Stage stage) {
+        File file = snapshotChooser().showOpenDialog(stage);
+        if (file == null) {
+            return;
+        }
+        SOSGame loaded;
+        try {
+            loaded = GameSnapshot.load(file.toPath(), null);
+        } catch (IOException e) {
+            new Alert(Alert.AlertType.ERROR, "Could not load the game: " + e.getMessage()).showAndWait();
+            return;
+        }
+        stopPondering();
+        GamePool.getShared().release(game);
+        game = loaded;
+        game.setEventBus(eventBus);
+        int boardSize = game.getBoard().length;
+        if (boardSizeComboBox.getItems().contains(boardSize)) {
+            boardSizeComboBox.setValue(boardSize);
+        }
+        generalGameButton.setSelected(game instanceof GeneralGame);
+        simpleGameButton.setSelected(!(game instanceof GeneralGame));
+        showGameMode();
+        createBoard(stage, boardSize);
+
+        char[][] board = game.getBoard();
+        String[][] owners = game.getPlayerMoves();
+        for (int row = 0; row < boardSize; row++) {
+            for (int col = 0; col < boardSize; col++) {
+                if (board[row][col] != '\0') {
+                    Button cellButton = (Button) grid.getChildren().get(row * boardSize + col);
+                    cellButton.setText(String.valueOf(board[row][col]));
+                    cellButton.setStyle("P1".equals(owners[row][col]) ? "-fx-text-fill: red; -fx-font-weight: bold;" : "-fx-text-fill: blue; -fx-font-weight: bold;");
+                }
+            }
+        }
+        if (game instanceof GeneralGame) {
+            updateScores(((GeneralGame) game).getPlayerOneScore(), ((GeneralGame) game).getPlayerTwoScore());
+        }
+        computerThinking = false;
+
+        if (game.isGameOver()) {
+            displayWinner(game.getWinner() == 0 ? "The game is a draw." : "Player " + game.getWinner() + " wins!");
+            return;
+        }
+        updateTurnLabel();
+        refreshAnalysis();
+        playComputerTurnIfNeeded();
+    }
+
+    /**
+     * Creates a file dialog for game snapshots.
+     *
+     * @return the dialog
+     */
+    private static FileChooser snapshotChooser() {
+        FileChooser chooser = new FileChooser();
+        chooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("SOS games", "*.sos"));
+        return chooser;
     }
 
     /**
@@ -229,7 +407,7 @@ public class SOSGameUI extends Application implements GameEndListener {
      * @param button the button representing the board cell
      */
     private void handleMove(int row, int col, Button button) {
-        if (gameEnded || !button.getText().isEmpty()) {
+        if (game.isGameOver() || computerThinking || !button.getText().isEmpty()) {
             return;
         }
 
@@ -246,28 +424,228 @@ public class SOSGameUI extends Application implements GameEndListener {
 
         if (moveSuccess) {
             button.setText(String.valueOf(move));
-            if (!gameEnded && game.isBoardFull()) {
-                onGameEnd("The game is a draw. No SOS formed.");
-            } else if (!gameEnded) {
+            if (!game.isGameOver()) {
                 updateTurnLabel();
+                refreshAnalysis();
 
                 // Check if it's the AI's turn and process the AI move
-                if ((game.isPlayerOneTurn() && playerOneComputerCheckBox.isSelected()) ||
-                        (!game.isPlayerOneTurn() && playerTwoComputerCheckBox.isSelected())) {
-                    processAIMove(); // Handle the AI's move immediately
+                playComputerTurnIfNeeded();
+            } else {
+                stopPondering();
+            }
+        }
+    }
+
+    /**
+     * Checks whether the player to move is played by the computer.
+     *
+     * @return true if the current player is a computer
+     */
+    private boolean isComputerToMove() {
+        return (game.isPlayerOneTurn() && playerOneComputerCheckBox.isSelected()) ||
+                (!game.isPlayerOneTurn() && playerTwoComputerCheckBox.isSelected());
+    }
+
+    /**
+     * Restarts the background analysis for the current position, or stops it and clears the
+     * overlay when hints are off, the game is over or a computer is to move. Never blocks: the
+     * analysis runs on the analyzer's threads and results come back through
+     * {@link #showAnalysis(PositionAnalyzer.Analysis)}.
+     */
+    private void refreshAnalysis() {
+        clearHeatmap();
+        if (game == null || game.isGameOver() || !analysisCheckBox.isSelected() || isComputerToMove()) {
+            analyzer.cancel();
+            hintLabel.setText("");
+            return;
+        }
+        hintLabel.setText("Hint: analysing...");
+        analyzer.analyze(CompactGameState.from(game));
+    }
+
+    /**
+     * Colours each empty cell from red (worst) to green (best) by the better of its two letters,
+     * outlines the best move and updates the hint. Results of a superseded position are ignored.
+     *
+     * @param analysis the latest completed depth of the analysis
+     */
+    private void showAnalysis(PositionAnalyzer.Analysis analysis) {
+        if (game == null || analysis.getGeneration() != analyzer.getGeneration()) {
+            return;
+        }
+        int boardSize = game.getBoard().length;
+        Move best = analysis.getBestMove();
+        for (int row = 0; row < boardSize; row++) {
+            for (int col = 0; col < boardSize; col++) {
+                Button cellButton = (Button) grid.getChildren().get(row * boardSize + col);
+                if (!analysis.hasScore(row, col) || !cellButton.getText().isEmpty()) {
+                    continue;
+                }
+                String style = String.format("-fx-background-color: hsb(%.0f, 40%%, 100%%);",
+                        analysis.getRating(row, col) * 120);
+                if (row == best.row() && col == best.col()) {
+                    style += " -fx-border-color: black; -fx-border-width: 2px;";
                 }
+                cellButton.setStyle(style);
+                cellButton.setTooltip(new Tooltip("S: " + formatScore(analysis.getScore(row, col, 'S'))
+                        + "   O: " + formatScore(analysis.getScore(row, col, 'O'))));
+            }
+        }
+        hintLabel.setText("Hint: place " + best.letter() + " at (" + best.row() + "," + best.col() + ")"
+                + " [" + formatScore(analysis.getBestScore()) + ", depth " + analysis.getDepth() + "]");
+    }
+
+    /**
+     * Formats an analysis score as an SOS advantage, or as a forced win or loss.
+     *
+     * @param score the score in search units
+     * @return the formatted score
+     */
+    private static String formatScore(int score) {
+        if (Math.abs(score) >= SearchPlayer.WIN - 1000) {
+            return score > 0 ? "win" : "loss";
+        }
+        return String.format("%+.1f", score / (double) SearchPlayer.SOS_VALUE);
+    }
+
+    /**
+     * Removes the analysis tooltips and the colouring of the empty cells.
+     */
+    private void clearHeatmap() {
+        if (grid == null) {
+            return;
+        }
+        for (Node node : grid.getChildren()) {
+            Button cellButton = (Button) node;
+            cellButton.setTooltip(null);
+            if (cellButton.getText().isEmpty()) {
+                cellButton.setStyle("");
             }
         }
     }
 
+    /**
+     * Lets the computer move if the player to move is a computer. The LLM is asked and local
+     * players search on a background thread, and the move is placed on the FX thread when it
+     * is chosen, after which the next computer turn (if any) follows.
+     */
+    private void playComputerTurnIfNeeded() {
+        if (game.isGameOver() || computerThinking || !isComputerToMove()) {
+            return;
+        }
+
+        if (LLM_OPTION.equals(computerDifficultyComboBox.getValue())) {
+            processAIMove();
+            return;
+        }
+
+        Difficulty difficulty = Difficulty.fromLabel(computerDifficultyComboBox.getValue());
+        if (searchPlayer == null || searchPlayer.getDifficulty() != difficulty) {
+            stopPondering();
+            searchPlayer = new SearchPlayer(difficulty); // Kept so its transposition table carries over
+            timedGameId = -1;
+        }
+        if (timedGameId != game.getGameId()) {
+            searchPlayer.setTimeManager(TimeManager.forGame(difficulty, game.getBoard().length));
+            timedGameId = game.getGameId();
+        }
+        SearchPlayer player = searchPlayer;
+        int searchedGameId = game.getGameId(); // Pooled games are reused with a new id
+        CompactGameState position = CompactGameState.from(game);
+        computerThinking = true;
+        turnLabel.setText(turnLabel.getText() + " - computer is thinking...");
+        computerExecutor.execute(() -> {
+            GameFlightEvents.AIMoveSelection event = new GameFlightEvents.AIMoveSelection();
+            event.begin();
+            long start = GameMetrics.startTimer();
+            Move move = player.chooseMove(position);
+            GameMetrics.recordAIMove(start, 0, 0, move != null);
+            if (event.shouldCommit()) {
+                event.player = player.getName();
+                event.attempts = 1;
+                event.valid = move != null;
+                event.commit();
+            }
+            Platform.runLater(() -> {
+                if (game.getGameId() != searchedGameId) {
+                    return; // A new game was started while searching
+                }
+                computerThinking = false;
+                if (move != null) {
+                    placeComputerMove(move.row(), move.col(), move.letter());
+                    playComputerTurnIfNeeded();
+                    if (!game.isGameOver() && !isComputerToMove()) {
+                        player.ponder(CompactGameState.from(game)); // Think on the human's time
+                    }
+                }
+            });
+        });
+    }
+
+    /**
+     * Stops the search player thinking on the human's time, e.g. because its game is over.
+     */
+    private void stopPondering() {
+        if (searchPlayer != null) {
+            searchPlayer.stopPondering();
+        }
+    }
+
+    /**
+     * Asks the LLM for a move on a background thread, so its queueing, rate limiting and
+     * retries never block the FX thread, and places the move on the FX thread once chosen.
+     */
     private void processAIMove() {
-        boolean validMove = false;
+        LLMService service = llmService;
+        int movingGameId = game.getGameId(); // Pooled games are reused with a new id
+        CompactGameState position = CompactGameState.from(game);
+        computerThinking = true;
+        turnLabel.setText(turnLabel.getText() + " - computer is thinking...");
+        computerExecutor.execute(() -> {
+            Move move = chooseLLMMove(service, position);
+            Platform.runLater(() -> {
+                if (game.getGameId() != movingGameId) {
+                    return; // A new game was started while the LLM was asked
+                }
+                computerThinking = false;
+                if (move != null) {
+                    placeComputerMove(move.row(), move.col(), move.letter());
+                    playComputerTurnIfNeeded();
+                }
+            });
+        });
+    }
+
+    /**
+     * Asks the LLM for a move, retrying on invalid responses, and returns the first valid one.
+     * Endgames of general games are solved by the {@link EndgameSolver} instead. The selection
+     * is recorded as a flight recorder event and in {@link GameMetrics}. Runs on the computer
+     * thread.
+     *
+     * @param service the LLM service to ask
+     * @param position a copy of the position to move in
+     * @return the move, or null if the LLM gave no valid move
+     */
+    private Move chooseLLMMove(LLMService service, CompactGameState position) {
+        GameFlightEvents.AIMoveSelection event = new GameFlightEvents.AIMoveSelection();
+        event.begin();
+        long start = GameMetrics.startTimer();
+        String player = position.isPlayerOneTurn() ? "P1" : "P2";
+
+        Move move = null;
         int retryCount = 0;
         final int maxRetries = 5; // Limit retries to avoid infinite loops
 
-        while (!validMove && retryCount < maxRetries) {
-            String prompt = generatePromptForLLM();
-            String llmResponse = llmService.getMoveFromLLM(prompt);
+        // The last moves of a general game are solved exactly instead of asking the LLM
+        EndgameSolver.Result endgame = endgameSolver.chooseMove(position,
+                System.nanoTime() + EndgameSolver.TIME_BUDGET_MILLIS * 1_000_000L, Long.MAX_VALUE);
+        if (endgame != null) {
+            move = endgame.move();
+        }
+
+        while (move == null && retryCount < maxRetries) {
+            String prompt = LLMPrompt.forPosition(position);
+            String llmResponse = service.getMoveFromLLM(prompt, retryCount);
 
             // Parse the structured response (e.g., "row,col,character")
             String[] parts = llmResponse.split(",");
@@ -278,106 +656,60 @@ public class SOSGameUI extends Application implements GameEndListener {
                     char aiMove = parts[2].trim().charAt(0);
 
                     // Validate the move
-                    if (isValidAIMove(aiRow, aiCol, aiMove)) {
-                        placeComputerMove(aiRow, aiCol, aiMove);
-                        validMove = true; // Move was successful
+                    if (isValidAIMove(position, aiRow, aiCol, aiMove)) {
+                        move = new Move(aiRow, aiCol, aiMove); // Move was successful
                     } else {
-                        System.err.println("AI attempted an invalid move at row=" + aiRow + ", col=" + aiCol);
+                        LOG.warn("ui", "LLM attempted an invalid move", "row", aiRow, "col", aiCol);
                         retryCount++;
                     }
                 } catch (NumberFormatException e) {
-                    System.err.println("Invalid response format from LLM: " + llmResponse);
+                    LOG.warn("ui", "Invalid response format from LLM", "response", llmResponse);
                     retryCount++;
                 }
             } else {
-                System.err.println("Invalid response format from LLM: " + llmResponse);
+                LOG.warn("ui", "Invalid response format from LLM", "response", llmResponse);
                 retryCount++;
             }
         }
 
+        boolean validMove = move != null;
         if (!validMove) {
-            System.err.println("AI failed to make a valid move after " + maxRetries + " attempts.");
+            LOG.error("ui", "LLM failed to make a valid move", "attempts", maxRetries);
             // Optionally, handle this case (e.g., force a pass or generate a random valid move)
         }
+
+        int attempts = retryCount + (validMove ? 1 : 0);
+        GameMetrics.recordAIMove(start, attempts, retryCount, validMove);
+        if (event.shouldCommit()) {
+            event.player = player;
+            event.attempts = attempts;
+            event.invalidMoves = retryCount;
+            event.valid = validMove;
+            event.commit();
+        }
+        return move;
     }
 
     /**
      * Validates the AI's move to ensure it is within board bounds and the space is not occupied.
      *
+     * @param position the position the move is made in
      * @param row the row index of the move
      * @param col the column index of the move
      * @param move the character to place ('S' or 'O')
      * @return true if the move is valid, false otherwise
      */
-    private boolean isValidAIMove(int row, int col, char move) {
+    private static boolean isValidAIMove(CompactGameState position, int row, int col, char move) {
         // Check if the move is within board bounds
-        if (row < 0 || row >= game.getBoard().length || col < 0 || col >= game.getBoard().length) {
+        int size = position.getBoardSize();
+        if (row < 0 || row >= size || col < 0 || col >= size) {
             return false;
         }
         // Check if the space is empty
-        if (game.getBoard()[row][col] != '\0') {
+        if (position.getLetter(row, col) != '\0') {
             return false;
         }
-        // Optionally, add additional checks if necessary (e.g., valid character check)
-        return move == 'S' || move == 'O'; // Assuming 'S' and 'O' are valid moves
-    }
-
-    /**
-     * Generates a prompt describing the current board state, player turn, etc.
-     * to send to the LLM.
-     *
-     * @return a string prompt for the LLM
-     */
-    private String generatePromptForLLM() {
-        StringBuilder prompt = new StringBuilder();
-        prompt.append("You are playing a game of SOS on a ")
-                .append(game.getBoard().length)
-                .append("x")
-                .append(game.getBoard().length)
-                .append(" board.\n");
-        prompt.append("The goal of the game is to form the sequence 'SOS' horizontally, vertically, or diagonally.\n");
-        prompt.append("You are Player ")
-                .append(game.isPlayerOneTurn() ? "1" : "2")
-                .append(". Your objective is to either create a new 'SOS' sequence or block the opponent from forming one.\n");
-        prompt.append("Remember that you cannot place your move on an already occupied space.\n");
-        prompt.append("The board uses 0-based indexing, meaning the top-left cell is (0,0) and the bottom-right cell is (")
-                .append(game.getBoard().length - 1)
-                .append(",")
-                .append(game.getBoard().length - 1)
-                .append(").\n");
-        prompt.append("Here is the current board state:\n");
-
-        char[][] board = game.getBoard();
-        for (int r = 0; r < board.length; r++) {
-            for (int c = 0; c < board[r].length; c++) {
-                if (board[r][c] == '\0') {
-                    prompt.append(". "); // Empty space
-                } else {
-                    prompt.append(board[r][c]).append("(").append(getPlayerLabel(r, c)).append(") ");
-                }
-            }
-            prompt.append("\n");
-        }
-
-        prompt.append("Occupied spaces (row,col): ");
-        for (int r = 0; r < board.length; r++) {
-            for (int c = 0; c < board[r].length; c++) {
-                if (board[r][c] != '\0') {
-                    prompt.append("(").append(r).append(",").append(c).append(") ");
-                }
-            }
-        }
-        prompt.append("\nConsider possible 'S' and 'O' placements that you can make with the goal of forming an 'SOS' on your turn. Provide your move in the format 'row,col,character' (e.g., '1,2,S'). The row and column values start counting from 0.");
-        return prompt.toString();
-    }
-
-    private String getPlayerLabel(int row, int col) {
-        // Check the playerMoves array to determine which player made the move
-        String[][] playerMoves = game.getPlayerMoves();
-        if (playerMoves[row][col] != null) {
-            return playerMoves[row][col]; // Return "P1" or "P2" based on who placed the move
-        }
-        return ""; // Default case (shouldn't happen for occupied spaces)
+        return move == 'S' || move == 'O';
     }
 
     /**
@@ -390,15 +722,19 @@ public class SOSGameUI extends Application implements GameEndListener {
     private void placeComputerMove(int row, int col, char move) {
         if (row >= 0 && row < game.getBoard().length && col >= 0 && col < game.getBoard().length) {
             Button button = (Button) grid.getChildren().get(row * game.getBoard().length + col);
+            boolean playerOneMove = game.isPlayerOneTurn(); // Colour by the player who is moving
             if (game.placeMove(row, col, move)) {
                 button.setText(String.valueOf(move));
-                button.setStyle(game.isPlayerOneTurn() ? "-fx-text-fill: red; -fx-font-weight: bold;" : "-fx-text-fill: blue; -fx-font-weight: bold;");
-                updateTurnLabel(); // Ensure turn label is updated after AI move
+                button.setStyle(playerOneMove ? "-fx-text-fill: red; -fx-font-weight: bold;" : "-fx-text-fill: blue; -fx-font-weight: bold;");
+                if (!game.isGameOver()) {
+                    updateTurnLabel(); // Ensure turn label is updated after AI move
+                    refreshAnalysis();
+                }
             } else {
-                System.err.println("Failed to place AI move on the board.");
+                LOG.error("ui", "Failed to place computer move", "row", row, "col", col, "letter", move);
             }
         } else {
-            System.err.println("AI move is out of board bounds: row=" + row + ", col=" + col);
+            LOG.error("ui", "Computer move is out of board bounds", "row", row, "col", col);
         }
     }
 
@@ -0,0 +1,191 @@
+package com.beginsecure.maventest.sosgamesprint2;
+
+/**
+ * Counts every SOS on whole boards at once, for validation, labelling training data and
+ * checking whether any SOS is still possible. Boards are held as per-row bit masks (see
+ * {@link BoardBatch}), so one row of S-O-S tests is a few shifts and ANDs:
+ * <ul>
+ *     <li>horizontal: {@code S[r] & O[r] >>> 1 & S[r] >>> 2},</li>
+ *     <li>vertical: {@code S[r] & O[r+1] & S[r+2]},</li>
+ *     <li>diagonal: {@code S[r] & O[r+1] >>> 1 & S[r+2] >>> 2},</li>
+ *     <li>anti-diagonal: {@code S[r] & O[r+1] << 1 & S[r+2] << 2},</li>
+ * </ul>
+ * each set bit marking the first cell of one line. When the {@code jdk.incubator.vector} module
+ * is present (run with {@code --add-modules jdk.incubator.vector}) the same row of many boards
+ * is processed in SIMD lanes; otherwise a scalar loop over the same masks is used. Setting
+ * {@code -Dsos.scanner=scalar} forces the scalar kernel.
+ */
+public final class SOSScanner {
+
+    private static final Kernel KERNEL = selectKernel();
+
+    private SOSScanner() {
+    }
+
+    /**
+     * Counts the lines of a batch of boards, as implemented by the scalar and vector kernels.
+     */
+    interface Kernel {
+
+        /**
+         * Counts, for each board, the lines whose cells hold S, O and S.
+         *
+         * @param batch the boards to scan
+         * @param possible true to count lines that are complete or could still be completed
+         *                 (every cell empty or already the right letter) instead of complete ones
+         * @param counts receives one count per board
+         */
+        void count(BoardBatch batch, boolean possible, int[] counts);
+    }
+
+    /**
+     * Checks whether the SIMD kernel is in use.
+     *
+     * @return true if boards are scanned with the vector API
+     */
+    public static boolean isVectorized() {
+        return !(KERNEL instanceof ScalarKernel);
+    }
+
+    /**
+     * Counts the SOS lines on every board of a batch.
+     *
+     * @param batch the boards to scan
+     * @return one count per board, in batch order
+     */
+    public static int[] countSOS(BoardBatch batch) {
+        int[] counts = new int[batch.size()];
+        KERNEL.count(batch, false, counts);
+        return counts;
+    }
+
+    /**
+     * Counts, on every board of a batch, the lines that hold an SOS or could still be completed
+     * into one. A board where this equals {@link #countSOS(BoardBatch)} can produce no more SOS.
+     *
+     * @param batch the boards to scan
+     * @return one count per board, in batch order
+     */
+    public static int[] countPossible(BoardBatch batch) {
+        int[] counts = new int[batch.size()];
+        KERNEL.count(batch, true, counts);
+        return counts;
+    }
+
+    /**
+     * Counts the SOS lines on the board of a game, whether or not they were scored.
+     *
+     * @param state the game to scan
+     * @return the number of S-O-S lines on the board
+     */
+    public static int countSOS(CompactGameState state) {
+        BoardBatch batch = new BoardBatch(state.getBoardSize(), 1);
+        batch.add(state);
+        int[] counts = new int[1];
+        ScalarKernel.INSTANCE.count(batch, false, counts);
+        return counts[0];
+    }
+
+    /**
+     * Checks whether another SOS can still be formed on the board of a game.
+     *
+     * @param state the game to scan
+     * @return true if some line is open and not yet complete
+     */
+    public static boolean isSOSPossible(CompactGameState state) {
+        BoardBatch batch = new BoardBatch(state.getBoardSize(), 1);
+        batch.add(state);
+        int[] complete = new int[1];
+        int[] possible = new int[1];
+        ScalarKernel.INSTANCE.count(batch, false, complete);
+        ScalarKernel.INSTANCE.count(batch, true, possible);
+        return possible[0] > complete[0];
+    }
+
+    /**
+     * Counts the SOS lines of one board of a batch cell by cell, as a reference for the kernels.
+     *
+     * @param batch the boards
+     * @param index the board to scan
+     * @return the number of S-O-S lines on the board
+     */
+    static int countSOSPerCell(BoardBatch batch, int index) {
+        int size = batch.getBoardSize();
+        int count = 0;
+        for (int row = 0; row < size; row++) {
+            for (int col = 0; col < size; col++) {
+                if (batch.getLetter(index, row, col) != 'S') {
+                    continue;
+                }
+                for (int dir = 0; dir < CompactGameState.DIRECTIONS; dir++) {
+                    int endRow = row + 2 * CompactGameState.DIR_ROW[dir];
+                    int endCol = col + 2 * CompactGameState.DIR_COL[dir];
+                    if (endRow < size && endCol >= 0 && endCol < size
+                            && batch.getLetter(index, row + CompactGameState.DIR_ROW[dir], col + CompactGameState.DIR_COL[dir]) == 'O'
+                            && batch.getLetter(index, endRow, endCol) == 'S') {
+                        count++;
+                    }
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Uses the vector kernel when its module is available and not disabled.
+     */
+    private static Kernel selectKernel() {
+        if ("scalar".equals(System.getProperty("sos.scanner"))
+                || ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) {
+            return ScalarKernel.INSTANCE;
+        }
+        try {
+            return new VectorKernel();
+        } catch (LinkageError e) {
+            return ScalarKernel.INSTANCE;
+        }
+    }
+
+    /**
+     * The portable kernel: one board at a time, one row mask at a time.
+     */
+    static final class ScalarKernel implements Kernel {
+
+        static final ScalarKernel INSTANCE = new ScalarKernel();
+
+        @Override
+        public void count(BoardBatch batch, boolean possible, int[] counts) {
+            int size = batch.getBoardSize();
+            int stride = batch.getCapacity();
+            int full = (1 << size) - 1;
+            int[] sRows = batch.sRows;
+            int[] oRows = batch.oRows;
+            for (int board = 0; board < batch.size(); board++) {
+                int count = 0;
+                for (int row = 0; row < size; row++) {
+                    int s0 = sRows[row * stride + board];
+                    int o0 = oRows[row * stride + board];
+                    if (possible) {
+                        int s = full & ~o0;
+                        o0 = full & ~s0;
+                        s0 = s;
+                    }
+                    count += Integer.bitCount(s0 & o0 >>> 1 & s0 >>> 2);
+                    if (row + 2 >= size) {
+                        continue;
+                    }
+                    int o1 = oRows[(row + 1) * stride + board];
+                    int s2 = sRows[(row + 2) * stride + board];
+                    if (possible) {
+                        o1 = full & ~sRows[(row + 1) * stride + board];
+                        s2 = full & ~oRows[(row + 2) * stride + board];
+                    }
+                    count += Integer.bitCount(s0 & o1 & s2)
+                            + Integer.bitCount(s0 & o1 >>> 1 & s2 >>> 2)
+                            + Integer.bitCount(s0 & o1 << 1 & s2 << 2);
+                }
+                counts[board] = count;
+            }
+        }
+    }
+}
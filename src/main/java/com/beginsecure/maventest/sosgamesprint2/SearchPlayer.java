@@ -0,0 +1,980 @@
+package com.beginsecure.maventest.sosgamesprint2;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * A local computer player that runs an iterative-deepening alpha-beta search on a
+ * {@link CompactGameState} with the process-wide {@link TranspositionTable}, so what one move's
+ * search learns helps the next and every other game running at the time. How deep,
+ * how long and how randomly it plays is set by a {@link Difficulty}. Levels with more than one
+ * thread search Lazy-SMP style: helper threads from a shared pool of daemon threads run their
+ * own iterative deepening on the same position, odd helpers one ply ahead and each starting
+ * from a different root move, and share what they learn through the table only. The calling
+ * thread's search alone picks the move, so helpers make it faster without changing how it is
+ * chosen. A deterministic player searches on one thread up to the level's
+ * {@linkplain Difficulty#getDeterministicNodeLimit() deterministic node limit} without looking
+ * at the clock and with a table of its own, so with the same random source it plays the same
+ * moves and examines the same number of positions on every run. In simple games, levels that look more than one move ahead
+ * first give part of their budget to a {@link ProofNumberSolver}: a proven win is played at
+ * once, and root moves proven to lose are left out of the search. In general games the same
+ * levels hand positions with few empty cells to an {@link EndgameSolver} and play its exact
+ * move when it finishes within half the budget.
+ *
+ * <p>With a {@link TimeManager}, a player spreads a game clock over its moves instead of taking
+ * the level's time for each, and stops deepening as soon as the manager sees one move dominate.
+ * A player may also {@linkplain #ponder(CompactGameState) ponder} while the opponent thinks: it
+ * guesses the reply from the table and searches the position that reply leads to, so when the
+ * guess is right the next search starts from a table already filled to some depth, or is skipped
+ * when that depth reaches the level's.
+ */
+public class SearchPlayer implements ComputerPlayer {
+
+    /** Evaluation of one SOS. */
+    static final int SOS_VALUE = 100;
+    /** Evaluation of each SOS the side to move can complete right away. */
+    static final int GAIN_VALUE = SOS_VALUE * 9 / 10;
+    /** Evaluation of a won simple game, reduced by the number of plies needed to win. */
+    static final int WIN = 1_000_000;
+    /** Bonus added to the score difference of a finished general game. */
+    static final int GENERAL_WIN_BONUS = 100_000;
+
+    private static final int INFINITY = Integer.MAX_VALUE - 1;
+    private static final int NODE_CHECK_INTERVAL = 1024;
+    /** The longest a player ponders, in case the opponent never moves. */
+    private static final long MAX_PONDER_MILLIS = 60_000;
+
+    private static final ExecutorService POOL = Executors.newFixedThreadPool(
+            Runtime.getRuntime().availableProcessors(), runnable -> {
+                Thread thread = new Thread(runnable, "sos-search");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+    private final Difficulty difficulty;
+    private final Random random;
+    private final PatternWeights weights;
+    private final boolean deterministic;
+    private final int threads;
+    private TranspositionTable table; // Shared, or created on the first deterministic move
+    private ProofNumberSolver solver; // Created on the first simple-game move
+    private EndgameSolver endgameSolver; // Created on the first general-game endgame
+    private volatile ProofNumberSolver.Outcome lastProof = ProofNumberSolver.Outcome.UNKNOWN;
+    private volatile long lastNodes;
+    private volatile int lastDepth;
+    private volatile long[] lastDepthNanos = new long[0];
+    private volatile TimeManager timeManager; // Null to spend the level's time on every move
+    private Ponder ponder; // The search running on the opponent's time, if any
+    private final AtomicLong ponderHits = new AtomicLong();
+    private final AtomicLong ponderMisses = new AtomicLong();
+
+    /**
+     * Initializes a player for the given difficulty.
+     *
+     * @param difficulty the compute budget to play with
+     */
+    public SearchPlayer(Difficulty difficulty) {
+        this(difficulty, new Random());
+    }
+
+    /**
+     * Initializes a player for the given difficulty with a specific random source.
+     *
+     * @param difficulty the compute budget to play with
+     * @param random the source of randomisation for move choice
+     */
+    public SearchPlayer(Difficulty difficulty, Random random) {
+        this(difficulty, random, PatternWeights.getDefault());
+    }
+
+    /**
+     * Initializes a player with specific evaluation weights.
+     *
+     * @param difficulty the compute budget to play with
+     * @param random the source of randomisation for move choice
+     * @param weights the pattern weights added to the evaluation of general games, or null to
+     *                credit the side to move with its best immediate gain only
+     */
+    public SearchPlayer(Difficulty difficulty, Random random, PatternWeights weights) {
+        this(difficulty, random, weights, false);
+    }
+
+    /**
+     * Initializes a player that may search deterministically.
+     *
+     * @param difficulty the compute budget to play with
+     * @param random the source of randomisation for move choice
+     * @param weights the pattern weights added to the evaluation of general games, or null
+     * @param deterministic true to search on one thread with a node budget instead of a time
+     *                      budget
+     */
+    public SearchPlayer(Difficulty difficulty, Random random, PatternWeights weights, boolean deterministic) {
+        this(difficulty, random, weights, deterministic, deterministic ? 1 : difficulty.getThreads());
+    }
+
+    /**
+     * Initializes a player with a specific number of search threads, e.g. to measure scaling.
+     */
+    SearchPlayer(Difficulty difficulty, Random random, PatternWeights weights, boolean deterministic, int threads) {
+        this.difficulty = difficulty;
+        this.random = random;
+        this.weights = weights;
+        this.deterministic = deterministic;
+        this.threads = Math.max(1, threads);
+    }
+
+    /**
+     * Chooses a move by iterative deepening until the depth, node or time budget runs out, then
+     * plays the best move of the last completed iteration.
+     *
+     * @param state the current position
+     * @return the chosen move, or null if the game is over
+     */
+    @Override
+    public Move chooseMove(CompactGameState state) {
+        Ponder pondered = endPondering(true);
+        if (state.isGameOver() || state.getEmptyCells() == 0) {
+            return null;
+        }
+        TimeManager manager = deterministic ? null : timeManager;
+        TimeManager.Allocation allocation = manager == null ? null : manager.allocate(state);
+        try {
+            return search(state, allocation, pondered);
+        } finally {
+            if (allocation != null) {
+                manager.moveDone(allocation);
+            }
+        }
+    }
+
+    /**
+     * Searches a position with the level's budget, or the time a manager allotted to it.
+     *
+     * @param allocation the time allotted by the time manager, or null to use the level's
+     * @param pondered the search run on the opponent's time before this move, or null
+     */
+    private Move search(CompactGameState state, TimeManager.Allocation allocation, Ponder pondered) {
+        int maxDepth = Math.min(difficulty.getMaxDepth(), state.getEmptyCells());
+        int ponderMove = -1;
+        if (pondered != null && pondered.key == positionKey(state)) {
+            ponderHits.incrementAndGet();
+            ponderMove = pondered.bestMove;
+            if (ponderMove >= 0 && difficulty.getRandomness() == 0
+                    && (pondered.depth >= maxDepth || pondered.forced)) {
+                lastNodes = pondered.limits.nodes.get();
+                lastDepth = pondered.depth;
+                lastDepthNanos = new long[0];
+                return toMove(ponderMove, state.getBoardSize()); // Searched deep enough already
+            }
+            if (allocation != null) {
+                allocation.credit(pondered.nanos);
+            }
+        } else if (pondered != null) {
+            ponderMisses.incrementAndGet();
+        }
+        SearchLimits limits = deterministic
+                ? new SearchLimits(Long.MAX_VALUE, difficulty.getDeterministicNodeLimit())
+                : allocation != null
+                ? new SearchLimits(allocation.getDeadline(), difficulty.getNodeLimit(), allocation.getClock())
+                : new SearchLimits(System.nanoTime() + difficulty.getTimePerMoveMillis() * 1_000_000L,
+                        difficulty.getNodeLimit());
+
+        long start = System.nanoTime();
+        long solverNanos = allocation != null ? allocation.getSoftNanos() / 2
+                : difficulty.getTimePerMoveMillis() * 500_000L;
+        ProofNumberSolver.Result proof = prove(state, start, solverNanos);
+        lastProof = proof == null ? ProofNumberSolver.Outcome.UNKNOWN : proof.outcome();
+        if (proof != null && proof.outcome() == ProofNumberSolver.Outcome.WIN) {
+            lastNodes = proof.expansions();
+            lastDepth = 0;
+            lastDepthNanos = new long[0];
+            return proof.move();
+        }
+        EndgameSolver.Result endgame = solveEndgame(state, start, solverNanos);
+        if (endgame != null) {
+            lastNodes = endgame.nodes();
+            lastDepth = state.getEmptyCells();
+            lastDepthNanos = new long[0];
+            return endgame.move();
+        }
+        ensureTable();
+        table.newSearch();
+        Searcher searcher = new Searcher(state.copy(), limits, weights, table);
+        int[] rootMoves = searcher.orderedMoves(0);
+        if (proof != null && proof.outcome() != ProofNumberSolver.Outcome.LOSS) {
+            rootMoves = withoutLosingMoves(rootMoves, proof, state.getBoardSize());
+        }
+        if (ponderMove >= 0) {
+            Searcher.moveToFront(rootMoves, ponderMove);
+        }
+        if (allocation != null && rootMoves.length == 1) {
+            lastNodes = 0;
+            lastDepth = 0;
+            lastDepthNanos = new long[0];
+            return toMove(rootMoves[0], state.getBoardSize()); // Nothing to think about
+        }
+        int[] noise = new int[rootMoves.length];
+        for (int i = 0; i < noise.length; i++) {
+            noise[i] = difficulty.getRandomness() == 0 ? 0 : random.nextInt(difficulty.getRandomness() + 1);
+        }
+
+        int bestMove = rootMoves[0];
+        int completedDepth = 0;
+        long[] depthNanos = new long[maxDepth + 1];
+        List<Future<?>> helpers = startHelpers(state, limits, rootMoves, maxDepth);
+        if (allocation != null) {
+            allocation.iterationsStarted();
+        }
+        try {
+            for (int depth = 1; depth <= maxDepth; depth++) {
+                int[] scores = new int[rootMoves.length];
+                int best = searcher.searchRootMoves(rootMoves, noise, scores, depth);
+                if (limits.isAborted()) {
+                    break;
+                }
+                bestMove = rootMoves[best];
+                completedDepth = depth;
+                depthNanos[depth] = System.nanoTime() - start;
+                sortByScore(rootMoves, noise, scores);
+                if (Math.abs(scores[0]) >= WIN - 1000) {
+                    break; // A forced result has been found
+                }
+                // The other scores are upper bounds, which is all the dominance test needs
+                if (allocation != null && !allocation.iterationDone(bestMove, scores[0],
+                        rootMoves.length > 1 ? scores[1] : Integer.MIN_VALUE)) {
+                    break;
+                }
+            }
+        } finally {
+            limits.abort(); // Stops the helpers
+            for (Future<?> helper : helpers) {
+                helper.cancel(false);
+            }
+        }
+
+        lastNodes = limits.nodes.get();
+        lastDepth = completedDepth;
+        lastDepthNanos = depthNanos;
+        return toMove(bestMove, state.getBoardSize());
+    }
+
+    /**
+     * Starts searching, on the opponent's time, the position after the reply the opponent is
+     * expected to make: the table's best move for the position if it has one, otherwise the
+     * first move in search order. The search runs on a pool thread until the next
+     * {@link #chooseMove(CompactGameState)} or {@link #stopPondering()}, deepening up to the
+     * level's depth and node limit for at most a minute, and leaves what it finds in the table.
+     * Deterministic players do not ponder.
+     *
+     * @param state the current position, with the opponent to move
+     */
+    public synchronized void ponder(CompactGameState state) {
+        endPondering(false);
+        if (deterministic || state.isGameOver() || state.getEmptyCells() < 2) {
+            return;
+        }
+        ensureTable();
+        CompactGameState next = state.copy();
+        Searcher predictor = new Searcher(next.copy(), new SearchLimits(Long.MAX_VALUE, Long.MAX_VALUE), weights, table);
+        long entry = table.probe(TranspositionTable.key(TranspositionTable.boardHash(next), next)
+                ^ Searcher.keySalt(weights));
+        int[] replies = predictor.orderedMoves(0);
+        int reply = replies[0];
+        if (entry != 0) {
+            Searcher.moveToFront(replies, TranspositionTable.move(entry));
+            reply = replies[0]; // Only if the table's move is legal here
+        }
+        int cell = reply >> 1;
+        next.placeMove(cell / next.getBoardSize(), cell % next.getBoardSize(), (reply & 1) == 0 ? 'S' : 'O');
+        if (next.isGameOver()) {
+            return;
+        }
+        SearchLimits limits = new SearchLimits(System.nanoTime() + MAX_PONDER_MILLIS * 1_000_000L,
+                difficulty.getNodeLimit());
+        Ponder started = new Ponder(positionKey(next), limits);
+        Searcher searcher = new Searcher(next, limits, weights, table);
+        int maxDepth = Math.min(difficulty.getMaxDepth(), next.getEmptyCells());
+        started.task = POOL.submit(() -> {
+            if (!started.claimed.compareAndSet(false, true)) {
+                return; // Stopped while waiting for a pool thread
+            }
+            int[] moves = searcher.orderedMoves(0);
+            int[] noise = new int[moves.length];
+            for (int depth = 1; depth <= maxDepth && !limits.isAborted(); depth++) {
+                int[] scores = new int[moves.length];
+                int best = searcher.searchRootMoves(moves, noise, scores, depth);
+                if (limits.isAborted()) {
+                    break;
+                }
+                started.bestMove = moves[best];
+                started.depth = depth;
+                sortByScore(moves, noise, scores);
+                if (Math.abs(scores[0]) >= WIN - 1000) {
+                    started.forced = true;
+                    break;
+                }
+            }
+        });
+        ponder = started;
+    }
+
+    /**
+     * Stops pondering, e.g. when the game the player pondered on has ended. Does not wait for
+     * the pondering search, which notices within a few thousand positions, so it may be called
+     * from the FX thread.
+     */
+    public void stopPondering() {
+        endPondering(false);
+    }
+
+    /**
+     * Stops pondering. A search still waiting for a pool thread is cancelled and never runs.
+     *
+     * @param wait true to wait for a running search to finish, so its results are final
+     * @return the stopped search, or null if the player was not pondering
+     */
+    private synchronized Ponder endPondering(boolean wait) {
+        Ponder stopped = ponder;
+        ponder = null;
+        if (stopped != null) {
+            stopped.limits.abort();
+            stopped.nanos = System.nanoTime() - stopped.start;
+            if (stopped.claimed.compareAndSet(false, true)) {
+                stopped.task.cancel(false);
+            } else if (wait) {
+                try {
+                    stopped.task.get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (ExecutionException e) {
+                    throw new IllegalStateException("Pondering failed", e.getCause());
+                }
+            }
+        }
+        return stopped;
+    }
+
+    /**
+     * Lets the player spread a game clock over its moves, or go back to the level's time per
+     * move. Deterministic players ignore it.
+     *
+     * @param timeManager the manager of the current game's clock, or null
+     */
+    public void setTimeManager(TimeManager timeManager) {
+        this.timeManager = timeManager;
+    }
+
+    /**
+     * Retrieves the manager of the player's game clock.
+     *
+     * @return the time manager, or null if each move takes the level's time
+     */
+    public TimeManager getTimeManager() {
+        return timeManager;
+    }
+
+    /**
+     * Retrieves how many moves were chosen in the position the player pondered.
+     *
+     * @return the ponder hit count
+     */
+    public long getPonderHits() {
+        return ponderHits.get();
+    }
+
+    /**
+     * Retrieves how many moves were chosen after pondering a reply the opponent did not play.
+     *
+     * @return the ponder miss count
+     */
+    public long getPonderMisses() {
+        return ponderMisses.get();
+    }
+
+    /**
+     * Identifies a position by its cells and the side to move, whatever the evaluation weights.
+     */
+    private static long positionKey(CompactGameState state) {
+        return TranspositionTable.key(TranspositionTable.boardHash(state), state);
+    }
+
+    /**
+     * Creates the player's table on first use: its own for a deterministic player, the shared
+     * one otherwise.
+     */
+    private synchronized void ensureTable() {
+        if (table == null) {
+            table = deterministic ? new TranspositionTable(tableEntries(difficulty)) : TranspositionTable.getShared();
+        }
+    }
+
+    /**
+     * Runs the proof-number solver on a simple-game position with a sixty-fourth of the
+     * level's node budget and, unless deterministic, half of the move's time budget.
+     *
+     * @return the proof, or null if the level does not use the solver
+     */
+    private ProofNumberSolver.Result prove(CompactGameState state, long start, long solverNanos) {
+        if (state.isGeneralMode() || difficulty.getMaxDepth() <= 1) {
+            return null;
+        }
+        long budget = Math.max(1, Math.min(difficulty.getNodeLimit(), difficulty.getDeterministicNodeLimit()) / 64);
+        if (solver == null) {
+            solver = new ProofNumberSolver((int) Math.max(1 << 12, Math.min(1 << 18, budget * 8)));
+        }
+        long deadline = deterministic ? Long.MAX_VALUE : start + solverNanos;
+        return solver.solve(state, budget, deadline);
+    }
+
+    /**
+     * Solves a general-game endgame exactly with half of the level's node budget or, unless
+     * deterministic, half of the move's time budget.
+     *
+     * @return the solution, or null if the level does not use the solver, the position has too
+     *         many empty cells or the budget ran out
+     */
+    private EndgameSolver.Result solveEndgame(CompactGameState state, long start, long solverNanos) {
+        if (!state.isGeneralMode() || difficulty.getMaxDepth() <= 1) {
+            return null;
+        }
+        if (endgameSolver == null) {
+            endgameSolver = new EndgameSolver();
+        }
+        if (deterministic) {
+            return endgameSolver.chooseMove(state, Long.MAX_VALUE, difficulty.getDeterministicNodeLimit() / 2);
+        }
+        return endgameSolver.chooseMove(state, start + solverNanos, difficulty.getNodeLimit() / 2);
+    }
+
+    /**
+     * Removes the moves a proof shows to lose and puts a move proven not to lose first. Proven
+     * losses are left alone, so the search can still pick the move that loses slowest.
+     */
+    private static int[] withoutLosingMoves(int[] rootMoves, ProofNumberSolver.Result proof, int boardSize) {
+        List<Integer> kept = new ArrayList<>();
+        for (int move : rootMoves) {
+            Move decoded = toMove(move, boardSize);
+            if (decoded.equals(proof.move())) {
+                kept.add(0, move);
+            } else if (!proof.losingMoves().contains(decoded)) {
+                kept.add(move);
+            }
+        }
+        if (kept.isEmpty()) {
+            return rootMoves;
+        }
+        return kept.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * Starts one helper search per extra thread. Helpers fill the shared table until the
+     * limits are aborted; their results are never read directly. Each helper gets its own copy
+     * of the root moves, as the main search re-sorts its array between iterations.
+     */
+    private List<Future<?>> startHelpers(CompactGameState state, SearchLimits limits, int[] rootMoves,
+                                         int maxDepth) {
+        List<Future<?>> helpers = new ArrayList<>();
+        int count = Math.min(threads, rootMoves.length) - 1;
+        for (int i = 1; i <= count; i++) {
+            Searcher helper = new Searcher(state.copy(), limits, weights, table);
+            int[] moves = rootMoves.clone();
+            int index = i;
+            helpers.add(POOL.submit(() -> {
+                for (int depth = 1 + index % 2; depth <= maxDepth && !limits.isAborted(); depth++) {
+                    helper.searchRootFrom(moves, index % moves.length, depth);
+                }
+            }));
+        }
+        return helpers;
+    }
+
+    /**
+     * Sizes a deterministic player's own table to the level's node budget, between 4 096 and
+     * about a million entries (16 MB).
+     */
+    private static int tableEntries(Difficulty difficulty) {
+        long budget = Math.min(difficulty.getNodeLimit(), difficulty.getDeterministicNodeLimit());
+        return (int) Math.max(1 << 12, Math.min(1 << 20, Long.highestOneBit(budget)));
+    }
+
+    /**
+     * Sorts the root moves (with their noise) by descending score for the next iteration.
+     */
+    private static void sortByScore(int[] moves, int[] noise, int[] scores) {
+        for (int i = 1; i < moves.length; i++) {
+            int move = moves[i];
+            int bonus = noise[i];
+            int score = scores[i];
+            int j = i - 1;
+            while (j >= 0 && scores[j] + noise[j] < score + bonus) {
+                moves[j + 1] = moves[j];
+                noise[j + 1] = noise[j];
+                scores[j + 1] = scores[j];
+                j--;
+            }
+            moves[j + 1] = move;
+            noise[j + 1] = bonus;
+            scores[j + 1] = score;
+        }
+    }
+
+    /**
+     * Decodes a move packed as {@code cell * 2 + (letter == 'O' ? 1 : 0)}.
+     */
+    static Move toMove(int encoded, int boardSize) {
+        int cell = encoded >> 1;
+        return new Move(cell / boardSize, cell % boardSize, (encoded & 1) == 0 ? 'S' : 'O');
+    }
+
+    /**
+     * Retrieves the number of positions examined for the last move.
+     *
+     * @return the node count
+     */
+    public long getLastNodes() {
+        return lastNodes;
+    }
+
+    /**
+     * Retrieves when each iteration of the last move was completed.
+     *
+     * @param depth the iteration depth
+     * @return the nanoseconds from the start of the search, or -1 if the depth was not
+     *         completed
+     */
+    long getLastTimeToDepth(int depth) {
+        long[] depthNanos = lastDepthNanos;
+        return depth >= 1 && depth < depthNanos.length && depthNanos[depth] > 0 ? depthNanos[depth] : -1;
+    }
+
+    /**
+     * Retrieves the deepest fully completed iteration of the last move.
+     *
+     * @return the depth in plies
+     */
+    public int getLastDepth() {
+        return lastDepth;
+    }
+
+    /**
+     * Retrieves what the proof-number solver proved before the last move, which is
+     * {@link ProofNumberSolver.Outcome#UNKNOWN} for general games and one-ply levels.
+     *
+     * @return the outcome for the side that moved
+     */
+    public ProofNumberSolver.Outcome getLastProof() {
+        return lastProof;
+    }
+
+    /**
+     * Checks whether this player searches deterministically.
+     *
+     * @return true if the search uses a node budget on one thread
+     */
+    public boolean isDeterministic() {
+        return deterministic;
+    }
+
+    /**
+     * Retrieves the difficulty this player uses.
+     *
+     * @return the difficulty
+     */
+    public Difficulty getDifficulty() {
+        return difficulty;
+    }
+
+    @Override
+    public String getName() {
+        return difficulty.getLabel() + " computer";
+    }
+
+    /**
+     * Node and time limits shared by all threads searching one move.
+     */
+    static final class SearchLimits {
+        final AtomicLong nodes = new AtomicLong();
+        private final long deadline;
+        private final long nodeLimit;
+        private final LongSupplier clock; // The time source the deadline is on
+        private volatile boolean aborted;
+
+        SearchLimits(long deadline, long nodeLimit) {
+            this(deadline, nodeLimit, System::nanoTime);
+        }
+
+        SearchLimits(long deadline, long nodeLimit, LongSupplier clock) {
+            this.deadline = deadline;
+            this.nodeLimit = nodeLimit;
+            this.clock = clock;
+        }
+
+        /**
+         * Adds a batch of nodes and checks whether the search must stop.
+         */
+        boolean addNodes(long count) {
+            long total = nodes.addAndGet(count);
+            if (total >= nodeLimit || clock.getAsLong() >= deadline) {
+                aborted = true;
+            }
+            return aborted;
+        }
+
+        void abort() {
+            aborted = true;
+        }
+
+        boolean isAborted() {
+            return aborted;
+        }
+    }
+
+    /**
+     * A search of the position after the opponent's expected reply.
+     */
+    private static final class Ponder {
+        final long key;
+        final SearchLimits limits;
+        final long start = System.nanoTime();
+        final AtomicBoolean claimed = new AtomicBoolean(); // Set by whichever of start and stop comes first
+        Future<?> task;
+        long nanos; // How long the search ran, once stopped
+        volatile int bestMove = -1;
+        volatile int depth;
+        volatile boolean forced;
+
+        Ponder(long key, SearchLimits limits) {
+            this.key = key;
+            this.limits = limits;
+        }
+    }
+
+    /**
+     * A single-threaded negamax searcher working on its own copy of the position. A
+     * {@link ThreatIndex} is updated alongside the state so move generation reads each cell's
+     * gain in O(1), and in general games a {@link PatternEvaluator} is updated too so leaves are
+     * evaluated in O(1).
+     */
+    static final class Searcher {
+
+        private final CompactGameState state;
+        private final ThreatIndex threats;
+        private final PatternEvaluator patterns; // Null for simple games or without weights
+        private final TranspositionTable table; // Null to search without one
+        private final SearchLimits limits;
+        private final int boardSize;
+        private final int[][] moveBuffers;
+        private final int[][] gainBuffers;
+        private final long keySalt; // Keeps the scores of different evaluations apart
+        private long boardHash;
+        private int pendingNodes;
+
+        Searcher(CompactGameState state, SearchLimits limits) {
+            this(state, limits, PatternWeights.getDefault());
+        }
+
+        Searcher(CompactGameState state, SearchLimits limits, PatternWeights weights) {
+            this(state, limits, weights, null);
+        }
+
+        Searcher(CompactGameState state, SearchLimits limits, PatternWeights weights, TranspositionTable table) {
+            this.state = state;
+            this.table = table;
+            this.boardHash = table != null ? TranspositionTable.boardHash(state) : 0;
+            this.keySalt = keySalt(weights);
+            this.threats = ThreatIndex.of(state);
+            this.patterns = weights != null && state.isGeneralMode() ? PatternEvaluator.of(state, weights) : null;
+            this.limits = limits;
+            this.boardSize = state.getBoardSize();
+            int maxPly = state.getEmptyCells() + 1;
+            int maxMoves = state.getEmptyCells() * 2;
+            this.moveBuffers = new int[maxPly][maxMoves];
+            this.gainBuffers = new int[maxPly][maxMoves];
+        }
+
+        /**
+         * Searches the root moves in order and records their scores. Only the best move's score
+         * is exact; the others are upper bounds.
+         *
+         * @return the index of the best move once its noise is added
+         */
+        int searchRootMoves(int[] rootMoves, int[] noise, int[] scores, int depth) {
+            int best = 0;
+            int bestAdjusted = -INFINITY;
+            for (int index = 0; index < rootMoves.length && !limits.isAborted(); index++) {
+                int alpha = bestAdjusted == -INFINITY ? -INFINITY : bestAdjusted - noise[index];
+                int move = rootMoves[index];
+                play(move);
+                int score = -negamax(depth - 1, 1, -INFINITY, -alpha);
+                undo(move);
+                if (limits.isAborted()) {
+                    return best;
+                }
+                scores[index] = score;
+                if (score + noise[index] > bestAdjusted) {
+                    bestAdjusted = score + noise[index];
+                    best = index;
+                }
+            }
+            limits.nodes.addAndGet(pendingNodes);
+            pendingNodes = 0;
+            return best;
+        }
+
+        /**
+         * Searches every root move to the given depth, starting at a given index and wrapping
+         * around, so that helpers starting at different moves fill the table with different
+         * subtrees first.
+         */
+        void searchRootFrom(int[] rootMoves, int first, int depth) {
+            int alpha = -INFINITY;
+            for (int i = 0; i < rootMoves.length && !limits.isAborted(); i++) {
+                int move = rootMoves[(first + i) % rootMoves.length];
+                play(move);
+                alpha = Math.max(alpha, -negamax(depth - 1, 1, -INFINITY, -alpha));
+                undo(move);
+            }
+            limits.nodes.addAndGet(pendingNodes);
+            pendingNodes = 0;
+        }
+
+        /**
+         * Takes moves from the shared index until none are left and records each one's exact
+         * score at the given depth, from the side to move's point of view. Used for analysis,
+         * where every move needs a true value rather than a bound.
+         */
+        void scoreMoves(int[] moves, int[] scores, int depth, AtomicInteger nextIndex) {
+            int index;
+            while ((index = nextIndex.getAndIncrement()) < moves.length && !limits.isAborted()) {
+                play(moves[index]);
+                scores[index] = -negamax(depth - 1, 1, -INFINITY, INFINITY);
+                undo(moves[index]);
+            }
+            limits.nodes.addAndGet(pendingNodes);
+            pendingNodes = 0;
+        }
+
+        /**
+         * Searches the current position from the side to move's point of view.
+         */
+        int negamax(int depth, int ply, int alpha, int beta) {
+            if (++pendingNodes >= NODE_CHECK_INTERVAL) {
+                limits.addNodes(pendingNodes);
+                pendingNodes = 0;
+            }
+            if (limits.isAborted()) {
+                return 0;
+            }
+            if (state.isGameOver()) {
+                return terminalScore(ply);
+            }
+            if (depth == 0) {
+                return evaluate(ply);
+            }
+
+            long key = 0;
+            int tableMove = -1;
+            if (table != null) {
+                key = TranspositionTable.key(boardHash, state) ^ keySalt;
+                long entry = table.probe(key);
+                if (entry != 0) {
+                    tableMove = TranspositionTable.move(entry);
+                    if (TranspositionTable.depth(entry) >= depth) {
+                        int score = TranspositionTable.fromStored(TranspositionTable.score(entry), ply);
+                        int bound = TranspositionTable.bound(entry);
+                        if (bound == TranspositionTable.EXACT
+                                || bound == TranspositionTable.LOWER && score >= beta
+                                || bound == TranspositionTable.UPPER && score <= alpha) {
+                            return score;
+                        }
+                    }
+                }
+            }
+
+            int[] moves = orderedMoves(ply);
+            if (tableMove >= 0) {
+                moveToFront(moves, tableMove);
+            }
+            int originalAlpha = alpha;
+            int best = -INFINITY;
+            int bestMove = -1;
+            for (int move : moves) {
+                if (move < 0) {
+                    break;
+                }
+                play(move);
+                int score = -negamax(depth - 1, ply + 1, -beta, -alpha);
+                undo(move);
+                if (score > best) {
+                    best = score;
+                    bestMove = move;
+                    if (score > alpha) {
+                        alpha = score;
+                        if (alpha >= beta) {
+                            break;
+                        }
+                    }
+                }
+            }
+            if (table != null && !limits.isAborted()) {
+                int bound = best >= beta ? TranspositionTable.LOWER
+                        : best <= originalAlpha ? TranspositionTable.UPPER : TranspositionTable.EXACT;
+                table.store(key, depth, bound, TranspositionTable.toStored(best, ply), bestMove);
+            }
+            return best;
+        }
+
+        /**
+         * Derives a key component from the evaluation weights, so searches with different
+         * weights never read each other's scores from a shared table.
+         */
+        private static long keySalt(PatternWeights weights) {
+            if (weights == null) {
+                return 0;
+            }
+            long hash = 1;
+            for (int i = 0; i < PatternWeights.PATTERNS_3 + PatternWeights.PATTERNS_5; i++) {
+                hash = hash * 31 + weights.get(i);
+            }
+            return hash * 0x9E3779B97F4A7C15L;
+        }
+
+        /**
+         * Moves the table's best move to the front of a move list, keeping the order of the
+         * others. Nothing changes if the move is not in the list, e.g. because a simple game
+         * only lists winning moves.
+         */
+        private static void moveToFront(int[] moves, int move) {
+            for (int i = 0; i < moves.length && moves[i] >= 0; i++) {
+                if (moves[i] == move) {
+                    System.arraycopy(moves, 0, moves, 1, i);
+                    moves[0] = move;
+                    return;
+                }
+            }
+        }
+
+        /**
+         * Places an encoded move on both the state and the threat index.
+         */
+        private void play(int move) {
+            int cell = move >> 1;
+            char letter = (move & 1) == 0 ? 'S' : 'O';
+            state.placeMove(cell / boardSize, cell % boardSize, letter);
+            threats.place(cell / boardSize, cell % boardSize, letter);
+            boardHash ^= TranspositionTable.moveKey(move);
+            if (patterns != null) {
+                patterns.place(cell / boardSize, cell % boardSize, letter);
+            }
+        }
+
+        /**
+         * Takes an encoded move back from both the state and the threat index.
+         */
+        private void undo(int move) {
+            int cell = move >> 1;
+            state.undoMove(cell / boardSize, cell % boardSize);
+            threats.remove(cell / boardSize, cell % boardSize);
+            boardHash ^= TranspositionTable.moveKey(move);
+            if (patterns != null) {
+                patterns.remove(cell / boardSize, cell % boardSize);
+            }
+        }
+
+        /**
+         * Generates the legal moves, most SOS formed first and, among equal gains, fewest setups
+         * left for the opponent first. In a simple game only the winning moves are returned when
+         * there are any. The returned buffer is terminated by -1 when it is not full.
+         */
+        int[] orderedMoves(int ply) {
+            int[] moves = ply == 0 ? new int[state.getEmptyCells() * 2] : moveBuffers[ply];
+            int[] gains = ply == 0 ? new int[moves.length] : gainBuffers[ply];
+            int count = 0;
+            int bestGain = 0;
+            for (int row = 0; row < boardSize; row++) {
+                for (int col = 0; col < boardSize; col++) {
+                    if (!threats.isEmpty(row, col)) {
+                        continue;
+                    }
+                    int cell = row * boardSize + col;
+                    for (int letter = 0; letter < 2; letter++) {
+                        char character = letter == 0 ? 'S' : 'O';
+                        int sos = threats.getSosIf(row, col, character);
+                        bestGain = Math.max(bestGain, sos);
+                        // Gain dominates; the danger count only breaks ties between equal gains
+                        int gain = sos * 16 - Math.min(15, threats.getDangerIf(row, col, character));
+                        // Insertion keeps the list sorted by descending gain
+                        int i = count++;
+                        while (i > 0 && gains[i - 1] < gain) {
+                            moves[i] = moves[i - 1];
+                            gains[i] = gains[i - 1];
+                            i--;
+                        }
+                        moves[i] = cell * 2 + letter;
+                        gains[i] = gain;
+                    }
+                }
+            }
+            if (!state.isGeneralMode() && bestGain > 0) {
+                // Any SOS wins a simple game outright, so the other moves need not be searched.
+                // Winning moves are exactly those with a positive ordering key.
+                int winners = 0;
+                while (winners < count && gains[winners] > 0) {
+                    winners++;
+                }
+                count = winners;
+            }
+            if (ply == 0) {
+                int[] exact = new int[count];
+                System.arraycopy(moves, 0, exact, 0, count);
+                return exact;
+            }
+            if (count < moves.length) {
+                moves[count] = -1;
+            }
+            return moves;
+        }
+
+        /**
+         * Scores a finished game from the side to move's point of view.
+         */
+        private int terminalScore(int ply) {
+            int difference = scoreDifference();
+            if (state.isGeneralMode()) {
+                return difference * SOS_VALUE + Integer.signum(difference) * GENERAL_WIN_BONUS;
+            }
+            return Integer.signum(difference) * (WIN - ply);
+        }
+
+        /**
+         * Statically evaluates an unfinished position from the side to move's point of view.
+         * The side to move is credited with the best SOS it can complete right away; in general
+         * games the pattern evaluation, when weights are configured, adds its correction.
+         */
+        private int evaluate(int ply) {
+            int bestGain = threats.getBestGain();
+            if (!state.isGeneralMode()) {
+                return bestGain > 0 ? WIN - ply - 1 : 0;
+            }
+            int value = scoreDifference() * SOS_VALUE + bestGain * GAIN_VALUE;
+            return patterns != null ? value + patterns.getValue() : value;
+        }
+
+        /**
+         * Returns the side to move's score minus the opponent's score.
+         */
+        private int scoreDifference() {
+            int difference = state.getPlayerOneScore() - state.getPlayerTwoScore();
+            return state.isPlayerOneTurn() ? difference : -difference;
+        }
+    }
+}
@@ -8,42 +8,80 @@ public class SimpleGame extends SOSGame {
 
     private final GameEndListener gameEndListener;
 
+    /**
+     * Initializes a SimpleGame that reports only through its event bus.
+     *
+     * @param boardSize the size of the board in a square dimension (e.g., 3 for a 3x3 board)
+     */
+    public SimpleGame(int boardSize) {
+        this(boardSize, null);
+    }
+
     /**
      * Initializes a SimpleGame with a specified board size and a game end listener.
      *
      * @param boardSize the size of the board in a square dimension (e.g., 3 for a 3x3 board)
-     * @param gameEndListener the listener to handle end-of-game notifications
+     * @param gameEndListener the listener to handle end-of-game notifications, or null
      */
     public SimpleGame(int boardSize, GameEndListener gameEndListener) {
-        super(boardSize);
+        this(boardSize, LineRule.STANDARD, gameEndListener);
+    }
+
+    /**
+     * Initializes a SimpleGame with a variant scoring rule.
+     *
+     * @param boardSize the size of the board in a square dimension (e.g., 3 for a 3x3 board)
+     * @param rule the rule defining the letters and the lines that score
+     * @param gameEndListener the listener to handle end-of-game notifications, or null
+     */
+    public SimpleGame(int boardSize, LineRule rule, GameEndListener gameEndListener) {
+        super(boardSize, rule);
         this.gameEndListener = gameEndListener;
     }
 
     /**
-     * Places a move for the current player at the specified position and checks for SOS formation.
-     * If an SOS is formed, the game ends with the current player declared the winner. If the board
-     * is filled with no SOS formed, the game ends in a draw.
+     * Checks a placed move for SOS formation. If an SOS is formed, the game ends with the current
+     * player declared the winner. If the board is filled with no SOS formed, the game ends in a
+     * draw.
      *
-     * @param row the row position for the move
-     * @param col the column position for the move
-     * @param character the character ('S' or 'O') to place
-     * @return true if the move is successfully placed, false otherwise
+     * @param row the row position of the move
+     * @param col the column position of the move
+     * @param character the character ('S' or 'O') placed
+     * @param player the player who moved (1 or 2)
+     * @param placed true if the letter was placed, false if the move was invalid
+     * @return the number of SOS lines formed
      */
     @Override
-    public boolean placeMove(int row, int col, char character) {
-        boolean moveSuccess = super.placeMove(row, col, character);
-
-        if (moveSuccess) {
-            int sosCount = checkForSOSCount(row, col);
-
-            if (sosCount > 0) {
-                String winnerMessage = "Player " + (isPlayerOneTurn() ? "2" : "1") + " wins by forming an SOS!";
+    protected int scoreMove(int row, int col, char character, int player, boolean placed) {
+        if (!placed) {
+            return 0;
+        }
+        int sosCount = checkForSOSCount(row, col);
+        if (sosCount > 0) {
+            String winnerMessage = "Player " + player + " wins by forming an SOS!";
+            publishFormedLines(player);
+            if (!isGameOver()) {
+                endGame(player, player == 1 ? 1 : 0, player == 2 ? 1 : 0, winnerMessage);
+            }
+            if (gameEndListener != null) {
                 gameEndListener.onGameEnd(winnerMessage);
-            } else if (isBoardFull()) {
-                gameEndListener.onGameEnd("The game is a draw. No SOS formed.");
+            }
+        } else if (isBoardFull()) {
+            String drawMessage = "The game is a draw. No SOS formed.";
+            if (!isGameOver()) {
+                endGame(0, 0, 0, drawMessage);
+            }
+            if (gameEndListener != null) {
+                gameEndListener.onGameEnd(drawMessage);
             }
         }
+        int scorer = sosCount > 0 ? player : 0;
+        broadcastMove(row, col, character, player, scorer == 1 ? 1 : 0, scorer == 2 ? 1 : 0);
+        return sosCount;
+    }
 
-        return moveSuccess;
+    @Override
+    boolean hasGameEndListener() {
+        return gameEndListener != null;
     }
 }
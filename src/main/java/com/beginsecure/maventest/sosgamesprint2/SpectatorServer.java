@@ -0,0 +1,574 @@
+package com.beginsecure.maventest.sosgamesprint2;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Streams hosted games to any number of spectators over TCP. Every move of a hosted game is
+ * encoded once into a read-only slice of a large direct buffer shared by many frames, and
+ * every spectator of the game is sent a
+ * {@link ByteBuffer#duplicate() duplicate} of it, a view sharing the same bytes, so the cost
+ * of a move does not grow with the bytes times the spectators. Every
+ * {@link #KEYFRAME_INTERVAL} moves a keyframe holding a {@link GameSnapshot} of the game is
+ * encoded as well; a spectator who joins late is sent the latest keyframe and the moves since,
+ * and one who falls {@link #MAX_QUEUED_FRAMES} frames behind is sent them again instead of the
+ * backlog. All sockets are served by one selector thread.
+ *
+ * <p>A spectator connects and sends the id of the game to watch as a big-endian int. Frames
+ * are then sent big-endian, each starting with
+ * <pre>
+ *  0  int    length of the rest of the frame
+ *  4  byte   type: 1 move, 2 keyframe
+ *  5  int    number of moves played in the game
+ * </pre>
+ * followed, for a move, by
+ * <pre>
+ *  9  byte   player who moved, 1 or 2
+ * 10  short  cell, row * board size + column
+ * 12  char   letter
+ * 14  short  Player 1 score
+ * 16  short  Player 2 score
+ * 18  byte   status: 0 in progress, 1 or 2 won by that player, 3 drawn
+ * 19  byte   number of lines formed k
+ * 20  short[3k] first, middle and last cell of each line
+ * </pre>
+ * and, for a keyframe, by the snapshot. {@link #apply(SOSGame, ByteBuffer)} replays frames onto
+ * a spectator's copy of the game.
+ */
+public class SpectatorServer implements AutoCloseable {
+
+    /** Frame type of a move. */
+    public static final byte MOVE = 1;
+    /** Frame type of a keyframe. */
+    public static final byte KEYFRAME = 2;
+    /** The number of moves between keyframes. */
+    public static final int KEYFRAME_INTERVAL = 16;
+    /** The most frames queued for a spectator before it is sent the latest keyframe instead. */
+    public static final int MAX_QUEUED_FRAMES = 256;
+
+    private static final int HEADER_BYTES = 9;
+    private static final int MOVE_BYTES = 11;
+    private static final int SLAB_BYTES = 1 << 18; // Frames are sliced from direct buffers this size
+
+    private final ServerSocketChannel server;
+    private final Selector selector;
+    private final Thread thread;
+    private final int sendBufferBytes; // 0 leaves the socket send buffers to the system
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    private final Map<Integer, Broadcast> broadcasts = new HashMap<>(); // Selector thread only
+    private final AtomicLong framesEncoded = new AtomicLong();
+    private final AtomicLong framesSent = new AtomicLong();
+    private final AtomicLong bytesSent = new AtomicLong();
+    private final AtomicLong resyncs = new AtomicLong();
+    private volatile int spectators;
+    private ByteBuffer slab; // Guarded by this; the rest of it is free for new frames
+
+    /**
+     * Starts a server on the loopback interface.
+     *
+     * @param port the port to listen on, or 0 for any free port
+     * @throws IOException if the port cannot be opened
+     */
+    public SpectatorServer(int port) throws IOException {
+        this(new InetSocketAddress("127.0.0.1", port));
+    }
+
+    /**
+     * Starts a server on a given address.
+     *
+     * @param address the address to listen on
+     * @throws IOException if the address cannot be opened
+     */
+    public SpectatorServer(InetSocketAddress address) throws IOException {
+        this(address, 0);
+    }
+
+    /**
+     * Starts a server whose spectator sockets buffer at most a given number of bytes, so that
+     * tests can make a spectator fall behind without sending megabytes.
+     *
+     * @param address the address to listen on
+     * @param sendBufferBytes the send buffer size of each spectator socket, or 0 for the default
+     * @throws IOException if the address cannot be opened
+     */
+    SpectatorServer(InetSocketAddress address, int sendBufferBytes) throws IOException {
+        this.sendBufferBytes = sendBufferBytes;
+        selector = Selector.open();
+        server = ServerSocketChannel.open();
+        server.bind(address, 4096);
+        server.configureBlocking(false);
+        server.register(selector, SelectionKey.OP_ACCEPT);
+        thread = new Thread(this::run, "sos-spectators");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Retrieves the port the server listens on.
+     *
+     * @return the local port
+     */
+    public int getPort() {
+        return server.socket().getLocalPort();
+    }
+
+    /**
+     * Starts streaming a game. Spectators can join from now on with the game's
+     * {@linkplain SOSGame#getGameId() id}.
+     *
+     * @param game the game to stream
+     */
+    public void host(SOSGame game) {
+        ByteBuffer keyframe = encodeKeyframe(game, game.getMoveCount());
+        int gameId = game.getGameId();
+        execute(() -> broadcasts.put(gameId, new Broadcast(keyframe)));
+        game.setSpectatorServer(this);
+    }
+
+    /**
+     * Stops streaming a game. Its spectators are disconnected once sent the frames already
+     * queued for them.
+     *
+     * @param game the hosted game
+     */
+    public void unhost(SOSGame game) {
+        game.setSpectatorServer(null);
+        int gameId = game.getGameId();
+        execute(() -> {
+            Broadcast broadcast = broadcasts.remove(gameId);
+            if (broadcast != null) {
+                for (Spectator spectator : broadcast.audience) {
+                    spectator.finish();
+                }
+            }
+        });
+    }
+
+    /**
+     * Encodes a move of a hosted game and sends it to the game's spectators. Called by the
+     * game once the move has been scored.
+     *
+     * @param game the game, already updated
+     * @param row the row of the move
+     * @param col the column of the move
+     * @param letter the letter placed
+     * @param player the player who moved, 1 or 2
+     * @param playerOneScore the score of Player 1 after the move
+     * @param playerTwoScore the score of Player 2 after the move
+     */
+    void publishMove(SOSGame game, int row, int col, char letter, int player, int playerOneScore,
+                     int playerTwoScore) {
+        int size = game.getBoard().length;
+        LineMatcher matcher = game.getLineMatcher();
+        int lines = matcher.getFormedCount();
+        int moveNumber = game.getMoveCount();
+        ByteBuffer frame = allocateFrame(HEADER_BYTES + MOVE_BYTES + lines * 3 * Short.BYTES);
+        frame.putInt(frame.capacity() - Integer.BYTES).put(MOVE).putInt(moveNumber);
+        frame.put((byte) player).putShort((short) (row * size + col)).putChar(letter)
+                .putShort((short) playerOneScore).putShort((short) playerTwoScore);
+        int status = !game.isGameOver() ? 0 : game.getWinner() == 0 ? 3 : game.getWinner();
+        frame.put((byte) status).put((byte) lines);
+        for (int i = 0; i < lines; i++) {
+            for (int position = 0; position < 3; position++) {
+                frame.putShort((short) matcher.getFormedCell(i, position));
+            }
+        }
+        ByteBuffer move = frame.flip().asReadOnlyBuffer();
+        ByteBuffer keyframe = moveNumber % KEYFRAME_INTERVAL == 0 || game.isGameOver()
+                ? encodeKeyframe(game, moveNumber) : null;
+        framesEncoded.incrementAndGet();
+        int gameId = game.getGameId();
+        execute(() -> {
+            Broadcast broadcast = broadcasts.get(gameId);
+            if (broadcast != null) {
+                broadcast.publish(move, keyframe);
+            }
+        });
+    }
+
+    /**
+     * Encodes a keyframe of a game.
+     */
+    private ByteBuffer encodeKeyframe(SOSGame game, int moveNumber) {
+        ByteBuffer frame = allocateFrame(HEADER_BYTES + GameSnapshot.sizeOf(game));
+        frame.putInt(frame.capacity() - Integer.BYTES).put(KEYFRAME).putInt(moveNumber);
+        GameSnapshot.write(game, frame);
+        framesEncoded.incrementAndGet();
+        return frame.flip().asReadOnlyBuffer();
+    }
+
+    /**
+     * Provides a direct buffer for one frame, sliced from the current slab so that a move does
+     * not pay for a direct allocation. A new slab is allocated when the current one is used up;
+     * an old one is freed once no queued or retained frame refers to it.
+     */
+    private synchronized ByteBuffer allocateFrame(int bytes) {
+        if (bytes > SLAB_BYTES / 16) {
+            return ByteBuffer.allocateDirect(bytes);
+        }
+        if (slab == null || slab.remaining() < bytes) {
+            slab = ByteBuffer.allocateDirect(SLAB_BYTES);
+        }
+        ByteBuffer frame = slab.slice(slab.position(), bytes);
+        slab.position(slab.position() + bytes);
+        return frame;
+    }
+
+    /**
+     * Applies a frame to a spectator's copy of a game.
+     *
+     * @param view the copy built from earlier frames, or null before the first keyframe
+     * @param frame a whole frame, including its length
+     * @return the updated copy: a new game for a keyframe, the same one for a move
+     * @throws IllegalArgumentException if the frame is invalid or a move arrives before the
+     *                                  first keyframe
+     */
+    public static SOSGame apply(SOSGame view, ByteBuffer frame) {
+        ByteBuffer buffer = frame.duplicate();
+        buffer.getInt();
+        byte type = buffer.get();
+        buffer.getInt();
+        if (type == KEYFRAME) {
+            return GameSnapshot.read(buffer, null);
+        }
+        if (type != MOVE || view == null) {
+            throw new IllegalArgumentException("Unexpected frame type " + type);
+        }
+        buffer.get();
+        int cell = buffer.getShort();
+        char letter = buffer.getChar();
+        int size = view.getBoard().length;
+        if (!view.placeMove(cell / size, cell % size, letter)) {
+            throw new IllegalArgumentException("Invalid move in frame at cell " + cell);
+        }
+        return view;
+    }
+
+    /**
+     * Runs a task on the selector thread.
+     */
+    private void execute(Runnable task) {
+        tasks.add(task);
+        selector.wakeup();
+    }
+
+    /**
+     * Accepts spectators, reads their requests and writes their frames until closed.
+     */
+    private void run() {
+        try {
+            while (selector.isOpen()) {
+                selector.select();
+                Runnable task;
+                while ((task = tasks.poll()) != null) {
+                    task.run();
+                }
+                for (SelectionKey key : selector.selectedKeys()) {
+                    try {
+                        if (!key.isValid()) {
+                            continue;
+                        }
+                        if (key.isAcceptable()) {
+                            accept();
+                        } else {
+                            Spectator spectator = (Spectator) key.attachment();
+                            if (key.isReadable()) {
+                                spectator.read();
+                            }
+                            if (key.isValid() && key.isWritable()) {
+                                spectator.flush();
+                            }
+                        }
+                    } catch (IOException e) {
+                        if (key.attachment() instanceof Spectator spectator) {
+                            spectator.close();
+                        }
+                    }
+                }
+                selector.selectedKeys().clear();
+            }
+        } catch (IOException | ClosedSelectorException e) {
+            // The server was closed
+        }
+    }
+
+    /**
+     * Accepts every pending connection.
+     */
+    private void accept() throws IOException {
+        SocketChannel channel;
+        while ((channel = server.accept()) != null) {
+            channel.configureBlocking(false);
+            channel.socket().setTcpNoDelay(true);
+            if (sendBufferBytes > 0) {
+                channel.setOption(StandardSocketOptions.SO_SNDBUF, sendBufferBytes);
+            }
+            Spectator spectator = new Spectator(channel);
+            spectator.key = channel.register(selector, SelectionKey.OP_READ, spectator);
+            spectators++;
+        }
+    }
+
+    /**
+     * Retrieves the number of connected spectators.
+     *
+     * @return the spectator count
+     */
+    public int getSpectatorCount() {
+        return spectators;
+    }
+
+    /**
+     * Retrieves the number of frames encoded, each once however many spectators receive it.
+     *
+     * @return the encoded frame count
+     */
+    public long getFramesEncoded() {
+        return framesEncoded.get();
+    }
+
+    /**
+     * Retrieves the number of frames written in full to spectators.
+     *
+     * @return the sent frame count
+     */
+    public long getFramesSent() {
+        return framesSent.get();
+    }
+
+    /**
+     * Retrieves the number of bytes written to spectators.
+     *
+     * @return the byte count
+     */
+    public long getBytesSent() {
+        return bytesSent.get();
+    }
+
+    /**
+     * Retrieves how often a spectator too far behind was sent the latest keyframe instead of
+     * its backlog.
+     *
+     * @return the resync count
+     */
+    public long getResyncs() {
+        return resyncs.get();
+    }
+
+    /**
+     * Stops the server and disconnects every spectator.
+     */
+    @Override
+    public void close() {
+        execute(() -> {
+            for (SelectionKey key : selector.keys()) {
+                try {
+                    key.channel().close();
+                } catch (IOException e) {
+                    // Already closed
+                }
+            }
+            try {
+                selector.close();
+            } catch (IOException e) {
+                // Already closed
+            }
+        });
+        try {
+            thread.join(1000);
+            server.close();
+        } catch (IOException e) {
+            // Already closed
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * The frames of one hosted game: the latest keyframe, the moves since, and the spectators.
+     * Used on the selector thread only.
+     */
+    private final class Broadcast {
+        private ByteBuffer keyframe;
+        private final List<ByteBuffer> movesSinceKeyframe = new ArrayList<>();
+        private final List<Spectator> audience = new ArrayList<>();
+
+        Broadcast(ByteBuffer keyframe) {
+            this.keyframe = keyframe;
+        }
+
+        /**
+         * Sends a move to every spectator and, if given, makes the keyframe taken after it the
+         * starting point for spectators joining later.
+         */
+        void publish(ByteBuffer move, ByteBuffer nextKeyframe) {
+            // Record the move first so that a spectator resynced below is sent it as well
+            if (nextKeyframe != null) {
+                keyframe = nextKeyframe;
+                movesSinceKeyframe.clear();
+            } else {
+                movesSinceKeyframe.add(move);
+            }
+            for (int i = audience.size() - 1; i >= 0; i--) {
+                Spectator spectator = audience.get(i);
+                if (!spectator.isOpen()) {
+                    audience.remove(i);
+                } else if (spectator.queue.size() >= MAX_QUEUED_FRAMES) {
+                    resyncs.incrementAndGet();
+                    spectator.resync(this);
+                } else {
+                    spectator.send(move);
+                }
+            }
+        }
+
+        /**
+         * Adds a spectator, starting it at the latest keyframe.
+         */
+        void join(Spectator spectator) {
+            audience.add(spectator);
+            spectator.resync(this);
+        }
+    }
+
+    /**
+     * A connected spectator and the frames waiting to be written to it.
+     */
+    private final class Spectator {
+        private final SocketChannel channel;
+        private final ByteBuffer request = ByteBuffer.allocate(Integer.BYTES);
+        private final ArrayDeque<ByteBuffer> queue = new ArrayDeque<>();
+        private SelectionKey key;
+        private boolean finishing; // The game is no longer hosted
+
+        Spectator(SocketChannel channel) {
+            this.channel = channel;
+        }
+
+        boolean isOpen() {
+            return channel.isOpen();
+        }
+
+        /**
+         * Reads the game request, or notices that the spectator left.
+         */
+        void read() throws IOException {
+            if (request.hasRemaining()) {
+                if (channel.read(request) < 0) {
+                    close();
+                    return;
+                }
+                if (!request.hasRemaining()) {
+                    Broadcast broadcast = broadcasts.get(request.flip().getInt());
+                    if (broadcast == null) {
+                        close();
+                        return;
+                    }
+                    broadcast.join(this);
+                }
+                return;
+            }
+            ByteBuffer ignored = ByteBuffer.allocate(64);
+            if (channel.read(ignored) < 0) {
+                close();
+            }
+        }
+
+        /**
+         * Replaces the queued frames, except one already partly written, with the latest
+         * keyframe and the moves since.
+         */
+        void resync(Broadcast broadcast) {
+            ByteBuffer partial = queue.peekFirst();
+            queue.clear();
+            if (partial != null && partial.position() > 0) {
+                queue.add(partial);
+            }
+            queue.add(broadcast.keyframe.duplicate());
+            for (ByteBuffer move : broadcast.movesSinceKeyframe) {
+                queue.add(move.duplicate());
+            }
+            tryFlush();
+        }
+
+        /**
+         * Queues a view of a shared frame and writes what the socket takes.
+         */
+        void send(ByteBuffer frame) {
+            queue.add(frame.duplicate());
+            tryFlush();
+        }
+
+        /**
+         * Writes queued frames, closing the spectator if the socket fails.
+         */
+        private void tryFlush() {
+            try {
+                flush();
+            } catch (IOException e) {
+                close();
+            }
+        }
+
+        /**
+         * Disconnects the spectator once its queued frames are written, as its game will send
+         * no more.
+         */
+        void finish() {
+            finishing = true;
+            tryFlush();
+        }
+
+        /**
+         * Writes queued frames until the socket is full, then waits for it to drain.
+         */
+        void flush() throws IOException {
+            while (!queue.isEmpty()) {
+                ByteBuffer head = queue.peekFirst();
+                bytesSent.addAndGet(channel.write(head));
+                if (head.hasRemaining()) {
+                    key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                    return;
+                }
+                queue.pollFirst();
+                framesSent.incrementAndGet();
+            }
+            if (finishing) {
+                close();
+                return;
+            }
+            key.interestOps(SelectionKey.OP_READ);
+        }
+
+        /**
+         * Disconnects the spectator.
+         */
+        void close() {
+            if (channel.isOpen()) {
+                spectators--;
+                queue.clear();
+                key.cancel();
+                try {
+                    channel.close();
+                } catch (IOException e) {
+                    // Already closed
+                }
+            }
+        }
+    }
+}
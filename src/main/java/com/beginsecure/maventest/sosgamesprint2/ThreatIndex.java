@@ -0,0 +1,313 @@
+package com.beginsecure.maventest.sosgamesprint2;
+
+import java.util.Arrays;
+
+/**
+ * An incrementally maintained per-cell index of SOS threats. For every empty cell it records
+ * <ul>
+ *     <li>how many SOS an 'S' placed there would complete,</li>
+ *     <li>how many SOS an 'O' placed there would complete, and</li>
+ *     <li>for each letter, how many "dangerous" setups the move would create: lines left with a
+ *     single empty cell that the opponent could complete on the next turn.</li>
+ * </ul>
+ * The index is kept up to date by {@link #place(int, int, char)} and {@link #remove(int, int)},
+ * each of which re-scores only the twelve three-cell lines through the changed cell. Reading a
+ * cell's counts is O(1), so greedy players, hints, move ordering and prompts no longer need to
+ * re-run the neighbourhood scan of {@code checkForSOSCount} for every empty cell.
+ */
+public class ThreatIndex {
+
+    // Line tables depend only on the board size, so they are shared by every index of that size
+    private static final int[][] TRIPLES_BY_SIZE = new int[16][];
+    private static final int[][][] TRIPLES_OF_CELL_BY_SIZE = new int[16][][];
+
+    private final int boardSize;
+    private final byte[] letters;    // Own copy of the board, one CompactGameState letter value per cell
+    private final int[] triples;     // Three cell indices per line: end, middle, end
+    private final int[][] triplesOfCell;
+    private final byte[] sosIfS;
+    private final byte[] sosIfO;
+    private final byte[] dangerIfS;
+    private final byte[] dangerIfO;
+
+    /**
+     * Initializes the index for an empty board.
+     *
+     * @param boardSize the size of the board in a square dimension
+     */
+    public ThreatIndex(int boardSize) {
+        this.boardSize = boardSize;
+        int cells = boardSize * boardSize;
+        this.letters = new byte[cells];
+        if (boardSize >= TRIPLES_BY_SIZE.length) {
+            this.triples = triplesFor(boardSize);
+            this.triplesOfCell = indexByCell(triples, cells);
+        } else {
+            synchronized (TRIPLES_BY_SIZE) {
+                if (TRIPLES_BY_SIZE[boardSize] == null) {
+                    TRIPLES_BY_SIZE[boardSize] = triplesFor(boardSize);
+                    TRIPLES_OF_CELL_BY_SIZE[boardSize] = indexByCell(TRIPLES_BY_SIZE[boardSize], cells);
+                }
+                this.triples = TRIPLES_BY_SIZE[boardSize];
+                this.triplesOfCell = TRIPLES_OF_CELL_BY_SIZE[boardSize];
+            }
+        }
+        this.sosIfS = new byte[cells];
+        this.sosIfO = new byte[cells];
+        this.dangerIfS = new byte[cells];
+        this.dangerIfO = new byte[cells];
+    }
+
+    /**
+     * Builds an index for the current position of a compact game.
+     *
+     * @param state the position to index
+     * @return an index matching the position
+     */
+    public static ThreatIndex of(CompactGameState state) {
+        ThreatIndex index = new ThreatIndex(state.getBoardSize());
+        for (int row = 0; row < state.getBoardSize(); row++) {
+            for (int col = 0; col < state.getBoardSize(); col++) {
+                if (state.getLetter(row, col) != '\0') {
+                    index.place(row, col, state.getLetter(row, col));
+                }
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Updates the index for a letter placed on an empty cell.
+     *
+     * @param row the row position
+     * @param col the column position
+     * @param letter the character ('S' or 'O') placed
+     */
+    public void place(int row, int col, char letter) {
+        set(row * boardSize + col, CompactGameState.toCellValue(letter));
+    }
+
+    /**
+     * Empties the index, for a new game of the same size.
+     */
+    public void clear() {
+        Arrays.fill(letters, CompactGameState.EMPTY);
+        Arrays.fill(sosIfS, (byte) 0);
+        Arrays.fill(sosIfO, (byte) 0);
+        Arrays.fill(dangerIfS, (byte) 0);
+        Arrays.fill(dangerIfO, (byte) 0);
+    }
+
+    /**
+     * Fills an empty index with a whole board at once, scoring every line a single time instead
+     * of rescoring the lines through each letter as it is placed.
+     *
+     * @param board the letters of each cell, '\0' for empty cells
+     */
+    public void placeAll(char[][] board) {
+        for (int row = 0; row < boardSize; row++) {
+            for (int col = 0; col < boardSize; col++) {
+                if (board[row][col] != '\0') {
+                    letters[row * boardSize + col] = CompactGameState.toCellValue(board[row][col]);
+                }
+            }
+        }
+        for (int line = 0; line < triples.length / 3; line++) {
+            score(line, 1);
+        }
+    }
+
+    /**
+     * Updates the index for a letter taken back from a cell.
+     *
+     * @param row the row position
+     * @param col the column position
+     */
+    public void remove(int row, int col) {
+        set(row * boardSize + col, CompactGameState.EMPTY);
+    }
+
+    /**
+     * Changes a cell, withdrawing the old contributions of every line through it and adding the
+     * new ones.
+     */
+    private void set(int cell, byte value) {
+        int[] lines = triplesOfCell[cell];
+        for (int line : lines) {
+            score(line, -1);
+        }
+        letters[cell] = value;
+        for (int line : lines) {
+            score(line, 1);
+        }
+    }
+
+    /**
+     * Adds (sign 1) or withdraws (sign -1) one line's contribution to the counts of its empty
+     * cells.
+     */
+    private void score(int line, int sign) {
+        int first = triples[line * 3];
+        int middle = triples[line * 3 + 1];
+        int last = triples[line * 3 + 2];
+        int a = letters[first];
+        int b = letters[middle];
+        int c = letters[last];
+        int filled = (a != 0 ? 1 : 0) + (b != 0 ? 1 : 0) + (c != 0 ? 1 : 0);
+
+        if (filled == 2) {
+            // One empty cell: it completes an SOS if the two letters present fit the pattern
+            if (b == 0) {
+                if (a == CompactGameState.LETTER_S && c == CompactGameState.LETTER_S) {
+                    sosIfO[middle] = (byte) (sosIfO[middle] + sign);
+                }
+            } else if (b == CompactGameState.LETTER_O) {
+                if (a == 0 && c == CompactGameState.LETTER_S) {
+                    sosIfS[first] = (byte) (sosIfS[first] + sign);
+                } else if (c == 0 && a == CompactGameState.LETTER_S) {
+                    sosIfS[last] = (byte) (sosIfS[last] + sign);
+                }
+            }
+        } else if (filled == 1) {
+            // Two empty cells: a move into one of them may leave the other completable
+            if (b == CompactGameState.LETTER_O) {
+                dangerIfS[first] = (byte) (dangerIfS[first] + sign);
+                dangerIfS[last] = (byte) (dangerIfS[last] + sign);
+            } else if (a == CompactGameState.LETTER_S) {
+                dangerIfO[middle] = (byte) (dangerIfO[middle] + sign);
+                dangerIfS[last] = (byte) (dangerIfS[last] + sign);
+            } else if (c == CompactGameState.LETTER_S) {
+                dangerIfO[middle] = (byte) (dangerIfO[middle] + sign);
+                dangerIfS[first] = (byte) (dangerIfS[first] + sign);
+            }
+        }
+    }
+
+    /**
+     * Retrieves how many SOS an 'S' at the cell would complete.
+     *
+     * @param row the row position
+     * @param col the column position
+     * @return the SOS count, meaningful for empty cells only
+     */
+    public int getSosIfS(int row, int col) {
+        return sosIfS[row * boardSize + col];
+    }
+
+    /**
+     * Retrieves how many SOS an 'O' at the cell would complete.
+     *
+     * @param row the row position
+     * @param col the column position
+     * @return the SOS count, meaningful for empty cells only
+     */
+    public int getSosIfO(int row, int col) {
+        return sosIfO[row * boardSize + col];
+    }
+
+    /**
+     * Retrieves how many SOS a letter at the cell would complete.
+     *
+     * @param row the row position
+     * @param col the column position
+     * @param letter the character ('S' or 'O')
+     * @return the SOS count, meaningful for empty cells only
+     */
+    public int getSosIf(int row, int col, char letter) {
+        return letter == 'S' ? getSosIfS(row, col) : getSosIfO(row, col);
+    }
+
+    /**
+     * Retrieves how many completable setups a letter at the cell would leave for the opponent.
+     *
+     * @param row the row position
+     * @param col the column position
+     * @param letter the character ('S' or 'O')
+     * @return the number of lines the move would leave one letter short of an SOS
+     */
+    public int getDangerIf(int row, int col, char letter) {
+        int cell = row * boardSize + col;
+        return letter == 'S' ? dangerIfS[cell] : dangerIfO[cell];
+    }
+
+    /**
+     * Checks whether a cell is empty in the indexed position.
+     *
+     * @param row the row position
+     * @param col the column position
+     * @return true if the cell is empty
+     */
+    public boolean isEmpty(int row, int col) {
+        return letters[row * boardSize + col] == CompactGameState.EMPTY;
+    }
+
+    /**
+     * Finds the most SOS any single move can complete in the indexed position.
+     *
+     * @return the best immediate gain, or 0 if no move scores
+     */
+    public int getBestGain() {
+        int best = 0;
+        for (int cell = 0; cell < letters.length; cell++) {
+            if (letters[cell] == CompactGameState.EMPTY) {
+                best = Math.max(best, Math.max(sosIfS[cell], sosIfO[cell]));
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Retrieves the board size.
+     *
+     * @return the number of rows (and columns)
+     */
+    public int getBoardSize() {
+        return boardSize;
+    }
+
+    /**
+     * Returns the three-cell lines of a board size as a flat array of (end, middle, end) cell
+     * indices.
+     */
+    private static int[] triplesFor(int boardSize) {
+        int[] buffer = new int[boardSize * boardSize * CompactGameState.DIRECTIONS * 3];
+        int count = 0;
+        for (int row = 0; row < boardSize; row++) {
+            for (int col = 0; col < boardSize; col++) {
+                for (int dir = 0; dir < CompactGameState.DIRECTIONS; dir++) {
+                    int endRow = row + 2 * CompactGameState.DIR_ROW[dir];
+                    int endCol = col + 2 * CompactGameState.DIR_COL[dir];
+                    if (endRow < 0 || endRow >= boardSize || endCol < 0 || endCol >= boardSize) {
+                        continue;
+                    }
+                    buffer[count++] = row * boardSize + col;
+                    buffer[count++] = (row + CompactGameState.DIR_ROW[dir]) * boardSize + col + CompactGameState.DIR_COL[dir];
+                    buffer[count++] = endRow * boardSize + endCol;
+                }
+            }
+        }
+        int[] triples = new int[count];
+        System.arraycopy(buffer, 0, triples, 0, count);
+        return triples;
+    }
+
+    /**
+     * Lists, for every cell, the lines that pass through it.
+     */
+    private static int[][] indexByCell(int[] triples, int cells) {
+        int[] counts = new int[cells];
+        for (int cell : triples) {
+            counts[cell]++;
+        }
+        int[][] byCell = new int[cells][];
+        for (int cell = 0; cell < cells; cell++) {
+            byCell[cell] = new int[counts[cell]];
+            counts[cell] = 0;
+        }
+        for (int i = 0; i < triples.length; i++) {
+            int cell = triples[i];
+            byCell[cell][counts[cell]++] = i / 3;
+        }
+        return byCell;
+    }
+}
@@ -0,0 +1,307 @@
+package com.beginsecure.maventest.sosgamesprint2;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Spreads a game-level clock over the moves of a local computer player instead of spending the
+ * same time on every move. Each move gets a share of the time left that depends on how many
+ * empty cells the player's remaining moves face: opening moves count half, as deeper search
+ * changes little there, and moves with {@link #SOLVED_EMPTIES} or fewer empty cells a tenth, as
+ * the endgame solver finishes them almost at once. The share is the move's soft target, and
+ * {@link #HARD_FACTOR} times it the hard deadline. After each completed iteration of the search
+ * the target moves:
+ * <ul>
+ *     <li>a best move that stayed the same for several iterations shrinks it, and one that
+ *     just changed stretches it;</li>
+ *     <li>a score that swung by more than an SOS since the last iteration stretches it;</li>
+ *     <li>a best move ahead of every other by {@link #DOMINANCE_MARGIN} for two iterations
+ *     ends the search at once;</li>
+ *     <li>an iteration that would not finish within the target, judging by how much longer
+ *     each iteration took than the one before, is not started.</li>
+ * </ul>
+ * Time a move leaves unused stays on the clock for later moves, and time spent pondering the
+ * position can be {@linkplain Allocation#credit(long) credited} to the move. A
+ * {@linkplain #fixed(long) fixed} manager gives every move the same time and never stops early,
+ * as the {@link Difficulty} levels do on their own.
+ */
+public class TimeManager {
+
+    /** How many times its soft target a move may take at most. */
+    public static final int HARD_FACTOR = 2;
+    /** The number of empty cells from which the rest of the game costs almost no time. */
+    public static final int SOLVED_EMPTIES = 8;
+    /** The margin, in evaluation units, by which a best move ends the search early. */
+    public static final int DOMINANCE_MARGIN = 3 * SearchPlayer.SOS_VALUE;
+
+    private static final double STABLE_FACTOR = 0.5;
+    private static final double CHANGED_FACTOR = 1.3;
+    private static final double SWING_FACTOR = 1.3;
+    private static final int STABLE_ITERATIONS = 3;
+    private static final double OPENING_WEIGHT = 0.5;
+    private static final double SOLVED_WEIGHT = 0.1;
+
+    private final boolean adaptive;
+    private final long millisPerMove; // For a fixed manager
+    private final LongSupplier clock; // System.nanoTime() outside tests
+    private long remainingNanos;
+    private long moves;
+    private long totalNanos;
+    private final AtomicLong earlyStops = new AtomicLong(); // Counted on search threads
+
+    /**
+     * Initializes an adaptive manager for one game.
+     *
+     * @param gameMillis the time the player may spend on all its moves of the game
+     */
+    public TimeManager(long gameMillis) {
+        this(true, 0, gameMillis, System::nanoTime);
+    }
+
+    /**
+     * Initializes an adaptive manager for one game that reads the time from a given clock, so
+     * tests can decide how long each step takes.
+     *
+     * @param gameMillis the time the player may spend on all its moves of the game
+     * @param clock the clock, in nanoseconds like {@link System#nanoTime()}
+     */
+    TimeManager(long gameMillis, LongSupplier clock) {
+        this(true, 0, gameMillis, clock);
+    }
+
+    private TimeManager(boolean adaptive, long millisPerMove, long gameMillis, LongSupplier clock) {
+        this.adaptive = adaptive;
+        this.millisPerMove = millisPerMove;
+        this.remainingNanos = gameMillis * 1_000_000L;
+        this.clock = clock;
+    }
+
+    /**
+     * Initializes a manager that gives every move the same time.
+     *
+     * @param millisPerMove the time per move
+     * @return the manager
+     */
+    public static TimeManager fixed(long millisPerMove) {
+        return new TimeManager(false, millisPerMove, Long.MAX_VALUE / 1_000_000L, System::nanoTime);
+    }
+
+    /**
+     * Initializes an adaptive manager with the clock a level would use over a whole game: its
+     * time per move for each of the player's moves on the board.
+     *
+     * @param difficulty the level
+     * @param boardSize the size of the board
+     * @return the manager
+     */
+    public static TimeManager forGame(Difficulty difficulty, int boardSize) {
+        return new TimeManager(difficulty.getTimePerMoveMillis() * ((boardSize * boardSize + 1) / 2));
+    }
+
+    /**
+     * The time allotted to one move, updated as its search deepens.
+     */
+    public final class Allocation {
+        private final long start = clock.getAsLong();
+        private final long softNanos;
+        private final long hardNanos;
+        private long creditNanos; // Time already spent on the move while the opponent thought
+        private double factor = 1.0;
+        private int lastBest = -1;
+        private int lastScore;
+        private int stableIterations;
+        private int dominantIterations;
+        private long lastIterationEnd;
+        private long lastIterationNanos;
+        private long previousIterationNanos;
+
+        private Allocation(long softNanos, long hardNanos) {
+            this.softNanos = softNanos;
+            this.hardNanos = hardNanos;
+            this.lastIterationEnd = start;
+        }
+
+        /**
+         * Retrieves the time after which the search is stopped whatever happens.
+         *
+         * @return the deadline on the manager's {@linkplain #getClock() clock}
+         */
+        public long getDeadline() {
+            return start + hardNanos - creditNanos;
+        }
+
+        /**
+         * Retrieves the clock the deadline is on, so that the search compares it with the same
+         * time source.
+         *
+         * @return the manager's clock, {@link System#nanoTime()} outside tests
+         */
+        LongSupplier getClock() {
+            return clock;
+        }
+
+        /**
+         * Counts time spent pondering the position as time spent on the move, up to three
+         * quarters of the soft target, so the move is answered sooner when the pondering search
+         * has already done part of the work.
+         *
+         * @param ponderedNanos the time the position was pondered
+         */
+        public void credit(long ponderedNanos) {
+            if (adaptive) {
+                creditNanos = Math.max(0, Math.min(ponderedNanos, softNanos - softNanos / 4));
+            }
+        }
+
+        /**
+         * Retrieves the time the move is expected to take before any adjustment.
+         *
+         * @return the soft target in nanoseconds
+         */
+        public long getSoftNanos() {
+            return softNanos;
+        }
+
+        /**
+         * Marks the start of the iterative deepening, after any solver the player runs first, so
+         * that the first iteration is not charged for the solver's time.
+         */
+        public void iterationsStarted() {
+            lastIterationEnd = clock.getAsLong();
+        }
+
+        /**
+         * Decides, after an iteration of the search has completed, whether to start the next.
+         *
+         * @param bestMove the encoded best move of the iteration
+         * @param bestScore the score of the best move
+         * @param secondScore an upper bound on the score of every other move, or
+         *                    {@code Integer.MIN_VALUE} if there is no other move
+         * @return true to search one ply deeper, false to play the best move now
+         */
+        public boolean iterationDone(int bestMove, int bestScore, int secondScore) {
+            long now = clock.getAsLong();
+            previousIterationNanos = lastIterationNanos;
+            lastIterationNanos = now - lastIterationEnd;
+            lastIterationEnd = now;
+            if (!adaptive) {
+                return true;
+            }
+            boolean firstIteration = lastBest < 0;
+            stableIterations = bestMove == lastBest ? stableIterations + 1 : 0;
+            factor = 1.0;
+            if (stableIterations >= STABLE_ITERATIONS) {
+                factor *= STABLE_FACTOR;
+            } else if (stableIterations == 0 && !firstIteration) {
+                factor *= CHANGED_FACTOR;
+            }
+            if (!firstIteration && Math.abs(bestScore - lastScore) > SearchPlayer.SOS_VALUE) {
+                factor *= SWING_FACTOR;
+            }
+            lastBest = bestMove;
+            lastScore = bestScore;
+            boolean dominant = secondScore == Integer.MIN_VALUE
+                    || (long) bestScore - secondScore >= DOMINANCE_MARGIN;
+            dominantIterations = dominant ? dominantIterations + 1 : 0;
+            if (dominantIterations >= 2) {
+                earlyStops.incrementAndGet();
+                return false;
+            }
+            long elapsed = now - start + creditNanos;
+            long target = Math.min(hardNanos, (long) (softNanos * factor));
+            if (elapsed >= target) {
+                return false;
+            }
+            // Each iteration takes some multiple of the previous one; skip one that cannot finish
+            double growth = previousIterationNanos > 0
+                    ? Math.max(2.0, Math.min(8.0, (double) lastIterationNanos / previousIterationNanos)) : 2.0;
+            if (elapsed + lastIterationNanos * growth > target) {
+                earlyStops.incrementAndGet();
+                return false;
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Allots time to the move of a position.
+     *
+     * @param state the position, with the player to move
+     * @return the move's allocation
+     */
+    public synchronized Allocation allocate(CompactGameState state) {
+        if (!adaptive) {
+            long nanos = millisPerMove * 1_000_000L;
+            return new Allocation(nanos, nanos);
+        }
+        int cells = state.getBoardSize() * state.getBoardSize();
+        double share = weight(state.getEmptyCells(), cells);
+        double total = 0;
+        for (int empties = state.getEmptyCells(); empties > 0; empties -= 2) {
+            total += weight(empties, cells); // The player's own remaining moves
+        }
+        long remaining = Math.max(0, remainingNanos);
+        long soft = (long) (remaining * (share / total));
+        long hard = Math.min(soft * HARD_FACTOR, remaining / 2);
+        return new Allocation(soft, Math.max(soft, hard));
+    }
+
+    /**
+     * Weighs how much a move with a number of empty cells deserves of the clock.
+     */
+    private static double weight(int empties, int cells) {
+        if (empties <= SOLVED_EMPTIES) {
+            return SOLVED_WEIGHT;
+        }
+        return empties > cells * 2 / 3 ? OPENING_WEIGHT : 1.0;
+    }
+
+    /**
+     * Takes the time a move used off the clock.
+     *
+     * @param allocation the move's allocation
+     */
+    public synchronized void moveDone(Allocation allocation) {
+        long used = clock.getAsLong() - allocation.start;
+        remainingNanos -= used;
+        moves++;
+        totalNanos += used;
+    }
+
+    /**
+     * Retrieves the time left on the clock.
+     *
+     * @return the milliseconds left, which may be negative after an overrun
+     */
+    public synchronized long getRemainingMillis() {
+        return remainingNanos / 1_000_000L;
+    }
+
+    /**
+     * Retrieves the average time the moves so far took.
+     *
+     * @return the mean response time in milliseconds, or 0 before the first move
+     */
+    public synchronized double getAverageMillis() {
+        return moves == 0 ? 0 : totalNanos / 1e6 / moves;
+    }
+
+    /**
+     * Retrieves how often a search stopped before its target because one move dominated or
+     * the next iteration could not finish in time.
+     *
+     * @return the early stop count
+     */
+    public long getEarlyStops() {
+        return earlyStops.get();
+    }
+
+    /**
+     * Checks whether the manager adapts the time of each move.
+     *
+     * @return false for a fixed manager
+     */
+    public boolean isAdaptive() {
+        return adaptive;
+    }
+}
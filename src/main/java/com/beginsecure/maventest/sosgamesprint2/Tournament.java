@@ -0,0 +1,663 @@
+package com.beginsecure.maventest.sosgamesprint2;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * Plays computer players against each other and rates them. Matches are scheduled as a round
+ * robin (every pair) or a gauntlet (the first entrant against each of the others) over every
+ * combination of the configured board sizes and game modes. Every round is two games with the
+ * colours swapped, and all games run in parallel on a fixed pool of threads. Each game gets
+ * fresh player instances seeded from the tournament seed, so a tournament is repeatable as
+ * long as its players are. With {@linkplain #entrant(String, LLMService, boolean) deterministic
+ * entrants} and a {@link RecordedLLMService} for LLM players it reproduces exactly: the same
+ * moves and node counts on every run, whatever the number of threads, which
+ * {@link Results#getFingerprint()} summarises in one number.
+ *
+ * <p>Elo ratings are fitted to all results at once (a Bradley-Terry model with draws counted
+ * as half a win, centred on 0). The 95% interval of each rating uses the standard error of that
+ * player's per-game score, as match tools like cutechess do for a single pairing.
+ */
+public class Tournament {
+
+    /** How pairings are chosen. */
+    public enum Format {
+        ROUND_ROBIN, GAUNTLET
+    }
+
+    /**
+     * Creates a new player instance for each game, since players need not be thread-safe.
+     */
+    public interface PlayerFactory {
+
+        /**
+         * Creates a player.
+         *
+         * @param random the random source the player should use
+         * @return a new player
+         */
+        ComputerPlayer create(Random random);
+    }
+
+    /**
+     * A named participant of a tournament.
+     *
+     * @param name the name shown in the results
+     * @param factory creates the participant's player for each game
+     */
+    public record Entrant(String name, PlayerFactory factory) {
+    }
+
+    /**
+     * The outcome of one game. Seat 1 moved first.
+     *
+     * @param index the position of the game in the schedule
+     * @param first the entrant index in seat 1
+     * @param second the entrant index in seat 2
+     * @param boardSize the size of the board
+     * @param generalMode true for a general game, false for a simple game
+     * @param winner 1 or 2 for the winning seat, 0 for a draw
+     * @param firstScore the SOS count of seat 1
+     * @param secondScore the SOS count of seat 2
+     * @param firstMoves the number of moves made by seat 1
+     * @param secondMoves the number of moves made by seat 2
+     * @param firstNanos the thinking time of seat 1
+     * @param secondNanos the thinking time of seat 2
+     * @param forfeit true if the game ended because a player failed to make a legal move
+     * @param firstNodes the positions searched by seat 1, 0 for players that do not search
+     * @param secondNodes the positions searched by seat 2, 0 for players that do not search
+     * @param record the legal moves of the game
+     */
+    public record GameResult(int index, int first, int second, int boardSize, boolean generalMode, int winner,
+                             int firstScore, int secondScore, int firstMoves, int secondMoves,
+                             long firstNanos, long secondNanos, boolean forfeit,
+                             long firstNodes, long secondNodes, GameRecord record) {
+    }
+
+    private static final double Z_95 = 1.959964;
+
+    private final List<Entrant> entrants;
+    private final Format format;
+    private final int[] boardSizes;
+    private final boolean[] modes;
+    private final int rounds;
+    private final long seed;
+    private final int threads;
+
+    /**
+     * Initializes a tournament.
+     *
+     * @param entrants the participants; in a gauntlet the first one plays all others
+     * @param format how pairings are chosen
+     * @param boardSizes the board sizes to play on
+     * @param modes the game modes to play, true for general and false for simple games
+     * @param rounds the number of rounds per pairing, size and mode; each round is two games
+     * @param seed the seed from which each game's random sources are derived
+     * @param threads the number of games played at once
+     */
+    public Tournament(List<Entrant> entrants, Format format, int[] boardSizes, boolean[] modes,
+                      int rounds, long seed, int threads) {
+        if (entrants.size() < 2) {
+            throw new IllegalArgumentException("A tournament needs at least two entrants");
+        }
+        this.entrants = List.copyOf(entrants);
+        this.format = format;
+        this.boardSizes = boardSizes.clone();
+        this.modes = modes.clone();
+        this.rounds = rounds;
+        this.seed = seed;
+        this.threads = Math.max(1, threads);
+    }
+
+    /**
+     * Plays every scheduled game and rates the entrants.
+     *
+     * @return the results
+     */
+    public Results run() {
+        List<int[]> schedule = schedule();
+        ExecutorService pool = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "sos-tournament");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            List<Future<GameResult>> futures = new ArrayList<>();
+            for (int i = 0; i < schedule.size(); i++) {
+                int index = i;
+                futures.add(pool.submit(() -> playGame(index, schedule.get(index))));
+            }
+            List<GameResult> games = new ArrayList<>();
+            for (Future<GameResult> future : futures) {
+                games.add(future.get());
+            }
+            return new Results(entrants, games);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Tournament interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Tournament game failed", e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Lists the games to play as (first seat, second seat, board size, general mode 0/1).
+     */
+    private List<int[]> schedule() {
+        List<int[]> pairings = new ArrayList<>();
+        for (int a = 0; a < entrants.size(); a++) {
+            for (int b = a + 1; b < entrants.size(); b++) {
+                if (format == Format.ROUND_ROBIN || a == 0) {
+                    pairings.add(new int[] {a, b});
+                }
+            }
+        }
+        List<int[]> games = new ArrayList<>();
+        for (int[] pairing : pairings) {
+            for (int size : boardSizes) {
+                for (boolean general : modes) {
+                    for (int round = 0; round < rounds; round++) {
+                        games.add(new int[] {pairing[0], pairing[1], size, general ? 1 : 0});
+                        games.add(new int[] {pairing[1], pairing[0], size, general ? 1 : 0});
+                    }
+                }
+            }
+        }
+        return games;
+    }
+
+    /**
+     * Plays one scheduled game with new player instances. A player that returns no move or an
+     * illegal one loses the game.
+     */
+    private GameResult playGame(int index, int[] game) {
+        Random random = new Random(seed * 31 + index);
+        ComputerPlayer[] players = {
+                entrants.get(game[0]).factory().create(new Random(random.nextLong())),
+                entrants.get(game[1]).factory().create(new Random(random.nextLong()))
+        };
+        CompactGameState state = new CompactGameState(game[2], game[3] == 1);
+        int[] moves = new int[2];
+        long[] nanos = new long[2];
+        long[] nodes = new long[2];
+        List<Move> played = new ArrayList<>();
+        int forfeitedSeat = 0;
+        while (!state.isGameOver()) {
+            int seat = state.isPlayerOneTurn() ? 0 : 1;
+            long start = System.nanoTime();
+            Move move = players[seat].chooseMove(state);
+            nanos[seat] += System.nanoTime() - start;
+            moves[seat]++;
+            if (players[seat] instanceof SearchPlayer) {
+                nodes[seat] += ((SearchPlayer) players[seat]).getLastNodes();
+            }
+            if (move == null || state.placeMove(move.row(), move.col(), move.letter()) < 0) {
+                forfeitedSeat = seat + 1;
+                break;
+            }
+            played.add(move);
+        }
+        int winner = forfeitedSeat == 0 ? state.getWinner() : 3 - forfeitedSeat;
+        return new GameResult(index, game[0], game[1], game[2], game[3] == 1, winner,
+                state.getPlayerOneScore(), state.getPlayerTwoScore(), moves[0], moves[1],
+                nanos[0], nanos[1], forfeitedSeat != 0, nodes[0], nodes[1],
+                new GameRecord(game[2], game[3] == 1, played));
+    }
+
+    /**
+     * Creates an entrant by name: "Random", "Greedy", a {@link Difficulty} label such as
+     * "Medium", or "LLM".
+     *
+     * @param name the entrant name
+     * @param llmService the service used by an "LLM" entrant, or null if there is none
+     * @return the entrant
+     */
+    public static Entrant entrant(String name, LLMService llmService) {
+        return entrant(name, llmService, false);
+    }
+
+    /**
+     * Creates an entrant by name, optionally with {@link SearchPlayer}s that search
+     * deterministically.
+     *
+     * @param name the entrant name
+     * @param llmService the service used by an "LLM" entrant, or null if there is none
+     * @param deterministic true to give search players a node budget instead of a time budget
+     * @return the entrant
+     */
+    public static Entrant entrant(String name, LLMService llmService, boolean deterministic) {
+        switch (name.toLowerCase(Locale.ROOT)) {
+            case "random":
+                return new Entrant("Random", RandomPlayer::new);
+            case "greedy":
+                return new Entrant("Greedy", GreedyPlayer::new);
+            case "llm":
+                if (llmService == null) {
+                    throw new IllegalArgumentException("The LLM entrant needs an LLM service");
+                }
+                return new Entrant("LLM", random -> new LLMPlayer(llmService, random));
+            default:
+                Difficulty difficulty = Difficulty.fromLabel(name);
+                return new Entrant(difficulty.getLabel(),
+                        random -> new SearchPlayer(difficulty, random, PatternWeights.getDefault(), deterministic));
+        }
+    }
+
+    /**
+     * Runs a tournament from the command line and prints the standings. Options (all optional):
+     * {@code --engines Random,Greedy,Easy,Medium --format roundrobin|gauntlet --rounds 2
+     * --sizes 3,5 --modes simple,general --threads N --seed 1 --csv games.csv --json results.json
+     * --llm-url URL --llm-rate 2 --deterministic true --llm-record FILE --llm-replay FILE}. An
+     * "LLM" engine without {@code --llm-url} plays against a local {@link LLMStubServer}. Its
+     * requests go through an {@link LLMScheduler} at batch priority, limited to
+     * {@code --llm-rate} requests per second (by default unlimited for the stub and
+     * {@code sos.llm.rate} for a real API). {@code --llm-record} saves the LLM's answers and
+     * {@code --llm-replay} plays them back instead of contacting any API. With
+     * {@code --deterministic true} the search engines use node budgets and the results end with
+     * a fingerprint that identical runs share.
+     *
+     * @param args the command-line arguments
+     * @throws IOException if a result file cannot be written or the stub cannot start
+     */
+    public static void main(String[] args) throws IOException {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            options.put(args[i].replaceFirst("^--", ""), args[i + 1]);
+        }
+        String[] engines = options.getOrDefault("engines", "Random,Greedy,Easy,Medium").split(",");
+        LLMStubServer stub = null;
+        boolean deterministic = Boolean.parseBoolean(options.getOrDefault("deterministic", "false"));
+        LLMService llmService = null;
+        LLMScheduler scheduler = null;
+        RecordedLLMService recording = null;
+        for (String engine : engines) {
+            if (engine.equalsIgnoreCase("llm")) {
+                if (options.containsKey("llm-replay")) {
+                    llmService = RecordedLLMService.replaying(Path.of(options.get("llm-replay")));
+                    break;
+                }
+                if (options.containsKey("llm-url")) {
+                    llmService = new LLMService(options.get("llm-url"),
+                            System.getProperty("sos.llm.key", "none"), System.getProperty("sos.llm.model", "stub"));
+                } else {
+                    stub = new LLMStubServer();
+                    llmService = stub.newService();
+                }
+                if (options.containsKey("llm-record")) {
+                    recording = RecordedLLMService.recording(llmService, Path.of(options.get("llm-record")));
+                    llmService = recording;
+                }
+                double rate = Double.parseDouble(options.getOrDefault("llm-rate",
+                        stub != null ? "0" : System.getProperty("sos.llm.rate", "2")));
+                scheduler = new LLMScheduler(llmService, rate, Integer.getInteger("sos.llm.burst", 4),
+                        Integer.getInteger("sos.llm.concurrency", 4), 5, 500, 30_000, new Random());
+                llmService = scheduler.client(LLMScheduler.Priority.BATCH);
+                break;
+            }
+        }
+        try {
+            List<Entrant> entrants = new ArrayList<>();
+            for (String engine : engines) {
+                entrants.add(entrant(engine.trim(), llmService, deterministic));
+            }
+            String[] sizeOptions = options.getOrDefault("sizes", "3,5").split(",");
+            int[] sizes = new int[sizeOptions.length];
+            for (int i = 0; i < sizes.length; i++) {
+                sizes[i] = Integer.parseInt(sizeOptions[i].trim());
+            }
+            String[] modeOptions = options.getOrDefault("modes", "simple,general").split(",");
+            boolean[] modes = new boolean[modeOptions.length];
+            for (int i = 0; i < modes.length; i++) {
+                modes[i] = modeOptions[i].trim().equalsIgnoreCase("general");
+            }
+            Format format = options.getOrDefault("format", "roundrobin").equalsIgnoreCase("gauntlet")
+                    ? Format.GAUNTLET : Format.ROUND_ROBIN;
+
+            Tournament tournament = new Tournament(entrants, format, sizes, modes,
+                    Integer.parseInt(options.getOrDefault("rounds", "2")),
+                    Long.parseLong(options.getOrDefault("seed", "1")),
+                    Integer.parseInt(options.getOrDefault("threads",
+                            String.valueOf(Runtime.getRuntime().availableProcessors()))));
+            Results results = tournament.run();
+            System.out.print(results);
+            if (deterministic) {
+                System.out.printf("Fingerprint: %016x%n", results.getFingerprint());
+            }
+            if (options.containsKey("csv")) {
+                results.writeCsv(Path.of(options.get("csv")));
+            }
+            if (options.containsKey("json")) {
+                results.writeJson(Path.of(options.get("json")));
+            }
+        } finally {
+            if (scheduler != null) {
+                scheduler.close();
+            }
+            if (recording != null) {
+                recording.close();
+            }
+            if (stub != null) {
+                stub.close();
+            }
+        }
+    }
+
+    /**
+     * The games of a tournament with the standings and ratings derived from them.
+     */
+    public static final class Results {
+        private final List<Entrant> entrants;
+        private final List<GameResult> games;
+        private final double[] points;
+        private final int[] played;
+        private final int[] wins;
+        private final int[] draws;
+        private final long[] moves;
+        private final long[] nanos;
+        private final double[] elo;
+        private final double[] margin;
+
+        Results(List<Entrant> entrants, List<GameResult> games) {
+            this.entrants = entrants;
+            this.games = Collections.unmodifiableList(games);
+            int n = entrants.size();
+            points = new double[n];
+            played = new int[n];
+            wins = new int[n];
+            draws = new int[n];
+            moves = new long[n];
+            nanos = new long[n];
+            double[] squares = new double[n];
+            for (GameResult game : games) {
+                double firstPoints = game.winner() == 1 ? 1 : game.winner() == 0 ? 0.5 : 0;
+                tally(game.first(), firstPoints, game.firstMoves(), game.firstNanos(), squares);
+                tally(game.second(), 1 - firstPoints, game.secondMoves(), game.secondNanos(), squares);
+            }
+            elo = fitElo(n, games);
+            margin = new double[n];
+            for (int i = 0; i < n; i++) {
+                margin[i] = errorMargin(points[i], squares[i], played[i]);
+            }
+        }
+
+        /**
+         * Adds one game's result to an entrant's totals.
+         */
+        private void tally(int entrant, double score, int moveCount, long thinkingNanos, double[] squares) {
+            points[entrant] += score;
+            squares[entrant] += score * score;
+            played[entrant]++;
+            if (score == 1) {
+                wins[entrant]++;
+            } else if (score == 0.5) {
+                draws[entrant]++;
+            }
+            moves[entrant] += moveCount;
+            nanos[entrant] += thinkingNanos;
+        }
+
+        /**
+         * Fits Bradley-Terry ratings to all games with Newton steps per entrant. Each entrant also
+         * gets one virtual draw against a 0-rated opponent so that perfect scores stay finite.
+         */
+        static double[] fitElo(int n, List<GameResult> games) {
+            double[] ratings = new double[n];
+            double scale = Math.log(10) / 400;
+            for (int iteration = 0; iteration < 200; iteration++) {
+                double largestStep = 0;
+                for (int i = 0; i < n; i++) {
+                    double expectedVirtual = expected(ratings[i], 0);
+                    double actual = 0.5;
+                    double expected = expectedVirtual;
+                    double information = expectedVirtual * (1 - expectedVirtual);
+                    for (GameResult game : games) {
+                        int opponent;
+                        double score;
+                        if (game.first() == i) {
+                            opponent = game.second();
+                            score = game.winner() == 1 ? 1 : game.winner() == 0 ? 0.5 : 0;
+                        } else if (game.second() == i) {
+                            opponent = game.first();
+                            score = game.winner() == 2 ? 1 : game.winner() == 0 ? 0.5 : 0;
+                        } else {
+                            continue;
+                        }
+                        double p = expected(ratings[i], ratings[opponent]);
+                        actual += score;
+                        expected += p;
+                        information += p * (1 - p);
+                    }
+                    double step = (actual - expected) / (information * scale);
+                    ratings[i] += step;
+                    largestStep = Math.max(largestStep, Math.abs(step));
+                }
+                if (largestStep < 0.01) {
+                    break;
+                }
+            }
+            double mean = 0;
+            for (double rating : ratings) {
+                mean += rating / n;
+            }
+            for (int i = 0; i < n; i++) {
+                ratings[i] -= mean;
+            }
+            return ratings;
+        }
+
+        /**
+         * The expected score of a player against an opponent under the Elo model.
+         */
+        private static double expected(double rating, double opponent) {
+            return 1 / (1 + Math.pow(10, (opponent - rating) / 400));
+        }
+
+        /**
+         * Half the width of the 95% Elo interval for a player's score over its games.
+         */
+        static double errorMargin(double points, double squares, int games) {
+            if (games < 2) {
+                return Double.POSITIVE_INFINITY;
+            }
+            double mean = points / games;
+            double variance = Math.max(0, squares / games - mean * mean);
+            double error = Z_95 * Math.sqrt(variance / games);
+            double low = Math.max(1e-3, mean - error);
+            double high = Math.min(1 - 1e-3, mean + error);
+            return (eloFromScore(high) - eloFromScore(low)) / 2;
+        }
+
+        /**
+         * Converts a score fraction into an Elo difference.
+         */
+        static double eloFromScore(double score) {
+            return -400 * Math.log10(1 / score - 1);
+        }
+
+        /**
+         * Retrieves all games in schedule order.
+         *
+         * @return the games
+         */
+        public List<GameResult> getGames() {
+            return games;
+        }
+
+        /**
+         * Retrieves an entrant's rating relative to the field average.
+         *
+         * @param entrant the entrant index
+         * @return the Elo rating
+         */
+        public double getElo(int entrant) {
+            return elo[entrant];
+        }
+
+        /**
+         * Retrieves half the width of an entrant's 95% rating interval.
+         *
+         * @param entrant the entrant index
+         * @return the Elo error margin
+         */
+        public double getEloMargin(int entrant) {
+            return margin[entrant];
+        }
+
+        /**
+         * Retrieves an entrant's points, one per win and a half per draw.
+         *
+         * @param entrant the entrant index
+         * @return the points scored
+         */
+        public double getPoints(int entrant) {
+            return points[entrant];
+        }
+
+        /**
+         * Retrieves the number of games an entrant played.
+         *
+         * @param entrant the entrant index
+         * @return the game count
+         */
+        public int getGamesPlayed(int entrant) {
+            return played[entrant];
+        }
+
+        /**
+         * Retrieves an entrant's average thinking time.
+         *
+         * @param entrant the entrant index
+         * @return milliseconds per move
+         */
+        public double getMillisPerMove(int entrant) {
+            return moves[entrant] == 0 ? 0 : nanos[entrant] / 1e6 / moves[entrant];
+        }
+
+        /**
+         * Computes a 64-bit FNV-1a hash of everything about the games except thinking times:
+         * seats, results, node counts and every move. Two runs of a deterministic tournament
+         * share it, so it identifies the behaviour of a build in one number.
+         *
+         * @return the fingerprint
+         */
+        public long getFingerprint() {
+            long hash = 0xcbf29ce484222325L;
+            for (GameResult game : games) {
+                String line = game.index() + "," + game.first() + "," + game.second() + "," + game.winner() + ","
+                        + game.firstScore() + "," + game.secondScore() + "," + game.forfeit() + ","
+                        + game.firstNodes() + "," + game.secondNodes() + "," + game.record().toLine() + "\n";
+                for (int i = 0; i < line.length(); i++) {
+                    hash = (hash ^ line.charAt(i)) * 0x100000001b3L;
+                }
+            }
+            return hash;
+        }
+
+        /**
+         * Formats every game as a CSV row with a header line.
+         *
+         * @return the CSV text
+         */
+        public String toCsv() {
+            StringBuilder csv = new StringBuilder("game,first,second,size,mode,winner,first_score,second_score,"
+                    + "first_moves,second_moves,first_ms,second_ms,forfeit,first_nodes,second_nodes,moves\n");
+            for (GameResult game : games) {
+                csv.append(String.format(Locale.ROOT, "%d,%s,%s,%d,%s,%s,%d,%d,%d,%d,%.3f,%.3f,%b,%d,%d,%s%n",
+                        game.index(), entrants.get(game.first()).name(), entrants.get(game.second()).name(),
+                        game.boardSize(), game.generalMode() ? "general" : "simple",
+                        game.winner() == 0 ? "draw" : entrants.get(game.winner() == 1 ? game.first() : game.second()).name(),
+                        game.firstScore(), game.secondScore(), game.firstMoves(), game.secondMoves(),
+                        game.firstNanos() / 1e6, game.secondNanos() / 1e6, game.forfeit(),
+                        game.firstNodes(), game.secondNodes(), game.record().toLine()));
+            }
+            return csv.toString();
+        }
+
+        /**
+         * Builds a JSON summary with the standings of every entrant.
+         *
+         * @return the JSON object
+         */
+        public JSONObject toJson() {
+            JSONArray standings = new JSONArray();
+            for (int i : ranking()) {
+                standings.put(new JSONObject()
+                        .put("name", entrants.get(i).name())
+                        .put("elo", Math.round(elo[i]))
+                        .put("eloMargin95", Double.isInfinite(margin[i]) ? JSONObject.NULL : Math.round(margin[i]))
+                        .put("games", played[i])
+                        .put("wins", wins[i])
+                        .put("draws", draws[i])
+                        .put("losses", played[i] - wins[i] - draws[i])
+                        .put("points", points[i])
+                        .put("msPerMove", getMillisPerMove(i)));
+            }
+            return new JSONObject().put("games", games.size()).put("standings", standings);
+        }
+
+        /**
+         * Writes every game to a CSV file.
+         *
+         * @param file the file to write
+         * @throws IOException if the file cannot be written
+         */
+        public void writeCsv(Path file) throws IOException {
+            Files.writeString(file, toCsv());
+        }
+
+        /**
+         * Writes the standings to a JSON file.
+         *
+         * @param file the file to write
+         * @throws IOException if the file cannot be written
+         */
+        public void writeJson(Path file) throws IOException {
+            Files.writeString(file, toJson().toString(2));
+        }
+
+        /**
+         * Lists the entrant indices from the highest rating to the lowest.
+         */
+        private List<Integer> ranking() {
+            List<Integer> order = new ArrayList<>();
+            for (int i = 0; i < entrants.size(); i++) {
+                order.add(i);
+            }
+            order.sort((a, b) -> Double.compare(elo[b], elo[a]));
+            return order;
+        }
+
+        /**
+         * Formats the standings as a table.
+         *
+         * @return the table
+         */
+        @Override
+        public String toString() {
+            StringBuilder table = new StringBuilder(String.format("%-10s %6s %6s %6s %6s %6s %7s %10s%n",
+                    "Engine", "Elo", "+/-", "Games", "Wins", "Draws", "Points", "ms/move"));
+            for (int i : ranking()) {
+                table.append(String.format(Locale.ROOT, "%-10s %6.0f %6.0f %6d %6d %6d %7.1f %10.2f%n",
+                        entrants.get(i).name(), elo[i], margin[i], played[i], wins[i], draws[i], points[i],
+                        getMillisPerMove(i)));
+            }
+            return table.toString();
+        }
+    }
+}
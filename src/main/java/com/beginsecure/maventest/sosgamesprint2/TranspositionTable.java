@@ -0,0 +1,398 @@
+package com.beginsecure.maventest.sosgamesprint2;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A fixed-size transposition table keyed by Zobrist hashes of {@link CompactGameState}
+ * positions. The entries live off the Java heap in one direct buffer, so a large table adds
+ * nothing for the garbage collector to scan, and {@link #clear()} zeroes it in place. Each
+ * entry holds the key XORed with the data next to the data itself, read and written with
+ * atomic 8-byte accesses, so any number of threads use the table without locks: an entry torn
+ * by a concurrent write no longer matches its key and reads as a miss. {@link #getShared()} is
+ * one table for every search thread and game in the process.
+ *
+ * <p>Entries are grouped in buckets of two. A store replaces the entry of the same position
+ * unless it holds a deeper search from the current generation, and otherwise the entry worth
+ * less, counting depth minus eight plies per generation of age; {@link #newSearch()} starts a
+ * generation.
+ *
+ * <p>The key covers the letters on the board, the board size, the game mode, the side to move
+ * and, since the value of a general game depends on it, the score difference. Owners are left
+ * out because nothing after the move depends on them.
+ */
+final class TranspositionTable {
+
+    /** The stored score is exact. */
+    static final int EXACT = 0;
+    /** The stored score is a lower bound (the search failed high). */
+    static final int LOWER = 1;
+    /** The stored score is an upper bound (the search failed low). */
+    static final int UPPER = 2;
+
+    /** The most megabytes a table may use. */
+    static final int MAX_MEGABYTES = 1024;
+
+    private static final long[] MOVE_KEYS;
+    private static final long[] SIZE_KEYS;
+    private static final long SIDE_KEY;
+    private static final long GENERAL_KEY;
+    private static final long SCORE_KEY;
+
+    static {
+        SplittableRandom random = new SplittableRandom(0x5053L);
+        MOVE_KEYS = new long[15 * 15 * 2];
+        for (int i = 0; i < MOVE_KEYS.length; i++) {
+            MOVE_KEYS[i] = random.nextLong();
+        }
+        SIDE_KEY = random.nextLong();
+        SCORE_KEY = random.nextLong() | 1;
+        SIZE_KEYS = new long[16];
+        for (int i = 0; i < SIZE_KEYS.length; i++) {
+            SIZE_KEYS[i] = random.nextLong();
+        }
+        GENERAL_KEY = random.nextLong();
+    }
+
+    // Data layout: bits 0-15 best move + 1 (0 for none), 16-23 depth, 24-25 bound, 26 set,
+    // 27-31 generation, 32-63 score
+    private static final long SET = 1L << 26;
+    private static final int GENERATION_SHIFT = 27;
+    private static final int GENERATIONS = 32;
+    private static final int ENTRY_BYTES = 16;
+    private static final int FILL_SAMPLE = 1000;
+
+    private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class,
+            ByteOrder.nativeOrder());
+
+    private static volatile TranspositionTable shared;
+
+    private final ByteBuffer entries; // Key ^ data, then data
+    private final int bucketMask;
+    private volatile int generation;
+    private final LongAdder probes = new LongAdder();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder stores = new LongAdder();
+    private final LongAdder collisions = new LongAdder();
+
+    /**
+     * Usage figures of a table.
+     *
+     * @param probes the lookups made
+     * @param hits the lookups that found their position
+     * @param stores the results stored
+     * @param collisions the stores that evicted another position searched in the same
+     *                   generation
+     * @param fill the fraction of a sample of entries in use
+     */
+    record Statistics(long probes, long hits, long stores, long collisions, double fill) {
+
+        /**
+         * Computes the fraction of lookups that found their position.
+         *
+         * @return the hit rate, or 0 before the first lookup
+         */
+        double hitRate() {
+            return probes == 0 ? 0 : (double) hits / probes;
+        }
+    }
+
+    /**
+     * Creates an empty table.
+     *
+     * @param entries the number of entries, rounded down to a power of two of at least two
+     */
+    TranspositionTable(int entries) {
+        int size = Integer.highestOneBit(Math.max(2, Math.min(entries, MAX_MEGABYTES * (1 << 20) / ENTRY_BYTES)));
+        // One spare word so the entries can start on an 8-byte boundary
+        this.entries = ByteBuffer.allocateDirect(size * ENTRY_BYTES + Long.BYTES).alignedSlice(Long.BYTES)
+                .order(ByteOrder.nativeOrder());
+        this.bucketMask = size / 2 - 1;
+    }
+
+    /**
+     * Creates an empty table of a given memory size.
+     *
+     * @param megabytes the size, between 1 and {@link #MAX_MEGABYTES}
+     * @return the table, whose entries take at most that many megabytes
+     * @throws IllegalArgumentException if the size is out of range
+     */
+    static TranspositionTable ofMegabytes(int megabytes) {
+        if (megabytes < 1 || megabytes > MAX_MEGABYTES) {
+            throw new IllegalArgumentException("Table size must be 1 to " + MAX_MEGABYTES + " MB: " + megabytes);
+        }
+        return new TranspositionTable(megabytes * (1 << 20) / ENTRY_BYTES);
+    }
+
+    /**
+     * Retrieves the table shared by every search in the process, sized by the system property
+     * {@code sos.tt.mb} (16 by default).
+     *
+     * @return the shared table
+     */
+    static TranspositionTable getShared() {
+        TranspositionTable table = shared;
+        if (table == null) {
+            synchronized (TranspositionTable.class) {
+                if (shared == null) {
+                    shared = ofMegabytes(Integer.getInteger("sos.tt.mb", 16));
+                }
+                table = shared;
+            }
+        }
+        return table;
+    }
+
+    /**
+     * Retrieves the key of placing an encoded move ({@code cell * 2 + (letter == 'O' ? 1 : 0)}).
+     *
+     * @param move the encoded move
+     * @return the value to XOR into the board hash
+     */
+    static long moveKey(int move) {
+        return MOVE_KEYS[move];
+    }
+
+    /**
+     * Computes the board hash of a position from scratch.
+     *
+     * @param state the position
+     * @return the XOR of the keys of every letter on the board
+     */
+    static long boardHash(CompactGameState state) {
+        int size = state.getBoardSize();
+        long hash = 0;
+        for (int row = 0; row < size; row++) {
+            for (int col = 0; col < size; col++) {
+                char letter = state.getLetter(row, col);
+                if (letter != '\0') {
+                    hash ^= moveKey((row * size + col) * 2 + (letter == 'O' ? 1 : 0));
+                }
+            }
+        }
+        return hash;
+    }
+
+    /**
+     * Completes a board hash with the board size, game mode, side to move and score difference.
+     *
+     * @param boardHash the hash of the letters
+     * @param state the position
+     * @return the table key of the position
+     */
+    static long key(long boardHash, CompactGameState state) {
+        long key = boardHash ^ SIZE_KEYS[state.getBoardSize()];
+        if (state.isGeneralMode()) {
+            key = (key ^ GENERAL_KEY) + SCORE_KEY * (state.getPlayerOneScore() - state.getPlayerTwoScore());
+        }
+        return state.isPlayerOneTurn() ? key : key ^ SIDE_KEY;
+    }
+
+    /**
+     * Completes a board hash with the board size only, for values that depend on the letters
+     * alone, such as the points still to be won in a general game.
+     *
+     * @param boardHash the hash of the letters
+     * @param boardSize the size of the board
+     * @return the table key of the letters
+     */
+    static long boardKey(long boardHash, int boardSize) {
+        return boardHash ^ SIZE_KEYS[boardSize] ^ GENERAL_KEY;
+    }
+
+    /**
+     * Starts a new generation, so entries of earlier searches are replaced first.
+     */
+    void newSearch() {
+        generation = (generation + 1) % GENERATIONS;
+    }
+
+    /**
+     * Looks up a position.
+     *
+     * @param key the key of the position
+     * @return the stored data, or 0 if the position is not stored
+     */
+    long probe(long key) {
+        probes.increment();
+        int bucket = bucketOffset(key);
+        for (int offset = bucket; offset < bucket + 2 * ENTRY_BYTES; offset += ENTRY_BYTES) {
+            long data = read(offset + Long.BYTES);
+            if (data != 0 && (read(offset) ^ data) == key) {
+                hits.increment();
+                return data;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Stores the result of a search in the bucket of its position.
+     *
+     * @param key the key of the position
+     * @param depth the remaining depth searched
+     * @param bound {@link #EXACT}, {@link #LOWER} or {@link #UPPER}
+     * @param score the score, already adjusted with {@link #toStored(int, int)}
+     * @param move the best encoded move, or -1 if there is none
+     */
+    void store(long key, int depth, int bound, int score, int move) {
+        int current = generation;
+        int bucket = bucketOffset(key);
+        int victim = -1;
+        int victimWorth = Integer.MAX_VALUE;
+        for (int offset = bucket; offset < bucket + 2 * ENTRY_BYTES; offset += ENTRY_BYTES) {
+            long old = read(offset + Long.BYTES);
+            if (old != 0 && (read(offset) ^ old) == key) {
+                if (depth(old) > depth && generation(old) == current) {
+                    return;
+                }
+                victim = offset;
+                break;
+            }
+            int worth = old == 0 ? Integer.MIN_VALUE
+                    : depth(old) - 8 * ((current - generation(old) + GENERATIONS) % GENERATIONS);
+            if (worth < victimWorth) {
+                victimWorth = worth;
+                victim = offset;
+            }
+        }
+        long old = read(victim + Long.BYTES);
+        if (old != 0 && (read(victim) ^ old) != key && generation(old) == current) {
+            collisions.increment();
+        }
+        long data = ((long) score << 32) | ((long) current << GENERATION_SHIFT) | SET | ((long) bound << 24)
+                | ((long) Math.min(depth, 255) << 16) | (move + 1);
+        write(victim, key ^ data);
+        write(victim + Long.BYTES, data);
+        stores.increment();
+    }
+
+    /**
+     * Empties the table in place and resets its statistics.
+     */
+    void clear() {
+        for (int offset = 0; offset < capacity() * ENTRY_BYTES; offset += Long.BYTES) {
+            write(offset, 0);
+        }
+        probes.reset();
+        hits.reset();
+        stores.reset();
+        collisions.reset();
+    }
+
+    /**
+     * Retrieves the number of entries.
+     *
+     * @return the capacity
+     */
+    int capacity() {
+        return (bucketMask + 1) * 2;
+    }
+
+    /**
+     * Retrieves the usage figures, estimating the fill from the first thousand entries.
+     *
+     * @return the statistics so far
+     */
+    Statistics getStatistics() {
+        int sample = Math.min(FILL_SAMPLE, capacity());
+        int used = 0;
+        for (int i = 0; i < sample; i++) {
+            if (read(i * ENTRY_BYTES + Long.BYTES) != 0) {
+                used++;
+            }
+        }
+        return new Statistics(probes.sum(), hits.sum(), stores.sum(), collisions.sum(), (double) used / sample);
+    }
+
+    /**
+     * Finds the byte offset of the bucket of a key.
+     */
+    private int bucketOffset(long key) {
+        return ((int) key & bucketMask) * 2 * ENTRY_BYTES;
+    }
+
+    /**
+     * Reads a word of the buffer atomically.
+     */
+    private long read(int offset) {
+        return (long) LONGS.getOpaque(entries, offset);
+    }
+
+    /**
+     * Writes a word of the buffer atomically.
+     */
+    private void write(int offset, long value) {
+        LONGS.setOpaque(entries, offset, value);
+    }
+
+    /**
+     * Extracts the best move of stored data.
+     *
+     * @return the encoded move, or -1 if there is none
+     */
+    static int move(long data) {
+        return (int) (data & 0xFFFF) - 1;
+    }
+
+    /**
+     * Extracts the searched depth of stored data.
+     */
+    static int depth(long data) {
+        return (int) (data >>> 16) & 0xFF;
+    }
+
+    /**
+     * Extracts the bound type of stored data.
+     */
+    static int bound(long data) {
+        return (int) (data >>> 24) & 0x3;
+    }
+
+    /**
+     * Extracts the generation of stored data.
+     */
+    private static int generation(long data) {
+        return (int) (data >>> GENERATION_SHIFT) & (GENERATIONS - 1);
+    }
+
+    /**
+     * Extracts the score of stored data.
+     */
+    static int score(long data) {
+        return (int) (data >> 32);
+    }
+
+    /**
+     * Converts a win score relative to the root into one relative to the stored position, so
+     * it stays correct when the position is reached at another ply.
+     *
+     * @param score the score at the current ply
+     * @param ply the distance from the root
+     * @return the score to store
+     */
+    static int toStored(int score, int ply) {
+        if (score >= SearchPlayer.WIN - 1000) {
+            return score + ply;
+        }
+        return score <= -(SearchPlayer.WIN - 1000) ? score - ply : score;
+    }
+
+    /**
+     * Converts a stored win score back to one relative to the root.
+     *
+     * @param score the stored score
+     * @param ply the distance from the root
+     * @return the score at the current ply
+     */
+    static int fromStored(int score, int ply) {
+        if (score >= SearchPlayer.WIN - 1000) {
+            return score - ply;
+        }
+        return score <= -(SearchPlayer.WIN - 1000) ? score + ply : score;
+    }
+}
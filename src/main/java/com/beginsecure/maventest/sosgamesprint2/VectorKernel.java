@@ -0,0 +1,70 @@
+package com.beginsecure.maventest.sosgamesprint2;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * The SIMD kernel of {@link SOSScanner}: each lane holds the same row of a different board, so
+ * one pass over the rows scans as many boards as the preferred vector has int lanes. This is
+ * the only class that links against {@code jdk.incubator.vector}; it is loaded only when that
+ * module is present.
+ */
+final class VectorKernel implements SOSScanner.Kernel {
+
+    private static final VectorSpecies<Integer> SPECIES = IntVector.SPECIES_PREFERRED;
+
+    @Override
+    public void count(BoardBatch batch, boolean possible, int[] counts) {
+        int size = batch.getBoardSize();
+        int stride = batch.getCapacity();
+        int boards = batch.size();
+        int full = (1 << size) - 1;
+        for (int board = 0; board < boards; board += SPECIES.length()) {
+            VectorMask<Integer> lanes = SPECIES.indexInRange(board, boards);
+            IntVector total = IntVector.zero(SPECIES);
+            // Each row is loaded once, then shifted through the window of three rows
+            IntVector s0 = letters(batch.sRows, batch.oRows, board, possible, full, lanes);
+            IntVector o0 = letters(batch.oRows, batch.sRows, board, possible, full, lanes);
+            IntVector s1 = letters(batch.sRows, batch.oRows, stride + board, possible, full, lanes);
+            IntVector o1 = letters(batch.oRows, batch.sRows, stride + board, possible, full, lanes);
+            for (int row = 0; row < size; row++) {
+                total = total.add(s0.and(o0.lanewise(VectorOperators.LSHR, 1))
+                        .and(s0.lanewise(VectorOperators.LSHR, 2))
+                        .lanewise(VectorOperators.BIT_COUNT));
+                IntVector s2 = null;
+                IntVector o2 = null;
+                if (row + 2 < size) {
+                    int offset = (row + 2) * stride + board;
+                    s2 = letters(batch.sRows, batch.oRows, offset, possible, full, lanes);
+                    o2 = letters(batch.oRows, batch.sRows, offset, possible, full, lanes);
+                    total = total.add(s0.and(o1).and(s2).lanewise(VectorOperators.BIT_COUNT))
+                            .add(s0.and(o1.lanewise(VectorOperators.LSHR, 1))
+                                    .and(s2.lanewise(VectorOperators.LSHR, 2))
+                                    .lanewise(VectorOperators.BIT_COUNT))
+                            .add(s0.and(o1.lanewise(VectorOperators.LSHL, 1))
+                                    .and(s2.lanewise(VectorOperators.LSHL, 2))
+                                    .lanewise(VectorOperators.BIT_COUNT));
+                }
+                s0 = s1;
+                o0 = o1;
+                s1 = s2;
+                o1 = o2;
+            }
+            total.intoArray(counts, board, lanes);
+        }
+    }
+
+    /**
+     * Loads one row of a letter for the boards of a chunk; for possible lines, a cell counts as
+     * the letter unless it holds the other one.
+     */
+    private static IntVector letters(int[] rows, int[] otherRows, int offset, boolean possible, int full,
+                                     VectorMask<Integer> lanes) {
+        if (!possible) {
+            return IntVector.fromArray(SPECIES, rows, offset, lanes);
+        }
+        return IntVector.fromArray(SPECIES, otherRows, offset, lanes).not().and(full);
+    }
+}
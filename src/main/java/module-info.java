@@ -1,7 +1,10 @@
 module com.beginsecure.maventest.sosgamesprint2 {
-    requires javafx.controls;
-    requires javafx.fxml;
+    requires static javafx.controls; // Only SOSGameUI; the engine and SOSGameCli run without JavaFX
+    requires static javafx.fxml;
     requires java.net.http;
+    requires jdk.jfr;
+    requires jdk.httpserver;
+    requires static jdk.incubator.vector; // Optional SIMD kernel of SOSScanner
     requires org.json; // Add this line
 
 
@@ -0,0 +1,313 @@
+package com.beginsecure.maventest.sosgamesprint2;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the CompactGameState class, including a footprint report comparing it to SOSGame.
+ */
+public class CompactGameStateTest {
+
+    /**
+     * Tests if scores, lines and the turn are tracked when an SOS is formed.
+     */
+    @Test
+    void testGeneralGameScoring() {
+        CompactGameState state = new CompactGameState(3, true);
+        assertEquals(0, state.placeMove(0, 0, 'S'));
+        assertEquals(0, state.placeMove(1, 0, 'S'));
+        assertEquals(0, state.placeMove(0, 1, 'O'));
+        assertEquals(0, state.placeMove(1, 1, 'O'));
+        assertEquals(1, state.placeMove(0, 2, 'S'));
+
+        assertEquals(1, state.getPlayerOneScore());
+        assertEquals(0, state.getPlayerTwoScore());
+        assertTrue(state.hasLine(0, 1, 0), "Horizontal line through (0,1) should be recorded.");
+        assertFalse(state.isPlayerOneTurn(), "Turn should pass to Player 2.");
+        assertEquals(2, state.getOwner(1, 1));
+    }
+
+    /**
+     * Tests if placing an 'O' between two S's scores in every direction at once.
+     */
+    @Test
+    void testOPlacementScoresMultipleLines() {
+        CompactGameState state = new CompactGameState(3, true);
+        int[][] corners = {{0, 0}, {0, 2}, {2, 0}, {2, 2}, {0, 1}, {2, 1}, {1, 0}, {1, 2}};
+        for (int[] corner : corners) {
+            assertEquals(0, state.placeMove(corner[0], corner[1], 'S'));
+        }
+        assertEquals(4, state.placeMove(1, 1, 'O'));
+        assertEquals(4, state.getPlayerOneScore());
+        assertTrue(state.isGameOver());
+        assertEquals(1, state.getWinner());
+    }
+
+    /**
+     * Tests if a simple game ends at the first SOS and rejects further moves, and if a copy of
+     * a finished simple game keeps its winner.
+     */
+    @Test
+    void testSimpleGameEndsOnFirstSOS() {
+        CompactGameState state = new CompactGameState(4, false);
+        state.placeMove(0, 0, 'S');
+        state.placeMove(3, 3, 'S');
+        state.placeMove(0, 1, 'O');
+        assertEquals(1, state.placeMove(0, 2, 'S'));
+        assertTrue(state.isGameOver());
+        assertEquals(2, state.getWinner());
+        assertEquals(-1, state.placeMove(2, 2, 'S'), "Moves after the game ends should be rejected.");
+
+        SimpleGame game = new SimpleGame(4);
+        game.placeMove(0, 0, 'S');
+        game.placeMove(3, 3, 'S');
+        game.placeMove(0, 1, 'O');
+        game.placeMove(0, 2, 'S');
+        CompactGameState copy = CompactGameState.from(game);
+        assertTrue(copy.isGameOver());
+        assertEquals(game.getWinner(), copy.getWinner(), "A copy of a finished game keeps its winner.");
+        assertEquals(1, copy.getPlayerTwoScore());
+    }
+
+    /**
+     * Tests if invalid moves are rejected without changing the state.
+     */
+    @Test
+    void testInvalidMoves() {
+        CompactGameState state = new CompactGameState(3, false);
+        assertEquals(-1, state.placeMove(3, 0, 'S'));
+        assertEquals(-1, state.placeMove(0, 0, 'X'));
+        state.placeMove(0, 0, 'S');
+        assertEquals(-1, state.placeMove(0, 0, 'O'));
+        assertFalse(state.isPlayerOneTurn());
+        assertEquals(8, state.getEmptyCells());
+    }
+
+    /**
+     * Tests if a compact copy of an SOSGame keeps board, owners, turn and scores.
+     */
+    @Test
+    void testFromGeneralGame() {
+        GeneralGame game = new GeneralGame(3, new NoOpListener());
+        game.placeMove(0, 0, 'S');
+        game.placeMove(1, 0, 'S');
+        game.placeMove(0, 1, 'O');
+        game.placeMove(1, 1, 'O');
+        game.placeMove(0, 2, 'S');
+
+        CompactGameState state = CompactGameState.from(game);
+        assertTrue(state.isGeneralMode());
+        assertEquals('O', state.getLetter(1, 1));
+        assertEquals(1, state.getOwner(0, 2));
+        assertEquals(1, state.getPlayerOneScore());
+        assertEquals(1, state.getLineCount());
+        assertEquals(game.isPlayerOneTurn(), state.isPlayerOneTurn());
+    }
+
+    /**
+     * Tests if undoing a random game move by move restores every intermediate state.
+     */
+    @Test
+    void testUndoRestoresState() {
+        CompactGameState state = new CompactGameState(6, true);
+        Random random = new Random(7);
+        int[] rows = new int[36];
+        int[] cols = new int[36];
+        int[] scores = new int[36];
+        int moves = 0;
+        while (!state.isGameOver()) {
+            int row = random.nextInt(6);
+            int col = random.nextInt(6);
+            if (state.getLetter(row, col) == '\0') {
+                scores[moves] = state.getPlayerOneScore() * 100 + state.getPlayerTwoScore();
+                state.placeMove(row, col, random.nextBoolean() ? 'S' : 'O');
+                rows[moves] = row;
+                cols[moves] = col;
+                moves++;
+            }
+        }
+        assertTrue(state.getLineCount() > 0, "The random game should have formed some SOS.");
+        for (int i = moves - 1; i >= 0; i--) {
+            state.undoMove(rows[i], cols[i]);
+            assertEquals(scores[i], state.getPlayerOneScore() * 100 + state.getPlayerTwoScore());
+            assertEquals(i % 2 == 0, state.isPlayerOneTurn());
+            assertFalse(state.isGameOver());
+        }
+        assertEquals(0, state.getLineCount());
+        assertEquals(36, state.getEmptyCells());
+    }
+
+    /**
+     * Reports the estimated retained bytes per game for each board size and checks the 9x9 target.
+     */
+    @Test
+    void testFootprintByBoardSize() {
+        System.out.println("size | SOSGame bytes | CompactGameState bytes");
+        long compactNineByNine = 0;
+        for (int size = 3; size <= 9; size++) {
+            GeneralGame game = new GeneralGame(size, new NoOpListener());
+            CompactGameState state = new CompactGameState(size, true);
+            playSameRandomGame(game, state, size);
+
+            long legacyBytes = FootprintEstimator.deepSize(game);
+            long compactBytes = FootprintEstimator.deepSize(state);
+            System.out.printf("%4d | %13d | %22d%n", size, legacyBytes, compactBytes);
+            assertTrue(compactBytes < legacyBytes, "Compact state should be smaller than SOSGame.");
+            if (size == 9) {
+                compactNineByNine = compactBytes;
+            }
+        }
+        assertTrue(compactNineByNine <= 400, "A 9x9 compact game should take a few hundred bytes.");
+    }
+
+    /**
+     * Fills both games with the same random sequence of moves until the board is full.
+     */
+    private static void playSameRandomGame(SOSGame game, CompactGameState state, int size) {
+        Random random = new Random(size);
+        while (!state.isGameOver()) {
+            int row = random.nextInt(size);
+            int col = random.nextInt(size);
+            char letter = random.nextBoolean() ? 'S' : 'O';
+            if (state.getLetter(row, col) == '\0') {
+                state.placeMove(row, col, letter);
+                game.placeMove(row, col, letter);
+            }
+        }
+    }
+
+    /**
+     * A listener that ignores all notifications.
+     */
+    private static class NoOpListener implements GameEndListener {
+        @Override
+        public void onGameEnd(String message) {
+        }
+
+        @Override
+        public void onScoreUpdate(int playerOneScore, int playerTwoScore) {
+        }
+    }
+
+    /**
+     * A JOL-style estimator of retained heap size, assuming a 64-bit JVM with compressed
+     * references (12-byte object headers, 16-byte array headers, 4-byte references and 8-byte
+     * alignment). Objects of this project are walked reflectively; JDK collections and strings,
+     * whose internals cannot be reflected across module boundaries, are sized from their known
+     * layouts. The "P1"/"P2" owner literals are shared and not counted.
+     */
+    static final class FootprintEstimator {
+
+        private static final int OBJECT_HEADER = 12;
+        private static final int ARRAY_HEADER = 16;
+        private static final int REFERENCE = 4;
+
+        private FootprintEstimator() {
+        }
+
+        /**
+         * Estimates the bytes retained by an object graph.
+         *
+         * @param root the root object
+         * @return the estimated number of bytes
+         */
+        static long deepSize(Object root) {
+            return sizeOf(root, new IdentityHashMap<>());
+        }
+
+        private static long sizeOf(Object object, IdentityHashMap<Object, Boolean> seen) {
+            if (object == null || seen.put(object, Boolean.TRUE) != null) {
+                return 0;
+            }
+            Class<?> type = object.getClass();
+            if (type.isArray()) {
+                return sizeOfArray(object, seen);
+            }
+            if (object instanceof String) {
+                String text = (String) object;
+                // The owner literals are shared by every game; any other string is counted
+                return text == "P1" || text == "P2" ? 0
+                        : align(OBJECT_HEADER + 12) + align(ARRAY_HEADER + text.length());
+            }
+            if (object instanceof Enum) {
+                return 0; // Enum constants are shared, like interned strings
+            }
+            if (object instanceof Collection) {
+                return sizeOfHashSet((Collection<?>) object, seen);
+            }
+            long size = OBJECT_HEADER;
+            long nested = 0;
+            for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+                for (Field field : c.getDeclaredFields()) {
+                    if (Modifier.isStatic(field.getModifiers())) {
+                        continue;
+                    }
+                    size += primitiveSize(field.getType());
+                    if (!field.getType().isPrimitive()) {
+                        field.setAccessible(true);
+                        try {
+                            nested += sizeOf(field.get(object), seen);
+                        } catch (IllegalAccessException e) {
+                            throw new IllegalStateException(e);
+                        }
+                    }
+                }
+            }
+            return align(size) + nested;
+        }
+
+        private static long sizeOfArray(Object array, IdentityHashMap<Object, Boolean> seen) {
+            int length = Array.getLength(array);
+            Class<?> component = array.getClass().getComponentType();
+            long size = align(ARRAY_HEADER + (long) length * primitiveSize(component));
+            if (!component.isPrimitive()) {
+                for (int i = 0; i < length; i++) {
+                    size += sizeOf(Array.get(array, i), seen);
+                }
+            }
+            return size;
+        }
+
+        /**
+         * Sizes a HashSet: the set, its backing map, the bucket table and one node per entry.
+         */
+        private static long sizeOfHashSet(Collection<?> set, IdentityHashMap<Object, Boolean> seen) {
+            int capacity = 16;
+            while (capacity * 0.75 < set.size()) {
+                capacity <<= 1;
+            }
+            long size = align(OBJECT_HEADER + REFERENCE) + align(OBJECT_HEADER + 36)
+                    + align(ARRAY_HEADER + (long) capacity * REFERENCE) + 32L * set.size();
+            for (Object element : set) {
+                size += sizeOf(element, seen);
+            }
+            return size;
+        }
+
+        private static int primitiveSize(Class<?> type) {
+            if (type == long.class || type == double.class) {
+                return 8;
+            }
+            if (type == int.class || type == float.class) {
+                return 4;
+            }
+            if (type == short.class || type == char.class) {
+                return 2;
+            }
+            if (type == byte.class || type == boolean.class) {
+                return 1;
+            }
+            return REFERENCE;
+        }
+
+        private static long align(long size) {
+            return (size + 7) & ~7L;
+        }
+    }
+}
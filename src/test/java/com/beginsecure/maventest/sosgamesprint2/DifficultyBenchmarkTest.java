@@ -0,0 +1,79 @@
+package com.beginsecure.maventest.sosgamesprint2;
+
+import java.util.Random;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Plays the difficulty levels against each other and prints average milliseconds per move and
+ * win rates. Run with {@code mvn test -Pbenchmark}; the number of games per pairing and the board
+ * size can be changed with {@code -Dbench.games} and {@code -Dbench.size}.
+ */
+@Tag("benchmark")
+public class DifficultyBenchmarkTest {
+
+    private static final int GAMES = Integer.getInteger("bench.games", 4);
+    private static final int SIZE = Integer.getInteger("bench.size", 5);
+
+    /**
+     * Prints the level-versus-level table for general games.
+     */
+    @Test
+    void benchmarkDifficultyLevels() {
+        Difficulty[] levels = Difficulty.values();
+        long[] moveNanos = new long[levels.length];
+        long[] moveCounts = new long[levels.length];
+        double[][] points = new double[levels.length][levels.length];
+        Random random = new Random(42);
+
+        for (int a = 0; a < levels.length; a++) {
+            for (int b = a + 1; b < levels.length; b++) {
+                for (int game = 0; game < GAMES; game++) {
+                    // Alternate who moves first
+                    int first = game % 2 == 0 ? a : b;
+                    int second = first == a ? b : a;
+                    int winner = playGame(levels, first, second, random, moveNanos, moveCounts);
+                    double firstPoints = winner == 1 ? 1 : winner == 0 ? 0.5 : 0;
+                    points[first][second] += firstPoints;
+                    points[second][first] += 1 - firstPoints;
+                }
+            }
+        }
+
+        System.out.printf("%nDifficulty benchmark: %d games per pairing, %dx%d general games%n", GAMES, SIZE, SIZE);
+        System.out.printf("%-8s %10s", "Level", "ms/move");
+        for (Difficulty level : levels) {
+            System.out.printf(" %10s", "vs " + level.getLabel());
+        }
+        System.out.println();
+        for (int a = 0; a < levels.length; a++) {
+            System.out.printf("%-8s %10.1f", levels[a].getLabel(), moveNanos[a] / 1e6 / Math.max(1, moveCounts[a]));
+            for (int b = 0; b < levels.length; b++) {
+                System.out.printf(" %10s", a == b ? "-" : String.format("%.0f%%", 100.0 * points[a][b] / GAMES));
+            }
+            System.out.println();
+        }
+    }
+
+    /**
+     * Plays one general game and returns 1 or 2 for the winning seat, or 0 for a draw.
+     */
+    private static int playGame(Difficulty[] levels, int first, int second, Random random,
+                                long[] moveNanos, long[] moveCounts) {
+        SearchPlayer[] players = {
+                new SearchPlayer(levels[first], new Random(random.nextLong())),
+                new SearchPlayer(levels[second], new Random(random.nextLong()))
+        };
+        int[] seats = {first, second};
+        CompactGameState state = new CompactGameState(SIZE, true);
+        while (!state.isGameOver()) {
+            int seat = state.isPlayerOneTurn() ? 0 : 1;
+            long start = System.nanoTime();
+            Move move = players[seat].chooseMove(state);
+            moveNanos[seats[seat]] += System.nanoTime() - start;
+            moveCounts[seats[seat]]++;
+            state.placeMove(move.row(), move.col(), move.letter());
+        }
+        return state.getWinner();
+    }
+}
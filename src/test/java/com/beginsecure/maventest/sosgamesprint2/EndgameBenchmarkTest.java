@@ -0,0 +1,60 @@
+package com.beginsecure.maventest.sosgamesprint2;
+
+import java.util.Random;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Prints, for each board size, the most empty cells at which the {@link EndgameSolver} solves
+ * every one of a set of random general-game positions within
+ * {@link EndgameSolver#TIME_BUDGET_MILLIS}, with the slowest solve and nodes per second. Run
+ * with {@code mvn test -Pbenchmark}.
+ */
+@Tag("benchmark")
+public class EndgameBenchmarkTest {
+
+    private static final int POSITIONS = 10;
+
+    /**
+     * Prints one line per board size.
+     */
+    @Test
+    void benchmarkThreshold() {
+        System.out.printf("%nEndgame benchmark, %d ms per position, %d positions per count%n",
+                EndgameSolver.TIME_BUDGET_MILLIS, POSITIONS);
+        System.out.printf("%-6s %10s %14s %12s%n", "size", "empties", "slowest", "nodes/s");
+        for (int size = 3; size <= 15; size += 2) {
+            int reached = 0;
+            double slowestMillis = 0;
+            double nodesPerSecond = 0;
+            for (int empty = 1; empty <= size * size; empty++) {
+                Random random = new Random(empty);
+                double slowest = 0;
+                long nodes = 0;
+                long nanos = 0;
+                boolean solved = true;
+                for (int i = 0; i < POSITIONS && solved; i++) {
+                    CompactGameState state = EndgameSolverTest.position(size, empty, random);
+                    EndgameSolver solver = new EndgameSolver(empty);
+                    long start = System.nanoTime();
+                    EndgameSolver.Result result = solver.solve(state,
+                            start + EndgameSolver.TIME_BUDGET_MILLIS * 1_000_000L, Long.MAX_VALUE);
+                    long elapsed = System.nanoTime() - start;
+                    solved = result != null;
+                    if (solved) {
+                        slowest = Math.max(slowest, elapsed / 1e6);
+                        nodes += result.nodes();
+                        nanos += elapsed;
+                    }
+                }
+                if (!solved) {
+                    break;
+                }
+                reached = empty;
+                slowestMillis = slowest;
+                nodesPerSecond = nodes * 1e9 / Math.max(1, nanos);
+            }
+            System.out.printf("%-6d %10d %11.1f ms %12.0f%n", size, reached, slowestMillis, nodesPerSecond);
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.beginsecure.maventest.sosgamesprint2;
+
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the EndgameSolver class, against an exhaustive search of small endgames.
+ */
+public class EndgameSolverTest {
+
+    /**
+     * Tests if the solver finds the same margin as an exhaustive search, and a move that
+     * achieves it.
+     */
+    @Test
+    void testMatchesExhaustiveSearch() {
+        Random random = new Random(5);
+        EndgameSolver solver = new EndgameSolver();
+        for (int i = 0; i < 60; i++) {
+            CompactGameState state = position(3 + i % 3, 2 + i % 6, random);
+            int expected = margin(state);
+            EndgameSolver.Result result = solver.solve(state, Long.MAX_VALUE, Long.MAX_VALUE);
+            assertEquals(expected, result.margin(), "Position " + i);
+            assertEquals(expected, marginOf(state, result.move()), "Move " + result.move() + " of position " + i);
+            assertTrue(result.nodes() > 0);
+        }
+    }
+
+    /**
+     * Tests if the solver only takes over general games within the threshold, and gives up
+     * when the budget runs out.
+     */
+    @Test
+    void testThresholdAndBudget() {
+        EndgameSolver solver = new EndgameSolver(4);
+        assertEquals(4, solver.getThreshold());
+        assertEquals(EndgameSolver.DEFAULT_THRESHOLD, new EndgameSolver().getThreshold());
+        Random random = new Random(6);
+        assertNull(solver.chooseMove(position(4, 5, random), Long.MAX_VALUE, Long.MAX_VALUE));
+        assertNotNull(solver.chooseMove(position(4, 4, random), Long.MAX_VALUE, Long.MAX_VALUE));
+        CompactGameState simple = new CompactGameState(3, false);
+        simple.placeMove(0, 0, 'S');
+        assertFalse(solver.appliesTo(simple));
+        assertThrows(IllegalArgumentException.class, () -> solver.solve(simple, Long.MAX_VALUE, Long.MAX_VALUE));
+
+        CompactGameState large = position(7, 16, random);
+        assertNull(new EndgameSolver(16).chooseMove(large, Long.MAX_VALUE, 2_000), "2 000 nodes cannot solve it.");
+    }
+
+    /**
+     * Tests if a search player plays the solver's move once the endgame is reached.
+     */
+    @Test
+    void testSearchPlayerTakesSolvedMove() {
+        CompactGameState state = position(5, 6, new Random(8));
+        SearchPlayer player = new SearchPlayer(Difficulty.MEDIUM, new Random(1), PatternWeights.getDefault(), true);
+        Move move = player.chooseMove(state);
+        assertEquals(6, player.getLastDepth(), "The endgame should be searched to the end.");
+        assertEquals(margin(state), marginOf(state, move));
+    }
+
+    /**
+     * Builds a general game with random letters everywhere but a given number of cells.
+     */
+    static CompactGameState position(int size, int empty, Random random) {
+        CompactGameState state = new CompactGameState(size, true);
+        while (state.getEmptyCells() > empty) {
+            int cell = random.nextInt(size * size);
+            if (state.getLetter(cell / size, cell % size) == '\0') {
+                state.placeMove(cell / size, cell % size, random.nextBoolean() ? 'S' : 'O');
+            }
+        }
+        return state;
+    }
+
+    /**
+     * Searches a general game to the end.
+     *
+     * @return the points the side to move scores from now on minus its opponent's
+     */
+    private static int margin(CompactGameState state) {
+        if (state.getEmptyCells() == 0) {
+            return 0;
+        }
+        int size = state.getBoardSize();
+        int best = Integer.MIN_VALUE;
+        for (int cell = 0; cell < size * size; cell++) {
+            if (state.getLetter(cell / size, cell % size) == '\0') {
+                for (char letter : new char[] {'S', 'O'}) {
+                    best = Math.max(best, marginOf(state, new Move(cell / size, cell % size, letter)));
+                }
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Computes the margin a move secures for the side making it.
+     */
+    private static int marginOf(CompactGameState state, Move move) {
+        int gain = state.placeMove(move.row(), move.col(), move.letter());
+        int margin = gain - margin(state);
+        state.undoMove(move.row(), move.col());
+        return margin;
+    }
+}
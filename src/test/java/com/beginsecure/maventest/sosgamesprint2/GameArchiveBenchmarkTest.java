@@ -0,0 +1,54 @@
+package com.beginsecure.maventest.sosgamesprint2;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Prints how fast GameArchive streams archives of growing size, with the heap in use after each
+ * pass. Run with {@code mvn test -Pbenchmark}.
+ */
+@Tag("benchmark")
+public class GameArchiveBenchmarkTest {
+
+    @TempDir
+    Path directory;
+
+    /**
+     * Prints games per second and megabytes per second for archives of 100 000 and 1 000 000
+     * games.
+     */
+    @Test
+    void benchmarkAnalytics() throws IOException {
+        List<GameRecord> games = GameArchiveTest.randomGames(10_000, new Random(1));
+        System.out.printf("%nGame archive benchmark, %d cores%n", Runtime.getRuntime().availableProcessors());
+        System.out.printf("%-10s %8s %12s %8s %12s%n", "games", "MB", "games/s", "MB/s", "heap MB");
+        for (int copies : new int[] {10, 100}) {
+            Path file = directory.resolve("archive-" + copies + ".txt");
+            try (BufferedWriter writer = Files.newBufferedWriter(file)) {
+                for (int i = 0; i < copies; i++) {
+                    for (GameRecord record : games) {
+                        writer.write(record.toLine());
+                        writer.newLine();
+                    }
+                }
+            }
+            GameArchive.analyze(OutcomeTable::new, List.of(file)); // Warm up
+            long start = System.nanoTime();
+            OutcomeTable outcomes = GameArchive.analyze(OutcomeTable::new, List.of(file));
+            long elapsed = System.nanoTime() - start;
+            Runtime runtime = Runtime.getRuntime();
+            double megabytes = Files.size(file) / 1e6;
+            System.out.printf("%-10d %8.1f %12.0f %8.1f %12.1f%n", outcomes.getTotal(), megabytes,
+                    outcomes.getTotal() * 1e9 / elapsed, megabytes * 1e9 / elapsed,
+                    (runtime.totalMemory() - runtime.freeMemory()) / 1e6);
+            Files.delete(file);
+        }
+    }
+}
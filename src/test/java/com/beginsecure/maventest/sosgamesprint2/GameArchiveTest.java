@@ -0,0 +1,153 @@
+package com.beginsecure.maventest.sosgamesprint2;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the GameArchive class and its aggregators, against replaying every record in
+ * memory.
+ */
+public class GameArchiveTest {
+
+    @TempDir
+    Path directory;
+
+    /**
+     * Tests if the outcome table, histograms and heatmap of several archives match those computed
+     * from the records one by one.
+     */
+    @Test
+    void testAggregatesMatchRecords() throws IOException {
+        List<GameRecord> first = randomGames(300, new Random(1));
+        List<GameRecord> second = randomGames(200, new Random(2));
+        Path firstFile = directory.resolve("first.txt");
+        Path secondFile = directory.resolve("second.txt");
+        GameRecord.writeAll(firstFile, first);
+        // Blank lines, Windows line breaks and no final line break are all accepted
+        StringBuilder text = new StringBuilder("\r\n");
+        for (GameRecord record : second) {
+            text.append(record.toLine()).append("\r\n\n");
+        }
+        Files.writeString(secondFile, text.toString().stripTrailing());
+        List<Path> files = List.of(firstFile, secondFile);
+        List<GameRecord> all = new ArrayList<>(first);
+        all.addAll(second);
+
+        OutcomeTable outcomes = GameArchive.analyze(OutcomeTable::new, files);
+        assertEquals(all.size(), outcomes.getTotal());
+        for (boolean general : new boolean[] {false, true}) {
+            for (int size = 3; size <= 6; size++) {
+                long games = 0;
+                long wins = 0;
+                long draws = 0;
+                long unfinished = 0;
+                for (GameRecord record : all) {
+                    if (record.generalMode() == general && record.boardSize() == size) {
+                        CompactGameState state = record.replay();
+                        games++;
+                        wins += state.isGameOver() && state.getWinner() == 1 ? 1 : 0;
+                        draws += state.isGameOver() && state.getWinner() == 0 ? 1 : 0;
+                        unfinished += state.isGameOver() ? 0 : 1;
+                    }
+                }
+                assertEquals(games, outcomes.getGames(general, size));
+                assertEquals(wins, outcomes.getWins(general, size, 1));
+                assertEquals(draws, outcomes.getDraws(general, size));
+                assertEquals(unfinished, outcomes.getUnfinished(general, size));
+            }
+        }
+
+        GameHistogram<Move> openings = GameArchive.analyze(GameHistogram::firstMoves, files);
+        Map.Entry<Move, Long> top = openings.top(1).get(0);
+        assertEquals(all.stream().filter(record -> record.moves().get(0).equals(top.getKey())).count(), top.getValue());
+        assertEquals(all.size(), openings.getTotal());
+
+        CellHeatmap heatmap = GameArchive.analyze(() -> new CellHeatmap(5), files);
+        long[] points = new long[25];
+        long games = 0;
+        for (GameRecord record : all) {
+            if (record.boardSize() == 5) {
+                games++;
+                CompactGameState state = new CompactGameState(5, record.generalMode());
+                for (Move move : record.moves()) {
+                    points[move.row() * 5 + move.col()] += state.placeMove(move.row(), move.col(), move.letter());
+                }
+            }
+        }
+        assertEquals(games, heatmap.getGames());
+        for (int cell = 0; cell < 25; cell++) {
+            assertEquals(points[cell], heatmap.getPoints(cell / 5, cell % 5), "Cell " + cell);
+        }
+    }
+
+    /**
+     * Tests if an archive large enough to be split into chunks yields every game exactly once.
+     */
+    @Test
+    void testLargeArchiveIsSplitAtLineBoundaries() throws IOException {
+        List<GameRecord> games = randomGames(2000, new Random(3));
+        Path file = directory.resolve("large.txt");
+        List<GameRecord> repeated = new ArrayList<>();
+        for (int i = 0; i < 25; i++) {
+            repeated.addAll(games);
+        }
+        GameRecord.writeAll(file, repeated);
+        assertTrue(Files.size(file) > 2 << 20, "The archive should be split at least once.");
+        GameHistogram<Integer> lengths = GameArchive.analyze(() -> new GameHistogram<>(GameArchive.Game::getMoveCount),
+                List.of(file));
+        assertEquals(repeated.size(), lengths.getTotal());
+        for (GameRecord record : games.subList(0, 20)) {
+            long expected = repeated.stream().filter(game -> game.moves().size() == record.moves().size()).count();
+            assertEquals(expected, lengths.getCount(record.moves().size()));
+        }
+        try (var stream = GameArchive.games(List.of(file))) {
+            assertEquals(repeated.get(7).toLine(), stream.sequential().skip(7).findFirst().orElseThrow().toRecord().toLine());
+        }
+    }
+
+    /**
+     * Tests if malformed lines and illegal moves are reported with their position in the file.
+     */
+    @Test
+    void testInvalidRecords() throws IOException {
+        Path file = directory.resolve("bad.txt");
+        Files.writeString(file, "3 G 0S 1O\n3 X 0S\n");
+        IllegalArgumentException error = assertThrows(IllegalArgumentException.class,
+                () -> GameArchive.analyze(OutcomeTable::new, List.of(file)));
+        assertTrue(error.getMessage().endsWith(file + ":10"), error.getMessage());
+
+        Files.writeString(file, "3 S 4S 4O\n");
+        error = assertThrows(IllegalArgumentException.class, () -> GameArchive.analyze(OutcomeTable::new, List.of(file)));
+        assertTrue(error.getMessage().contains("ply 2"), error.getMessage());
+    }
+
+    /**
+     * Plays random games of sizes 3 to 6 in both modes, cutting one in ten short.
+     */
+    static List<GameRecord> randomGames(int count, Random random) {
+        List<GameRecord> games = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int size = 3 + random.nextInt(4);
+            boolean general = random.nextBoolean();
+            CompactGameState state = new CompactGameState(size, general);
+            List<Move> moves = new ArrayList<>();
+            int length = random.nextInt(10) == 0 ? 1 + random.nextInt(size) : Integer.MAX_VALUE;
+            while (!state.isGameOver() && moves.size() < length) {
+                Move move = new Move(random.nextInt(size), random.nextInt(size), random.nextBoolean() ? 'S' : 'O');
+                if (state.placeMove(move.row(), move.col(), move.letter()) >= 0) {
+                    moves.add(move);
+                }
+            }
+            games.add(new GameRecord(size, general, moves));
+        }
+        return games;
+    }
+}
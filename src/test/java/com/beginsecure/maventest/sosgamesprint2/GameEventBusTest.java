@@ -0,0 +1,199 @@
+package com.beginsecure.maventest.sosgamesprint2;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the GameEventBus and the events published by SimpleGame and GeneralGame.
+ */
+public class GameEventBusTest {
+
+    /**
+     * Tests if a simple game publishes moves, the formed SOS with its cells, and the game end.
+     */
+    @Test
+    void testSimpleGamePublishesEvents() {
+        GameEventBus bus = new GameEventBus(16);
+        RecordingListener listener = new RecordingListener();
+        GameEventBus.Subscription subscription = bus.subscribe("test", listener);
+
+        SimpleGame game = new SimpleGame(3);
+        game.setEventBus(bus);
+        game.placeMove(0, 0, 'S');
+        game.placeMove(2, 2, 'S');
+        game.placeMove(0, 1, 'O');
+        game.placeMove(0, 2, 'S');
+
+        assertTrue(subscription.awaitCaughtUp(5000));
+        subscription.close();
+
+        List<GameEvent> events = listener.events;
+        assertEquals(6, events.size());
+        assertEquals(GameEvent.Type.MOVE_PLACED, events.get(0).getType());
+        assertEquals('O', events.get(2).getLetter());
+        assertEquals(GameEvent.Type.SOS_FORMED, events.get(4).getType());
+        assertArrayEquals(new int[] {0, 0, 0, 1, 0, 2}, events.get(4).getCells());
+        assertEquals(2, events.get(4).getPlayer());
+        assertEquals(GameEvent.Type.GAME_ENDED, events.get(5).getType());
+        assertEquals(2, events.get(5).getWinner());
+        assertTrue(game.isGameOver());
+        for (GameEvent event : events) {
+            assertEquals(game.getGameId(), event.getGameId());
+        }
+    }
+
+    /**
+     * Tests if a general game publishes score changes without a GameEndListener.
+     */
+    @Test
+    void testGeneralGamePublishesScores() {
+        GameEventBus bus = new GameEventBus();
+        RecordingListener listener = new RecordingListener();
+        GameEventBus.Subscription subscription = bus.subscribe("test", listener);
+
+        GeneralGame game = new GeneralGame(3);
+        game.setEventBus(bus);
+        game.placeMove(0, 0, 'S');
+        game.placeMove(1, 0, 'S');
+        game.placeMove(0, 1, 'O');
+        game.placeMove(1, 1, 'O');
+        game.placeMove(0, 2, 'S');
+
+        assertTrue(subscription.awaitCaughtUp(5000));
+        subscription.close();
+
+        GameEvent score = listener.events.get(listener.events.size() - 1);
+        assertEquals(GameEvent.Type.SCORE_CHANGED, score.getType());
+        assertEquals(1, score.getPlayerOneScore());
+        assertEquals(0, score.getPlayerTwoScore());
+    }
+
+    /**
+     * Tests if score changes of one game queued behind a slow consumer are coalesced.
+     */
+    @Test
+    void testScoreChangesAreCoalesced() throws InterruptedException {
+        GameEventBus bus = new GameEventBus(64);
+        CountDownLatch firstBatch = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<List<GameEvent>> batches = new ArrayList<>();
+        GameEventBus.Subscription subscription = bus.subscribe("slow", events -> {
+            List<GameEvent> copies = new ArrayList<>();
+            for (GameEvent event : events) {
+                copies.add(event.copy());
+            }
+            batches.add(copies);
+            firstBatch.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+
+        publishScore(bus, 1, 0, 0);
+        assertTrue(firstBatch.await(5, TimeUnit.SECONDS));
+        publishScore(bus, 1, 1, 0);
+        publishScore(bus, 2, 0, 1);
+        publishScore(bus, 1, 2, 0);
+        release.countDown();
+        assertTrue(subscription.awaitCaughtUp(5000));
+        subscription.close();
+
+        List<GameEvent> second = batches.get(1);
+        assertEquals(2, second.size(), "Only the latest score per game should be delivered.");
+        assertEquals(2, second.get(0).getGameId());
+        assertEquals(2, second.get(1).getPlayerOneScore());
+    }
+
+    /**
+     * Tests if publishing goes on when a subscriber is stuck a full ring behind, and the
+     * subscriber skips to the newest events once it returns.
+     */
+    @Test
+    void testStuckSubscriberIsOverrun() throws InterruptedException {
+        GameEventBus bus = new GameEventBus(16);
+        CountDownLatch firstBatch = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<Integer> games = new ArrayList<>();
+        GameEventBus.Subscription subscription = bus.subscribe("stuck", events -> {
+            for (GameEvent event : events) {
+                games.add(event.getGameId());
+            }
+            firstBatch.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+
+        publishScore(bus, 1, 0, 0);
+        assertTrue(firstBatch.await(5, TimeUnit.SECONDS));
+        assertTimeoutPreemptively(Duration.ofSeconds(5), () -> {
+            for (int i = 0; i < 100; i++) {
+                publishScore(bus, 2, i, 0);
+            }
+        });
+        release.countDown();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (subscription.getSkipped() == 0 && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        assertTrue(subscription.getSkipped() > 0, "The stuck subscriber should have skipped events.");
+        publishScore(bus, 3, 0, 0);
+        assertTrue(subscription.awaitCaughtUp(5000));
+        subscription.close();
+        assertEquals(3, games.get(games.size() - 1));
+    }
+
+    /**
+     * Tests if a listener throwing an error, not only an exception, keeps receiving events.
+     */
+    @Test
+    void testFailingListenerKeepsReceiving() {
+        GameEventBus bus = new GameEventBus(256);
+        List<Integer> games = new ArrayList<>();
+        GameEventBus.Subscription subscription = bus.subscribe("failing", events -> {
+            for (GameEvent event : events) {
+                games.add(event.getGameId());
+            }
+            throw new AssertionError("Listener failed");
+        });
+
+        assertTimeoutPreemptively(Duration.ofSeconds(5), () -> {
+            for (int i = 0; i < 100; i++) {
+                publishScore(bus, i, 0, 0);
+            }
+        });
+        publishScore(bus, 100, 0, 0);
+        assertTrue(subscription.awaitCaughtUp(5000));
+        subscription.close();
+        assertEquals(100, games.get(games.size() - 1));
+    }
+
+    private static void publishScore(GameEventBus bus, int gameId, int playerOneScore, int playerTwoScore) {
+        GameEvent event = bus.claim(GameEvent.Type.SCORE_CHANGED, gameId);
+        event.setScores(playerOneScore, playerTwoScore);
+        bus.publish(event);
+    }
+
+    /**
+     * A listener that keeps a copy of every delivered event.
+     */
+    private static class RecordingListener implements GameEventListener {
+        final List<GameEvent> events = new ArrayList<>();
+
+        @Override
+        public void onEvents(List<GameEvent> batch) {
+            for (GameEvent event : batch) {
+                events.add(event.copy());
+            }
+        }
+    }
+}
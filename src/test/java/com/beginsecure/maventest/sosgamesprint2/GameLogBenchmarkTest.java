@@ -0,0 +1,74 @@
+package com.beginsecure.maventest.sosgamesprint2;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Prints what one log call costs the calling thread with {@link GameLog} against a synchronous
+ * {@code println} to a file, as the game did on the console, how many entries the asynchronous
+ * log wrote or dropped, and how fast its writer drains them. Run with
+ * {@code mvn test -Pbenchmark}.
+ */
+@Tag("benchmark")
+public class GameLogBenchmarkTest {
+
+    private static final int ENTRIES = 200_000;
+
+    @TempDir
+    Path directory;
+
+    /**
+     * Prints one line for each way of logging.
+     */
+    @Test
+    void benchmarkLogging() throws IOException {
+        System.out.printf("%nLogging benchmark, %d entries%n", ENTRIES);
+        System.out.printf("%-12s %12s %12s %12s%n", "logger", "ns/call", "written", "dropped");
+
+        Path syncFile = directory.resolve("sync.log");
+        try (PrintStream out = new PrintStream(Files.newOutputStream(syncFile), true)) {
+            long start = System.nanoTime();
+            for (int i = 0; i < ENTRIES; i++) {
+                out.println("Invalid response format from LLM: " + i); // Flushed on every line
+            }
+            System.out.printf("%-12s %12.0f %12d %12d%n", "println", (System.nanoTime() - start) / (double) ENTRIES,
+                    ENTRIES, 0);
+        }
+
+        Path bufferedFile = directory.resolve("buffered.log");
+        try (PrintStream out = new PrintStream(new BufferedOutputStream(Files.newOutputStream(bufferedFile)))) {
+            long start = System.nanoTime();
+            for (int i = 0; i < ENTRIES; i++) {
+                out.println("Invalid response format from LLM: " + i);
+            }
+            System.out.printf("%-12s %12.0f %12d %12d%n", "buffered", (System.nanoTime() - start) / (double) ENTRIES,
+                    ENTRIES, 0);
+        }
+
+        // Bursts of half the queue, as a game produces far fewer entries than the writer drains
+        try (GameLog log = new GameLog(directory.resolve("sos.log"), GameLog.Level.INFO, 1,
+                GameLog.DEFAULT_MAX_BYTES, GameLog.DEFAULT_FILES, GameLog.DEFAULT_CAPACITY)) {
+            int burst = GameLog.DEFAULT_CAPACITY / 2;
+            long callerNanos = 0;
+            long start = System.nanoTime();
+            for (int i = 0; i < ENTRIES; i += burst) {
+                long burstStart = System.nanoTime();
+                for (int j = i; j < Math.min(ENTRIES, i + burst); j++) {
+                    log.warn("ui", "Invalid response format from LLM", "response", j);
+                }
+                callerNanos += System.nanoTime() - burstStart;
+                log.flush(30_000);
+            }
+            long elapsed = System.nanoTime() - start;
+            System.out.printf("%-12s %12.0f %12d %12d%n", "GameLog", callerNanos / (double) ENTRIES,
+                    log.getWritten(), log.getDropped());
+            System.out.printf("GameLog writer: %.0f entries/s%n", log.getWritten() * 1e9 / elapsed);
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package com.beginsecure.maventest.sosgamesprint2;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Unit tests for the GameLog class and the LLM audit log.
+ */
+public class GameLogTest {
+
+    @TempDir
+    Path directory;
+
+    /**
+     * Tests if entries below the log's level are skipped and the others are written as JSON
+     * lines with their fields in order.
+     */
+    @Test
+    void testWritesLevelsAndFields() throws IOException {
+        Path file = directory.resolve("logs").resolve("sos.log");
+        try (GameLog log = new GameLog(file, GameLog.Level.INFO, 1, 1 << 20, 3, 64)) {
+            assertFalse(log.isEnabled(GameLog.Level.DEBUG));
+            log.debug("test", "hidden");
+            log.info("test", "first", "row", 1, "letter", 'S', "valid", true);
+            log.error("test", "second \"quoted\"", "error", "line\nbreak");
+            assertTrue(log.flush(5000));
+            assertEquals(2, log.getWritten());
+        }
+        List<String> lines = Files.readAllLines(file);
+        assertEquals(2, lines.size());
+        assertTrue(lines.get(0).startsWith("{\"time\":\""), lines.get(0));
+        JSONObject first = new JSONObject(lines.get(0));
+        assertEquals("INFO", first.getString("level"));
+        assertEquals("first", first.getString("message"));
+        assertEquals(1, first.getInt("row"));
+        assertEquals("S", first.getString("letter"));
+        assertTrue(first.getBoolean("valid"));
+        JSONObject second = new JSONObject(lines.get(1));
+        assertEquals("second \"quoted\"", second.getString("message"));
+        assertEquals("line\nbreak", second.getString("error"));
+    }
+
+    /**
+     * Tests if debug entries are sampled and the file is rotated, keeping the newest entries in
+     * the configured number of files.
+     */
+    @Test
+    void testSamplingAndRotation() throws IOException {
+        Path file = directory.resolve("sos.log");
+        try (GameLog log = new GameLog(file, GameLog.Level.DEBUG, 10, 400, 3, 1024)) {
+            for (int i = 0; i < 300; i++) {
+                log.debug("test", "entry", "index", i);
+            }
+            assertTrue(log.flush(5000));
+            assertEquals(30, log.getWritten());
+            assertEquals(270, log.getSampledOut());
+        }
+        assertFalse(Files.exists(directory.resolve("sos.log.3")));
+        List<Integer> indices = new ArrayList<>();
+        for (String name : new String[] {"sos.log.2", "sos.log.1", "sos.log"}) {
+            Path part = directory.resolve(name);
+            assertTrue(Files.size(part) <= 400, name + " has " + Files.size(part) + " bytes");
+            for (String line : Files.readAllLines(part)) {
+                indices.add(new JSONObject(line).getInt("index"));
+            }
+        }
+        assertTrue(indices.size() < 30, "The oldest file should have been dropped.");
+        for (int i = 0; i < indices.size(); i++) {
+            assertEquals(290 - 10 * (indices.size() - 1 - i), indices.get(i));
+        }
+    }
+
+    /**
+     * Tests if entries lost because the file cannot be written are counted as dropped, not as
+     * written. Uses {@code /dev/full}, where every write fails, so it only runs where it exists.
+     */
+    @Test
+    void testFailedWritesAreDropped() {
+        Path full = Path.of("/dev/full");
+        assumeTrue(Files.isWritable(full), "No /dev/full on this system");
+        try (GameLog log = new GameLog(full, GameLog.Level.INFO, 1, 1 << 20, 3, 64)) {
+            for (int i = 0; i < 5; i++) {
+                log.info("test", "lost", "index", i);
+            }
+            assertTrue(log.flush(5000));
+            assertEquals(0, log.getWritten());
+            assertEquals(5, log.getDropped());
+        }
+    }
+
+    /**
+     * Tests if each LLM request adds one audit line with its status, latency, sizes and token
+     * counts, and nothing is written to the diagnostic log below its level.
+     */
+    @Test
+    void testLlmRequestsAreAudited() throws IOException {
+        Path auditFile = directory.resolve("llm-audit.log");
+        Path logFile = directory.resolve("sos.log");
+        try (LLMStubServer stub = new LLMStubServer(0, 0.0, new Random(1));
+             GameLog audit = new GameLog(auditFile, GameLog.Level.INFO, 1, 1 << 20, 3, 64);
+             GameLog log = new GameLog(logFile, GameLog.Level.INFO, 1, 1 << 20, 3, 64)) {
+            LLMService service = new LLMService(stub.getUrl(), "stub", "stub", log, audit);
+            String prompt = "Place a letter on a 3x3 board.";
+            LLMService.Reply reply = service.send(prompt, 2);
+            assertEquals(200, reply.statusCode());
+            assertTrue(audit.flush(5000));
+            assertTrue(log.flush(5000));
+
+            List<String> lines = Files.readAllLines(auditFile);
+            assertEquals(1, lines.size());
+            JSONObject entry = new JSONObject(lines.get(0));
+            assertEquals("stub", entry.getString("model"));
+            assertEquals(2, entry.getInt("retry"));
+            assertEquals(200, entry.getInt("status"));
+            assertTrue(entry.getLong("latencyMs") >= 0);
+            assertEquals(prompt.length(), entry.getInt("promptChars"));
+            assertEquals(reply.content().length(), entry.getInt("responseChars"));
+            assertEquals((prompt.length() + 3) / 4, entry.getInt("promptTokens"));
+            assertTrue(entry.getInt("completionTokens") > 0);
+            assertFalse(Files.exists(logFile), "Debug entries should not be written at INFO.");
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.beginsecure.maventest.sosgamesprint2;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.json.JSONObject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for GameMetrics, LatencyHistogram and the custom flight recorder events.
+ */
+public class GameMetricsTest {
+
+    @AfterEach
+    void tearDown() {
+        GameMetrics.setEnabled(false);
+        GameMetrics.reset();
+    }
+
+    /**
+     * Tests if moves and SOS detections are counted only while metrics are enabled.
+     */
+    @Test
+    void testCountersFollowEnabledFlag() {
+        GameMetrics.reset();
+        playScoringGame();
+        assertEquals(0, GameMetrics.snapshot().getMoves(), "Disabled metrics should not count.");
+
+        GameMetrics.setEnabled(true);
+        playScoringGame();
+        GameMetrics.Snapshot snapshot = GameMetrics.snapshot();
+        assertEquals(5, snapshot.getMoves());
+        assertEquals(1, snapshot.getSosDetected());
+        assertTrue(snapshot.getMovesPerSecond() > 0);
+    }
+
+    /**
+     * Tests if the invalid LLM move rate is derived from recorded AI move selections.
+     */
+    @Test
+    void testInvalidLlmMoveRate() {
+        GameMetrics.setEnabled(true);
+        GameMetrics.reset();
+        GameMetrics.recordAIMove(GameMetrics.startTimer(), 3, 2, true);
+        GameMetrics.recordAIMove(GameMetrics.startTimer(), 1, 0, true);
+        assertEquals(0.5, GameMetrics.snapshot().getInvalidLlmMoveRate(), 1e-9);
+    }
+
+    /**
+     * Tests if histogram percentiles stay within the bucket precision.
+     */
+    @Test
+    void testHistogramPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i * 1000L);
+        }
+        assertEquals(1000, histogram.getCount());
+        assertEquals(500_000, histogram.getPercentile(50), 500_000 * 0.125);
+        assertEquals(990_000, histogram.getPercentile(99), 990_000 * 0.125);
+    }
+
+    /**
+     * Tests if a snapshot can be dumped to a JSON file.
+     */
+    @Test
+    void testSnapshotWritesJson() throws Exception {
+        GameMetrics.setEnabled(true);
+        GameMetrics.reset();
+        playScoringGame();
+        Path file = Files.createTempFile("sos-metrics", ".json");
+        try {
+            GameMetrics.snapshot().writeTo(file);
+            JSONObject json = new JSONObject(Files.readString(file));
+            assertEquals(5, json.getLong("moves"));
+            assertEquals(5, json.getJSONObject("latencies").getJSONObject("placeMove").getLong("count"));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    /**
+     * Tests if placeMove and checkForSOSCount emit flight recorder events during a recording.
+     */
+    @Test
+    void testFlightRecorderEvents() throws Exception {
+        Path file = Files.createTempFile("sos-events", ".jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable("sos.PlaceMove");
+            recording.enable("sos.CheckForSOS");
+            recording.start();
+            playScoringGame();
+            recording.stop();
+            recording.dump(file);
+
+            List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+            long moves = events.stream().filter(e -> e.getEventType().getName().equals("sos.PlaceMove")).count();
+            long checks = events.stream().filter(e -> e.getEventType().getName().equals("sos.CheckForSOS")).count();
+            assertEquals(5, moves);
+            assertEquals(5, checks);
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    /**
+     * Plays five moves of a general game, the last of which forms one SOS.
+     */
+    private static void playScoringGame() {
+        GeneralGame game = new GeneralGame(3);
+        game.placeMove(0, 0, 'S');
+        game.placeMove(1, 0, 'S');
+        game.placeMove(0, 1, 'O');
+        game.placeMove(1, 1, 'O');
+        game.placeMove(0, 2, 'S');
+    }
+}
@@ -0,0 +1,97 @@
+package com.beginsecure.maventest.sosgamesprint2;
+
+import java.util.List;
+import java.util.Random;
+import java.util.function.IntFunction;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Prints the cost of playing millions of back-to-back games on new instances against games
+ * recycled through a GamePool: time per game, bytes allocated per game and garbage collections. Run with {@code mvn test -Pbenchmark}.
+ */
+@Tag("benchmark")
+public class GamePoolBenchmarkTest {
+
+    private static final int GAMES = 2_000_000;
+
+    /**
+     * Prints one line per board size and way of obtaining games.
+     */
+    @Test
+    void benchmarkPooling() throws Exception {
+        System.out.printf("%nGame pool benchmark, %d general games each%n", GAMES);
+        System.out.printf("%-6s %-8s %10s %14s %6s%n", "size", "games", "ns/game", "bytes/game", "GCs");
+        for (int size : new int[] {3, 5}) {
+            GamePool pool = new GamePool(GamePool.DEFAULT_CAPACITY);
+            IntFunction<SOSGame> fresh = boardSize -> new GeneralGame(boardSize);
+            IntFunction<SOSGame> pooled = boardSize -> pool.acquire(boardSize, true);
+            play(size, GAMES / 10, fresh, null); // Warm up
+            play(size, GAMES / 10, pooled, pool);
+            measure(size, "new", fresh, null);
+            measure(size, "pooled", pooled, pool);
+        }
+    }
+
+    /**
+     * Plays the games and prints their time, the bytes the thread allocated and the collections.
+     */
+    private static void measure(int size, String label, IntFunction<SOSGame> games, GamePool pool) throws Exception {
+        long bytes = allocatedBytes();
+        long collections = collections();
+        long start = System.nanoTime();
+        play(size, GAMES, games, pool);
+        long elapsed = System.nanoTime() - start;
+        bytes = allocatedBytes() - bytes;
+        collections = collections() - collections;
+        System.out.printf("%-6d %-8s %10.0f %14.1f %6d%n", size, label, (double) elapsed / GAMES,
+                (double) bytes / GAMES, collections);
+    }
+
+    /**
+     * Reads the bytes allocated by this thread so far. The management beans are reached by
+     * reflection, as the application module does not read java.management.
+     */
+    private static long allocatedBytes() throws Exception {
+        Object threads = Class.forName("java.lang.management.ManagementFactory").getMethod("getThreadMXBean").invoke(null);
+        return (long) Class.forName("com.sun.management.ThreadMXBean").getMethod("getCurrentThreadAllocatedBytes")
+                .invoke(threads);
+    }
+
+    /**
+     * Reads the number of garbage collections so far, of every collector.
+     */
+    private static long collections() throws Exception {
+        Class<?> collector = Class.forName("java.lang.management.GarbageCollectorMXBean");
+        long count = 0;
+        for (Object bean : (List<?>) Class.forName("java.lang.management.ManagementFactory")
+                .getMethod("getGarbageCollectorMXBeans").invoke(null)) {
+            count += (long) collector.getMethod("getCollectionCount").invoke(bean);
+        }
+        return count;
+    }
+
+    /**
+     * Plays random general games back to back, releasing each to the pool if there is one.
+     */
+    private static void play(int size, int count, IntFunction<SOSGame> games, GamePool pool) {
+        Random random = new Random(size);
+        int[] cells = new int[size * size];
+        for (int cell = 0; cell < cells.length; cell++) {
+            cells[cell] = cell;
+        }
+        for (int i = 0; i < count; i++) {
+            SOSGame game = games.apply(size);
+            for (int n = cells.length; n > 0; n--) {
+                int pick = random.nextInt(n);
+                int cell = cells[pick];
+                cells[pick] = cells[n - 1];
+                cells[n - 1] = cell;
+                game.placeMove(cell / size, cell % size, random.nextBoolean() ? 'S' : 'O');
+            }
+            if (pool != null) {
+                pool.release(game);
+            }
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.beginsecure.maventest.sosgamesprint2;
+
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the GamePool class and for resetting games in place.
+ */
+public class GamePoolTest {
+
+    /**
+     * Tests if a reset game, of the same or another size, plays exactly like a new one.
+     */
+    @Test
+    void testResetGamePlaysLikeNewGame() {
+        Random random = new Random(2);
+        GeneralGame reused = new GeneralGame(5);
+        SimpleGame reusedSimple = new SimpleGame(5);
+        for (int round = 0; round < 30; round++) {
+            int size = round % 3 == 0 ? 4 + round % 2 : 5;
+            int gameId = reused.getGameId();
+            reused.reset(size);
+            reusedSimple.reset(size);
+            assertNotEquals(gameId, reused.getGameId());
+            assertTrue(reused.isPlayerOneTurn());
+            assertEquals(0, reused.getPlayerOneScore() + reused.getPlayerTwoScore());
+            GeneralGame fresh = new GeneralGame(size);
+            SimpleGame freshSimple = new SimpleGame(size);
+            while (!fresh.isGameOver()) {
+                int row = random.nextInt(size);
+                int col = random.nextInt(size);
+                char letter = random.nextBoolean() ? 'S' : 'O';
+                assertEquals(fresh.placeMove(row, col, letter), reused.placeMove(row, col, letter));
+                if (!freshSimple.isGameOver()) {
+                    assertEquals(freshSimple.placeMove(row, col, letter), reusedSimple.placeMove(row, col, letter));
+                }
+                assertEquals(fresh.getPlayerOneScore(), reused.getPlayerOneScore());
+                assertEquals(fresh.getPlayerTwoScore(), reused.getPlayerTwoScore());
+                assertEquals(fresh.isPlayerOneTurn(), reused.isPlayerOneTurn());
+                assertEquals(freshSimple.getWinner(), reusedSimple.getWinner());
+                for (int cell = 0; cell < size * size; cell++) {
+                    ThreatIndex expected = fresh.getThreatIndex();
+                    ThreatIndex actual = reused.getThreatIndex();
+                    if (expected.isEmpty(cell / size, cell % size)) {
+                        assertEquals(expected.getSosIf(cell / size, cell % size, 'S'), actual.getSosIf(cell / size, cell % size, 'S'));
+                        assertEquals(expected.getDangerIf(cell / size, cell % size, 'O'), actual.getDangerIf(cell / size, cell % size, 'O'));
+                    }
+                }
+            }
+            assertEquals(fresh.getWinner(), reused.getWinner());
+            assertArrayEquals(fresh.getBoard(), reused.getBoard());
+            assertArrayEquals(fresh.getPlayerMoves(), reused.getPlayerMoves());
+        }
+    }
+
+    /**
+     * Tests if released games are handed out again, reset, and if games that do not qualify are
+     * refused.
+     */
+    @Test
+    void testAcquireAndRelease() {
+        GamePool pool = new GamePool(2);
+        SOSGame first = pool.acquire(5, true);
+        assertInstanceOf(GeneralGame.class, first);
+        assertTrue(first.placeMove(0, 0, 'S'));
+        first.setEventBus(new GameEventBus());
+        assertTrue(pool.release(first));
+        assertFalse(pool.release(first), "A game is pooled once.");
+
+        SOSGame simple = pool.acquire(5, false);
+        assertInstanceOf(SimpleGame.class, simple);
+        assertNotSame(first, simple);
+        SOSGame second = pool.acquire(7, true);
+        assertSame(first, second, "A game of another size is reused with new buffers.");
+        assertEquals(7, second.getBoard().length);
+        assertEquals('\0', second.getBoard()[0][0]);
+        assertEquals(2, pool.getCreated());
+        assertEquals(1, pool.getReused());
+
+        GameEndListener listener = new GameEndListener() {
+            @Override
+            public void onGameEnd(String message) {
+            }
+
+            @Override
+            public void onScoreUpdate(int playerOneScore, int playerTwoScore) {
+            }
+        };
+        assertFalse(pool.release(new GeneralGame(5, listener)), "Games with a listener are not pooled.");
+        assertFalse(pool.release(new SimpleGame(5, LineRule.of("SOSOS"), null)), "Variant rules are not pooled.");
+        assertTrue(pool.release(new SimpleGame(5)));
+        assertTrue(pool.release(new SimpleGame(5)));
+        assertFalse(pool.release(new SimpleGame(5)), "The pool is full.");
+        assertThrows(IllegalArgumentException.class, () -> pool.acquire(16, true));
+    }
+}
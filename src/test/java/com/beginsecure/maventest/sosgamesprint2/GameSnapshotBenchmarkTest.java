@@ -0,0 +1,82 @@
+package com.beginsecure.maventest.sosgamesprint2;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Prints the cost of saving and restoring a half-played game with GameSnapshot, compared to
+ * replaying its GameRecord. Run with {@code mvn test -Pbenchmark}.
+ */
+@Tag("benchmark")
+public class GameSnapshotBenchmarkTest {
+
+    private static final int REPEATS = 20_000;
+
+    /**
+     * Prints microseconds per save, restore and replay for several board sizes.
+     */
+    @Test
+    void benchmarkSnapshots() {
+        System.out.printf("%nGame snapshot benchmark, %d repeats%n", REPEATS);
+        System.out.printf("%-6s %8s %12s %12s %12s%n", "size", "bytes", "save us", "restore us", "replay us");
+        for (int size : new int[] {3, 9, 15}) {
+            Random random = new Random(size);
+            GeneralGame game = new GeneralGame(size);
+            StringBuilder record = new StringBuilder(size + " G");
+            while (countMoves(game) < size * size / 2) {
+                int row = random.nextInt(size);
+                int col = random.nextInt(size);
+                char letter = random.nextBoolean() ? 'S' : 'O';
+                if (game.placeMove(row, col, letter)) {
+                    record.append(' ').append(row * size + col).append(letter);
+                }
+            }
+            GameRecord moves = GameRecord.parse(record.toString());
+            ByteBuffer buffer = ByteBuffer.allocateDirect(GameSnapshot.sizeOf(game));
+            long sink = 0;
+            double save = 0;
+            double restore = 0;
+            double replay = 0;
+            for (int pass = 0; pass < 3; pass++) { // The first passes warm up
+                long start = System.nanoTime();
+                for (int i = 0; i < REPEATS; i++) {
+                    buffer.clear();
+                    GameSnapshot.write(game, buffer);
+                }
+                save = (System.nanoTime() - start) / 1000.0 / REPEATS;
+                start = System.nanoTime();
+                for (int i = 0; i < REPEATS; i++) {
+                    buffer.flip();
+                    sink += GameSnapshot.read(buffer, null).isPlayerOneTurn() ? 1 : 0;
+                }
+                restore = (System.nanoTime() - start) / 1000.0 / REPEATS;
+                start = System.nanoTime();
+                for (int i = 0; i < REPEATS; i++) {
+                    GeneralGame replayed = new GeneralGame(size);
+                    for (Move move : moves.moves()) {
+                        replayed.placeMove(move.row(), move.col(), move.letter());
+                    }
+                    sink += replayed.getPlayerOneScore();
+                }
+                replay = (System.nanoTime() - start) / 1000.0 / REPEATS;
+            }
+            System.out.printf("%-6d %8d %12.2f %12.2f %12.2f%s%n", size, buffer.capacity(), save, restore, replay,
+                    sink == 42 ? " " : "");
+        }
+    }
+
+    /**
+     * Counts the letters on the board.
+     */
+    private static int countMoves(SOSGame game) {
+        int count = 0;
+        for (char[] row : game.getBoard()) {
+            for (char letter : row) {
+                count += letter == '\0' ? 0 : 1;
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,181 @@
+package com.beginsecure.maventest.sosgamesprint2;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the GameSnapshot class.
+ */
+public class GameSnapshotTest {
+
+    /**
+     * Places a random legal move and returns whether one was placed.
+     */
+    private static boolean playRandom(SOSGame game, Random random) {
+        int size = game.getBoard().length;
+        String alphabet = game.getRule().alphabet();
+        for (int tries = 0; tries < 1000; tries++) {
+            int row = random.nextInt(size);
+            int col = random.nextInt(size);
+            if (game.getBoard()[row][col] == '\0') {
+                return game.placeMove(row, col, alphabet.charAt(random.nextInt(alphabet.length())));
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Checks that two games are in the same state.
+     */
+    private static void assertSameState(SOSGame expected, SOSGame actual) {
+        assertEquals(expected.getClass(), actual.getClass());
+        assertEquals(expected.getRule(), actual.getRule());
+        assertArrayEquals(expected.getBoard(), actual.getBoard());
+        assertArrayEquals(expected.getPlayerMoves(), actual.getPlayerMoves());
+        assertEquals(expected.isPlayerOneTurn(), actual.isPlayerOneTurn());
+        assertEquals(expected.isGameOver(), actual.isGameOver());
+        assertEquals(expected.getWinner(), actual.getWinner());
+        if (expected instanceof GeneralGame) {
+            assertEquals(((GeneralGame) expected).getPlayerOneScore(), ((GeneralGame) actual).getPlayerOneScore());
+            assertEquals(((GeneralGame) expected).getPlayerTwoScore(), ((GeneralGame) actual).getPlayerTwoScore());
+        }
+    }
+
+    /**
+     * Saves general games halfway, then plays the same moves on the original and the restored
+     * game, checking that lines scored before saving are not scored again.
+     */
+    private static void checkContinuation(LineRule rule, long seed) {
+        Random random = new Random(seed);
+        for (int size = 3; size <= 9; size++) {
+            GeneralGame game = new GeneralGame(size, rule, null);
+            for (int i = 0; i < size * size / 2; i++) {
+                playRandom(game, random);
+            }
+            SOSGame restored = GameSnapshot.fromBytes(GameSnapshot.toBytes(game), null);
+            assertSameState(game, restored);
+            long continuation = random.nextLong();
+            Random first = new Random(continuation);
+            Random second = new Random(continuation);
+            while (!game.isGameOver()) {
+                playRandom(game, first);
+                playRandom(restored, second);
+                assertSameState(game, restored);
+            }
+            assertEquals(game.getThreatIndex() == null, restored.getThreatIndex() == null);
+        }
+    }
+
+    /**
+     * Tests if restored general games continue exactly like the originals.
+     */
+    @Test
+    void testGeneralGameContinuesAfterRestore() {
+        checkContinuation(LineRule.STANDARD, 1);
+    }
+
+    /**
+     * Tests if variant rules are saved with the game.
+     */
+    @Test
+    void testVariantRules() {
+        checkContinuation(LineRule.of("SOSOS").withToroidal(), 2);
+        checkContinuation(LineRule.STANDARD.withDirections(LineRule.Direction.VERTICAL), 3);
+        checkContinuation(new LineRule("XOX", "XOZ", LineRule.STANDARD.directions(), false), 4);
+    }
+
+    /**
+     * Tests if a finished simple game restores as finished, with its winner.
+     */
+    @Test
+    void testFinishedSimpleGame() {
+        SimpleGame game = new SimpleGame(3);
+        game.placeMove(1, 1, 'O');
+        game.placeMove(0, 0, 'S');
+        game.placeMove(2, 2, 'S');
+        SOSGame restored = GameSnapshot.fromBytes(GameSnapshot.toBytes(game), null);
+        assertInstanceOf(SimpleGame.class, restored);
+        assertTrue(restored.isGameOver());
+        assertEquals(1, restored.getWinner());
+        assertSameState(game, restored);
+    }
+
+    /**
+     * Tests if the snapshot length depends only on the board size and rule, and if snapshots
+     * can be packed one after another in a buffer.
+     */
+    @Test
+    void testFixedLayout() {
+        GeneralGame empty = new GeneralGame(7);
+        GeneralGame played = new GeneralGame(7);
+        Random random = new Random(5);
+        for (int i = 0; i < 30; i++) {
+            playRandom(played, random);
+        }
+        int length = GameSnapshot.sizeOf(empty);
+        assertEquals(length, GameSnapshot.sizeOf(played));
+        assertEquals(length, GameSnapshot.toBytes(played).length);
+        assertEquals(0, length % 8);
+
+        ByteBuffer buffer = ByteBuffer.allocateDirect(2 * length);
+        GameSnapshot.write(empty, buffer);
+        GameSnapshot.write(played, buffer);
+        assertFalse(buffer.hasRemaining());
+        buffer.flip();
+        assertSameState(empty, GameSnapshot.read(buffer, null));
+        assertSameState(played, GameSnapshot.read(buffer, null));
+    }
+
+    /**
+     * Tests if other data, other versions and truncated snapshots are rejected.
+     */
+    @Test
+    void testInvalidSnapshots() {
+        byte[] bytes = GameSnapshot.toBytes(new GeneralGame(4));
+        byte[] truncated = Arrays.copyOf(bytes, bytes.length - 1);
+        assertThrows(IllegalArgumentException.class, () -> GameSnapshot.fromBytes(truncated, null));
+        bytes[5] = 9; // Version
+        assertThrows(IllegalArgumentException.class, () -> GameSnapshot.fromBytes(bytes, null));
+        bytes[0] = 'X';
+        assertThrows(IllegalArgumentException.class, () -> GameSnapshot.fromBytes(bytes, null));
+    }
+
+    /**
+     * Tests if a game saved to a file is loaded back with its listener.
+     */
+    @Test
+    void testSaveAndLoad() throws IOException {
+        GeneralGame game = new GeneralGame(3);
+        game.placeMove(0, 0, 'S');
+        game.placeMove(0, 1, 'O');
+        Path file = Files.createTempFile("sos-game", ".sos");
+        try {
+            GameSnapshot.save(game, file);
+            int[] scores = new int[2];
+            SOSGame loaded = GameSnapshot.load(file, new GameEndListener() {
+                @Override
+                public void onGameEnd(String message) {
+                }
+
+                @Override
+                public void onScoreUpdate(int playerOneScore, int playerTwoScore) {
+                    scores[0] = playerOneScore;
+                    scores[1] = playerTwoScore;
+                }
+            });
+            assertTrue(loaded.placeMove(0, 2, 'S'));
+            assertArrayEquals(new int[] {1, 0}, scores);
+
+            Files.write(file, new byte[] {1, 2, 3});
+            assertThrows(IOException.class, () -> GameSnapshot.load(file, null));
+        } finally {
+            Files.delete(file);
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package com.beginsecure.maventest.sosgamesprint2;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the LLMScheduler class, against an LLMStubServer.
+ */
+public class LLMSchedulerTest {
+
+    private LLMStubServer stub;
+
+    /**
+     * Starts the stub.
+     */
+    @BeforeEach
+    void startStub() throws IOException {
+        stub = new LLMStubServer(0, 0.0, new Random(1));
+    }
+
+    /**
+     * Stops the stub.
+     */
+    @AfterEach
+    void stopStub() {
+        stub.close();
+    }
+
+    /**
+     * Creates a scheduler without a rate limit that retries quickly.
+     */
+    private LLMScheduler scheduler(int maxInFlight, int maxAttempts) {
+        return new LLMScheduler(stub.newService(), 0, 1, maxInFlight, maxAttempts, 10, 40, new Random(2));
+    }
+
+    /**
+     * Tests if identical prompts in flight together are sent once and share the answer.
+     */
+    @Test
+    void testCoalescing() {
+        stub.setDelayMillis(200);
+        try (LLMScheduler scheduler = scheduler(4, 1)) {
+            List<CompletableFuture<LLMService.Reply>> replies = new ArrayList<>();
+            for (int i = 0; i < 5; i++) {
+                replies.add(scheduler.submit("Move on a 3x3 board.", LLMScheduler.Priority.BATCH));
+            }
+            LLMService.Reply first = replies.get(0).join();
+            assertEquals(200, first.statusCode());
+            for (CompletableFuture<LLMService.Reply> reply : replies) {
+                assertEquals(first, reply.join());
+            }
+            assertEquals(1, stub.getRequestCount());
+            assertEquals(4, scheduler.getCoalescedRequests());
+
+            LLMService client = scheduler.client(LLMScheduler.Priority.INTERACTIVE);
+            assertFalse(client.getMoveFromLLM("Move on a 3x3 board.", 0).startsWith("Error"));
+            assertEquals(2, stub.getRequestCount(), "A finished prompt should be sent again.");
+        }
+    }
+
+    /**
+     * Tests if a call to an endpoint that does not answer times out and is retried, rather than
+     * holding its concurrency slot forever.
+     */
+    @Test
+    void testHungEndpointTimesOut() {
+        stub.setDelayMillis(5_000);
+        LLMService service = new LLMService(stub.getUrl(), "stub", "stub", 1_000, 100);
+        try (LLMScheduler scheduler = new LLMScheduler(service, 0, 1, 1, 2, 10, 40, new Random(2))) {
+            LLMService.Reply reply = assertTimeoutPreemptively(Duration.ofSeconds(3),
+                    () -> scheduler.submit("Move on a 3x3 board.", LLMScheduler.Priority.BATCH).join());
+            assertEquals(-1, reply.statusCode());
+            assertTrue(reply.isRetryable());
+            assertEquals(1, scheduler.getRetries());
+            assertEquals(2, scheduler.getRequestsSent());
+        }
+    }
+
+    /**
+     * Tests if rate-limited requests are retried until they succeed.
+     */
+    @Test
+    void testRetryAfterRateLimit() {
+        stub.failNext(2, 429);
+        try (LLMScheduler scheduler = scheduler(4, 5)) {
+            LLMService.Reply reply = scheduler.submit("Move on a 3x3 board.", LLMScheduler.Priority.BATCH).join();
+            assertEquals(200, reply.statusCode());
+            assertEquals(2, scheduler.getRetries());
+            assertEquals(3, stub.getRequestCount());
+        }
+    }
+
+    /**
+     * Tests if a failing request is given up after the last attempt, and if client errors are
+     * not retried.
+     */
+    @Test
+    void testGiveUp() {
+        stub.failNext(10, 503);
+        try (LLMScheduler scheduler = scheduler(4, 3)) {
+            LLMService.Reply reply = scheduler.submit("Move on a 3x3 board.", LLMScheduler.Priority.BATCH).join();
+            assertEquals(503, reply.statusCode());
+            assertTrue(reply.content().startsWith("Error"));
+            assertEquals(3, stub.getRequestCount());
+
+            stub.failNext(1, 400);
+            assertEquals(400, scheduler.submit("Other", LLMScheduler.Priority.BATCH).join().statusCode());
+            assertEquals(4, stub.getRequestCount());
+        }
+    }
+
+    /**
+     * Tests if no more requests are outstanding at once than allowed.
+     */
+    @Test
+    void testInFlightLimit() {
+        stub.setDelayMillis(50);
+        try (LLMScheduler scheduler = scheduler(2, 1)) {
+            List<CompletableFuture<LLMService.Reply>> replies = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                replies.add(scheduler.submit("Prompt " + i, LLMScheduler.Priority.BATCH));
+            }
+            replies.forEach(CompletableFuture::join);
+            assertEquals(8, stub.getRequestCount());
+            assertEquals(2, stub.getMaxConcurrentRequests());
+        }
+    }
+
+    /**
+     * Tests if requests beyond the burst are spread out at the configured rate.
+     */
+    @Test
+    void testRateLimit() {
+        try (LLMScheduler scheduler = new LLMScheduler(stub.newService(), 20, 2, 4, 1, 10, 40, new Random(3))) {
+            long start = System.nanoTime();
+            List<CompletableFuture<LLMService.Reply>> replies = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                replies.add(scheduler.submit("Prompt " + i, LLMScheduler.Priority.BATCH));
+            }
+            replies.forEach(CompletableFuture::join);
+            long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+            assertTrue(elapsedMillis >= 250, "6 requests past the burst need 300 ms, took " + elapsedMillis);
+        }
+    }
+
+    /**
+     * Tests if an interactive request overtakes queued batch requests, including when it
+     * joins a queued batch prompt.
+     */
+    @Test
+    void testInteractiveFirst() throws InterruptedException {
+        stub.setDelayMillis(100);
+        try (LLMScheduler scheduler = scheduler(1, 1)) {
+            List<String> order = Collections.synchronizedList(new ArrayList<>());
+            List<CompletableFuture<?>> done = new ArrayList<>();
+            done.add(scheduler.submit("Batch 0", LLMScheduler.Priority.BATCH).thenRun(() -> order.add("Batch 0")));
+            Thread.sleep(30); // Batch 0 is in flight
+            for (String prompt : new String[] {"Batch 1", "Batch 2", "Batch 3"}) {
+                done.add(scheduler.submit(prompt, LLMScheduler.Priority.BATCH).thenRun(() -> order.add(prompt)));
+            }
+            done.add(scheduler.submit("Interactive", LLMScheduler.Priority.INTERACTIVE)
+                    .thenRun(() -> order.add("Interactive")));
+            done.add(scheduler.submit("Batch 3", LLMScheduler.Priority.INTERACTIVE)
+                    .thenRun(() -> order.add("Promoted")));
+            done.forEach(CompletableFuture::join);
+            assertEquals("Batch 0", order.get(0));
+            assertTrue(order.indexOf("Interactive") < order.indexOf("Batch 1"));
+            assertTrue(order.indexOf("Promoted") < order.indexOf("Batch 1"));
+            assertEquals(List.of("Batch 1", "Batch 2"), order.subList(4, 6));
+            assertEquals(6, order.size());
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.beginsecure.maventest.sosgamesprint2;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Prints how the Lazy-SMP search of {@link SearchPlayer} scales from one thread to all cores:
+ * the depth completed within the Hard level's time budget, nodes per second, and the time to
+ * complete the depth the single-threaded search reached. Run with
+ * {@code mvn test -Pbenchmark}.
+ */
+@Tag("benchmark")
+public class LazySmpBenchmarkTest {
+
+    /**
+     * Prints one line per board size and thread count.
+     */
+    @Test
+    void benchmarkScaling() {
+        int cores = Runtime.getRuntime().availableProcessors();
+        List<Integer> threadCounts = new ArrayList<>();
+        for (int threads = 1; threads < cores; threads *= 2) {
+            threadCounts.add(threads);
+        }
+        threadCounts.add(cores);
+        System.out.printf("%nLazy-SMP benchmark, %d ms per move, %d cores%n",
+                Difficulty.HARD.getTimePerMoveMillis(), cores);
+        System.out.printf("%-6s %8s %7s %14s %16s %9s%n", "size", "threads", "depth", "nodes/s",
+                "time to depth", "speedup");
+        for (int size = 5; size <= 9; size += 2) {
+            CompactGameState state = position(size);
+            search(state, 1); // Warm up
+            int depth = 0;
+            long singleNanos = 0;
+            for (int threads : threadCounts) {
+                long start = System.nanoTime();
+                SearchPlayer player = search(state, threads);
+                long elapsed = System.nanoTime() - start;
+                if (threads == 1) {
+                    depth = player.getLastDepth();
+                    singleNanos = player.getLastTimeToDepth(depth);
+                }
+                long nanos = player.getLastTimeToDepth(depth);
+                System.out.printf("%-6d %8d %7d %14.0f %13.1f ms %8.2fx%n", size, threads, player.getLastDepth(),
+                        player.getLastNodes() * 1e9 / elapsed, nanos / 1e6, (double) singleNanos / nanos);
+            }
+        }
+    }
+
+    /**
+     * Builds a general game with a few letters placed, so the search has some SOS to find.
+     */
+    private static CompactGameState position(int size) {
+        CompactGameState state = new CompactGameState(size, true);
+        Random random = new Random(size);
+        while (state.getEmptyCells() > size * size - size) {
+            int cell = random.nextInt(size * size);
+            if (state.getLetter(cell / size, cell % size) == '\0') {
+                state.placeMove(cell / size, cell % size, random.nextBoolean() ? 'S' : 'O');
+            }
+        }
+        return state;
+    }
+
+    /**
+     * Searches the position for the Hard level's time budget with a fresh player.
+     */
+    private static SearchPlayer search(CompactGameState state, int threads) {
+        SearchPlayer player = new SearchPlayer(Difficulty.HARD, new Random(1), PatternWeights.getDefault(), false,
+                threads);
+        player.chooseMove(state);
+        return player;
+    }
+}
@@ -0,0 +1,148 @@
+package com.beginsecure.maventest.sosgamesprint2;
+
+import java.util.Random;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Prints the cost of detecting the lines completed by a move with the compiled LineMatcher,
+ * compared to the hand-written SOS checks it replaced. Run with {@code mvn test -Pbenchmark}.
+ */
+@Tag("benchmark")
+public class LineMatcherBenchmarkTest {
+
+    private static final int GAMES = 2_000;
+    private static final int REPEATS = 10;
+
+    /**
+     * Prints nanoseconds per move over random full games for both detectors.
+     */
+    @Test
+    void benchmarkDetection() {
+        System.out.printf("%nLine detection benchmark, %d random games per size, %d passes%n", GAMES, REPEATS);
+        System.out.printf("%-6s %22s %22s %22s%n", "size", "hand-written ns/move", "matcher SOS ns/move", "matcher SOSOS ns/move");
+        for (int size : new int[] {3, 8, 15}) {
+            int[][] games = randomGames(size, new Random(size));
+            long sink = 0;
+            for (int warmup = 0; warmup < 5; warmup++) {
+                sink += handWritten(size, games) + matcher(LineRule.STANDARD, size, games) + matcher(LineRule.of("SOSOS"), size, games);
+            }
+            long start = System.nanoTime();
+            sink += handWritten(size, games);
+            double hand = (System.nanoTime() - start) / (double) (REPEATS * GAMES * size * size);
+            start = System.nanoTime();
+            sink += matcher(LineRule.STANDARD, size, games);
+            double standard = (System.nanoTime() - start) / (double) (REPEATS * GAMES * size * size);
+            start = System.nanoTime();
+            sink += matcher(LineRule.of("SOSOS"), size, games);
+            double longer = (System.nanoTime() - start) / (double) (REPEATS * GAMES * size * size);
+            System.out.printf("%-6d %22.1f %22.1f %22.1f%s%n", size, hand, standard, longer, sink == 42 ? " " : "");
+        }
+    }
+
+    /**
+     * Generates move sequences filling the board, each move as cell * 2 + (O ? 1 : 0).
+     */
+    private static int[][] randomGames(int size, Random random) {
+        int[][] games = new int[GAMES][size * size];
+        for (int[] game : games) {
+            for (int i = 0; i < game.length; i++) {
+                game[i] = i;
+            }
+            for (int i = game.length - 1; i > 0; i--) {
+                int j = random.nextInt(i + 1);
+                int swap = game[i];
+                game[i] = game[j];
+                game[j] = swap;
+            }
+            for (int i = 0; i < game.length; i++) {
+                game[i] = game[i] * 2 + random.nextInt(2);
+            }
+        }
+        return games;
+    }
+
+    /**
+     * Plays every game through a LineMatcher, returning the total lines found.
+     */
+    private static long matcher(LineRule rule, int size, int[][] games) {
+        long total = 0;
+        for (int pass = 0; pass < REPEATS * GAMES; pass++) {
+            int[] game = games[pass % GAMES];
+            LineMatcher matcher = new LineMatcher(rule, size);
+            for (int move : game) {
+                int cell = move >> 1;
+                matcher.place(cell / size, cell % size, (move & 1) == 0 ? 'S' : 'O');
+                total += matcher.complete(cell / size, cell % size);
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Plays every game through the former hand-written checks, returning the total lines found.
+     */
+    private static long handWritten(int size, int[][] games) {
+        long total = 0;
+        for (int pass = 0; pass < REPEATS * GAMES; pass++) {
+            int[] game = games[pass % GAMES];
+            char[][] board = new char[size][size];
+            for (int move : game) {
+                int cell = move >> 1;
+                board[cell / size][cell % size] = (move & 1) == 0 ? 'S' : 'O';
+                total += handWrittenCount(board, cell / size, cell % size);
+            }
+        }
+        return total;
+    }
+
+    /**
+     * The explicit per-direction checks SOSGame used before rules were compiled.
+     */
+    private static int handWrittenCount(char[][] board, int row, int col) {
+        int n = board.length;
+        int count = 0;
+        if (board[row][col] == 'O') {
+            if (col >= 1 && col < n - 1 && board[row][col - 1] == 'S' && board[row][col + 1] == 'S') {
+                count++;
+            }
+            if (row >= 1 && row < n - 1 && board[row - 1][col] == 'S' && board[row + 1][col] == 'S') {
+                count++;
+            }
+            if (row >= 1 && row < n - 1 && col >= 1 && col < n - 1) {
+                if (board[row - 1][col - 1] == 'S' && board[row + 1][col + 1] == 'S') {
+                    count++;
+                }
+                if (board[row - 1][col + 1] == 'S' && board[row + 1][col - 1] == 'S') {
+                    count++;
+                }
+            }
+            return count;
+        }
+        if (col >= 2 && board[row][col - 2] == 'S' && board[row][col - 1] == 'O') {
+            count++;
+        }
+        if (col < n - 2 && board[row][col + 1] == 'O' && board[row][col + 2] == 'S') {
+            count++;
+        }
+        if (row >= 2 && board[row - 2][col] == 'S' && board[row - 1][col] == 'O') {
+            count++;
+        }
+        if (row < n - 2 && board[row + 1][col] == 'O' && board[row + 2][col] == 'S') {
+            count++;
+        }
+        if (row >= 2 && col >= 2 && board[row - 2][col - 2] == 'S' && board[row - 1][col - 1] == 'O') {
+            count++;
+        }
+        if (row < n - 2 && col < n - 2 && board[row + 1][col + 1] == 'O' && board[row + 2][col + 2] == 'S') {
+            count++;
+        }
+        if (row >= 2 && col < n - 2 && board[row - 2][col + 2] == 'S' && board[row - 1][col + 1] == 'O') {
+            count++;
+        }
+        if (row < n - 2 && col >= 2 && board[row + 1][col - 1] == 'O' && board[row + 2][col - 2] == 'S') {
+            count++;
+        }
+        return count;
+    }
+}
@@ -0,0 +1,191 @@
+package com.beginsecure.maventest.sosgamesprint2;
+
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the LineRule and LineMatcher classes and games played on variant rules.
+ */
+public class LineRuleTest {
+
+    /**
+     * Counts the lines of a board that spell a rule's word either way by checking every start.
+     */
+    private static int bruteForce(LineRule rule, char[][] board) {
+        int size = board.length;
+        int length = rule.word().length();
+        if (rule.toroidal() && length > size) {
+            return 0;
+        }
+        String reversed = new StringBuilder(rule.word()).reverse().toString();
+        int count = 0;
+        for (int row = 0; row < size; row++) {
+            for (int col = 0; col < size; col++) {
+                for (LineRule.Direction dir : rule.directions()) {
+                    StringBuilder line = new StringBuilder();
+                    for (int k = 0; k < length; k++) {
+                        int r = row + k * dir.getRowStep();
+                        int c = col + k * dir.getColStep();
+                        if (rule.toroidal()) {
+                            r = Math.floorMod(r, size);
+                            c = Math.floorMod(c, size);
+                        } else if (r >= size || c < 0 || c >= size) {
+                            break;
+                        }
+                        line.append(board[r][c]);
+                    }
+                    String text = line.toString();
+                    if (text.equals(rule.word()) || text.equals(reversed)) {
+                        count++;
+                    }
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Plays random moves, checking that the lines reported move by move add up to the lines on
+     * the board, counted by brute force and by the automaton.
+     */
+    private static void checkRandomGames(LineRule rule, long seed) {
+        Random random = new Random(seed);
+        for (int size = 3; size <= 8; size++) {
+            char[][] board = new char[size][size];
+            LineMatcher matcher = new LineMatcher(rule, size);
+            int reported = 0;
+            for (int moves = 0; moves < size * size; ) {
+                int row = random.nextInt(size);
+                int col = random.nextInt(size);
+                if (board[row][col] != '\0') {
+                    continue;
+                }
+                char letter = rule.alphabet().charAt(random.nextInt(rule.alphabet().length()));
+                board[row][col] = letter;
+                matcher.place(row, col, letter);
+                reported += matcher.complete(row, col);
+                moves++;
+                int expected = bruteForce(rule, board);
+                assertEquals(expected, reported, rule + " size " + size);
+                assertEquals(expected, matcher.countLines(), rule + " size " + size);
+            }
+        }
+    }
+
+    /**
+     * Tests if every kind of variant detects exactly the lines on the board.
+     */
+    @Test
+    void testVariantsMatchBruteForce() {
+        checkRandomGames(LineRule.STANDARD, 1);
+        checkRandomGames(LineRule.of("SOSOS"), 2);
+        checkRandomGames(LineRule.of("SOO"), 3);
+        checkRandomGames(new LineRule("SO", "SOX", LineRule.STANDARD.directions(), false), 4);
+        checkRandomGames(LineRule.STANDARD.withToroidal(), 5);
+        checkRandomGames(LineRule.of("SOSOS").withToroidal(), 6);
+        checkRandomGames(LineRule.STANDARD.withDirections(LineRule.Direction.HORIZONTAL, LineRule.Direction.ANTI_DIAGONAL), 7);
+    }
+
+    /**
+     * Tests if the standard rule agrees with the full-board scanner.
+     */
+    @Test
+    void testStandardMatchesScanner() {
+        Random random = new Random(9);
+        for (int size = 3; size <= 9; size++) {
+            CompactGameState state = new CompactGameState(size, true);
+            LineMatcher matcher = new LineMatcher(LineRule.STANDARD, size);
+            while (!state.isGameOver()) {
+                int row = random.nextInt(size);
+                int col = random.nextInt(size);
+                if (state.getLetter(row, col) == '\0') {
+                    char letter = random.nextBoolean() ? 'S' : 'O';
+                    state.placeMove(row, col, letter);
+                    matcher.place(row, col, letter);
+                }
+            }
+            assertEquals(SOSScanner.countSOS(state), matcher.countLines());
+        }
+    }
+
+    /**
+     * Tests if a line that wraps around the edge scores only on a toroidal board.
+     */
+    @Test
+    void testToroidalWrap() {
+        GeneralGame bounded = new GeneralGame(3);
+        GeneralGame torus = new GeneralGame(3, LineRule.STANDARD.withToroidal(), null);
+        for (GeneralGame game : new GeneralGame[] {bounded, torus}) {
+            game.placeMove(0, 2, 'S');
+            game.placeMove(2, 2, 'S');
+            game.placeMove(0, 0, 'O');
+            game.placeMove(0, 1, 'S'); // Player two: S-O-S from (0,2) wrapping to (0,1)
+        }
+        assertEquals(0, bounded.getPlayerTwoScore());
+        assertEquals(1, torus.getPlayerTwoScore());
+        assertNull(torus.getThreatIndex());
+        assertNotNull(bounded.getThreatIndex());
+    }
+
+    /**
+     * Tests if lines in a direction that is not allowed do not score.
+     */
+    @Test
+    void testRestrictedDirections() {
+        LineRule rule = LineRule.STANDARD.withDirections(LineRule.Direction.HORIZONTAL);
+        GeneralGame game = new GeneralGame(3, rule, null);
+        game.placeMove(0, 0, 'S');
+        game.placeMove(1, 0, 'O');
+        game.placeMove(2, 0, 'S');
+        assertEquals(0, game.getPlayerOneScore());
+        game.placeMove(0, 2, 'S');
+        game.placeMove(2, 2, 'S');
+        game.placeMove(2, 1, 'O');
+        assertEquals(1, game.getPlayerTwoScore());
+    }
+
+    /**
+     * Tests if a simple game on a longer word only ends when the whole word is spelled.
+     */
+    @Test
+    void testSimpleGameWithLongerWord() {
+        SimpleGame game = new SimpleGame(5, LineRule.of("SOSOS"), null);
+        game.placeMove(0, 0, 'S');
+        game.placeMove(1, 0, 'O');
+        game.placeMove(0, 2, 'S');
+        game.placeMove(0, 1, 'O');
+        assertFalse(game.isGameOver()); // S-O-S alone does not score
+        game.placeMove(0, 4, 'S');
+        game.placeMove(0, 3, 'O');
+        assertTrue(game.isGameOver());
+    }
+
+    /**
+     * Tests if games accept exactly the letters of their alphabet.
+     */
+    @Test
+    void testAlphabet() {
+        GeneralGame standard = new GeneralGame(3);
+        assertFalse(standard.placeMove(0, 0, 'X'));
+        GeneralGame custom = new GeneralGame(3, new LineRule("XOX", "XO", LineRule.STANDARD.directions(), false), null);
+        assertFalse(custom.placeMove(0, 0, 'S'));
+        assertTrue(custom.placeMove(0, 0, 'X'));
+        assertTrue(custom.placeMove(1, 1, 'O'));
+        assertTrue(custom.placeMove(2, 2, 'X'));
+        assertEquals(1, custom.getPlayerOneScore());
+    }
+
+    /**
+     * Tests if inconsistent rules are rejected.
+     */
+    @Test
+    void testInvalidRules() {
+        assertThrows(IllegalArgumentException.class, () -> LineRule.of("S"));
+        assertThrows(IllegalArgumentException.class, () -> new LineRule("SOS", "S", LineRule.STANDARD.directions(), false));
+        assertThrows(IllegalArgumentException.class, () -> new LineRule("SOS", "SOS", LineRule.STANDARD.directions(), false));
+        assertTrue(LineRule.STANDARD.isPalindrome());
+        assertFalse(LineRule.of("SOO").isPalindrome());
+        assertEquals("SO", LineRule.of("SOSOS").alphabet());
+    }
+}
@@ -0,0 +1,51 @@
+package com.beginsecure.maventest.sosgamesprint2;
+
+import java.util.Random;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Prints the cost of a pattern evaluation update compared to a full recount. Run with
+ * {@code mvn test -Pbenchmark}.
+ */
+@Tag("benchmark")
+public class PatternEvaluatorBenchmarkTest {
+
+    private static final int ROUNDS = 2_000_000;
+
+    /**
+     * Prints nanoseconds per place/remove pair plus evaluation for several board sizes.
+     */
+    @Test
+    void benchmarkEvaluation() {
+        PatternWeights weights = new PatternWeights();
+        Random random = new Random(1);
+        for (int index = 0; index < PatternWeights.PATTERNS_3 + PatternWeights.PATTERNS_5; index++) {
+            weights.set(index, random.nextInt(200) - 100);
+        }
+        System.out.printf("%nPattern evaluation benchmark%n");
+        System.out.printf("%-6s %20s %20s%n", "size", "incremental ns/eval", "recount ns/eval");
+        for (int size = 3; size <= 11; size += 4) {
+            PatternEvaluator evaluator = new PatternEvaluator(size, weights);
+            CompactGameState state = new CompactGameState(size, true);
+            long sink = 0;
+            long start = System.nanoTime();
+            for (int i = 0; i < ROUNDS; i++) {
+                int cell = i % (size * size);
+                evaluator.place(cell / size, cell % size, (i & 1) == 0 ? 'S' : 'O');
+                sink += evaluator.getValue();
+                evaluator.remove(cell / size, cell % size);
+            }
+            double incremental = (System.nanoTime() - start) / (double) ROUNDS;
+
+            double[] counts = new double[PatternWeights.PATTERNS_3 + PatternWeights.PATTERNS_5];
+            int recounts = ROUNDS / 100;
+            start = System.nanoTime();
+            for (int i = 0; i < recounts; i++) {
+                PatternEvaluator.countPatterns(state, counts);
+            }
+            double recount = (System.nanoTime() - start) / (double) recounts;
+            System.out.printf("%-6d %20.1f %20.1f%s%n", size, incremental, recount, sink == 42 ? " " : "");
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package com.beginsecure.maventest.sosgamesprint2;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the PatternEvaluator, PatternWeights, PatternTrainer and GameRecord classes.
+ */
+public class PatternEvaluatorTest {
+
+    /**
+     * Returns weights with a distinct value for every pattern and its reverse.
+     */
+    private static PatternWeights distinctWeights() {
+        PatternWeights weights = new PatternWeights();
+        for (int index = 0; index < PatternWeights.PATTERNS_3 + PatternWeights.PATTERNS_5; index++) {
+            weights.set(index, Math.min(index, PatternWeights.reverse(index)) * 7 - 500);
+        }
+        return weights;
+    }
+
+    /**
+     * Sums the weights of every line of a position using the trainer's pattern counts.
+     */
+    private static int fromScratch(CompactGameState state, PatternWeights weights) {
+        double[] counts = new double[PatternWeights.PATTERNS_3 + PatternWeights.PATTERNS_5];
+        PatternEvaluator.countPatterns(state, counts);
+        int value = 0;
+        for (int index = 0; index < counts.length; index++) {
+            value += (int) counts[index] * weights.get(index);
+        }
+        return value;
+    }
+
+    /**
+     * Tests if a single pattern weight is counted once per matching line.
+     */
+    @Test
+    void testSinglePattern() {
+        PatternWeights weights = new PatternWeights();
+        weights.set(1 + 2 * 3 + 1 * 9, 50); // S-O-S
+        PatternEvaluator evaluator = new PatternEvaluator(3, weights);
+        evaluator.place(0, 0, 'S');
+        evaluator.place(0, 1, 'O');
+        assertEquals(0, evaluator.getValue());
+        evaluator.place(0, 2, 'S');
+        assertEquals(50, evaluator.getValue());
+        evaluator.remove(0, 2);
+        assertEquals(0, evaluator.getValue());
+    }
+
+    /**
+     * Tests if a line and its reverse always share a weight.
+     */
+    @Test
+    void testReverseSymmetry() {
+        PatternWeights weights = distinctWeights();
+        for (int index = 0; index < PatternWeights.PATTERNS_3 + PatternWeights.PATTERNS_5; index++) {
+            assertEquals(index, PatternWeights.reverse(PatternWeights.reverse(index)));
+            assertEquals(weights.get(index), weights.get(PatternWeights.reverse(index)));
+        }
+        assertEquals(2 + 1 * 3, PatternWeights.reverse(1 * 3 + 2 * 9)); // _SO reversed is OS_
+    }
+
+    /**
+     * Tests if the incremental evaluation matches a full recount after every move and undo of
+     * random games.
+     */
+    @Test
+    void testIncrementalMatchesRecount() {
+        PatternWeights weights = distinctWeights();
+        Random random = new Random(5);
+        for (int size = 3; size <= 9; size++) {
+            CompactGameState state = new CompactGameState(size, true);
+            PatternEvaluator evaluator = new PatternEvaluator(size, weights);
+            assertEquals(fromScratch(state, weights), evaluator.getValue());
+            List<int[]> played = new ArrayList<>();
+            while (!state.isGameOver()) {
+                int row = random.nextInt(size);
+                int col = random.nextInt(size);
+                if (state.getLetter(row, col) != '\0') {
+                    continue;
+                }
+                char letter = random.nextBoolean() ? 'S' : 'O';
+                state.placeMove(row, col, letter);
+                evaluator.place(row, col, letter);
+                played.add(new int[] {row, col});
+                assertEquals(fromScratch(state, weights), evaluator.getValue());
+            }
+            assertEquals(evaluator.getValue(), PatternEvaluator.of(state, weights).getValue());
+            for (int i = played.size() - 1; i >= played.size() / 2; i--) {
+                state.undoMove(played.get(i)[0], played.get(i)[1]);
+                evaluator.remove(played.get(i)[0], played.get(i)[1]);
+                assertEquals(fromScratch(state, weights), evaluator.getValue());
+            }
+        }
+    }
+
+    /**
+     * Tests if weights survive a round trip through the binary format and bad files are rejected.
+     */
+    @Test
+    void testWeightsRoundTrip() throws IOException {
+        PatternWeights weights = distinctWeights();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        weights.write(out);
+        assertEquals(10 + 4 * (PatternWeights.PATTERNS_3 + PatternWeights.PATTERNS_5), out.size());
+        PatternWeights read = PatternWeights.read(new ByteArrayInputStream(out.toByteArray()));
+        for (int index = 0; index < PatternWeights.PATTERNS_3 + PatternWeights.PATTERNS_5; index++) {
+            assertEquals(weights.get(index), read.get(index));
+        }
+        assertThrows(IOException.class, () -> PatternWeights.read(new ByteArrayInputStream(new byte[] {1, 2, 3, 4, 0, 1})));
+    }
+
+    /**
+     * Tests if game records survive a round trip through their line format, and malformed lines
+     * are rejected.
+     */
+    @Test
+    void testGameRecordLine() {
+        GameRecord record = new GameRecord(3, true, List.of(new Move(1, 1, 'O'), new Move(0, 0, 'S'), new Move(2, 2, 'S')));
+        assertEquals("3 G 4O 0S 8S", record.toLine());
+        assertEquals(record, GameRecord.parse(record.toLine()));
+        assertEquals(1, record.replay().getPlayerOneScore());
+        assertThrows(IllegalArgumentException.class, () -> GameRecord.parse("3 X 4O"));
+        assertThrows(IllegalArgumentException.class, () -> GameRecord.parse("0 S 1S"));
+        assertThrows(IllegalArgumentException.class, () -> GameRecord.parse("16 G"));
+        assertThrows(IllegalArgumentException.class, () -> GameRecord.parse("3 G 9S"));
+        assertThrows(IllegalArgumentException.class, () -> new GameRecord(3, true, List.of(new Move(0, 0, 'S'), new Move(0, 0, 'O'))).replay());
+    }
+
+    /**
+     * Tests if trained weights predict self-play outcomes better than zero weights.
+     */
+    @Test
+    void testTrainingReducesError() {
+        List<GameRecord> games = PatternTrainer.selfPlay(40, new int[] {4, 5}, Difficulty.EASY, 3);
+        assertEquals(40, games.size());
+        PatternWeights weights = PatternTrainer.train(games, 1.0, 4);
+        assertTrue(PatternTrainer.meanSquaredError(weights, games, 4)
+                < PatternTrainer.meanSquaredError(new PatternWeights(), games, 4));
+    }
+
+    /**
+     * Tests if a search player evaluating with pattern weights still plays legal games.
+     */
+    @Test
+    void testSearchWithPatterns() {
+        SearchPlayer player = new SearchPlayer(Difficulty.EASY, new Random(2), distinctWeights());
+        CompactGameState state = new CompactGameState(4, true);
+        while (!state.isGameOver()) {
+            Move move = player.chooseMove(state);
+            assertTrue(state.placeMove(move.row(), move.col(), move.letter()) >= 0);
+        }
+    }
+}
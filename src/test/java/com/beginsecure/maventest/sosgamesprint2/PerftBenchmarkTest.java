@@ -0,0 +1,35 @@
+package com.beginsecure.maventest.sosgamesprint2;
+
+import java.util.List;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Prints perft throughput in nodes per second for CompactGameState and for the SOSGame
+ * classes. Run with {@code mvn test -Pbenchmark}; the enumeration depth can be changed with
+ * {@code -Dperft.depth}.
+ */
+@Tag("benchmark")
+public class PerftBenchmarkTest {
+
+    private static final int DEPTH = Integer.getInteger("perft.depth", 4);
+
+    /**
+     * Prints the nodes per second of both rule implementations for several board sizes.
+     */
+    @Test
+    void benchmarkPerft() {
+        Perft.run(new CompactGameState(4, true), 3); // Warm up
+        System.out.printf("%nPerft benchmark, depth %d%n", DEPTH);
+        System.out.printf("%-6s %-8s %14s %18s %18s%n", "size", "mode", "nodes", "compact nodes/s", "SOSGame nodes/s");
+        for (int size = 3; size <= 7; size += 2) {
+            for (boolean general : new boolean[] {false, true}) {
+                Perft.Result compact = Perft.run(new CompactGameState(size, general), DEPTH);
+                // The SOSGame walk replays every line, so it is measured one ply shallower
+                Perft.Result legacy = Perft.runSOSGame(general, size, List.of(), DEPTH - 1);
+                System.out.printf("%-6d %-8s %14d %18.0f %18.0f%n", size, general ? "general" : "simple",
+                        compact.getTotalNodes(), compact.getNodesPerSecond(), legacy.getNodesPerSecond());
+            }
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package com.beginsecure.maventest.sosgamesprint2;
+
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Perft suite: enumerates the full game tree from fixed start positions and checks the node,
+ * terminal and SOS counts per ply against reference numbers. The counts are checked for both
+ * {@link CompactGameState} and the {@link SOSGame} classes, so any change to move generation
+ * or SOS detection that alters the rules shows up here.
+ */
+public class PerftTest {
+
+    /** A 4x4 opening without an SOS but with four moves that complete one. */
+    static final List<Move> OPENING = List.of(new Move(0, 0, 'S'), new Move(1, 1, 'O'),
+            new Move(0, 2, 'S'), new Move(2, 3, 'O'), new Move(3, 3, 'S'));
+
+    // Reference numbers: nodes, terminals and SOS for plies 1, 2, 3, ...
+    private static final long[][] EMPTY_3_GENERAL = {
+            {18, 288, 4032, 48384, 483840},
+            {0, 0, 0, 0, 0},
+            {0, 0, 48, 1728, 34560}};
+    private static final long[][] EMPTY_3_SIMPLE = {
+            {18, 288, 4032, 47808, 460800},
+            {0, 0, 48, 1728, 32400},
+            {0, 0, 48, 1728, 32832}};
+    private static final long[][] EMPTY_4_GENERAL = {
+            {32, 960, 26880, 698880},
+            {0, 0, 0, 0},
+            {0, 0, 144, 11232}};
+    private static final long[][] EMPTY_5_SIMPLE = {
+            {50, 2400, 110400},
+            {0, 0, 288},
+            {0, 0, 288}};
+    private static final long[][] OPENING_4_GENERAL = {
+            {22, 440, 7920, 126720},
+            {0, 0, 0, 0},
+            {4, 90, 1848, 33984}};
+    private static final long[][] OPENING_4_SIMPLE = {
+            {22, 360, 5148, 62880},
+            {4, 74, 1218, 17184},
+            {4, 76, 1280, 18450}};
+
+    /**
+     * Tests the 3x3 general game tree to depth 5.
+     */
+    @Test
+    void testEmptyThreeByThreeGeneral() {
+        assertCounts(EMPTY_3_GENERAL, Perft.run(new CompactGameState(3, true), 5));
+    }
+
+    /**
+     * Tests the 3x3 simple game tree to depth 5.
+     */
+    @Test
+    void testEmptyThreeByThreeSimple() {
+        assertCounts(EMPTY_3_SIMPLE, Perft.run(new CompactGameState(3, false), 5));
+    }
+
+    /**
+     * Tests the 4x4 general game tree to depth 4.
+     */
+    @Test
+    void testEmptyFourByFourGeneral() {
+        assertCounts(EMPTY_4_GENERAL, Perft.run(new CompactGameState(4, true), 4));
+    }
+
+    /**
+     * Tests the 5x5 simple game tree to depth 3.
+     */
+    @Test
+    void testEmptyFiveByFiveSimple() {
+        assertCounts(EMPTY_5_SIMPLE, Perft.run(new CompactGameState(5, false), 3));
+    }
+
+    /**
+     * Tests the game trees below an opening with immediate 'S' and 'O' scoring moves.
+     */
+    @Test
+    void testOpening() {
+        assertCounts(OPENING_4_GENERAL, Perft.run(opening(true), 4));
+        assertCounts(OPENING_4_SIMPLE, Perft.run(opening(false), 4));
+    }
+
+    /**
+     * Tests if SimpleGame and GeneralGame produce the same trees as the reference numbers, with
+     * every replayed game returned to the pool rather than new ones created for each line.
+     */
+    @Test
+    void testSOSGameMatchesReference() {
+        long created = GamePool.getShared().getCreated();
+        assertCounts(EMPTY_3_GENERAL, Perft.runSOSGame(true, 3, List.of(), 4));
+        assertCounts(EMPTY_3_SIMPLE, Perft.runSOSGame(false, 3, List.of(), 4));
+        assertCounts(OPENING_4_GENERAL, Perft.runSOSGame(true, 4, OPENING, 3));
+        assertCounts(OPENING_4_SIMPLE, Perft.runSOSGame(false, 4, OPENING, 3));
+        // At most one game per ply and one child are in use at a time
+        assertTrue(GamePool.getShared().getCreated() - created <= 2 * (4 + 2));
+    }
+
+    /**
+     * Tests if an 'O' placed between two S's scores, and an 'S' between an 'O' and an 'S' does not.
+     */
+    @Test
+    void testSOSGameLetterPlacements() {
+        GeneralGame game = new GeneralGame(3);
+        game.placeMove(0, 0, 'S');
+        game.placeMove(2, 2, 'S');
+        game.placeMove(1, 1, 'O');
+        assertEquals(1, game.getPlayerOneScore(), "An 'O' completing S-O-S should score.");
+
+        GeneralGame oss = new GeneralGame(3);
+        oss.placeMove(0, 0, 'O');
+        oss.placeMove(0, 2, 'S');
+        oss.placeMove(0, 1, 'S');
+        assertEquals(0, oss.getPlayerOneScore() + oss.getPlayerTwoScore(), "O-S-S is not an SOS.");
+    }
+
+    /**
+     * Builds the opening position in the given mode.
+     */
+    private static CompactGameState opening(boolean generalMode) {
+        CompactGameState state = new CompactGameState(4, generalMode);
+        for (Move move : OPENING) {
+            state.placeMove(move.row(), move.col(), move.letter());
+        }
+        return state;
+    }
+
+    /**
+     * Checks the counts of the enumerated plies against the first plies of a reference.
+     */
+    private static void assertCounts(long[][] reference, Perft.Result result) {
+        int plies = result.getNodes().length;
+        assertArrayEquals(prefix(reference[0], plies), result.getNodes(), "nodes");
+        assertArrayEquals(prefix(reference[1], plies), result.getTerminals(), "terminals");
+        assertArrayEquals(prefix(reference[2], plies), result.getSos(), "sos");
+    }
+
+    private static long[] prefix(long[] counts, int length) {
+        long[] prefix = new long[length];
+        System.arraycopy(counts, 0, prefix, 0, length);
+        return prefix;
+    }
+}
@@ -0,0 +1,80 @@
+package com.beginsecure.maventest.sosgamesprint2;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the PositionAnalyzer class.
+ */
+public class PositionAnalyzerTest {
+
+    /**
+     * Tests if results arrive shallow first and point at the winning move of a simple game.
+     */
+    @Test
+    void testResultsDeepenAndFindWin() throws InterruptedException {
+        List<PositionAnalyzer.Analysis> results = new CopyOnWriteArrayList<>();
+        CountDownLatch threeDepths = new CountDownLatch(3);
+        PositionAnalyzer analyzer = new PositionAnalyzer(analysis -> {
+            results.add(analysis);
+            threeDepths.countDown();
+        }, 2, 5_000);
+        try {
+            CompactGameState state = new CompactGameState(4, false);
+            state.placeMove(0, 0, 'S');
+            state.placeMove(3, 3, 'O');
+            state.placeMove(0, 1, 'O');
+            long generation = analyzer.analyze(state);
+
+            assertTrue(threeDepths.await(10, TimeUnit.SECONDS), "Three depths should complete.");
+            for (int i = 0; i < 3; i++) {
+                assertEquals(i + 1, results.get(i).getDepth());
+                assertEquals(generation, results.get(i).getGeneration());
+            }
+            PositionAnalyzer.Analysis first = results.get(0);
+            assertEquals(new Move(0, 2, 'S'), first.getBestMove());
+            assertFalse(first.hasScore(0, 0), "Occupied cells should not be scored.");
+            assertEquals(1.0, first.getRating(0, 2), 1e-9);
+            assertTrue(first.getScore(0, 2, 'S') > first.getScore(0, 2, 'O'));
+        } finally {
+            analyzer.shutdown();
+        }
+    }
+
+    /**
+     * Tests if starting a new position stops results for the old one.
+     */
+    @Test
+    void testRestartCancelsPreviousPosition() throws InterruptedException {
+        List<PositionAnalyzer.Analysis> results = new CopyOnWriteArrayList<>();
+        CountDownLatch secondPosition = new CountDownLatch(1);
+        PositionAnalyzer[] holder = new PositionAnalyzer[1];
+        holder[0] = new PositionAnalyzer(analysis -> {
+            results.add(analysis);
+            if (analysis.getGeneration() == holder[0].getGeneration()) {
+                secondPosition.countDown();
+            }
+        }, 2, 5_000);
+        PositionAnalyzer analyzer = holder[0];
+        try {
+            long first = analyzer.analyze(new CompactGameState(7, true));
+            CompactGameState moved = new CompactGameState(7, true);
+            moved.placeMove(3, 3, 'O');
+            long second = analyzer.analyze(moved);
+            assertTrue(second > first);
+            assertTrue(secondPosition.await(10, TimeUnit.SECONDS), "The new position should be analysed.");
+
+            analyzer.cancel();
+            Thread.sleep(200);
+            int delivered = results.size();
+            Thread.sleep(300);
+            assertEquals(delivered, results.size(), "No results should follow a cancel.");
+        } finally {
+            analyzer.shutdown();
+        }
+    }
+}
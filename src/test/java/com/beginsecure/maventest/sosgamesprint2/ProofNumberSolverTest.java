@@ -0,0 +1,175 @@
+package com.beginsecure.maventest.sosgamesprint2;
+
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the ProofNumberSolver class, against an exhaustive search of small boards.
+ */
+public class ProofNumberSolverTest {
+
+    /**
+     * Tests if PN and PN² prove the same outcomes as an exhaustive search, with moves that
+     * achieve them.
+     */
+    @Test
+    void testMatchesExhaustiveSearch() {
+        Random random = new Random(7);
+        for (boolean pnSquared : new boolean[] {false, true}) {
+            ProofNumberSolver solver = new ProofNumberSolver(1 << 16, pnSquared);
+            for (int i = 0; i < 40; i++) {
+                CompactGameState state = position(3 + i % 2, random);
+                int value = solve(state);
+                ProofNumberSolver.Result result = solver.solve(state, Long.MAX_VALUE, Long.MAX_VALUE);
+                assertEquals(value > 0 ? ProofNumberSolver.Outcome.WIN
+                        : value < 0 ? ProofNumberSolver.Outcome.LOSS : ProofNumberSolver.Outcome.DRAW,
+                        result.outcome(), "Position " + i + " with PN² " + pnSquared);
+                if (value >= 0) {
+                    assertEquals(value, valueOf(state, result.move()), "Move " + result.move());
+                }
+                for (Move losing : result.losingMoves()) {
+                    assertEquals(-1, valueOf(state, losing), "Move " + losing + " does not lose");
+                }
+            }
+        }
+    }
+
+    /**
+     * Tests if a pool too small for the whole tree still proves positions by freeing solved
+     * subtrees, and never proves anything wrong when it runs out.
+     */
+    @Test
+    void testBoundedMemory() {
+        Random random = new Random(11);
+        ProofNumberSolver solver = new ProofNumberSolver(512, false);
+        int proven = 0;
+        for (int i = 0; i < 20; i++) {
+            CompactGameState state = position(4, random);
+            int value = solve(state);
+            ProofNumberSolver.Result result = solver.solve(state, Long.MAX_VALUE, Long.MAX_VALUE);
+            switch (result.outcome()) {
+                case WIN -> assertEquals(1, value);
+                case LOSS -> assertEquals(-1, value);
+                case DRAW -> assertEquals(0, value);
+                case NON_LOSS -> assertTrue(value >= 0);
+                case UNKNOWN -> {
+                    continue;
+                }
+            }
+            proven++;
+        }
+        assertTrue(proven > 10, "Only " + proven + " positions proven");
+    }
+
+    /**
+     * Tests if a solver reused across board sizes does not apply what it proved on one size to
+     * a position of another size with the same letters at the same cell indices.
+     */
+    @Test
+    void testReusedAcrossBoardSizes() {
+        // Letters on cells 3, 1, 5 and 4 of a 3x3 and of a 4x4 board
+        CompactGameState small = new CompactGameState(3, false);
+        CompactGameState large = new CompactGameState(4, false);
+        int[] cells = {3, 1, 5, 4};
+        char[] letters = {'S', 'O', 'O', 'O'};
+        for (int i = 0; i < cells.length; i++) {
+            small.placeMove(cells[i] / 3, cells[i] % 3, letters[i]);
+            large.placeMove(cells[i] / 4, cells[i] % 4, letters[i]);
+        }
+        ProofNumberSolver fresh = new ProofNumberSolver(1 << 14, false);
+        ProofNumberSolver.Outcome expected = fresh.solve(large, Long.MAX_VALUE, Long.MAX_VALUE).outcome();
+        assertEquals(ProofNumberSolver.Outcome.LOSS, expected);
+
+        ProofNumberSolver reused = new ProofNumberSolver(1 << 14, false);
+        reused.solve(small, Long.MAX_VALUE, Long.MAX_VALUE);
+        assertEquals(expected, reused.solve(large, Long.MAX_VALUE, Long.MAX_VALUE).outcome());
+    }
+
+    /**
+     * Tests if a position where every move leaves an SOS to complete is proven lost.
+     */
+    @Test
+    void testNoSafeMoveIsLoss() {
+        CompactGameState state = new CompactGameState(4, false);
+        // OOOO / OOOO / SOOO / S..S: either letter on either empty cell lets the other one complete an SOS
+        SearchPlayerTest.play(state, 2, 1, 'O', 1, 0, 'O', 1, 1, 'O', 3, 3, 'S', 1, 2, 'O', 0, 1, 'O', 2, 3, 'O',
+                3, 0, 'S', 2, 2, 'O', 2, 0, 'S', 0, 3, 'O', 0, 0, 'O', 0, 2, 'O', 1, 3, 'O');
+        ProofNumberSolver.Result result = new ProofNumberSolver(1 << 10).solve(state, 1000, Long.MAX_VALUE);
+        assertEquals(ProofNumberSolver.Outcome.LOSS, result.outcome());
+    }
+
+    /**
+     * Tests if the budget stops the search, the position is left unchanged, and general games
+     * are rejected.
+     */
+    @Test
+    void testBudgetAndArguments() {
+        CompactGameState state = new CompactGameState(7, false);
+        ProofNumberSolver solver = new ProofNumberSolver(1 << 14);
+        ProofNumberSolver.Result result = solver.solve(state, 50, Long.MAX_VALUE);
+        assertEquals(ProofNumberSolver.Outcome.UNKNOWN, result.outcome());
+        assertTrue(result.expansions() <= 50);
+        assertEquals(49, state.getEmptyCells());
+
+        assertThrows(IllegalArgumentException.class,
+                () -> solver.solve(new CompactGameState(3, true), 10, Long.MAX_VALUE));
+    }
+
+    /**
+     * Builds a simple game with a few random letters placed and no SOS formed, small enough to
+     * search exhaustively.
+     */
+    private static CompactGameState position(int size, Random random) {
+        while (true) {
+            CompactGameState state = new CompactGameState(size, false);
+            int empty = size == 3 ? 6 : 8;
+            while (state.getEmptyCells() > empty && !state.isGameOver()) {
+                int cell = random.nextInt(size * size);
+                if (state.getLetter(cell / size, cell % size) == '\0') {
+                    state.placeMove(cell / size, cell % size, random.nextBoolean() ? 'S' : 'O');
+                }
+            }
+            if (!state.isGameOver()) {
+                return state;
+            }
+        }
+    }
+
+    /**
+     * Searches a simple game to the end.
+     *
+     * @return 1 if the side to move wins, -1 if it loses, 0 for a draw
+     */
+    private static int solve(CompactGameState state) {
+        int size = state.getBoardSize();
+        int best = -1;
+        boolean anyMove = false;
+        for (int cell = 0; cell < size * size && best < 1; cell++) {
+            if (state.getLetter(cell / size, cell % size) != '\0') {
+                continue;
+            }
+            for (char letter : new char[] {'S', 'O'}) {
+                anyMove = true;
+                if (state.countLinesIf(cell / size, cell % size, letter) > 0) {
+                    return 1;
+                }
+                best = Math.max(best, valueOf(state, new Move(cell / size, cell % size, letter)));
+            }
+        }
+        return anyMove ? best : 0;
+    }
+
+    /**
+     * Computes the value of a move for the side making it.
+     */
+    private static int valueOf(CompactGameState state, Move move) {
+        if (state.placeMove(move.row(), move.col(), move.letter()) > 0) {
+            state.undoMove(move.row(), move.col());
+            return 1;
+        }
+        int value = state.getEmptyCells() == 0 ? 0 : -solve(state);
+        state.undoMove(move.row(), move.col());
+        return value;
+    }
+}
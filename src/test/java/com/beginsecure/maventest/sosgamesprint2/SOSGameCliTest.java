@@ -0,0 +1,116 @@
+package com.beginsecure.maventest.sosgamesprint2;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the SOSGameCli terminal front-end.
+ */
+public class SOSGameCliTest {
+
+    private final ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+    /**
+     * Runs a script through a non-interactive front-end.
+     */
+    private int run(String script) throws IOException {
+        SOSGameCli cli = new SOSGameCli(new BufferedReader(new StringReader(script)),
+                new PrintStream(output, true, StandardCharsets.UTF_8), false, 1);
+        return cli.run();
+    }
+
+    /**
+     * Returns everything the front-end printed.
+     */
+    private String output() {
+        return output.toString(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Tests if a scripted simple game is played to its end and recorded.
+     */
+    @Test
+    void testScriptedSimpleGame() throws IOException {
+        int status = run("new 3 simple\n1 1 O\nmove 0 0 S\n2 2 s # completes the diagonal\nstatus\nrecord\n");
+        assertEquals(0, status);
+        assertTrue(output().contains("Player 1 wins by forming an SOS!"));
+        assertTrue(output().contains("3 S 4O 0S 8S"));
+    }
+
+    /**
+     * Tests if the board uses row and column numbers and dots for empty cells.
+     */
+    @Test
+    void testBoard() throws IOException {
+        run("new 4 general\n0 1 S\nboard\n");
+        String board = output();
+        assertTrue(board.contains("  0  .  S  .  ."));
+        assertTrue(board.contains("Player 1: 0, Player 2: 0, Player 2 to move"));
+    }
+
+    /**
+     * Tests if bad commands and illegal moves are reported and make the run fail without
+     * stopping it.
+     */
+    @Test
+    void testErrors() throws IOException {
+        int status = run("jump\n0 0 S\n0 0 O\n5 5 S\n0 1 X\nmove 1\nnew 2\nstatus\n");
+        assertEquals(1, status);
+        assertEquals(6, output().lines().filter(line -> line.startsWith("error:")).count());
+        assertTrue(output().contains("Player 2 to move"), "The first move should have been played.");
+    }
+
+    /**
+     * Tests if computer players fill a general game by themselves.
+     */
+    @Test
+    void testComputerPlayers() throws IOException {
+        int status = run("new 4 general\nplayers greedy easy\nrecord\n");
+        assertEquals(0, status);
+        String[] lines = output().split("\\R");
+        GameRecord record = GameRecord.parse(lines[lines.length - 1]);
+        assertEquals(16, record.moves().size());
+        assertTrue(record.generalMode());
+    }
+
+    /**
+     * Tests if nothing can be played after the game is over until a new game starts.
+     */
+    @Test
+    void testGameOver() throws IOException {
+        int status = run("1 1 O\n0 0 S\n2 2 S\n0 1 S\nnew\n0 1 S\n");
+        assertEquals(1, status);
+        assertTrue(output().contains("error: the game is over"));
+    }
+
+    /**
+     * Tests if evaluating records prints the result of finished games, suggests a move for
+     * unfinished ones and reports malformed lines.
+     */
+    @Test
+    void testEvaluate() throws IOException {
+        Path file = Files.createTempFile("sos-records", ".txt");
+        try {
+            Files.writeString(file, "3 S 4O 0S 8S\n# comment\n4 G 0S 5O\nnot a record\n0 S 1S\n");
+            SOSGameCli cli = new SOSGameCli(null, new PrintStream(output, true, StandardCharsets.UTF_8), false, 1);
+            int status = cli.evaluate(file, Difficulty.EASY);
+            String[] lines = output().split("\\R");
+            assertEquals(1, status);
+            assertEquals(4, lines.length);
+            assertEquals("1: 3 simple, 3 moves, Player 1 wins", lines[0]);
+            assertTrue(lines[1].startsWith("2: 4 general, 2 moves, Player 1: 0, Player 2: 0, Player 1 to move, best "));
+            assertTrue(lines[2].startsWith("3: error:"));
+            assertTrue(lines[3].startsWith("4: error:"), lines[3]);
+        } finally {
+            Files.delete(file);
+        }
+    }
+}
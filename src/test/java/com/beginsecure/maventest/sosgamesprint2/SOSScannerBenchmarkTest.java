@@ -0,0 +1,73 @@
+package com.beginsecure.maventest.sosgamesprint2;
+
+import java.util.Random;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Prints full-board scan throughput of the per-cell loop, the scalar kernel and the SIMD kernel
+ * of SOSScanner. Run with {@code mvn test -Pbenchmark}.
+ */
+@Tag("benchmark")
+public class SOSScannerBenchmarkTest {
+
+    private static final int BOARDS = 4096;
+    private static final int REPEATS = 50;
+
+    /**
+     * Prints nanoseconds per board for batches of random boards of several sizes.
+     */
+    @Test
+    void benchmarkScanner() {
+        Random random = new Random(1);
+        System.out.printf("%nSOS scanner benchmark, %d boards per batch%n", BOARDS);
+        System.out.printf("%-6s %18s %18s %18s%n", "size", "per-cell ns/board", "scalar ns/board", "vector ns/board");
+        for (int size : new int[] {3, 8, 15}) {
+            BoardBatch batch = new BoardBatch(size, BOARDS);
+            for (int b = 0; b < BOARDS; b++) {
+                char[][] board = new char[size][size];
+                for (char[] row : board) {
+                    for (int col = 0; col < size; col++) {
+                        row[col] = "SO\0".charAt(random.nextInt(3));
+                    }
+                }
+                batch.add(board);
+            }
+            int[] counts = new int[BOARDS];
+            long sink = 0;
+            for (int warmup = 0; warmup < 20; warmup++) {
+                sink += perCell(batch);
+                time(SOSScanner.ScalarKernel.INSTANCE, batch, counts);
+                time(new VectorKernel(), batch, counts);
+            }
+            long start = System.nanoTime();
+            sink += perCell(batch);
+            double perCell = (System.nanoTime() - start) / (double) BOARDS;
+            double scalar = time(SOSScanner.ScalarKernel.INSTANCE, batch, counts) / (double) (BOARDS * REPEATS);
+            double vector = time(new VectorKernel(), batch, counts) / (double) (BOARDS * REPEATS);
+            System.out.printf("%-6d %18.1f %18.1f %18.1f%s%n", size, perCell, scalar, vector, sink == 42 ? " " : "");
+        }
+    }
+
+    /**
+     * Scans every board with the per-cell loop, returning the total count.
+     */
+    private static long perCell(BoardBatch batch) {
+        long total = 0;
+        for (int b = 0; b < batch.size(); b++) {
+            total += SOSScanner.countSOSPerCell(batch, b);
+        }
+        return total;
+    }
+
+    /**
+     * Times repeated scans of a batch with a kernel, in nanoseconds.
+     */
+    private static long time(SOSScanner.Kernel kernel, BoardBatch batch, int[] counts) {
+        long start = System.nanoTime();
+        for (int repeat = 0; repeat < REPEATS; repeat++) {
+            kernel.count(batch, false, counts);
+        }
+        return System.nanoTime() - start;
+    }
+}
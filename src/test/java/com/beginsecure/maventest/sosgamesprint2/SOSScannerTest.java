@@ -0,0 +1,139 @@
+package com.beginsecure.maventest.sosgamesprint2;
+
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the SOSScanner and BoardBatch classes.
+ */
+public class SOSScannerTest {
+
+    /**
+     * Fills a batch with random boards of varying density.
+     */
+    private static BoardBatch randomBatch(int size, int boards, Random random) {
+        BoardBatch batch = new BoardBatch(size, boards);
+        for (int b = 0; b < boards; b++) {
+            char[][] board = new char[size][size];
+            int empty = random.nextInt(4);
+            for (int row = 0; row < size; row++) {
+                for (int col = 0; col < size; col++) {
+                    int pick = random.nextInt(4);
+                    board[row][col] = pick < empty ? '\0' : random.nextBoolean() ? 'S' : 'O';
+                }
+            }
+            batch.add(board);
+        }
+        return batch;
+    }
+
+    /**
+     * Counts the possible lines of one board cell by cell.
+     */
+    private static int countPossiblePerCell(BoardBatch batch, int index) {
+        int size = batch.getBoardSize();
+        String word = "SOS";
+        int count = 0;
+        for (int row = 0; row < size; row++) {
+            for (int col = 0; col < size; col++) {
+                for (int dir = 0; dir < CompactGameState.DIRECTIONS; dir++) {
+                    int endRow = row + 2 * CompactGameState.DIR_ROW[dir];
+                    int endCol = col + 2 * CompactGameState.DIR_COL[dir];
+                    if (endRow >= size || endCol < 0 || endCol >= size) {
+                        continue;
+                    }
+                    boolean open = true;
+                    for (int k = 0; k < 3; k++) {
+                        char letter = batch.getLetter(index, row + k * CompactGameState.DIR_ROW[dir],
+                                col + k * CompactGameState.DIR_COL[dir]);
+                        open &= letter == '\0' || letter == word.charAt(k);
+                    }
+                    count += open ? 1 : 0;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Tests if a hand-made board counts every direction once.
+     */
+    @Test
+    void testEveryDirection() {
+        BoardBatch batch = new BoardBatch(3, 1);
+        batch.add(new char[][] {
+                {'S', 'S', 'S'},
+                {'S', 'O', 'S'},
+                {'S', 'S', 'S'}});
+        assertEquals(4, SOSScanner.countSOS(batch)[0]);
+        assertEquals(4, SOSScanner.countSOSPerCell(batch, 0));
+        assertEquals(4, SOSScanner.countPossible(batch)[0]);
+    }
+
+    /**
+     * Tests if both kernels agree with the per-cell loop on random boards of every size, with
+     * batch sizes that do not fill the last vector.
+     */
+    @Test
+    void testKernelsMatchPerCellLoop() {
+        Random random = new Random(17);
+        SOSScanner.Kernel[] kernels = {SOSScanner.ScalarKernel.INSTANCE, new VectorKernel()};
+        for (int size = 3; size <= 15; size++) {
+            BoardBatch batch = randomBatch(size, 37, random);
+            for (SOSScanner.Kernel kernel : kernels) {
+                int[] complete = new int[batch.size()];
+                int[] possible = new int[batch.size()];
+                kernel.count(batch, false, complete);
+                kernel.count(batch, true, possible);
+                for (int b = 0; b < batch.size(); b++) {
+                    assertEquals(SOSScanner.countSOSPerCell(batch, b), complete[b], kernel + " size " + size);
+                    assertEquals(countPossiblePerCell(batch, b), possible[b], kernel + " size " + size);
+                }
+            }
+        }
+    }
+
+    /**
+     * Tests if the SIMD kernel is selected when the vector module is added, as the build does.
+     */
+    @Test
+    void testVectorKernelSelected() {
+        assertTrue(SOSScanner.isVectorized());
+    }
+
+    /**
+     * Tests if scanning a general game finds exactly the lines it scored and detects when no
+     * more SOS can be made.
+     */
+    @Test
+    void testMatchesPlayedGames() {
+        Random random = new Random(3);
+        for (int size = 3; size <= 8; size++) {
+            CompactGameState state = new CompactGameState(size, true);
+            assertTrue(SOSScanner.isSOSPossible(state));
+            while (!state.isGameOver()) {
+                int row = random.nextInt(size);
+                int col = random.nextInt(size);
+                if (state.getLetter(row, col) == '\0') {
+                    state.placeMove(row, col, random.nextBoolean() ? 'S' : 'O');
+                    assertEquals(state.getLineCount(), SOSScanner.countSOS(state));
+                }
+            }
+            assertFalse(SOSScanner.isSOSPossible(state));
+        }
+    }
+
+    /**
+     * Tests if a batch rejects boards of the wrong size and indices past its end.
+     */
+    @Test
+    void testBatchBounds() {
+        BoardBatch batch = new BoardBatch(3, 1);
+        assertThrows(IllegalArgumentException.class, () -> batch.add(new CompactGameState(4, true)));
+        batch.clear();
+        batch.add(new CompactGameState(3, true));
+        assertThrows(IllegalStateException.class, () -> batch.add(new CompactGameState(3, true)));
+        assertThrows(IndexOutOfBoundsException.class, () -> batch.set(1, new CompactGameState(3, true)));
+    }
+}
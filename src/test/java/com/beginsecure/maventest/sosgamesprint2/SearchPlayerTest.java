@@ -0,0 +1,269 @@
+package com.beginsecure.maventest.sosgamesprint2;
+
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the SearchPlayer and its Difficulty budgets.
+ */
+public class SearchPlayerTest {
+
+    /**
+     * Tests if every level takes the move that forms the most SOS in a general game.
+     */
+    @Test
+    void testTakesBestScoringMove() {
+        for (Difficulty difficulty : new Difficulty[] {Difficulty.MEDIUM, Difficulty.HARD}) {
+            CompactGameState state = new CompactGameState(5, true);
+            // S . S on the top row and S above S in the middle column: an 'O' at (0,1) forms one SOS,
+            // an 'O' at (1,2) forms two.
+            play(state, 0, 0, 'S', 4, 4, 'S', 0, 2, 'S', 4, 0, 'S', 2, 2, 'S', 3, 0, 'O', 1, 1, 'S', 4, 2, 'O', 1, 3, 'S');
+            assertEquals(2, state.countLinesIf(1, 2, 'O'));
+
+            Move move = new SearchPlayer(difficulty, new Random(1)).chooseMove(state);
+            assertEquals(new Move(1, 2, 'O'), move, difficulty + " should take the double SOS.");
+        }
+    }
+
+    /**
+     * Tests if a simple game is won immediately when an SOS is available.
+     */
+    @Test
+    void testWinsSimpleGameImmediately() {
+        CompactGameState state = new CompactGameState(4, false);
+        play(state, 0, 0, 'S', 3, 3, 'O', 0, 1, 'O', 3, 0, 'O');
+        Move move = new SearchPlayer(Difficulty.MEDIUM, new Random(1)).chooseMove(state);
+        assertEquals(new Move(0, 2, 'S'), move);
+    }
+
+    /**
+     * Tests if a forced simple-game win is proven and played without searching.
+     */
+    @Test
+    void testPlaysProvenWin() {
+        CompactGameState state = new CompactGameState(5, false);
+        play(state, 4, 2, 'O', 4, 4, 'S', 4, 0, 'O', 0, 1, 'O', 3, 0, 'O', 0, 4, 'S', 1, 0, 'S', 3, 1, 'S', 1, 4, 'S',
+                4, 1, 'O');
+        SearchPlayer player = new SearchPlayer(Difficulty.MEDIUM, new Random(1), PatternWeights.getDefault(), true);
+        Move move = player.chooseMove(state);
+        assertEquals(ProofNumberSolver.Outcome.WIN, player.getLastProof());
+        assertEquals(0, player.getLastDepth());
+
+        state.placeMove(move.row(), move.col(), move.letter());
+        ProofNumberSolver.Result reply = new ProofNumberSolver(1 << 16).solve(state, Long.MAX_VALUE, Long.MAX_VALUE);
+        assertEquals(ProofNumberSolver.Outcome.LOSS, reply.outcome(), "Move " + move + " does not win");
+    }
+
+    /**
+     * Tests if a searching level never hands the opponent an immediate SOS when a safe move exists.
+     */
+    @Test
+    void testAvoidsGivingAwaySOS() {
+        CompactGameState state = new CompactGameState(4, false);
+        play(state, 0, 0, 'S', 3, 3, 'S');
+        Move move = new SearchPlayer(Difficulty.MEDIUM, new Random(1)).chooseMove(state);
+        state.placeMove(move.row(), move.col(), move.letter());
+        for (int row = 0; row < 4; row++) {
+            for (int col = 0; col < 4; col++) {
+                if (state.getLetter(row, col) == '\0') {
+                    assertEquals(0, state.countLinesIf(row, col, 'S') + state.countLinesIf(row, col, 'O'),
+                            "Move " + move + " lets the opponent complete an SOS at " + row + "," + col);
+                }
+            }
+        }
+    }
+
+    /**
+     * Tests if the search leaves the given state untouched and stays within its time budget.
+     */
+    @Test
+    void testRespectsTimeBudgetAndState() {
+        CompactGameState state = new CompactGameState(9, true);
+        state.placeMove(4, 4, 'S');
+        SearchPlayer player = new SearchPlayer(Difficulty.MEDIUM, new Random(1));
+
+        long start = System.nanoTime();
+        Move move = player.chooseMove(state);
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+        assertNotNull(move);
+        assertEquals('\0', state.getLetter(move.row(), move.col()), "The move should target an empty cell.");
+        assertEquals(80, state.getEmptyCells(), "The caller's state must not be modified.");
+        assertTrue(elapsedMillis < Difficulty.MEDIUM.getTimePerMoveMillis() + 500,
+                "Search took " + elapsedMillis + " ms.");
+        assertTrue(player.getLastNodes() <= Difficulty.MEDIUM.getNodeLimit() + 1024);
+    }
+
+    /**
+     * Tests if finished games produce no move.
+     */
+    @Test
+    void testNoMoveWhenGameOver() {
+        CompactGameState state = new CompactGameState(3, false);
+        play(state, 0, 0, 'S', 2, 2, 'O', 0, 1, 'O', 2, 1, 'O', 0, 2, 'S');
+        assertTrue(state.isGameOver());
+        assertNull(new SearchPlayer(Difficulty.EASY).chooseMove(state));
+    }
+
+    /**
+     * Tests if a fixed-depth search with a transposition table gives every move the same exact
+     * score as a search without one.
+     */
+    @Test
+    void testTranspositionTableKeepsScores() {
+        Random random = new Random(4);
+        for (boolean general : new boolean[] {false, true}) {
+            for (int game = 0; game < 10; game++) {
+                CompactGameState state = new CompactGameState(4, general);
+                for (int i = 0; i < 5 && !state.isGameOver(); i++) {
+                    int cell = random.nextInt(16);
+                    state.placeMove(cell / 4, cell % 4, random.nextBoolean() ? 'S' : 'O');
+                }
+                if (state.isGameOver()) {
+                    continue;
+                }
+                SearchPlayer.SearchLimits limits = new SearchPlayer.SearchLimits(Long.MAX_VALUE, Long.MAX_VALUE);
+                SearchPlayer.Searcher plain = new SearchPlayer.Searcher(state.copy(), limits);
+                SearchPlayer.Searcher cached = new SearchPlayer.Searcher(state.copy(), limits,
+                        PatternWeights.getDefault(), new TranspositionTable(1 << 12));
+                int[] moves = plain.orderedMoves(0);
+                int[] expected = new int[moves.length];
+                int[] actual = new int[moves.length];
+                plain.scoreMoves(moves, expected, 4, new java.util.concurrent.atomic.AtomicInteger());
+                cached.scoreMoves(moves, actual, 4, new java.util.concurrent.atomic.AtomicInteger());
+                assertArrayEquals(expected, actual, "Game " + game + (general ? " (general)" : " (simple)"));
+            }
+        }
+    }
+
+    /**
+     * Tests if helper threads leave the choice of a forced move unchanged and count their nodes.
+     */
+    @Test
+    void testLazySmpHelpers() {
+        CompactGameState state = new CompactGameState(5, true);
+        play(state, 0, 0, 'S', 4, 4, 'S', 0, 2, 'S', 4, 0, 'S', 2, 2, 'S', 3, 0, 'O', 1, 1, 'S', 4, 2, 'O', 1, 3, 'S');
+        SearchPlayer single = new SearchPlayer(Difficulty.MEDIUM, new Random(1), PatternWeights.getDefault(), false, 1);
+        SearchPlayer parallel = new SearchPlayer(Difficulty.MEDIUM, new Random(1), PatternWeights.getDefault(), false, 4);
+        assertEquals(new Move(1, 2, 'O'), single.chooseMove(state));
+        assertEquals(new Move(1, 2, 'O'), parallel.chooseMove(state));
+        assertEquals(Difficulty.MEDIUM.getMaxDepth(), parallel.getLastDepth());
+        assertTrue(parallel.getLastTimeToDepth(parallel.getLastDepth()) > 0);
+        assertEquals(-1, parallel.getLastTimeToDepth(parallel.getLastDepth() + 1));
+    }
+
+    /**
+     * Tests if the table keeps deeper entries, reports misses and moves win scores between
+     * plies.
+     */
+    @Test
+    void testTranspositionTableEntries() {
+        TranspositionTable table = new TranspositionTable(1000);
+        assertEquals(512, table.capacity());
+        long key = TranspositionTable.key(TranspositionTable.boardHash(new CompactGameState(3, true)),
+                new CompactGameState(3, true));
+        assertEquals(0, table.probe(key));
+        table.store(key, 5, TranspositionTable.LOWER, -42, 17);
+        table.store(key, 3, TranspositionTable.EXACT, 7, 2);
+        long entry = table.probe(key);
+        assertEquals(5, TranspositionTable.depth(entry));
+        assertEquals(TranspositionTable.LOWER, TranspositionTable.bound(entry));
+        assertEquals(-42, TranspositionTable.score(entry));
+        assertEquals(17, TranspositionTable.move(entry));
+        assertEquals(0, table.probe(key + 512), "Another key in the same slot is a miss.");
+
+        int win = SearchPlayer.WIN - 9;
+        assertEquals(win - 4, TranspositionTable.fromStored(TranspositionTable.toStored(win, 6), 10));
+        assertEquals(-win + 4, TranspositionTable.fromStored(TranspositionTable.toStored(-win, 6), 10));
+        assertEquals(300, TranspositionTable.fromStored(TranspositionTable.toStored(300, 6), 10));
+    }
+
+    /**
+     * Tests if a full bucket gives way to a new position by depth and age, and if collisions,
+     * hits and fill are counted and reset by clearing.
+     */
+    @Test
+    void testTranspositionTableReplacement() {
+        TranspositionTable table = new TranspositionTable(8);
+        // Keys 1, 5, 9 and 13 share the bucket of the four buckets
+        table.store(1, 6, TranspositionTable.EXACT, 10, 0);
+        table.store(5, 2, TranspositionTable.EXACT, 20, 0);
+        table.store(9, 4, TranspositionTable.EXACT, 30, 0);
+        assertNotEquals(0, table.probe(1), "The deeper entry stays.");
+        assertEquals(0, table.probe(5), "The shallower entry is replaced.");
+        assertEquals(30, TranspositionTable.score(table.probe(9)));
+        assertEquals(1, table.getStatistics().collisions());
+
+        table.newSearch();
+        table.newSearch();
+        table.store(13, 3, TranspositionTable.EXACT, 40, 0);
+        assertEquals(0, table.probe(9), "An entry two searches old is worth less than a fresh one.");
+        assertNotEquals(0, table.probe(1));
+        table.store(1, 2, TranspositionTable.UPPER, 50, 0);
+        assertEquals(50, TranspositionTable.score(table.probe(1)), "An old entry of the same position is replaced.");
+
+        TranspositionTable.Statistics statistics = table.getStatistics();
+        assertEquals(6, statistics.probes());
+        assertEquals(4, statistics.hits());
+        assertEquals(4 / 6.0, statistics.hitRate(), 1e-9);
+        assertEquals(0.25, statistics.fill(), 1e-9);
+        table.clear();
+        assertEquals(0, table.probe(1));
+        assertEquals(0, table.getStatistics().fill(), 1e-9);
+        assertEquals(1, table.getStatistics().probes());
+    }
+
+    /**
+     * Tests if the table is sized in megabytes, keeps positions of different boards and modes
+     * apart, and never returns torn entries to threads writing at the same time.
+     */
+    @Test
+    void testTranspositionTableSharing() throws InterruptedException {
+        assertEquals(1 << 16, TranspositionTable.ofMegabytes(1).capacity());
+        assertThrows(IllegalArgumentException.class, () -> TranspositionTable.ofMegabytes(0));
+        assertSame(TranspositionTable.getShared(), TranspositionTable.getShared());
+        assertNotEquals(TranspositionTable.key(0, new CompactGameState(3, true)),
+                TranspositionTable.key(0, new CompactGameState(3, false)));
+        assertNotEquals(TranspositionTable.key(0, new CompactGameState(3, false)),
+                TranspositionTable.key(0, new CompactGameState(4, false)));
+
+        TranspositionTable table = new TranspositionTable(256);
+        java.util.concurrent.atomic.AtomicInteger torn = new java.util.concurrent.atomic.AtomicInteger();
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            long seed = t;
+            threads[t] = new Thread(() -> {
+                Random random = new Random(seed);
+                for (int i = 0; i < 200_000; i++) {
+                    long key = random.nextInt(1024) * 0x9E3779B97F4A7C15L;
+                    // Every writer stores the same data for a key, derived from the key
+                    table.store(key, (int) (key >>> 60), TranspositionTable.EXACT, (int) (key >>> 32), 7);
+                    long entry = table.probe(key ^ 0x9E3779B97F4A7C15L);
+                    if (entry != 0 && TranspositionTable.move(entry) != 7) {
+                        torn.incrementAndGet();
+                    }
+                    entry = table.probe(key);
+                    if (entry != 0 && TranspositionTable.score(entry) != (int) (key >>> 32)) {
+                        torn.incrementAndGet();
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(0, torn.get());
+    }
+
+    /**
+     * Plays a sequence of (row, col, letter) triples.
+     */
+    static void play(CompactGameState state, Object... moves) {
+        for (int i = 0; i < moves.length; i += 3) {
+            int placed = state.placeMove((Integer) moves[i], (Integer) moves[i + 1], (Character) moves[i + 2]);
+            assertTrue(placed >= 0, "Setup move " + (i / 3) + " should be legal.");
+        }
+    }
+}
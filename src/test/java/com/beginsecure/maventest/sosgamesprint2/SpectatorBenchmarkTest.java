@@ -0,0 +1,133 @@
+package com.beginsecure.maventest.sosgamesprint2;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Prints the cost of streaming one game to 10 000 spectators over loopback through
+ * {@link SpectatorServer}: moves per second, the bytes delivered and how many frames were encoded
+ * against how many were sent. Each spectator takes two file descriptors, so where the process
+ * limit on open files is lower, as many spectators as it allows are connected instead. Run
+ * with {@code mvn test -Pbenchmark}.
+ */
+@Tag("benchmark")
+public class SpectatorBenchmarkTest {
+
+    private static final int SPECTATORS = 10_000;
+    private static final int BOARD_SIZE = 15;
+
+    /**
+     * Prints one line for a full game on a 15x15 board.
+     */
+    @Test
+    void benchmarkBroadcast() throws IOException {
+        SpectatorServerTest.play(new GeneralGame(BOARD_SIZE), new Random(0), BOARD_SIZE * BOARD_SIZE); // Loads classes
+        try (SpectatorServer server = new SpectatorServer(0); Selector selector = Selector.open()) {
+            GeneralGame game = new GeneralGame(BOARD_SIZE);
+            server.host(game);
+            List<SocketChannel> spectators = new ArrayList<>();
+            try {
+                int spectatorCount = Math.min(SPECTATORS, spareFileDescriptors() / 2);
+                while (spectators.size() < spectatorCount) {
+                    SocketChannel spectator = SpectatorServerTest.connect(server, game);
+                    spectator.configureBlocking(false);
+                    spectator.register(selector, SelectionKey.OP_READ);
+                    spectators.add(spectator);
+                }
+                ByteBuffer scratch = ByteBuffer.allocateDirect(1 << 16);
+                long keyframes = (long) spectatorCount * (9 + GameSnapshot.sizeOf(game));
+                long received = drain(selector, scratch, server, 0, keyframes, 1000); // Sent on joining
+                long bytesBefore = server.getBytesSent();
+                long framesBefore = server.getFramesSent();
+
+                Random random = new Random(1);
+                long start = System.nanoTime();
+                while (!game.isGameOver()) {
+                    game.placeMove(random.nextInt(BOARD_SIZE), random.nextInt(BOARD_SIZE),
+                            random.nextBoolean() ? 'S' : 'O');
+                    received = drain(selector, scratch, server, received, 0, 1);
+                }
+                received = drain(selector, scratch, server, received, 0, 200);
+                long elapsed = System.nanoTime() - start;
+
+                long bytes = server.getBytesSent() - bytesBefore;
+                System.out.printf("%nSpectator benchmark, 1 game of %dx%d, %d spectators over loopback%n",
+                        BOARD_SIZE, BOARD_SIZE, spectatorCount);
+                System.out.printf("%-8s %12s %14s %14s %12s %10s %9s%n", "moves", "moves/s", "frames sent",
+                        "frames encoded", "MB sent", "MB/s", "resyncs");
+                System.out.printf("%-8d %12.0f %14d %14d %12.1f %10.1f %9d%n", game.getMoveCount(),
+                        game.getMoveCount() * 1e9 / elapsed, server.getFramesSent() - framesBefore,
+                        server.getFramesEncoded(), bytes / 1e6, bytes * 1e3 / elapsed, server.getResyncs());
+                if (received != server.getBytesSent()) {
+                    System.out.printf("%d bytes still in flight%n", server.getBytesSent() - received);
+                }
+            } finally {
+                for (SocketChannel spectator : spectators) {
+                    spectator.close();
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads whatever the spectators have been sent, waiting until they have read at least a
+     * number of bytes and everything the server wrote, or nothing arrives for a while.
+     *
+     * @return the total bytes read so far
+     */
+    private static long drain(Selector selector, ByteBuffer scratch, SpectatorServer server, long received,
+                              long minimum, long idleMillis) throws IOException {
+        long idleSince = System.nanoTime();
+        while (true) {
+            int ready = selector.select(1);
+            if (ready > 0) {
+                for (SelectionKey key : selector.selectedKeys()) {
+                    scratch.clear();
+                    int read = ((SocketChannel) key.channel()).read(scratch);
+                    if (read > 0) {
+                        received += read;
+                    }
+                }
+                selector.selectedKeys().clear();
+                idleSince = System.nanoTime();
+            } else if (received >= minimum && received == server.getBytesSent()
+                    || System.nanoTime() - idleSince > idleMillis * 1_000_000) {
+                return received;
+            }
+        }
+    }
+
+    /**
+     * Estimates how many more files the process may open, from the Linux {@code /proc} files, less
+     * some room for the rest of the test.
+     *
+     * @return the spare file descriptors, or enough for every spectator where unknown
+     */
+    private static int spareFileDescriptors() throws IOException {
+        Path limits = Path.of("/proc/self/limits");
+        if (!Files.isReadable(limits)) {
+            return 2 * SPECTATORS;
+        }
+        long limit = Long.MAX_VALUE;
+        for (String line : Files.readAllLines(limits)) {
+            if (line.startsWith("Max open files")) {
+                String soft = line.substring("Max open files".length()).trim().split("\\s+")[0];
+                limit = soft.equals("unlimited") ? Long.MAX_VALUE : Long.parseLong(soft);
+            }
+        }
+        try (Stream<Path> open = Files.list(Path.of("/proc/self/fd"))) {
+            return (int) Math.min(2L * SPECTATORS, limit - open.count() - 200);
+        }
+    }
+}
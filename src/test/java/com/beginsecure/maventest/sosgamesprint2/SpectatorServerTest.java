@@ -0,0 +1,233 @@
+package com.beginsecure.maventest.sosgamesprint2;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.time.Duration;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the SpectatorServer class, with spectators connected over loopback.
+ */
+public class SpectatorServerTest {
+
+    /**
+     * Tests if a spectator who joins before the first move mirrors the game move by move,
+     * lines and scores included.
+     */
+    @Test
+    void testSpectatorMirrorsGame() throws IOException {
+        try (SpectatorServer server = new SpectatorServer(0)) {
+            GeneralGame game = new GeneralGame(4);
+            server.host(game);
+            try (SocketChannel spectator = connect(server, game)) {
+                SOSGame view = SpectatorServer.apply(null, readFrame(spectator));
+                assertEquals(0, view.getMoveCount());
+                play(game, new Random(3), 16);
+                int lines = 0;
+                while (view.getMoveCount() < 16) {
+                    ByteBuffer frame = readFrame(spectator);
+                    if (frame.get(4) == SpectatorServer.MOVE) {
+                        lines += frame.get(19);
+                        assertEquals(view.getMoveCount() + 1, frame.getInt(5));
+                        view = SpectatorServer.apply(view, frame);
+                        GeneralGame general = (GeneralGame) view;
+                        assertEquals(general.getPlayerOneScore(), frame.getShort(14));
+                        assertEquals(general.getPlayerTwoScore(), frame.getShort(16));
+                    }
+                }
+                assertEquals(game.getPlayerOneScore() + game.getPlayerTwoScore(), lines);
+                assertArrayEquals(game.getBoard(), view.getBoard());
+                assertTrue(view.isGameOver());
+                assertEquals(game.getWinner(), view.getWinner());
+            }
+            // Sixteen moves, the keyframe on hosting and the keyframe after the last move
+            assertEquals(18, server.getFramesEncoded());
+        }
+    }
+
+    /**
+     * Tests if a spectator who joins mid-game is sent the latest keyframe and the moves since.
+     */
+    @Test
+    void testLateJoinerStartsFromKeyframe() throws IOException {
+        try (SpectatorServer server = new SpectatorServer(0)) {
+            GeneralGame game = new GeneralGame(6);
+            server.host(game);
+            play(game, new Random(4), SpectatorServer.KEYFRAME_INTERVAL + 3);
+            try (SocketChannel spectator = connect(server, game)) {
+                ByteBuffer keyframe = readFrame(spectator);
+                assertEquals(SpectatorServer.KEYFRAME, keyframe.get(4));
+                assertEquals(SpectatorServer.KEYFRAME_INTERVAL, keyframe.getInt(5));
+                SOSGame view = SpectatorServer.apply(null, keyframe);
+                for (int i = 0; i < 3; i++) {
+                    view = SpectatorServer.apply(view, readFrame(spectator));
+                }
+                assertArrayEquals(game.getBoard(), view.getBoard());
+                assertEquals(game.isPlayerOneTurn(), view.isPlayerOneTurn());
+            }
+        }
+    }
+
+    /**
+     * Tests if every spectator of a simple game receives the same moves, and the end of the game.
+     */
+    @Test
+    void testSeveralSpectatorsOfSimpleGame() throws IOException {
+        try (SpectatorServer server = new SpectatorServer(0)) {
+            SimpleGame game = new SimpleGame(3);
+            server.host(game);
+            SocketChannel[] spectators = new SocketChannel[5];
+            SOSGame[] views = new SOSGame[spectators.length];
+            try {
+                for (int i = 0; i < spectators.length; i++) {
+                    spectators[i] = connect(server, game);
+                    views[i] = SpectatorServer.apply(null, readFrame(spectators[i]));
+                }
+                assertTrue(game.placeMove(0, 0, 'S'));
+                assertTrue(game.placeMove(0, 1, 'O'));
+                assertTrue(game.placeMove(0, 2, 'S'));
+                for (int i = 0; i < spectators.length; i++) {
+                    ByteBuffer frame = null;
+                    for (int move = 0; move < 3; move++) {
+                        frame = readFrame(spectators[i]);
+                        views[i] = SpectatorServer.apply(views[i], frame);
+                    }
+                    assertEquals(1, frame.get(9), "Player 1 formed the SOS.");
+                    assertEquals(1, frame.get(18), "The game is won by Player 1.");
+                    assertEquals(1, frame.get(19));
+                    assertEquals(0, frame.getShort(20));
+                    assertEquals(2, frame.getShort(24));
+                    assertTrue(views[i].isGameOver());
+                }
+                assertEquals(spectators.length, server.getSpectatorCount());
+            } finally {
+                for (SocketChannel spectator : spectators) {
+                    if (spectator != null) {
+                        spectator.close();
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Tests if a hosted game returned to a pool is no longer streamed, and its spectator is
+     * disconnected after the frames already sent.
+     */
+    @Test
+    void testReleasedGameIsUnhosted() throws IOException {
+        try (SpectatorServer server = new SpectatorServer(0)) {
+            GamePool pool = new GamePool(4);
+            SOSGame game = pool.acquire(5, true);
+            server.host(game);
+            try (SocketChannel spectator = connect(server, game)) {
+                assertEquals(SpectatorServer.KEYFRAME, readFrame(spectator).get(4));
+                assertTrue(game.placeMove(0, 0, 'S'));
+                assertEquals(SpectatorServer.MOVE, readFrame(spectator).get(4));
+                assertTrue(pool.release(game));
+                assertTimeoutPreemptively(Duration.ofSeconds(10),
+                        () -> assertThrows(IOException.class, () -> readFrame(spectator)));
+                assertSame(game, pool.acquire(5, true));
+                assertTrue(game.placeMove(0, 0, 'S'));
+                assertEquals(2, server.getFramesEncoded(), "The reset game should not be streamed.");
+            }
+        }
+    }
+
+    /**
+     * Tests if a spectator who stops reading, and so falls too far behind, is resynced to a board
+     * that matches the game, without missing the move that triggered the resync.
+     */
+    @Test
+    void testSlowSpectatorIsResynced() throws IOException {
+        try (SpectatorServer server = new SpectatorServer(new InetSocketAddress("127.0.0.1", 0), 4096)) {
+            int size = 100;
+            GeneralGame game = new GeneralGame(size);
+            server.host(game);
+            try (SocketChannel spectator = SocketChannel.open()) {
+                spectator.setOption(StandardSocketOptions.SO_RCVBUF, 4096);
+                spectator.connect(new InetSocketAddress("127.0.0.1", server.getPort()));
+                ByteBuffer request = ByteBuffer.allocate(Integer.BYTES).putInt(game.getGameId()).flip();
+                while (request.hasRemaining()) {
+                    spectator.write(request);
+                }
+                SOSGame view = SpectatorServer.apply(null, readFrame(spectator));
+                Random random = new Random(5);
+                // Moves go unread until the spectator's queue overflows
+                while (server.getResyncs() == 0 && game.getMoveCount() < size * size) {
+                    play(game, random, SpectatorServer.KEYFRAME_INTERVAL);
+                }
+                assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+                    while (server.getResyncs() == 0) {
+                        Thread.sleep(10);
+                    }
+                });
+                play(game, random, SpectatorServer.KEYFRAME_INTERVAL + 1);
+                while (view.getMoveCount() < game.getMoveCount()) {
+                    ByteBuffer frame = readFrame(spectator);
+                    if (frame.get(4) == SpectatorServer.MOVE) {
+                        assertEquals(view.getMoveCount() + 1, frame.getInt(5), "No move should be missed.");
+                    }
+                    view = SpectatorServer.apply(view, frame);
+                }
+                assertArrayEquals(game.getBoard(), view.getBoard());
+                assertEquals(game.isPlayerOneTurn(), view.isPlayerOneTurn());
+                assertEquals(game.getPlayerOneScore(), ((GeneralGame) view).getPlayerOneScore());
+                assertEquals(game.getPlayerTwoScore(), ((GeneralGame) view).getPlayerTwoScore());
+            }
+        }
+    }
+
+    /**
+     * Plays random letters until a number of moves have been made or the board is full.
+     */
+    static void play(SOSGame game, Random random, int moves) {
+        int size = game.getBoard().length;
+        int played = 0;
+        while (played < moves && game.getMoveCount() < size * size) {
+            if (game.placeMove(random.nextInt(size), random.nextInt(size), random.nextBoolean() ? 'S' : 'O')) {
+                played++;
+            }
+        }
+    }
+
+    /**
+     * Connects a blocking spectator to a hosted game.
+     */
+    static SocketChannel connect(SpectatorServer server, SOSGame game) throws IOException {
+        SocketChannel channel = SocketChannel.open(new InetSocketAddress("127.0.0.1", server.getPort()));
+        ByteBuffer request = ByteBuffer.allocate(Integer.BYTES).putInt(game.getGameId()).flip();
+        while (request.hasRemaining()) {
+            channel.write(request);
+        }
+        return channel;
+    }
+
+    /**
+     * Reads one whole frame, length included.
+     */
+    static ByteBuffer readFrame(SocketChannel channel) throws IOException {
+        ByteBuffer length = ByteBuffer.allocate(Integer.BYTES);
+        readFully(channel, length);
+        ByteBuffer frame = ByteBuffer.allocate(Integer.BYTES + length.getInt(0));
+        frame.put(length.flip());
+        readFully(channel, frame);
+        return frame.flip();
+    }
+
+    /**
+     * Fills a buffer from a channel.
+     */
+    private static void readFully(SocketChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw new IOException("Spectator disconnected");
+            }
+        }
+    }
+}
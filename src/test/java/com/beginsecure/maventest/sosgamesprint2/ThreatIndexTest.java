@@ -0,0 +1,207 @@
+package com.beginsecure.maventest.sosgamesprint2;
+
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the ThreatIndex class and the GreedyPlayer built on it.
+ */
+public class ThreatIndexTest {
+
+    /**
+     * Tests if the counts of an S-O-_ line point at the empty end.
+     */
+    @Test
+    void testSosIfS() {
+        ThreatIndex index = new ThreatIndex(3);
+        index.place(0, 0, 'S');
+        index.place(0, 1, 'O');
+        assertEquals(1, index.getSosIfS(0, 2));
+        assertEquals(0, index.getSosIfO(0, 2));
+        assertEquals(1, index.getBestGain());
+    }
+
+    /**
+     * Tests if an 'O' between S's in several directions counts every line.
+     */
+    @Test
+    void testSosIfOCountsEveryDirection() {
+        ThreatIndex index = new ThreatIndex(3);
+        index.place(0, 0, 'S');
+        index.place(2, 2, 'S');
+        index.place(0, 2, 'S');
+        index.place(2, 0, 'S');
+        assertEquals(2, index.getSosIfO(1, 1));
+        assertEquals(0, index.getSosIfS(1, 1));
+    }
+
+    /**
+     * Tests if a lone 'O' marks the cells around it as dangerous for an 'S'.
+     */
+    @Test
+    void testDangerAroundO() {
+        ThreatIndex index = new ThreatIndex(3);
+        index.place(1, 1, 'O');
+        assertEquals(1, index.getDangerIf(0, 0, 'S'));
+        assertEquals(1, index.getDangerIf(0, 1, 'S'));
+        assertEquals(0, index.getDangerIf(0, 0, 'O'));
+    }
+
+    /**
+     * Tests if the incremental index matches a brute-force scan after every move and undo of
+     * random games, and if an index filled at once matches too.
+     */
+    @Test
+    void testMatchesBruteForce() {
+        Random random = new Random(11);
+        for (int size = 3; size <= 8; size++) {
+            CompactGameState state = new CompactGameState(size, true);
+            ThreatIndex index = new ThreatIndex(size);
+            int[] rows = new int[size * size];
+            int[] cols = new int[size * size];
+            int moves = 0;
+            while (!state.isGameOver()) {
+                int row = random.nextInt(size);
+                int col = random.nextInt(size);
+                char letter = random.nextBoolean() ? 'S' : 'O';
+                if (state.getLetter(row, col) == '\0') {
+                    state.placeMove(row, col, letter);
+                    index.place(row, col, letter);
+                    rows[moves] = row;
+                    cols[moves] = col;
+                    moves++;
+                    assertMatches(state, index);
+                }
+            }
+            for (int i = moves - 1; i >= moves / 2; i--) {
+                state.undoMove(rows[i], cols[i]);
+                index.remove(rows[i], cols[i]);
+                assertMatches(state, index);
+            }
+            assertMatches(state, ThreatIndex.of(state));
+
+            char[][] board = new char[size][size];
+            for (int row = 0; row < size; row++) {
+                for (int col = 0; col < size; col++) {
+                    board[row][col] = state.getLetter(row, col);
+                }
+            }
+            ThreatIndex filled = new ThreatIndex(size);
+            filled.placeAll(board);
+            assertMatches(state, filled);
+        }
+    }
+
+    /**
+     * Tests if SOSGame keeps its index in step with the board.
+     */
+    @Test
+    void testSOSGameKeepsIndex() {
+        GeneralGame game = new GeneralGame(4);
+        game.placeMove(0, 0, 'S');
+        game.placeMove(0, 1, 'O');
+        assertEquals(1, game.getThreatIndex().getSosIfS(0, 2));
+        game.placeMove(0, 2, 'S');
+        assertFalse(game.getThreatIndex().isEmpty(0, 2));
+        assertFalse(game.placeMove(0, 2, 'O'), "Invalid moves should not be indexed.");
+        assertEquals(0, game.getThreatIndex().getSosIfO(1, 1));
+    }
+
+    /**
+     * Tests if the greedy player takes a scoring move and otherwise avoids giving one away.
+     */
+    @Test
+    void testGreedyPlayer() {
+        CompactGameState state = new CompactGameState(4, true);
+        state.placeMove(0, 0, 'S');
+        state.placeMove(0, 1, 'O');
+        assertEquals(new Move(0, 2, 'S'), new GreedyPlayer(new Random(1)).chooseMove(state));
+
+        CompactGameState quiet = new CompactGameState(4, false);
+        quiet.placeMove(1, 1, 'O');
+        for (int seed = 0; seed < 20; seed++) {
+            Move move = new GreedyPlayer(new Random(seed)).chooseMove(quiet);
+            quiet.placeMove(move.row(), move.col(), move.letter());
+            assertEquals(0, ThreatIndex.of(quiet).getBestGain(), "Greedy move " + move + " gave away an SOS.");
+            quiet.undoMove(move.row(), move.col());
+        }
+    }
+
+    /**
+     * Compares every empty cell of the index against counts computed from scratch.
+     */
+    private static void assertMatches(CompactGameState state, ThreatIndex index) {
+        int size = state.getBoardSize();
+        for (int row = 0; row < size; row++) {
+            for (int col = 0; col < size; col++) {
+                if (state.getLetter(row, col) != '\0') {
+                    assertFalse(index.isEmpty(row, col));
+                    continue;
+                }
+                for (char letter : new char[] {'S', 'O'}) {
+                    String where = row + "," + col + "," + letter;
+                    assertEquals(state.countLinesIf(row, col, letter), index.getSosIf(row, col, letter), where);
+                    assertEquals(bruteForceDanger(state, row, col, letter), index.getDangerIf(row, col, letter), where);
+                }
+            }
+        }
+    }
+
+    /**
+     * Counts the lines through a cell that a letter there would leave one letter short of an SOS.
+     */
+    private static int bruteForceDanger(CompactGameState state, int row, int col, char letter) {
+        int size = state.getBoardSize();
+        int[][] directions = {{0, 1}, {1, 0}, {1, 1}, {1, -1}};
+        int danger = 0;
+        for (int startRow = 0; startRow < size; startRow++) {
+            for (int startCol = 0; startCol < size; startCol++) {
+                for (int[] d : directions) {
+                    int endRow = startRow + 2 * d[0];
+                    int endCol = startCol + 2 * d[1];
+                    if (endRow < 0 || endRow >= size || endCol < 0 || endCol >= size) {
+                        continue;
+                    }
+                    char[] line = new char[3];
+                    boolean throughCell = false;
+                    for (int k = 0; k < 3; k++) {
+                        int r = startRow + k * d[0];
+                        int c = startCol + k * d[1];
+                        throughCell |= r == row && c == col;
+                        line[k] = r == row && c == col ? letter : state.getLetter(r, c);
+                    }
+                    if (throughCell && isOneShort(line)) {
+                        danger++;
+                    }
+                }
+            }
+        }
+        return danger;
+    }
+
+    /**
+     * Checks whether exactly one cell of a line is empty and the right letter there makes SOS.
+     */
+    private static boolean isOneShort(char[] line) {
+        int empty = -1;
+        for (int k = 0; k < 3; k++) {
+            if (line[k] == '\0') {
+                if (empty >= 0) {
+                    return false;
+                }
+                empty = k;
+            }
+        }
+        if (empty < 0) {
+            return false;
+        }
+        String expected = "SOS";
+        for (int k = 0; k < 3; k++) {
+            if (k != empty && line[k] != expected.charAt(k)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,122 @@
+package com.beginsecure.maventest.sosgamesprint2;
+
+import java.util.Random;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Prints how an adaptive {@link TimeManager} and pondering change the hard level's play. First
+ * an adaptive player meets a player with the same total clock spent evenly on every move, each
+ * opening twice with the seats swapped, and the average response time and score of each are
+ * printed. Then the adaptive player faces a
+ * simulated human who takes a fixed time per move, with and without pondering, and the response
+ * time and ponder hit rate are printed. Run with {@code mvn test -Pbenchmark}; the games per
+ * pairing, board size and time per move can be changed with {@code -Dbench.games},
+ * {@code -Dbench.size} and {@code -Dbench.millis}.
+ */
+@Tag("benchmark")
+public class TimeManagementBenchmarkTest {
+
+    private static final int GAMES = Integer.getInteger("bench.games", 20);
+    private static final int SIZE = Integer.getInteger("bench.size", 7);
+    private static final int MILLIS = Integer.getInteger("bench.millis", 20);
+    private static final int HUMAN_MILLIS = 4 * MILLIS;
+
+    /**
+     * Prints the adaptive-versus-fixed table and the pondering table for general games.
+     */
+    @Test
+    void benchmarkTimeManagement() throws InterruptedException {
+        long clockMillis = (long) MILLIS * ((SIZE * SIZE + 1) / 2);
+        double points = 0;
+        long[] outcomes = new long[3]; // Adaptive wins, draws, losses
+        TimeManager[] adaptive = new TimeManager[GAMES];
+        TimeManager[] fixed = new TimeManager[GAMES];
+        long earlyStops = 0;
+        for (int game = 0; game < GAMES; game++) {
+            adaptive[game] = new TimeManager(clockMillis);
+            fixed[game] = TimeManager.fixed(MILLIS);
+            SearchPlayer adaptivePlayer = new SearchPlayer(Difficulty.HARD, new Random(game));
+            adaptivePlayer.setTimeManager(adaptive[game]);
+            SearchPlayer fixedPlayer = new SearchPlayer(Difficulty.HARD, new Random(game));
+            fixedPlayer.setTimeManager(fixed[game]);
+            // Each opening is played twice, with the seats swapped
+            boolean adaptiveFirst = game % 2 == 0;
+            int winner = playGame(adaptiveFirst ? adaptivePlayer : fixedPlayer,
+                    adaptiveFirst ? fixedPlayer : adaptivePlayer, new Random(game / 2), 0, false);
+            int adaptiveSeat = adaptiveFirst ? 1 : 2;
+            int outcome = winner == 0 ? 1 : winner == adaptiveSeat ? 0 : 2;
+            outcomes[outcome]++;
+            points += outcome == 0 ? 1 : outcome == 1 ? 0.5 : 0;
+            earlyStops += adaptive[game].getEarlyStops();
+        }
+        System.out.printf("%nTime management benchmark: %d hard-level %dx%d general games, %d ms per move, "
+                + "%d ms clock%n", GAMES, SIZE, SIZE, MILLIS, clockMillis);
+        System.out.printf("%-10s %12s %12s %8s %8s %8s %8s%n", "Player", "avg ms/move", "early stops",
+                "wins", "draws", "losses", "score");
+        System.out.printf("%-10s %12.1f %12d %8d %8d %8d %7.0f%%%n", "adaptive", average(adaptive), earlyStops,
+                outcomes[0], outcomes[1], outcomes[2], 100 * points / GAMES);
+        System.out.printf("%-10s %12.1f %12d %8d %8d %8d %7.0f%%%n", "fixed", average(fixed), 0,
+                outcomes[2], outcomes[1], outcomes[0], 100 - 100 * points / GAMES);
+
+        System.out.printf("%nAgainst a human taking %d ms per move%n", HUMAN_MILLIS);
+        System.out.printf("%-10s %12s %12s %12s%n", "Pondering", "avg ms/move", "hits", "misses");
+        for (boolean pondering : new boolean[] {false, true}) {
+            TimeManager[] managers = new TimeManager[GAMES];
+            long hits = 0;
+            long misses = 0;
+            for (int game = 0; game < GAMES; game++) {
+                managers[game] = new TimeManager(clockMillis);
+                SearchPlayer computer = new SearchPlayer(Difficulty.HARD, new Random(game));
+                computer.setTimeManager(managers[game]);
+                SearchPlayer human = new SearchPlayer(Difficulty.MEDIUM, new Random(game),
+                        PatternWeights.getDefault(), true);
+                playGame(computer, human, new Random(game), HUMAN_MILLIS, pondering);
+                hits += computer.getPonderHits();
+                misses += computer.getPonderMisses();
+            }
+            System.out.printf("%-10s %12.1f %12d %12d%n", pondering ? "on" : "off", average(managers), hits, misses);
+        }
+    }
+
+    /**
+     * Plays one general game after two random opening moves and returns 1 or 2 for the winning
+     * seat, or 0 for a draw. The second player takes at least a given time per move, during
+     * which the first ponders if asked to.
+     */
+    private static int playGame(SearchPlayer first, SearchPlayer second, Random random, long secondMillis,
+                                boolean pondering) throws InterruptedException {
+        CompactGameState state = new CompactGameState(SIZE, true);
+        while (state.getEmptyCells() > SIZE * SIZE - 2) {
+            state.placeMove(random.nextInt(SIZE), random.nextInt(SIZE), random.nextBoolean() ? 'S' : 'O');
+        }
+        while (!state.isGameOver()) {
+            boolean firstToMove = state.isPlayerOneTurn();
+            long start = System.nanoTime();
+            Move move = (firstToMove ? first : second).chooseMove(state);
+            if (!firstToMove) {
+                long left = secondMillis - (System.nanoTime() - start) / 1_000_000;
+                if (left > 0) {
+                    Thread.sleep(left);
+                }
+            }
+            state.placeMove(move.row(), move.col(), move.letter());
+            if (firstToMove && pondering && !state.isGameOver()) {
+                first.ponder(state);
+            }
+        }
+        first.stopPondering();
+        return state.getWinner();
+    }
+
+    /**
+     * Averages the response time over the moves of several games.
+     */
+    private static double average(TimeManager[] managers) {
+        double total = 0;
+        for (TimeManager manager : managers) {
+            total += manager.getAverageMillis();
+        }
+        return total / managers.length;
+    }
+}
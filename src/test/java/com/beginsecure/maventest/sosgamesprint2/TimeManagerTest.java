@@ -0,0 +1,139 @@
+package com.beginsecure.maventest.sosgamesprint2;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the TimeManager class and pondering in the SearchPlayer.
+ */
+public class TimeManagerTest {
+
+    /**
+     * Tests if an adaptive clock is shared out over the player's remaining moves by their empty
+     * cells and charged for the time each move used, while a fixed manager gives every move the
+     * same time.
+     */
+    @Test
+    void testAllocatesClockOverRemainingMoves() {
+        AtomicLong now = new AtomicLong(1_000_000_000L);
+        TimeManager manager = new TimeManager(10_000, now::get);
+        CompactGameState state = new CompactGameState(5, true);
+        // Five opening moves at half weight, four at full weight and four solved at a tenth
+        TimeManager.Allocation allocation = manager.allocate(state);
+        assertEquals(10_000_000_000L * 0.5 / 6.9, allocation.getSoftNanos(), 1000);
+        assertEquals(now.get() + 2 * allocation.getSoftNanos(), allocation.getDeadline());
+
+        now.addAndGet(20_000_000L);
+        manager.moveDone(allocation);
+        assertEquals(9_980, manager.getRemainingMillis());
+        assertEquals(20, manager.getAverageMillis(), 1e-9);
+
+        SearchPlayerTest.play(state, 0, 0, 'S', 0, 1, 'O', 0, 2, 'S', 1, 0, 'O', 1, 1, 'S', 1, 2, 'S',
+                1, 3, 'O', 1, 4, 'S', 2, 0, 'O', 2, 1, 'S');
+        assertEquals(manager.getRemainingMillis() * 1_000_000L / 4.4, manager.allocate(state).getSoftNanos(),
+                1_000_000);
+
+        TimeManager fixed = TimeManager.fixed(250);
+        assertFalse(fixed.isAdaptive());
+        assertEquals(250_000_000L, fixed.allocate(state).getSoftNanos());
+        assertEquals(250_000_000L, fixed.allocate(new CompactGameState(15, true)).getSoftNanos());
+        assertEquals(Difficulty.MEDIUM.getTimePerMoveMillis() * 13,
+                TimeManager.forGame(Difficulty.MEDIUM, 5).getRemainingMillis());
+    }
+
+    /**
+     * Tests if a search stops once one move dominates for two iterations, or when a stable best
+     * move leaves too little time for another iteration while a changing one does not, and if a
+     * fixed manager never stops early. The clock is simulated, so the test does not depend on
+     * how fast the machine is.
+     */
+    @Test
+    void testStopsEarly() {
+        TimeManager.Allocation dominant = new TimeManager(100_000).allocate(new CompactGameState(9, true));
+        assertTrue(dominant.iterationDone(4, 300, 0), "One dominating iteration is not enough.");
+        assertFalse(dominant.iterationDone(4, 300, 0));
+
+        TimeManager.Allocation close = new TimeManager(100_000).allocate(new CompactGameState(9, true));
+        for (int depth = 1; depth <= 5; depth++) {
+            assertTrue(close.iterationDone(4, 100, 90), "Depth " + depth);
+        }
+
+        // A 3 s clock gives the first move of a 9x9 game about 49 ms, halved once the best move is
+        // stable; iterations of 5 ms predict the fifth would end at 30 ms, within 49 but not 24.5
+        AtomicLong now = new AtomicLong();
+        TimeManager.Allocation stable = new TimeManager(3_000, now::get).allocate(new CompactGameState(9, true));
+        for (int depth = 1; depth <= 3; depth++) {
+            now.addAndGet(5_000_000L);
+            assertTrue(stable.iterationDone(8, 100, 90));
+        }
+        now.addAndGet(5_000_000L);
+        assertFalse(stable.iterationDone(8, 100, 90));
+
+        AtomicLong changingNow = new AtomicLong();
+        TimeManager.Allocation changing = new TimeManager(3_000, changingNow::get)
+                .allocate(new CompactGameState(9, true));
+        for (int depth = 1; depth <= 4; depth++) {
+            changingNow.addAndGet(5_000_000L);
+            assertTrue(changing.iterationDone(depth % 2 == 0 ? 8 : 9, 100, 90), "Depth " + depth);
+        }
+
+        TimeManager fixed = TimeManager.fixed(1000);
+        TimeManager.Allocation unmanaged = fixed.allocate(new CompactGameState(9, true));
+        for (int depth = 1; depth <= 5; depth++) {
+            assertTrue(unmanaged.iterationDone(4, 10_000, -10_000));
+        }
+        assertEquals(0, fixed.getEarlyStops());
+    }
+
+    /**
+     * Tests if a player's search reads the time from its manager's clock, so a clock that never
+     * moves lets it search to the level's depth however long that takes.
+     */
+    @Test
+    void testSearchUsesManagerClock() {
+        TimeManager manager = new TimeManager(1_000, () -> Long.MIN_VALUE / 4);
+        SearchPlayer player = new SearchPlayer(Difficulty.MEDIUM, new Random(2));
+        player.setTimeManager(manager);
+        assertNotNull(player.chooseMove(new CompactGameState(9, true)));
+        assertEquals(Difficulty.MEDIUM.getMaxDepth(), player.getLastDepth());
+        assertEquals(1_000, manager.getRemainingMillis());
+    }
+
+    /**
+     * Tests if a player with a time manager plays legal moves within its clock, and if every move
+     * chosen after pondering counts as a ponder hit or miss.
+     */
+    @Test
+    void testTimeManagedPlayerPonders() {
+        SearchPlayer player = new SearchPlayer(Difficulty.MEDIUM, new Random(1));
+        TimeManager manager = TimeManager.forGame(Difficulty.MEDIUM, 5);
+        player.setTimeManager(manager);
+        assertSame(manager, player.getTimeManager());
+
+        CompactGameState state = new CompactGameState(5, true);
+        SearchPlayer opponent = new SearchPlayer(Difficulty.MEDIUM, new Random(2), PatternWeights.getDefault(), true);
+        while (!state.isGameOver()) {
+            Move move = (state.isPlayerOneTurn() ? player : opponent).chooseMove(state);
+            assertTrue(state.placeMove(move.row(), move.col(), move.letter()) >= 0, "Illegal move " + move);
+            if (!state.isPlayerOneTurn() && !state.isGameOver()) {
+                player.ponder(state);
+            }
+        }
+        player.stopPondering();
+        assertEquals(12, player.getPonderHits() + player.getPonderMisses());
+        assertTrue(manager.getRemainingMillis() > -Difficulty.MEDIUM.getTimePerMoveMillis(),
+                "Overran the clock: " + manager.getRemainingMillis() + " ms left");
+
+        // Pondering is stopped by the next move whether or not the reply was predicted
+        SearchPlayer ponderer = new SearchPlayer(Difficulty.MEDIUM, new Random(1));
+        CompactGameState position = new CompactGameState(5, true);
+        position.placeMove(2, 2, 'S');
+        ponderer.ponder(position);
+        Move reply = new SearchPlayer(Difficulty.MEDIUM, new Random(1)).chooseMove(position);
+        position.placeMove(reply.row(), reply.col(), reply.letter());
+        assertNotNull(ponderer.chooseMove(position));
+        assertEquals(1, ponderer.getPonderHits() + ponderer.getPonderMisses());
+    }
+}
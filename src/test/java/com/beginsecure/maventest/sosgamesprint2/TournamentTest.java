@@ -0,0 +1,184 @@
+package com.beginsecure.maventest.sosgamesprint2;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the Tournament runner, its Elo ratings and the LLM player on the local stub.
+ */
+public class TournamentTest {
+
+    /**
+     * Tests if a round robin plays every pairing with swapped colours in every size and mode.
+     */
+    @Test
+    void testRoundRobinSchedule() {
+        List<Tournament.Entrant> entrants = List.of(Tournament.entrant("Random", null),
+                Tournament.entrant("Greedy", null), Tournament.entrant("Easy", null));
+        Tournament.Results results = new Tournament(entrants, Tournament.Format.ROUND_ROBIN,
+                new int[] {3, 4}, new boolean[] {false, true}, 2, 7, 4).run();
+
+        // 3 pairings x 2 sizes x 2 modes x 2 rounds x 2 colours
+        assertEquals(48, results.getGames().size());
+        int[] firstSeats = new int[3];
+        for (Tournament.GameResult game : results.getGames()) {
+            firstSeats[game.first()]++;
+            assertFalse(game.forfeit());
+        }
+        assertArrayEquals(new int[] {16, 16, 16}, firstSeats, "Colours should be swapped evenly.");
+        assertEquals(32, results.getGamesPlayed(0));
+    }
+
+    /**
+     * Tests if a gauntlet only pairs the first entrant and if the stronger player rates higher.
+     */
+    @Test
+    void testGauntletRatesStrongerPlayerHigher() {
+        List<Tournament.Entrant> entrants = List.of(Tournament.entrant("Greedy", null),
+                Tournament.entrant("Random", null), Tournament.entrant("Random", null));
+        Tournament.Results results = new Tournament(entrants, Tournament.Format.GAUNTLET,
+                new int[] {5}, new boolean[] {true}, 10, 3, 4).run();
+
+        assertEquals(40, results.getGames().size());
+        for (Tournament.GameResult game : results.getGames()) {
+            assertTrue(game.first() == 0 || game.second() == 0, "Every game should involve the first entrant.");
+        }
+        assertTrue(results.getElo(0) > results.getElo(1) + results.getEloMargin(0) / 2);
+        assertEquals(0, results.getElo(0) + results.getElo(1) + results.getElo(2), 1e-6);
+    }
+
+    /**
+     * Tests if the Elo fit reproduces the rating difference of a 75% score.
+     */
+    @Test
+    void testEloFitForKnownScore() {
+        // 300 wins and 100 losses; the virtual draws barely move the result
+        List<Tournament.GameResult> games = new java.util.ArrayList<>();
+        for (int i = 0; i < 400; i++) {
+            games.add(new Tournament.GameResult(i, 0, 1, 3, true, i % 4 == 0 ? 2 : 1, 0, 0, 1, 1, 0, 0, false,
+                    0, 0, new GameRecord(3, true, List.of())));
+        }
+        double[] ratings = Tournament.Results.fitElo(2, games);
+        assertEquals(Tournament.Results.eloFromScore(0.75), ratings[0] - ratings[1], 5);
+        assertEquals(191, Tournament.Results.eloFromScore(0.75), 1);
+    }
+
+    /**
+     * Tests if results are written as CSV and JSON.
+     */
+    @Test
+    void testWritesCsvAndJson() throws Exception {
+        List<Tournament.Entrant> entrants = List.of(Tournament.entrant("Random", null), Tournament.entrant("Greedy", null));
+        Tournament.Results results = new Tournament(entrants, Tournament.Format.ROUND_ROBIN,
+                new int[] {3}, new boolean[] {false}, 1, 1, 2).run();
+        Path csv = Files.createTempFile("tournament", ".csv");
+        Path json = Files.createTempFile("tournament", ".json");
+        try {
+            results.writeCsv(csv);
+            results.writeJson(json);
+            List<String> lines = Files.readAllLines(csv);
+            assertEquals(3, lines.size());
+            assertTrue(lines.get(0).startsWith("game,first,second"));
+            JSONObject summary = new JSONObject(Files.readString(json));
+            assertEquals(2, summary.getInt("games"));
+            assertEquals(2, summary.getJSONArray("standings").length());
+        } finally {
+            Files.deleteIfExists(csv);
+            Files.deleteIfExists(json);
+        }
+    }
+
+    /**
+     * Tests if the LLM player plays legal moves through the local stub, retrying on invalid ones.
+     */
+    @Test
+    void testLLMPlayerOnStub() throws Exception {
+        try (LLMStubServer stub = new LLMStubServer(0, 0.3, new Random(5))) {
+            LLMPlayer player = new LLMPlayer(stub.newService(), new Random(5));
+            // Boards with more empty cells than the endgame threshold, so the LLM is asked
+            CompactGameState state = new CompactGameState(4, true);
+            state.placeMove(0, 0, 'S');
+            state.placeMove(0, 1, 'O');
+            assertEquals(new Move(0, 2, 'S'), player.chooseMove(state), "The stub takes a listed scoring cell.");
+
+            Tournament.Entrant llm = Tournament.entrant("LLM", stub.newService());
+            Tournament.Results results = new Tournament(List.of(llm, Tournament.entrant("Random", null)),
+                    Tournament.Format.ROUND_ROBIN, new int[] {4}, new boolean[] {true}, 1, 1, 2).run();
+            for (Tournament.GameResult game : results.getGames()) {
+                assertFalse(game.forfeit());
+            }
+            assertTrue(stub.getRequestCount() > 0);
+        }
+    }
+
+    /**
+     * Tests if deterministic entrants play the same moves and search the same number of nodes
+     * whatever the number of threads.
+     */
+    @Test
+    void testDeterministicTournament() {
+        List<Tournament.Entrant> entrants = List.of(Tournament.entrant("Greedy", null, true),
+                Tournament.entrant("Easy", null, true), Tournament.entrant("Medium", null, true));
+        Tournament.Results first = new Tournament(entrants, Tournament.Format.ROUND_ROBIN,
+                new int[] {4}, new boolean[] {false, true}, 1, 7, 1).run();
+        Tournament.Results second = new Tournament(entrants, Tournament.Format.ROUND_ROBIN,
+                new int[] {4}, new boolean[] {false, true}, 1, 7, 4).run();
+
+        assertEquals(first.getFingerprint(), second.getFingerprint());
+        for (int i = 0; i < first.getGames().size(); i++) {
+            Tournament.GameResult game = first.getGames().get(i);
+            Tournament.GameResult again = second.getGames().get(i);
+            assertEquals(game.record(), again.record());
+            assertEquals(game.firstNodes(), again.firstNodes());
+            assertEquals(game.secondNodes(), again.secondNodes());
+            assertEquals(game.record().moves().size(), game.firstMoves() + game.secondMoves());
+            if (game.first() == 2) {
+                assertTrue(game.firstNodes() > 0, "The Medium player searches.");
+            }
+        }
+        Tournament.Results otherSeed = new Tournament(entrants, Tournament.Format.ROUND_ROBIN,
+                new int[] {4}, new boolean[] {false, true}, 1, 8, 4).run();
+        assertNotEquals(first.getFingerprint(), otherSeed.getFingerprint());
+    }
+
+    /**
+     * Tests if a tournament with an LLM player is reproduced from recorded answers without the
+     * stub.
+     */
+    @Test
+    void testLLMRecordAndReplay() throws Exception {
+        Path file = Files.createTempFile("llm-answers", ".jsonl");
+        try {
+            Tournament.Results recorded;
+            try (LLMStubServer stub = new LLMStubServer(0, 0.3, new Random(9));
+                 RecordedLLMService recording = RecordedLLMService.recording(stub.newService(), file)) {
+                recorded = run(Tournament.entrant("LLM", recording));
+            }
+            RecordedLLMService replay = RecordedLLMService.replaying(file);
+            Tournament.Results replayed = run(Tournament.entrant("LLM", replay));
+            assertTrue(replay.isReplaying());
+            assertEquals(0, replay.getMisses());
+            assertEquals(recorded.getFingerprint(), replayed.getFingerprint());
+
+            LLMService.Reply missing = replay.send("Not a recorded prompt", 0);
+            assertEquals(RecordedLLMService.NOT_RECORDED, missing.statusCode());
+            assertFalse(missing.isRetryable());
+            assertEquals(1, replay.getMisses());
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    /**
+     * Plays an LLM entrant against a deterministic Easy player.
+     */
+    private static Tournament.Results run(Tournament.Entrant llm) {
+        return new Tournament(List.of(llm, Tournament.entrant("Easy", null, true)), Tournament.Format.ROUND_ROBIN,
+                new int[] {3, 4}, new boolean[] {true}, 2, 3, 4).run();
+    }
+}